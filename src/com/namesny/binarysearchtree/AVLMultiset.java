@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorted multiset backed by an AVL tree. Equal values share one node which
+ * counts their occurrences, so a node is allocated only for the first
+ * occurrence of a value and unlinked only when the last one is deleted.
+ *
+ * The navigation, the iterators and {@link #size()} see each distinct value
+ * once, {@link #count(Comparable)} and {@link #occurrences()} count the
+ * repeated ones. A multiset does not have the semantics of a set, so it
+ * cannot back a {@link NavigableTreeSet} or a {@link HashIndexedTree}.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class AVLMultiset<T extends Comparable<? super T>> extends AVLTree<T> {
+
+    /**
+     * Number of values in the multiset including repeated ones
+     */
+    protected long occurrences;
+
+    public AVLMultiset() {
+        super();
+        occurrences = 0;
+    }
+
+    /**
+     * Adds one occurrence of the value to the multiset
+     *
+     * @param value the value to insert
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        AVLNode<T> node = findNode(value);
+        if (node != null && node.count > 0) {
+            node.count++;
+        } else {
+            super.add(value);
+        }
+        occurrences++;
+    }
+
+    /**
+     * Adds one occurrence of the value to the multiset. Unlike a tree it
+     * accepts a value it already contains.
+     *
+     * @param value the value to insert
+     * @return always true
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(T value) {
+        insert(value);
+        return true;
+    }
+
+    /**
+     * Removes one occurrence of the value from the multiset
+     *
+     * @param value the value to delete
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        AVLNode<T> node = findNode(value);
+        if (node == null || node.count == 0) {
+            return;
+        }
+
+        if (node.count > 1) {
+            node.count--;
+        } else {
+            super.delete(value);
+        }
+        occurrences--;
+    }
+
+    /**
+     * Adds one occurrence of every value of a batch in ascending order, no
+     * value is rejected
+     *
+     * @param values the values to insert
+     * @return the result with no rejected values
+     * @throws IllegalArgumentException if the collection or a value is null
+     */
+    @Override
+    public BulkResult<T> insertAll(Collection<? extends T> values) {
+        T[] batch = KeyBatch.sorted(values);
+        for (T value : batch) {
+            insert(value);
+        }
+        return new BulkResult<>(batch.length, Collections.<T>emptyList());
+    }
+
+    /**
+     * Removes one occurrence of every value of a batch in ascending order
+     *
+     * @param values the values to delete
+     * @return the result with the values which had no occurrence left
+     * @throws IllegalArgumentException if the collection or a value is null
+     */
+    @Override
+    public BulkResult<T> deleteAll(Collection<? extends T> values) {
+        T[] batch = KeyBatch.sorted(values);
+        List<T> rejected = new ArrayList<>();
+        for (T value : batch) {
+            long oldOccurrences = occurrences;
+            delete(value);
+            if (occurrences == oldOccurrences) {
+                rejected.add(value);
+            }
+        }
+        return new BulkResult<>(batch.length - rejected.size(), rejected);
+    }
+
+    /**
+     * Removes one occurrence of the minimum from the multiset
+     *
+     * @return the removed minimum, null if the multiset is empty
+     */
+    @Override
+    public T pollMin() {
+        if (minNode == null) {
+            return null;
+        }
+
+        occurrences--;
+        if (minNode.count > 1) {
+            minNode.count--;
+            return minNode.value;
+        }
+        return super.pollMin();
+    }
+
+    /**
+     * Removes one occurrence of the maximum from the multiset
+     *
+     * @return the removed maximum, null if the multiset is empty
+     */
+    @Override
+    public T pollMax() {
+        if (maxNode == null) {
+            return null;
+        }
+
+        occurrences--;
+        if (maxNode.count > 1) {
+            maxNode.count--;
+            return maxNode.value;
+        }
+        return super.pollMax();
+    }
+
+    /**
+     * Returns the number of occurrences of the value
+     *
+     * @param value the value to count
+     * @return number of occurrences, zero if the value is not present
+     * @throws IllegalArgumentException
+     */
+    public int count(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        AVLNode<T> node = findNode(value);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Returns the number of values in the multiset including repeated ones
+     *
+     * @return number of occurrences of all values
+     */
+    public long occurrences() {
+        return occurrences;
+    }
+
+    /**
+     * Clears the multiset
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        occurrences = 0;
+    }
+}
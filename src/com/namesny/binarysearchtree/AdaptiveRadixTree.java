@@ -0,0 +1,998 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Adaptive radix tree. Values are stored by the bytes of their keys, every
+ * inner node branches on one byte, so a lookup reads each byte of the key
+ * once and never compares whole values until it reaches a leaf. The inner
+ * nodes come in four sizes for up to 4, 16, 48 and 256 children and are
+ * replaced by the next size when they fill up or the previous one when they
+ * empty, so sparse nodes stay small and dense ones are indexed directly by
+ * the byte.
+ *
+ * A chain of nodes with one child each is collapsed into the prefix of the
+ * node below it, and a value is stored as a leaf directly in the slot of
+ * the first node where its key differs from all others. A value is its own
+ * leaf, the tree has no leaf objects. A key that is a prefix of another key
+ * is kept in the node where it ends, so any byte strings can be keys.
+ *
+ * The bytes of the values are read through a {@link RadixKey}, which has to
+ * order them like compareTo. Like the other trees this class is not thread
+ * safe.
+ *
+ * http://db.in.tum.de/~leis/papers/ART.pdf
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class AdaptiveRadixTree<T extends Comparable<? super T>> implements BinarySearchTree<T>, Iterable<T> {
+
+    private static final byte[] EMPTY_PREFIX = new byte[0];
+
+    /**
+     * Bytes of the values
+     */
+    private final RadixKey<T> keys;
+
+    /**
+     * The root, a node, a single value or null
+     */
+    private Object root;
+
+    /**
+     * Number of values in the tree
+     */
+    private int size;
+
+    /**
+     * True if the last insert added a value
+     */
+    private boolean inserted;
+
+    /**
+     * True if the last delete removed a value
+     */
+    private boolean removed;
+
+    /**
+     * Creates an empty tree
+     *
+     * @param keys the bytes of the values
+     * @throws IllegalArgumentException
+     */
+    public AdaptiveRadixTree(RadixKey<T> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        this.keys = keys;
+    }
+
+    /**
+     * Inner node of the tree
+     */
+    private abstract static class Node {
+
+        /**
+         * Bytes of the collapsed chain of nodes above this one, which all
+         * keys below the node share
+         */
+        byte[] prefix = EMPTY_PREFIX;
+
+        /**
+         * The value whose key ends after the prefix, or null
+         */
+        Object terminal;
+
+        /**
+         * Number of children
+         */
+        int count;
+
+        /**
+         * Returns the child for a byte
+         *
+         * @param b the byte
+         * @return the child or null
+         */
+        abstract Object findChild(int b);
+
+        /**
+         * Replaces an existing child
+         *
+         * @param b the byte
+         * @param child the new child
+         */
+        abstract void setChild(int b, Object child);
+
+        /**
+         * Adds a child for a byte without one, the node must not be full
+         *
+         * @param b the byte
+         * @param child the child
+         */
+        abstract void addChild(int b, Object child);
+
+        /**
+         * Removes an existing child
+         *
+         * @param b the byte
+         */
+        abstract void removeChild(int b);
+
+        /**
+         * Returns the least byte with a child which is not less than a bound
+         *
+         * @param from the bound
+         * @return the byte or -1 if there is none
+         */
+        abstract int nextByte(int from);
+
+        /**
+         * Returns the greatest byte with a child which is not greater than a
+         * bound
+         *
+         * @param from the bound
+         * @return the byte or -1 if there is none
+         */
+        abstract int previousByte(int from);
+
+        /**
+         * Returns the maximal number of children
+         *
+         * @return the capacity
+         */
+        abstract int capacity();
+
+        /**
+         * Returns a node of the next size with the same contents
+         *
+         * @return the larger node
+         */
+        abstract Node grow();
+
+        /**
+         * Returns a node of the previous size with the same contents if the
+         * children fit into it, this node otherwise
+         *
+         * @return the node
+         */
+        abstract Node shrink();
+
+        /**
+         * Copies the children and the rest of the contents into another node
+         *
+         * @param node the empty node
+         * @return the node
+         */
+        Node copyTo(Node node) {
+            node.prefix = prefix;
+            node.terminal = terminal;
+            for (int b = nextByte(0); b >= 0; b = nextByte(b + 1)) {
+                node.addChild(b, findChild(b));
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Node with up to 4 or 16 children whose bytes are kept sorted
+     */
+    private static final class SortedNode extends Node {
+
+        final byte[] bytes;
+        final Object[] children;
+
+        SortedNode(int capacity) {
+            bytes = new byte[capacity];
+            children = new Object[capacity];
+        }
+
+        /**
+         * Returns the position of a byte or the position where it belongs
+         *
+         * @param b the byte
+         * @return index of the first byte not less than b
+         */
+        private int position(int b) {
+            int i = 0;
+            while (i < count && (bytes[i] & 0xFF) < b) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        Object findChild(int b) {
+            int i = position(b);
+            return i < count && (bytes[i] & 0xFF) == b ? children[i] : null;
+        }
+
+        @Override
+        void setChild(int b, Object child) {
+            children[position(b)] = child;
+        }
+
+        @Override
+        void addChild(int b, Object child) {
+            int i = position(b);
+            System.arraycopy(bytes, i, bytes, i + 1, count - i);
+            System.arraycopy(children, i, children, i + 1, count - i);
+            bytes[i] = (byte) b;
+            children[i] = child;
+            count++;
+        }
+
+        @Override
+        void removeChild(int b) {
+            int i = position(b);
+            System.arraycopy(bytes, i + 1, bytes, i, count - i - 1);
+            System.arraycopy(children, i + 1, children, i, count - i - 1);
+            children[--count] = null;
+        }
+
+        @Override
+        int nextByte(int from) {
+            int i = position(from);
+            return i < count ? bytes[i] & 0xFF : -1;
+        }
+
+        @Override
+        int previousByte(int from) {
+            int i = position(from + 1);
+            return i > 0 ? bytes[i - 1] & 0xFF : -1;
+        }
+
+        @Override
+        int capacity() {
+            return bytes.length;
+        }
+
+        @Override
+        Node grow() {
+            return copyTo(bytes.length == 4 ? new SortedNode(16) : new Node48());
+        }
+
+        @Override
+        Node shrink() {
+            return bytes.length == 16 && count <= 3 ? copyTo(new SortedNode(4)) : this;
+        }
+    }
+
+    /**
+     * Node with up to 48 children and an index from every byte to the slot
+     * of its child
+     */
+    private static final class Node48 extends Node {
+
+        /**
+         * Slot of the child of every byte plus one, zero for no child
+         */
+        final byte[] index = new byte[256];
+        final Object[] children = new Object[48];
+
+        @Override
+        Object findChild(int b) {
+            int slot = index[b];
+            return slot == 0 ? null : children[slot - 1];
+        }
+
+        @Override
+        void setChild(int b, Object child) {
+            children[index[b] - 1] = child;
+        }
+
+        @Override
+        void addChild(int b, Object child) {
+            int slot = 0;
+            while (children[slot] != null) {
+                slot++;
+            }
+            children[slot] = child;
+            index[b] = (byte) (slot + 1);
+            count++;
+        }
+
+        @Override
+        void removeChild(int b) {
+            children[index[b] - 1] = null;
+            index[b] = 0;
+            count--;
+        }
+
+        @Override
+        int nextByte(int from) {
+            for (int b = from; b < 256; b++) {
+                if (index[b] != 0) {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int previousByte(int from) {
+            for (int b = from; b >= 0; b--) {
+                if (index[b] != 0) {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int capacity() {
+            return 48;
+        }
+
+        @Override
+        Node grow() {
+            return copyTo(new Node256());
+        }
+
+        @Override
+        Node shrink() {
+            return count <= 12 ? copyTo(new SortedNode(16)) : this;
+        }
+    }
+
+    /**
+     * Node with a child slot for every byte
+     */
+    private static final class Node256 extends Node {
+
+        final Object[] children = new Object[256];
+
+        @Override
+        Object findChild(int b) {
+            return children[b];
+        }
+
+        @Override
+        void setChild(int b, Object child) {
+            children[b] = child;
+        }
+
+        @Override
+        void addChild(int b, Object child) {
+            children[b] = child;
+            count++;
+        }
+
+        @Override
+        void removeChild(int b) {
+            children[b] = null;
+            count--;
+        }
+
+        @Override
+        int nextByte(int from) {
+            for (int b = from; b < 256; b++) {
+                if (children[b] != null) {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int previousByte(int from) {
+            for (int b = from; b >= 0; b--) {
+                if (children[b] != null) {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int capacity() {
+            return 256;
+        }
+
+        @Override
+        Node grow() {
+            throw new IllegalStateException("Node256 cannot grow");
+        }
+
+        @Override
+        Node shrink() {
+            // Shrinks later than Node48 grows so a node on the boundary
+            // does not flip with every update
+            return count <= 40 ? copyTo(new Node48()) : this;
+        }
+    }
+
+    /**
+     * Inserts the value to the tree
+     *
+     * @param value the value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (!add(value)) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Inserts the value unless the tree already contains it
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    public boolean add(T value) {
+        checkKey(value);
+
+        inserted = false;
+        root = insert(root, value, 0);
+        if (inserted) {
+            size++;
+        }
+        return inserted;
+    }
+
+    /**
+     * Deletes the value from the tree
+     *
+     * @param key the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T key) {
+        checkKey(key);
+
+        removed = false;
+        root = delete(root, key, 0);
+        if (removed) {
+            size--;
+        }
+    }
+
+    /**
+     * Finds object equal to key in the tree
+     *
+     * @param key
+     * @return returns the object equal to key
+     * @throws IllegalArgumentException
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T find(T key) {
+        checkKey(key);
+
+        int length = keys.length(key);
+        Object slot = root;
+        int depth = 0;
+        while (slot instanceof Node) {
+            Node node = (Node) slot;
+            byte[] prefix = node.prefix;
+            if (depth + prefix.length > length) {
+                return null;
+            }
+            for (byte b : prefix) {
+                if ((b & 0xFF) != keys.byteAt(key, depth++)) {
+                    return null;
+                }
+            }
+            if (depth == length) {
+                // Every byte of the key matched on the way down
+                return (T) node.terminal;
+            }
+            slot = node.findChild(keys.byteAt(key, depth++));
+        }
+
+        if (slot == null) {
+            return null;
+        }
+        T value = (T) slot;
+        return mismatch(value, key, depth) < 0 ? value : null;
+    }
+
+    /**
+     * Removes all values from the tree
+     */
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * True if the tree is empty
+     *
+     * @return returns true if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the number of values in the tree
+     *
+     * @return size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds minimal value in the tree
+     *
+     * @return minimum, null if the tree is empty
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T findMin() {
+        Object slot = root;
+        while (slot instanceof Node) {
+            Node node = (Node) slot;
+            if (node.terminal != null) {
+                return (T) node.terminal;
+            }
+            slot = node.findChild(node.nextByte(0));
+        }
+        return (T) slot;
+    }
+
+    /**
+     * Finds maximal value in the tree
+     *
+     * @return maximum, null if the tree is empty
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T findMax() {
+        Object slot = root;
+        while (slot instanceof Node) {
+            Node node = (Node) slot;
+            if (node.count == 0) {
+                return (T) node.terminal;
+            }
+            slot = node.findChild(node.previousByte(255));
+        }
+        return (T) slot;
+    }
+
+    /**
+     * Iterates over the values in ascending order. The tree must not be
+     * modified while it is being iterated.
+     *
+     * @return iterator over the tree
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new TreeIterator();
+    }
+
+    /**
+     * Returns the number of inner nodes of each size
+     *
+     * @return numbers of nodes with up to 4, 16, 48 and 256 children
+     */
+    public int[] nodeCounts() {
+        int[] counts = new int[4];
+        Deque<Node> nodes = new ArrayDeque<>();
+        if (root instanceof Node) {
+            nodes.push((Node) root);
+        }
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int capacity = node.capacity();
+            counts[capacity == 4 ? 0 : capacity == 16 ? 1 : capacity == 48 ? 2 : 3]++;
+            for (int b = node.nextByte(0); b >= 0; b = node.nextByte(b + 1)) {
+                Object child = node.findChild(b);
+                if (child instanceof Node) {
+                    nodes.push((Node) child);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Checks the tree invariants: every value is reached by the bytes of its
+     * key, the values are in ascending order, every node has the size its
+     * number of children needs and no node could be collapsed into its
+     * child.
+     *
+     * @throws IllegalStateException if an invariant is violated
+     */
+    public void verify() {
+        int count = 0;
+        T previous = null;
+        for (T value : this) {
+            if (previous != null && previous.compareTo(value) >= 0) {
+                throw new IllegalStateException("Values out of order: " + previous + ", " + value);
+            }
+            if (find(value) != value) {
+                throw new IllegalStateException("Value " + value + " is not reached by its key");
+            }
+            previous = value;
+            count++;
+        }
+        if (count != size) {
+            throw new IllegalStateException("Tree has " + count + " values but its size is " + size);
+        }
+        verify(root, true);
+    }
+
+    @Override
+    public String toString() {
+        int[] counts = nodeCounts();
+        return "AdaptiveRadixTree size=" + size + " node4=" + counts[0] + " node16=" + counts[1]
+                + " node48=" + counts[2] + " node256=" + counts[3];
+    }
+
+    /**
+     * Checks the invariants of the nodes of a subtree
+     *
+     * @param slot root of the subtree
+     * @param isRoot true for the root of the tree
+     */
+    private void verify(Object slot, boolean isRoot) {
+        if (!(slot instanceof Node)) {
+            return;
+        }
+        Node node = (Node) slot;
+        int children = 0;
+        for (int b = node.nextByte(0); b >= 0; b = node.nextByte(b + 1)) {
+            if (node.findChild(b) == null) {
+                throw new IllegalStateException("Missing child for byte " + b);
+            }
+            verify(node.findChild(b), false);
+            children++;
+        }
+        if (children != node.count) {
+            throw new IllegalStateException("Node has " + children + " children but its count is " + node.count);
+        }
+        if (node.count > node.capacity() || node.shrink() != node) {
+            throw new IllegalStateException("Node with " + node.count + " children has capacity " + node.capacity());
+        }
+        if (node.count + (node.terminal == null ? 0 : 1) < 2) {
+            throw new IllegalStateException("Node with " + node.count + " children was not collapsed");
+        }
+    }
+
+    /**
+     * Checks the key of an operation
+     *
+     * @param key the key
+     * @return the key
+     * @throws IllegalArgumentException
+     */
+    private T checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return key;
+    }
+
+    /**
+     * Finds the first byte where the keys of two values differ
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param from index of the first byte to compare
+     * @return index of the first differing byte, the length of the shorter
+     * key if it is a prefix of the longer one, or -1 if the keys are equal
+     */
+    private int mismatch(T a, T b, int from) {
+        int lengthA = keys.length(a);
+        int lengthB = keys.length(b);
+        int length = Math.min(lengthA, lengthB);
+        for (int i = from; i < length; i++) {
+            if (keys.byteAt(a, i) != keys.byteAt(b, i)) {
+                return i;
+            }
+        }
+        return lengthA == lengthB ? -1 : length;
+    }
+
+    /**
+     * Stores a value into a node, as its terminal if the key ends at the
+     * depth or as the child for the byte at the depth otherwise
+     *
+     * @param node the node
+     * @param value the value
+     * @param depth index of the byte the node branches on
+     */
+    private void place(Node node, T value, int depth) {
+        if (keys.length(value) == depth) {
+            node.terminal = value;
+        } else {
+            node.addChild(keys.byteAt(value, depth), value);
+        }
+    }
+
+    /**
+     * Inserts a value into a subtree
+     *
+     * @param slot root of the subtree
+     * @param value the value
+     * @param depth number of key bytes consumed above the subtree
+     * @return the new root of the subtree
+     */
+    @SuppressWarnings("unchecked")
+    private Object insert(Object slot, T value, int depth) {
+        if (slot == null) {
+            inserted = true;
+            return value;
+        }
+
+        if (!(slot instanceof Node)) {
+            // Split a leaf into a node over the bytes the keys share
+            T existing = (T) slot;
+            int split = mismatch(existing, value, depth);
+            if (split < 0) {
+                return slot;
+            }
+            Node node = new SortedNode(4);
+            node.prefix = prefix(value, depth, split);
+            place(node, existing, split);
+            place(node, value, split);
+            inserted = true;
+            return node;
+        }
+
+        Node node = (Node) slot;
+        byte[] prefix = node.prefix;
+        int length = keys.length(value);
+        for (int i = 0; i < prefix.length; i++) {
+            if (depth + i == length || (prefix[i] & 0xFF) != keys.byteAt(value, depth + i)) {
+                // Split the prefix where the key leaves it
+                Node parent = new SortedNode(4);
+                parent.prefix = Arrays.copyOf(prefix, i);
+                node.prefix = Arrays.copyOfRange(prefix, i + 1, prefix.length);
+                parent.addChild(prefix[i] & 0xFF, node);
+                place(parent, value, depth + i);
+                inserted = true;
+                return parent;
+            }
+        }
+        depth += prefix.length;
+
+        if (depth == length) {
+            if (node.terminal == null) {
+                node.terminal = value;
+                inserted = true;
+            }
+            return node;
+        }
+
+        int b = keys.byteAt(value, depth);
+        Object child = node.findChild(b);
+        if (child != null) {
+            Object replacement = insert(child, value, depth + 1);
+            if (replacement != child) {
+                node.setChild(b, replacement);
+            }
+            return node;
+        }
+
+        if (node.count == node.capacity()) {
+            node = node.grow();
+        }
+        node.addChild(b, value);
+        inserted = true;
+        return node;
+    }
+
+    /**
+     * Deletes a value from a subtree
+     *
+     * @param slot root of the subtree
+     * @param key the value
+     * @param depth number of key bytes consumed above the subtree
+     * @return the new root of the subtree
+     */
+    @SuppressWarnings("unchecked")
+    private Object delete(Object slot, T key, int depth) {
+        if (slot == null) {
+            return null;
+        }
+
+        if (!(slot instanceof Node)) {
+            if (mismatch((T) slot, key, depth) < 0) {
+                removed = true;
+                return null;
+            }
+            return slot;
+        }
+
+        Node node = (Node) slot;
+        byte[] prefix = node.prefix;
+        int length = keys.length(key);
+        if (depth + prefix.length > length) {
+            return node;
+        }
+        for (byte b : prefix) {
+            if ((b & 0xFF) != keys.byteAt(key, depth++)) {
+                return node;
+            }
+        }
+
+        if (depth == length) {
+            if (node.terminal == null) {
+                return node;
+            }
+            node.terminal = null;
+            removed = true;
+            return collapse(node);
+        }
+
+        int b = keys.byteAt(key, depth);
+        Object child = node.findChild(b);
+        if (child == null) {
+            return node;
+        }
+        Object replacement = delete(child, key, depth + 1);
+        if (replacement == child) {
+            return node;
+        }
+        if (replacement != null) {
+            node.setChild(b, replacement);
+            return node;
+        }
+        node.removeChild(b);
+        return collapse(node);
+    }
+
+    /**
+     * Replaces a node which lost a child or its terminal by a smaller one,
+     * by its only value or by its only child with the prefix extended
+     *
+     * @param node the node
+     * @return the replacement
+     */
+    private Object collapse(Node node) {
+        if (node.count == 0) {
+            return node.terminal;
+        }
+        if (node.count == 1 && node.terminal == null) {
+            int b = node.nextByte(0);
+            Object child = node.findChild(b);
+            if (child instanceof Node) {
+                Node below = (Node) child;
+                byte[] prefix = Arrays.copyOf(node.prefix, node.prefix.length + 1 + below.prefix.length);
+                prefix[node.prefix.length] = (byte) b;
+                System.arraycopy(below.prefix, 0, prefix, node.prefix.length + 1, below.prefix.length);
+                below.prefix = prefix;
+            }
+            // A leaf keeps its whole key and can move up as it is
+            return child;
+        }
+        return node.shrink();
+    }
+
+    /**
+     * Returns bytes of the key of a value
+     *
+     * @param value the value
+     * @param from index of the first byte
+     * @param to index after the last byte
+     * @return the bytes
+     */
+    private byte[] prefix(T value, int from, int to) {
+        if (from == to) {
+            return EMPTY_PREFIX;
+        }
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = (byte) keys.byteAt(value, i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Node of the iterator path with the next byte to visit
+     */
+    private static final class Frame {
+
+        final Node node;
+        int next = -1;
+
+        Frame(Node node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * In-order iterator, a node is visited by its terminal first and then by
+     * its children in the order of their bytes
+     */
+    private class TreeIterator implements Iterator<T> {
+
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private T next;
+
+        @SuppressWarnings("unchecked")
+        TreeIterator() {
+            if (root instanceof Node) {
+                stack.push(new Frame((Node) root));
+                next = advance();
+            } else {
+                next = (T) root;
+            }
+        }
+
+        /**
+         * Finds the next value
+         *
+         * @return the value or null at the end
+         */
+        @SuppressWarnings("unchecked")
+        private T advance() {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.next < 0) {
+                    frame.next = 0;
+                    if (frame.node.terminal != null) {
+                        return (T) frame.node.terminal;
+                    }
+                }
+
+                int b = frame.next < 256 ? frame.node.nextByte(frame.next) : -1;
+                if (b < 0) {
+                    stack.pop();
+                    continue;
+                }
+                frame.next = b + 1;
+                Object child = frame.node.findChild(b);
+                if (child instanceof Node) {
+                    stack.push(new Frame((Node) child));
+                } else {
+                    return (T) child;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T value = next;
+            next = advance();
+            return value;
+        }
+    }
+}
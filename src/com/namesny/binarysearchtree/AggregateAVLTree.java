@@ -0,0 +1,327 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * AVL tree which keeps the aggregate of every subtree, so the aggregate of
+ * the values in any range is combined from O(log n) subtree aggregates
+ * instead of scanning the range. The aggregates are restored for every node
+ * whose subtree changes, on the path of an insert or delete and in every
+ * rotation. Tombstones left by lazy deletion are not aggregated.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ * @param <A> type of the aggregates
+ */
+public class AggregateAVLTree<T extends Comparable<? super T>, A> extends AVLTree<T> {
+
+    /**
+     * The monoid of the aggregates
+     */
+    private final Aggregator<? super T, A> aggregator;
+
+    /**
+     * Creates an empty tree
+     *
+     * @param aggregator the monoid of the aggregates
+     * @throws IllegalArgumentException
+     */
+    public AggregateAVLTree(Aggregator<? super T, A> aggregator) {
+        super();
+        if (aggregator == null) {
+            throw new IllegalArgumentException("Aggregator cannot be null");
+        }
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Node which keeps the aggregate of its subtree
+     */
+    protected static class AggregateNode<T extends Comparable<? super T>, A> extends AVLNode<T> {
+
+        /**
+         * Aggregate of the live values in the subtree
+         */
+        protected A aggregate;
+
+        /**
+         * Creates one node with no children
+         *
+         * @param value the value of this node
+         * @param aggregate the aggregate of the value
+         */
+        public AggregateNode(T value, A aggregate) {
+            super(value);
+            this.aggregate = aggregate;
+        }
+    }
+
+    /**
+     * Deletes the value from the tree. A value which was only marked as a
+     * tombstone is removed from the aggregates on its path.
+     *
+     * @param value the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T value) {
+        int oldTombstones = tombstones;
+        super.delete(value);
+        if (tombstones > oldTombstones) {
+            updatePath(root, value);
+        }
+    }
+
+    /**
+     * Returns the aggregator of the tree
+     *
+     * @return the monoid of the aggregates
+     */
+    public Aggregator<? super T, A> getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Returns the aggregate of all values in constant time
+     *
+     * @return aggregate of the tree
+     */
+    public A aggregate() {
+        return aggregateOf(root);
+    }
+
+    /**
+     * Returns the aggregate of the values in [low, high]
+     *
+     * @param low the lower bound
+     * @param high the upper bound
+     * @return aggregate of the range
+     * @throws IllegalArgumentException
+     */
+    public A aggregate(T low, T high) {
+        if (low == null || high == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return aggregate(low, true, high, true);
+    }
+
+    /**
+     * Returns the aggregate of the values in a range in O(log n)
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @return aggregate of the range
+     */
+    public A aggregate(T low, boolean lowInclusive, T high, boolean highInclusive) {
+        AVLNode<T> node = root;
+
+        // Find the highest node in the range, where the bounds split
+        while (node != null) {
+            if (low != null && isBelow(node, low, lowInclusive)) {
+                node = node.right;
+            } else if (high != null && isAbove(node, high, highInclusive)) {
+                node = node.left;
+            } else {
+                break;
+            }
+        }
+        if (node == null) {
+            return aggregator.identity();
+        }
+
+        A result = aggregator.combine(aggregateFrom(node.left, low, lowInclusive), liveAggregate(node));
+        return aggregator.combine(result, aggregateTo(node.right, high, highInclusive));
+    }
+
+    /**
+     * Creates a node with the aggregate of its value
+     *
+     * @param value the value of the node
+     * @return new node without children
+     */
+    @Override
+    protected AVLNode<T> createNode(T value) {
+        return new AggregateNode<>(value, aggregator.lift(value));
+    }
+
+    /**
+     * Stores a value in a node. A reused node becomes a leaf, so its
+     * aggregate is the aggregate of the value, a node which takes over the
+     * value of its successor is updated by the delete.
+     *
+     * @param node the node
+     * @param value the new value of the node
+     */
+    @Override
+    protected void setValue(AVLNode<T> node, T value) {
+        super.setValue(node, value);
+        setAggregate(node, aggregator.lift(value));
+    }
+
+    /**
+     * Updates the height and the aggregate of a node
+     *
+     * @param node node whose subtree changed
+     */
+    @Override
+    protected void updateNode(AVLNode<T> node) {
+        super.updateNode(node);
+        A aggregate = aggregator.combine(aggregateOf(node.left), liveAggregate(node));
+        setAggregate(node, aggregator.combine(aggregate, aggregateOf(node.right)));
+    }
+
+    /**
+     * Stores the aggregate of a subtree in its root
+     *
+     * @param node root of the subtree
+     * @param aggregate the aggregate
+     */
+    @SuppressWarnings("unchecked")
+    private void setAggregate(AVLNode<T> node, A aggregate) {
+        ((AggregateNode<T, A>) node).aggregate = aggregate;
+    }
+
+    /**
+     * Returns the aggregate of a subtree
+     *
+     * @param node root of the subtree
+     * @return the aggregate, the identity for an empty subtree
+     */
+    @SuppressWarnings("unchecked")
+    private A aggregateOf(AVLNode<T> node) {
+        return node == null ? aggregator.identity() : ((AggregateNode<T, A>) node).aggregate;
+    }
+
+    /**
+     * Returns the aggregate of the value of a node
+     *
+     * @param node the node
+     * @return aggregate of the value, the identity for a tombstone
+     */
+    private A liveAggregate(AVLNode<T> node) {
+        return node.count > 0 ? aggregator.lift(node.value) : aggregator.identity();
+    }
+
+    /**
+     * Checks whether the value of a node is below the lower bound
+     *
+     * @param node the node
+     * @param low the lower bound
+     * @param inclusive true if the bound is part of the range
+     * @return true if the node is outside the range
+     */
+    private boolean isBelow(AVLNode<T> node, T low, boolean inclusive) {
+        int cmp = compare(low, node);
+        return cmp > 0 || (cmp == 0 && !inclusive);
+    }
+
+    /**
+     * Checks whether the value of a node is above the upper bound
+     *
+     * @param node the node
+     * @param high the upper bound
+     * @param inclusive true if the bound is part of the range
+     * @return true if the node is outside the range
+     */
+    private boolean isAbove(AVLNode<T> node, T high, boolean inclusive) {
+        int cmp = compare(high, node);
+        return cmp < 0 || (cmp == 0 && !inclusive);
+    }
+
+    /**
+     * Returns the aggregate of the values of a subtree above the lower bound,
+     * following a single path
+     *
+     * @param node root of the subtree
+     * @param low the lower bound, null for no bound
+     * @param inclusive true if the bound is part of the range
+     * @return aggregate of the values in the range
+     */
+    private A aggregateFrom(AVLNode<T> node, T low, boolean inclusive) {
+        if (low == null) {
+            return aggregateOf(node);
+        }
+
+        A result = aggregator.identity();
+        while (node != null) {
+            if (isBelow(node, low, inclusive)) {
+                node = node.right;
+            } else {
+                A upper = aggregator.combine(liveAggregate(node), aggregateOf(node.right));
+                result = aggregator.combine(upper, result);
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the aggregate of the values of a subtree below the upper bound,
+     * following a single path
+     *
+     * @param node root of the subtree
+     * @param high the upper bound, null for no bound
+     * @param inclusive true if the bound is part of the range
+     * @return aggregate of the values in the range
+     */
+    private A aggregateTo(AVLNode<T> node, T high, boolean inclusive) {
+        if (high == null) {
+            return aggregateOf(node);
+        }
+
+        A result = aggregator.identity();
+        while (node != null) {
+            if (isAbove(node, high, inclusive)) {
+                node = node.left;
+            } else {
+                A lower = aggregator.combine(aggregateOf(node.left), liveAggregate(node));
+                result = aggregator.combine(result, lower);
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Updates the nodes on the path to a value bottom-up
+     *
+     * @param node root of the subtree
+     * @param value the value
+     */
+    private void updatePath(AVLNode<T> node, T value) {
+        if (node == null) {
+            return;
+        }
+
+        int cmp = compare(value, node);
+        if (cmp < 0) {
+            updatePath(node.left, value);
+        } else if (cmp > 0) {
+            updatePath(node.right, value);
+        }
+        updateNode(node);
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Red-Black tree which keeps the aggregate of every subtree, so the aggregate of
+ * the values in any range is combined from O(log n) subtree aggregates
+ * instead of scanning the range. The aggregates are restored for every node
+ * whose subtree changes, on the path of an insert or delete and in every
+ * rotation. Tombstones left by lazy deletion are not aggregated.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ * @param <A> type of the aggregates
+ */
+public class AggregateRedBlackTree<T extends Comparable<? super T>, A> extends RedBlackTree<T> {
+
+    /**
+     * The monoid of the aggregates
+     */
+    private final Aggregator<? super T, A> aggregator;
+
+    /**
+     * Creates an empty tree
+     *
+     * @param aggregator the monoid of the aggregates
+     * @throws IllegalArgumentException
+     */
+    public AggregateRedBlackTree(Aggregator<? super T, A> aggregator) {
+        super();
+        if (aggregator == null) {
+            throw new IllegalArgumentException("Aggregator cannot be null");
+        }
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Node which keeps the aggregate of its subtree
+     */
+    protected static class AggregateNode<T extends Comparable<? super T>, A> extends RedBlackNode<T> {
+
+        /**
+         * Aggregate of the live values in the subtree
+         */
+        protected A aggregate;
+
+        /**
+         * Creates one node with two leaf children
+         *
+         * @param value the value of this node
+         * @param parent the parent of this node
+         * @param aggregate the aggregate of the value
+         */
+        public AggregateNode(T value, RedBlackNode<T> parent, A aggregate) {
+            super(value, parent);
+            this.aggregate = aggregate;
+        }
+    }
+
+    /**
+     * Deletes the value from the tree. A value which was only marked as a
+     * tombstone is removed from the aggregates on its path.
+     *
+     * @param value the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T value) {
+        int oldTombstones = tombstones;
+        super.delete(value);
+        if (tombstones > oldTombstones) {
+            updateUpwards(findNode(value));
+        }
+    }
+
+    /**
+     * Inserts the value unless the tree already contains it
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(T value) {
+        if (!super.add(value)) {
+            return false;
+        }
+        updateUpwards(findNode(value));
+        return true;
+    }
+
+    /**
+     * Rebuilds the tree from the sorted nodes and recomputes all the aggregates
+     *
+     * @param nodes the live nodes in ascending order
+     * @param count number of the nodes
+     */
+    @Override
+    protected void rebuild(RedBlackNode<T>[] nodes, int count) {
+        super.rebuild(nodes, count);
+        updateSubtree(root);
+    }
+
+    /**
+     * Returns the aggregator of the tree
+     *
+     * @return the monoid of the aggregates
+     */
+    public Aggregator<? super T, A> getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Returns the aggregate of all values in constant time
+     *
+     * @return aggregate of the tree
+     */
+    public A aggregate() {
+        return aggregateOf(root);
+    }
+
+    /**
+     * Returns the aggregate of the values in [low, high]
+     *
+     * @param low the lower bound
+     * @param high the upper bound
+     * @return aggregate of the range
+     * @throws IllegalArgumentException
+     */
+    public A aggregate(T low, T high) {
+        if (low == null || high == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return aggregate(low, true, high, true);
+    }
+
+    /**
+     * Returns the aggregate of the values in a range in O(log n)
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @return aggregate of the range
+     */
+    public A aggregate(T low, boolean lowInclusive, T high, boolean highInclusive) {
+        RedBlackNode<T> node = root;
+
+        // Find the highest node in the range, where the bounds split
+        while (node.value != null) {
+            if (low != null && isBelow(node, low, lowInclusive)) {
+                node = node.right;
+            } else if (high != null && isAbove(node, high, highInclusive)) {
+                node = node.left;
+            } else {
+                break;
+            }
+        }
+        if (node.value == null) {
+            return aggregator.identity();
+        }
+
+        A result = aggregator.combine(aggregateFrom(node.left, low, lowInclusive), liveAggregate(node));
+        return aggregator.combine(result, aggregateTo(node.right, high, highInclusive));
+    }
+
+    /**
+     * Creates a node with the aggregate of its value
+     *
+     * @param value the value of the node
+     * @param parent the parent of the node
+     * @return new red node with two external children
+     */
+    @Override
+    protected RedBlackNode<T> createNode(T value, RedBlackNode<T> parent) {
+        AggregateNode<T, A> node = new AggregateNode<>(value, parent, aggregator.lift(value));
+        node.left.parent = node;
+        node.right.parent = node;
+        return node;
+    }
+
+    /**
+     * Stores a value in a node. A reused node becomes a leaf, so its
+     * aggregate is the aggregate of the value, a node which takes over the
+     * value of its successor is updated by the delete.
+     *
+     * @param node the node
+     * @param value the new value of the node
+     */
+    @Override
+    protected void setValue(RedBlackNode<T> node, T value) {
+        super.setValue(node, value);
+        setAggregate(node, aggregator.lift(value));
+    }
+
+    /**
+     * Unlinks the node and restores the aggregates above the place it was
+     * unlinked from. A node with two children takes over the value of its
+     * successor and this method is called again for the successor.
+     *
+     * @param node internal node to delete
+     */
+    @Override
+    protected void delete(RedBlackNode<T> node) {
+        boolean unlinked = node.left.value == null || node.right.value == null;
+        RedBlackNode<T> parent = node.parent;
+        super.delete(node);
+        if (unlinked) {
+            updateUpwards(parent);
+        }
+    }
+
+    /**
+     * Rotates the tree to the left and recomputes the aggregates of the two
+     * rotated nodes
+     *
+     * @param node the node where to rotate
+     */
+    @Override
+    protected void rotateLeft(RedBlackNode<T> node) {
+        super.rotateLeft(node);
+        updateNode(node);
+        updateNode(node.parent);
+    }
+
+    /**
+     * Rotates the tree to the right and recomputes the aggregates of the two
+     * rotated nodes
+     *
+     * @param node the node where to rotate
+     */
+    @Override
+    protected void rotateRight(RedBlackNode<T> node) {
+        super.rotateRight(node);
+        updateNode(node);
+        updateNode(node.parent);
+    }
+
+    /**
+     * Recomputes the aggregate of a node from its value and its children
+     *
+     * @param node internal node
+     */
+    private void updateNode(RedBlackNode<T> node) {
+        A aggregate = aggregator.combine(aggregateOf(node.left), liveAggregate(node));
+        setAggregate(node, aggregator.combine(aggregate, aggregateOf(node.right)));
+    }
+
+    /**
+     * Recomputes the aggregates of a node and all its ancestors. Every node
+     * whose aggregate may be out of date is an ancestor of the node where the
+     * tree was changed, the rotations done meanwhile keep that true.
+     *
+     * @param node the lowest changed node, null or external for none
+     */
+    private void updateUpwards(RedBlackNode<T> node) {
+        if (node != null && node.value == null) {
+            return;
+        }
+        for (; node != null; node = node.parent) {
+            updateNode(node);
+        }
+    }
+
+    /**
+     * Recomputes the aggregates of all nodes of a subtree
+     *
+     * @param node root of the subtree
+     */
+    private void updateSubtree(RedBlackNode<T> node) {
+        if (node.value == null) {
+            return;
+        }
+        updateSubtree(node.left);
+        updateSubtree(node.right);
+        updateNode(node);
+    }
+
+    /**
+     * Stores the aggregate of a subtree in its root
+     *
+     * @param node root of the subtree
+     * @param aggregate the aggregate
+     */
+    @SuppressWarnings("unchecked")
+    private void setAggregate(RedBlackNode<T> node, A aggregate) {
+        ((AggregateNode<T, A>) node).aggregate = aggregate;
+    }
+
+    /**
+     * Returns the aggregate of a subtree
+     *
+     * @param node root of the subtree
+     * @return the aggregate, the identity for an empty subtree
+     */
+    @SuppressWarnings("unchecked")
+    private A aggregateOf(RedBlackNode<T> node) {
+        return node.value == null ? aggregator.identity() : ((AggregateNode<T, A>) node).aggregate;
+    }
+
+    /**
+     * Returns the aggregate of the value of a node
+     *
+     * @param node the node
+     * @return aggregate of the value, the identity for a tombstone
+     */
+    private A liveAggregate(RedBlackNode<T> node) {
+        return node.count > 0 ? aggregator.lift(node.value) : aggregator.identity();
+    }
+
+    /**
+     * Checks whether the value of a node is below the lower bound
+     *
+     * @param node the node
+     * @param low the lower bound
+     * @param inclusive true if the bound is part of the range
+     * @return true if the node is outside the range
+     */
+    private boolean isBelow(RedBlackNode<T> node, T low, boolean inclusive) {
+        int cmp = compare(low, node);
+        return cmp > 0 || (cmp == 0 && !inclusive);
+    }
+
+    /**
+     * Checks whether the value of a node is above the upper bound
+     *
+     * @param node the node
+     * @param high the upper bound
+     * @param inclusive true if the bound is part of the range
+     * @return true if the node is outside the range
+     */
+    private boolean isAbove(RedBlackNode<T> node, T high, boolean inclusive) {
+        int cmp = compare(high, node);
+        return cmp < 0 || (cmp == 0 && !inclusive);
+    }
+
+    /**
+     * Returns the aggregate of the values of a subtree above the lower bound,
+     * following a single path
+     *
+     * @param node root of the subtree
+     * @param low the lower bound, null for no bound
+     * @param inclusive true if the bound is part of the range
+     * @return aggregate of the values in the range
+     */
+    private A aggregateFrom(RedBlackNode<T> node, T low, boolean inclusive) {
+        if (low == null) {
+            return aggregateOf(node);
+        }
+
+        A result = aggregator.identity();
+        while (node.value != null) {
+            if (isBelow(node, low, inclusive)) {
+                node = node.right;
+            } else {
+                A upper = aggregator.combine(liveAggregate(node), aggregateOf(node.right));
+                result = aggregator.combine(upper, result);
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the aggregate of the values of a subtree below the upper bound,
+     * following a single path
+     *
+     * @param node root of the subtree
+     * @param high the upper bound, null for no bound
+     * @param inclusive true if the bound is part of the range
+     * @return aggregate of the values in the range
+     */
+    private A aggregateTo(RedBlackNode<T> node, T high, boolean inclusive) {
+        if (high == null) {
+            return aggregateOf(node);
+        }
+
+        A result = aggregator.identity();
+        while (node.value != null) {
+            if (isAbove(node, high, inclusive)) {
+                node = node.left;
+            } else {
+                A lower = aggregator.combine(aggregateOf(node.left), liveAggregate(node));
+                result = aggregator.combine(result, lower);
+                node = node.right;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Monoid which summarizes the values of a subtree, such as their sum,
+ * minimum or maximum. The combine operation has to be associative and the
+ * identity has to be neutral to it, the operation does not have to be
+ * commutative, the aggregates are always combined in ascending order of the
+ * values.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ * @param <A> type of the aggregates
+ * @see AggregateAVLTree
+ * @see AggregateRedBlackTree
+ */
+public interface Aggregator<T, A> {
+
+    /**
+     * Returns the aggregate of no values
+     *
+     * @return the identity
+     */
+    public A identity();
+
+    /**
+     * Returns the aggregate of a single value
+     *
+     * @param value the value
+     * @return aggregate of the value
+     */
+    public A lift(T value);
+
+    /**
+     * Combines the aggregates of two adjacent ranges
+     *
+     * @param left aggregate of the lower range
+     * @param right aggregate of the upper range
+     * @return aggregate of both ranges
+     */
+    public A combine(A left, A right);
+
+    /**
+     * Creates an aggregator from its parts
+     *
+     * @param <T> type of the values
+     * @param <A> type of the aggregates
+     * @param identity the aggregate of no values
+     * @param lift the aggregate of a single value
+     * @param combine the associative operation combining two aggregates
+     * @return the aggregator
+     * @throws IllegalArgumentException
+     */
+    public static <T, A> Aggregator<T, A> of(A identity, Function<? super T, ? extends A> lift, BinaryOperator<A> combine) {
+        if (lift == null || combine == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        return new Aggregator<T, A>() {
+
+            @Override
+            public A identity() {
+                return identity;
+            }
+
+            @Override
+            public A lift(T value) {
+                return lift.apply(value);
+            }
+
+            @Override
+            public A combine(A left, A right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+}
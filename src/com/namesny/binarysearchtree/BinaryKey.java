@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Key encoded into bytes whose unsigned lexicographic order is the order of
+ * the key. The bytes are packed big-endian into longs, so two keys are
+ * compared eight bytes at a time by one loop with no field comparisons or
+ * virtual calls. Keys are created by {@link KeyEncoder} and read back by
+ * {@link KeyDecoder}.
+ *
+ * The encoded bytes are the persistent form of the key as well, a key is
+ * written and read without encoding or decoding its fields.
+ *
+ * @author Matúš Námešný
+ */
+public final class BinaryKey implements Comparable<BinaryKey> {
+
+    /**
+     * The bytes packed big-endian, the unused bytes of the last word are zero
+     */
+    private final long[] words;
+
+    /**
+     * Number of bytes
+     */
+    private final int length;
+
+    /**
+     * Creates a key from packed words
+     *
+     * @param words the bytes packed big-endian
+     * @param length number of bytes
+     */
+    BinaryKey(long[] words, int length) {
+        this.words = words;
+        this.length = length;
+    }
+
+    /**
+     * Creates a key from its bytes
+     *
+     * @param bytes the encoded bytes
+     * @return the key
+     * @throws IllegalArgumentException
+     */
+    public static BinaryKey fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        long[] words = new long[(bytes.length + 7) >>> 3];
+        for (int i = 0; i < bytes.length; i++) {
+            words[i >>> 3] |= (bytes[i] & 0xFFL) << (56 - ((i & 7) << 3));
+        }
+        return new BinaryKey(words, bytes.length);
+    }
+
+    /**
+     * Reads a key written by {@link #writeTo(DataOutput)}
+     *
+     * @param in the input
+     * @return the key
+     * @throws IOException
+     */
+    public static BinaryKey readFrom(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative key length " + length);
+        }
+
+        long[] words = new long[(length + 7) >>> 3];
+        int full = length >>> 3;
+        for (int i = 0; i < full; i++) {
+            words[i] = in.readLong();
+        }
+        for (int i = full << 3; i < length; i++) {
+            words[full] |= (in.readByte() & 0xFFL) << (56 - ((i & 7) << 3));
+        }
+        return new BinaryKey(words, length);
+    }
+
+    /**
+     * Writes the length and the bytes of the key
+     *
+     * @param out the output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(length);
+        int full = length >>> 3;
+        for (int i = 0; i < full; i++) {
+            out.writeLong(words[i]);
+        }
+        for (int i = full << 3; i < length; i++) {
+            out.writeByte(byteAt(i));
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the key
+     *
+     * @return length of the key in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns one byte of the key
+     *
+     * @param index index of the byte
+     * @return the byte as an unsigned value
+     */
+    public int byteAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of key length " + length);
+        }
+        return (int) (words[index >>> 3] >>> (56 - ((index & 7) << 3))) & 0xFF;
+    }
+
+    /**
+     * Returns the first eight bytes of the key, padded with zero bytes
+     *
+     * @return the first word
+     */
+    public long prefix() {
+        return words.length == 0 ? 0 : words[0];
+    }
+
+    /**
+     * Returns the bytes of the key
+     *
+     * @return a copy of the encoded bytes
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) byteAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Compares the keys as unsigned byte strings. The words are compared
+     * first, the zero padding of the last word makes a proper prefix compare
+     * equal or less, so ties are resolved by the length.
+     *
+     * @param other the other key
+     * @return negative, zero or positive as this key is less than, equal to
+     * or greater than the other key
+     */
+    @Override
+    public int compareTo(BinaryKey other) {
+        long[] a = words;
+        long[] b = other.words;
+        int n = Math.min(a.length, b.length);
+
+        for (int i = 0; i < n; i++) {
+            if (a[i] != b[i]) {
+                return Long.compareUnsigned(a[i], b[i]);
+            }
+        }
+        return Integer.compare(length, other.length);
+    }
+
+    /**
+     * Compares the bytes of the keys
+     *
+     * @param o the other object
+     * @return true if the other object is a key with the same bytes
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BinaryKey)) {
+            return false;
+        }
+        BinaryKey other = (BinaryKey) o;
+        return length == other.length && Arrays.equals(words, other.words);
+    }
+
+    /**
+     * Computes the hash code from the bytes of the key
+     *
+     * @return hash code of the key
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(words) + length;
+    }
+
+    /**
+     * Formats the bytes of the key in hexadecimal
+     *
+     * @return the key as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(2 * length);
+        for (int i = 0; i < length; i++) {
+            builder.append(Character.forDigit(byteAt(i) >>> 4, 16));
+            builder.append(Character.forDigit(byteAt(i) & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
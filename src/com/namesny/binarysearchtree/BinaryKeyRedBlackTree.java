@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Red-Black tree of binary-comparable keys which keeps the first eight bytes
+ * of the key in every node. A comparison is decided by one unsigned compare
+ * of the prefixes whenever they differ, so a search reads the words of a key
+ * only on a tie, which for composite keys usually means a shared leading
+ * field such as the tenant.
+ *
+ * @author Matúš Námešný
+ */
+public class BinaryKeyRedBlackTree extends RedBlackTree<BinaryKey> {
+
+    /**
+     * Creates an empty tree
+     */
+    public BinaryKeyRedBlackTree() {
+        super();
+    }
+
+    /**
+     * Node which keeps the prefix of its key
+     */
+    protected static class BinaryKeyNode extends RedBlackNode<BinaryKey> {
+
+        /**
+         * First eight bytes of the key
+         */
+        protected long prefix;
+
+        /**
+         * Creates one node with two leaf children
+         *
+         * @param value the key of this node
+         * @param parent the parent of this node
+         */
+        public BinaryKeyNode(BinaryKey value, RedBlackNode<BinaryKey> parent) {
+            super(value, parent);
+            this.prefix = value.prefix();
+        }
+    }
+
+    /**
+     * Creates a node with the prefix of the key
+     *
+     * @param value the key of the node
+     * @param parent the parent of the node
+     * @return new node with two leaf children
+     */
+    @Override
+    protected RedBlackNode<BinaryKey> createNode(BinaryKey value, RedBlackNode<BinaryKey> parent) {
+        BinaryKeyNode node = new BinaryKeyNode(value, parent);
+        node.left.parent = node;
+        node.right.parent = node;
+        return node;
+    }
+
+    /**
+     * Stores a key and its prefix in a node
+     *
+     * @param node the node
+     * @param value the new key of the node
+     */
+    @Override
+    protected void setValue(RedBlackNode<BinaryKey> node, BinaryKey value) {
+        super.setValue(node, value);
+        ((BinaryKeyNode) node).prefix = value.prefix();
+    }
+
+    /**
+     * Compares the key with the key of the node on their prefixes first
+     *
+     * @param key the key being looked up
+     * @param node node to compare against
+     * @return negative, zero or positive as the key is less than, equal to or
+     * greater than the key of the node
+     */
+    @Override
+    protected int compare(BinaryKey key, RedBlackNode<BinaryKey> node) {
+        long prefix = key.prefix();
+        long nodePrefix = ((BinaryKeyNode) node).prefix;
+        if (prefix != nodePrefix) {
+            return Long.compareUnsigned(prefix, nodePrefix);
+        }
+        return key.compareTo(node.value);
+    }
+}
@@ -36,4 +36,28 @@ public interface BinarySearchTree<T extends Comparable<? super T>>{
     public boolean isEmpty();
     public T findMin();
     public T findMax();
+
+    /**
+     * Finds the objects equal to a batch of keys, the object equal to
+     * keys[i] or null is stored into results[i]. The default implementation
+     * calls {@link #find(Comparable)} for every key, trees override it to
+     * look up the whole batch at once.
+     *
+     * @param keys the keys
+     * @param results array receiving the results, at least as long as keys
+     * @return number of keys found
+     * @throws IllegalArgumentException if an array or a key is null or the
+     * results are shorter than the keys
+     */
+    public default int findAll(T[] keys, T[] results) {
+        KeyBatch.check(keys, results);
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            results[i] = find(keys[i]);
+            if (results[i] != null) {
+                found++;
+            }
+        }
+        return found;
+    }
 }
@@ -0,0 +1,390 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counting Bloom filter of the values of a tree. Every value sets k of m
+ * 4-bit counters chosen by double hashing of its hash code, a value whose
+ * counters are not all set is certainly absent. Removal decrements the
+ * counters, a counter which overflowed stays saturated forever, so removal
+ * never causes a false negative and at worst leaves a false positive.
+ *
+ * The filter keeps statistics of the lookups answered through it, the trees
+ * report a false positive when a value accepted by the filter is not found.
+ * All statistics are safe to read from other threads.
+ *
+ * A filter is written and read back with its counters, the hash codes of
+ * the values must then be the same in every run of the program, which holds
+ * for strings, boxed primitives and {@link BinaryKey} but not for identity
+ * hash codes.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ */
+public class BloomFilter<T> {
+
+    /**
+     * Greatest value of a counter
+     */
+    private static final int SATURATED = 15;
+
+    /**
+     * The counters, sixteen in every word
+     */
+    private final long[] counters;
+
+    /**
+     * Mask of a counter index, the number of counters is a power of two
+     */
+    private final int mask;
+
+    /**
+     * Number of counters set by one value
+     */
+    private final int hashes;
+
+    /**
+     * Number of values the filter is sized for
+     */
+    private final int capacity;
+
+    /**
+     * Number of values in the filter
+     */
+    private int count;
+
+    /**
+     * Number of lookups
+     */
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * Number of lookups rejected by the filter
+     */
+    private final LongAdder negatives = new LongAdder();
+
+    /**
+     * Number of lookups accepted by the filter for absent values
+     */
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Creates an empty filter
+     *
+     * @param capacity number of values the filter is sized for
+     * @param falsePositiveRate expected rate of false positives at capacity
+     * @throws IllegalArgumentException if the capacity is not positive or
+     * the rate is not in (0, 1)
+     */
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1)");
+        }
+
+        // m = -n ln p / ln^2 2 rounded up to a power of two, k = m / n ln 2
+        double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int size = Integer.highestOneBit((int) Math.min(Math.max(bits, 64), 1 << 30) - 1) << 1;
+        this.counters = new long[size >>> 4];
+        this.mask = size - 1;
+        this.hashes = Math.max(1, Math.min(16, (int) Math.round((double) size / capacity * Math.log(2))));
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a filter from its persistent form
+     *
+     * @param counters the counters
+     * @param hashes number of counters set by one value
+     * @param capacity number of values the filter is sized for
+     * @param count number of values in the filter
+     */
+    private BloomFilter(long[] counters, int hashes, int capacity, int count) {
+        this.counters = counters;
+        this.mask = (counters.length << 4) - 1;
+        this.hashes = hashes;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(DataOutput)}, the statistics
+     * start at zero
+     *
+     * @param <T> type of the values
+     * @param in the input
+     * @return the filter
+     * @throws IOException
+     */
+    public static <T> BloomFilter<T> readFrom(DataInput in) throws IOException {
+        int capacity = in.readInt();
+        int hashes = in.readInt();
+        int count = in.readInt();
+        int words = in.readInt();
+        if (capacity <= 0 || hashes <= 0 || hashes > 16 || count < 0
+                || words <= 0 || Integer.bitCount(words) != 1) {
+            throw new IOException("Corrupted Bloom filter");
+        }
+
+        long[] counters = new long[words];
+        for (int i = 0; i < words; i++) {
+            counters[i] = in.readLong();
+        }
+        return new BloomFilter<>(counters, hashes, capacity, count);
+    }
+
+    /**
+     * Writes the filter without its statistics
+     *
+     * @param out the output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(hashes);
+        out.writeInt(count);
+        out.writeInt(counters.length);
+        for (long word : counters) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Adds a value to the filter
+     *
+     * @param value the value
+     */
+    public void add(T value) {
+        long hash = mix(value.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            int shift = (index & 15) << 2;
+            long counter = (counters[index >>> 4] >>> shift) & SATURATED;
+            if (counter < SATURATED) {
+                counters[index >>> 4] += 1L << shift;
+            }
+        }
+        count++;
+    }
+
+    /**
+     * Removes a value which was added to the filter
+     *
+     * @param value the value
+     */
+    public void remove(T value) {
+        long hash = mix(value.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            int shift = (index & 15) << 2;
+            long counter = (counters[index >>> 4] >>> shift) & SATURATED;
+            if (counter > 0 && counter < SATURATED) {
+                counters[index >>> 4] -= 1L << shift;
+            }
+        }
+        count--;
+    }
+
+    /**
+     * Checks whether the value may be in the filter and counts the lookup
+     *
+     * @param value the value
+     * @return false if the value is certainly not in the filter
+     */
+    public boolean mightContain(T value) {
+        lookups.increment();
+        long hash = mix(value.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            if (((counters[index >>> 4] >>> ((index & 15) << 2)) & SATURATED) == 0) {
+                negatives.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a value accepted by the filter was not found
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Removes all values from the filter, the statistics are kept
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        count = 0;
+    }
+
+    /**
+     * Returns the number of values in the filter
+     *
+     * @return number of values
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the number of values the filter is sized for
+     *
+     * @return capacity of the filter
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of counters
+     *
+     * @return number of counters
+     */
+    public int counters() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of counters set by one value
+     *
+     * @return number of hash functions
+     */
+    public int hashes() {
+        return hashes;
+    }
+
+    /**
+     * Returns the number of lookups
+     *
+     * @return number of lookups
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Returns the number of lookups rejected by the filter
+     *
+     * @return number of negative answers
+     */
+    public long getNegatives() {
+        return negatives.sum();
+    }
+
+    /**
+     * Returns the number of lookups of absent values accepted by the filter
+     *
+     * @return number of false positives
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Returns the observed fraction of lookups of absent values which the
+     * filter failed to reject
+     *
+     * @return false positive rate, zero if no absent value was looked up
+     */
+    public double getFalsePositiveRate() {
+        long falsePositives = getFalsePositives();
+        long absent = getNegatives() + falsePositives;
+        return absent == 0 ? 0 : (double) falsePositives / absent;
+    }
+
+    /**
+     * Returns the false positive rate predicted for the current number of
+     * values, (1 - e^(-kn/m))^k
+     *
+     * @return expected false positive rate
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * count / (mask + 1)), hashes);
+    }
+
+    /**
+     * Clears the statistics
+     */
+    public void resetStats() {
+        lookups.reset();
+        negatives.reset();
+        falsePositives.reset();
+    }
+
+    /**
+     * Adds the statistics of a filter this one replaces
+     *
+     * @param other the replaced filter
+     */
+    void addStats(BloomFilter<?> other) {
+        lookups.add(other.getLookups());
+        negatives.add(other.getNegatives());
+        falsePositives.add(other.getFalsePositives());
+    }
+
+    /**
+     * Spreads the bits of a hash code over a long, the finalizer of
+     * MurmurHash3
+     *
+     * @param hashCode the hash code
+     * @return the mixed hash
+     */
+    private static long mix(int hashCode) {
+        long h = hashCode * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count
+                + " capacity=" + capacity
+                + " counters=" + counters()
+                + " hashes=" + hashes
+                + " lookups=" + getLookups()
+                + " negatives=" + getNegatives()
+                + " falsePositives=" + getFalsePositives()
+                + " falsePositiveRate=" + String.format("%.4f", getFalsePositiveRate());
+    }
+}
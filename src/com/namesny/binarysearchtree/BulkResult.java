@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk insertion or deletion. A value is rejected when an
+ * insertion finds it already in the tree or a deletion does not find it,
+ * including a value repeated in the batch after its first occurrence.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ */
+public class BulkResult<T> {
+
+    /**
+     * Number of values inserted or deleted
+     */
+    private final int applied;
+
+    /**
+     * The rejected values in ascending order
+     */
+    private final List<T> rejected;
+
+    /**
+     * Creates a result
+     *
+     * @param applied number of values inserted or deleted
+     * @param rejected the rejected values in ascending order
+     */
+    public BulkResult(int applied, List<T> rejected) {
+        this.applied = applied;
+        this.rejected = Collections.unmodifiableList(rejected);
+    }
+
+    /**
+     * Returns the number of values inserted or deleted
+     *
+     * @return number of values
+     */
+    public int getApplied() {
+        return applied;
+    }
+
+    /**
+     * Returns the rejected values, the duplicates of an insertion or the
+     * missing values of a deletion
+     *
+     * @return unmodifiable list of the values in ascending order
+     */
+    public List<T> getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Checks if no value was rejected
+     *
+     * @return true if all values were applied
+     */
+    public boolean isComplete() {
+        return rejected.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "applied=" + applied + " rejected=" + rejected.size();
+    }
+}
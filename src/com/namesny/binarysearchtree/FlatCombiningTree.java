@@ -0,0 +1,552 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Makes a tree usable from several threads by flat combining. A thread
+ * publishes its insert, delete or find in its own publication record and
+ * tries to take the combiner lock. The thread which gets the lock applies
+ * the pending requests of all threads as one batch sorted by key, so the
+ * tree is walked in order with warm caches and the lock changes hands once
+ * per batch instead of once per operation. The other threads spin on their
+ * own record until their request is done or the lock is free again.
+ *
+ * The other operations, clear, isEmpty, findMin and findMax, take the lock
+ * directly. Compound operations, such as iterating over the wrapped tree,
+ * can be done while holding the lock returned by {@link #getLock()}.
+ *
+ * The combiner scans the records of all threads. A record which was not used
+ * for {@value #MAX_AGE} combining rounds is unlinked by the combiner, so
+ * threads which stopped using the tree, or died, are no longer scanned and
+ * their records can be collected. A thread whose record was unlinked links
+ * it again under the lock on its next operation.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class FlatCombiningTree<T extends Comparable<? super T>> implements BinarySearchTree<T> {
+
+    /**
+     * Number of busy waiting rounds before the waiting thread yields
+     */
+    private static final int SPINS = 64;
+
+    /**
+     * Greatest number of scans of the records by one combiner
+     */
+    private static final int COMBINING_PASSES = 3;
+
+    /**
+     * Number of combining rounds after which an unused record is unlinked
+     */
+    private static final int MAX_AGE = 1024;
+
+    /**
+     * Number of combining rounds between two scans for unused records
+     */
+    private static final int CLEANUP_PERIOD = 128;
+
+    /**
+     * Request types
+     */
+    private static final int INSERT = 1;
+    private static final int DELETE = 2;
+    private static final int FIND = 3;
+
+    /**
+     * Result of an insert of a duplicate value
+     */
+    private static final Object DUPLICATE = new Object();
+
+    /**
+     * Orders the records of a batch by their keys
+     */
+    private static final Comparator<Record<?>> BY_KEY = FlatCombiningTree::compareKeys;
+
+    /**
+     * The wrapped tree
+     */
+    private final BinarySearchTree<T> tree;
+
+    /**
+     * The combiner lock guarding the tree
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Head of the list of the publication records
+     */
+    private final AtomicReference<Record<T>> records = new AtomicReference<>();
+
+    /**
+     * Publication record of the current thread
+     */
+    private final ThreadLocal<Record<T>> record = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Requests of the current batch, used only by the combiner
+     */
+    private Record<?>[] batch = new Record<?>[16];
+
+    /**
+     * Number of batches applied
+     */
+    private long batches;
+
+    /**
+     * Number of requests applied in batches
+     */
+    private long combined;
+
+    /**
+     * Number of combining rounds, the clock of the record ages
+     */
+    private long rounds;
+
+    /**
+     * Publication record of one thread
+     *
+     * @param <T> type of the values
+     */
+    private static final class Record<T> {
+
+        /**
+         * Next record of the list. Written before the record is published
+         * and afterwards only under the lock.
+         */
+        private Record<T> next;
+
+        /**
+         * True while the record is linked in the list. Cleared by the
+         * combiner when it unlinks the record and set again when its owner
+         * links it back, both under the lock.
+         */
+        private volatile boolean active = true;
+
+        /**
+         * The combining round when the record was last used
+         */
+        private long age;
+
+        /**
+         * Type of the pending request, zero if there is none. Written by the
+         * owner to publish a request and cleared by the combiner when it is
+         * done.
+         */
+        private volatile int request;
+
+        /**
+         * The key of the request
+         */
+        private T key;
+
+        /**
+         * Result of the request, a value, DUPLICATE or a RuntimeException
+         */
+        private Object result;
+
+        /**
+         * Creates a record
+         *
+         * @param next next record of the list
+         */
+        private Record(Record<T> next) {
+            this.next = next;
+        }
+    }
+
+    /**
+     * Wraps the tree
+     *
+     * @param tree the tree to guard, it must not be used directly afterwards
+     * other than under the lock
+     * @throws IllegalArgumentException
+     */
+    public FlatCombiningTree(BinarySearchTree<T> tree) {
+        if (tree == null) {
+            throw new IllegalArgumentException("Tree cannot be null");
+        }
+        this.tree = tree;
+    }
+
+    /**
+     * Inserts the value through the combiner
+     *
+     * @param value the value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (execute(INSERT, value) == DUPLICATE) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Deletes the value through the combiner
+     *
+     * @param key the value to delete
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T key) {
+        execute(DELETE, key);
+    }
+
+    /**
+     * Finds the value through the combiner
+     *
+     * @param key the key
+     * @return the value equal to the key, null if there is none
+     * @throws IllegalArgumentException
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T find(T key) {
+        return (T) execute(FIND, key);
+    }
+
+    /**
+     * Clears the tree
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            tree.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the tree is empty
+     *
+     * @return true if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return tree.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the minimum in the tree
+     *
+     * @return the minimum, null if the tree is empty
+     */
+    @Override
+    public T findMin() {
+        lock.lock();
+        try {
+            return tree.findMin();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the maximum in the tree
+     *
+     * @return the maximum, null if the tree is empty
+     */
+    @Override
+    public T findMax() {
+        lock.lock();
+        try {
+            return tree.findMax();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding the wrapped tree. A thread holding it may use
+     * the tree directly, the published requests wait until it is released.
+     *
+     * @return the combiner lock
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Returns the wrapped tree, which may only be used under the lock
+     *
+     * @return the wrapped tree
+     */
+    public BinarySearchTree<T> getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the average number of requests applied in one batch
+     *
+     * @return average batch size, zero if nothing was combined
+     */
+    public double getAverageBatchSize() {
+        lock.lock();
+        try {
+            return batches == 0 ? 0 : (double) combined / batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes a request and waits until it is done, combining the pending
+     * requests whenever the lock is free
+     *
+     * @param request type of the request
+     * @param key the key of the request
+     * @return result of the request
+     * @throws IllegalArgumentException
+     */
+    private Object execute(int request, T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        Record<T> own = record.get();
+        own.key = key;
+        own.result = null;
+        own.request = request;
+
+        int spins = 0;
+        while (own.request != 0) {
+            if (!own.active) {
+                // The record was unlinked, no combiner would see the request
+                lock.lock();
+                try {
+                    relink(own);
+                    combine();
+                } finally {
+                    lock.unlock();
+                }
+            } else if ((!lock.isLocked() || lock.isHeldByCurrentThread()) && lock.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    lock.unlock();
+                }
+            } else if (++spins % SPINS == 0) {
+                Thread.yield();
+            }
+        }
+
+        Object result = own.result;
+        own.key = null;
+        own.result = null;
+        if (result instanceof RuntimeException) {
+            throw (RuntimeException) result;
+        }
+        return result;
+    }
+
+    /**
+     * Applies the pending requests of all threads in batches sorted by key
+     * and unlinks the unused records from time to time
+     */
+    private void combine() {
+        if (++rounds % CLEANUP_PERIOD == 0) {
+            unlinkStale();
+        }
+        for (int pass = 0; pass < COMBINING_PASSES; pass++) {
+            int count = 0;
+            for (Record<T> r = records.get(); r != null; r = r.next) {
+                if (r.request != 0) {
+                    if (count == batch.length) {
+                        batch = Arrays.copyOf(batch, 2 * count);
+                    }
+                    batch[count++] = r;
+                }
+            }
+            if (count == 0) {
+                return;
+            }
+
+            Arrays.sort(batch, 0, count, BY_KEY);
+            for (int i = 0; i < count; i++) {
+                @SuppressWarnings("unchecked")
+                Record<T> r = (Record<T>) batch[i];
+                r.result = apply(r.request, r.key);
+                r.age = rounds;
+                batch[i] = null;
+                r.request = 0;
+            }
+            batches++;
+            combined += count;
+        }
+    }
+
+    /**
+     * Applies one request to the tree
+     *
+     * @param request type of the request
+     * @param key the key of the request
+     * @return result of the request
+     */
+    private Object apply(int request, T key) {
+        try {
+            switch (request) {
+                case INSERT:
+                    tree.insert(key);
+                    return null;
+                case DELETE:
+                    tree.delete(key);
+                    return null;
+                default:
+                    return tree.find(key);
+            }
+        } catch (DuplicateValueException e) {
+            return DUPLICATE;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Returns the number of the records the combiner scans
+     *
+     * @return number of the linked publication records
+     */
+    public int getRecordCount() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (Record<T> r = records.get(); r != null; r = r.next) {
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unlinks the records which were not used for {@value #MAX_AGE} rounds
+     * and have no pending request. New records are only pushed at the head
+     * of the list meanwhile, so only unlinking the head needs a CAS.
+     */
+    private void unlinkStale() {
+        Record<T> previous = null;
+        Record<T> r = records.get();
+        while (r != null) {
+            Record<T> next = r.next;
+            if (rounds - r.age >= MAX_AGE && deactivate(r)) {
+                if (previous == null && !records.compareAndSet(r, next)) {
+                    // Records were pushed in front of the head
+                    previous = records.get();
+                    while (previous.next != r) {
+                        previous = previous.next;
+                    }
+                }
+                if (previous != null) {
+                    previous.next = next;
+                }
+                r.next = null;
+            } else {
+                previous = r;
+            }
+            r = next;
+        }
+    }
+
+    /**
+     * Marks a record as unlinked unless it has a pending request. The owner
+     * publishes its request before it checks the flag and the flag is cleared
+     * before the request is checked, so either the request is seen here or
+     * the owner sees the cleared flag and links the record again.
+     *
+     * @param r the record
+     * @return true if the record can be unlinked
+     */
+    private boolean deactivate(Record<T> r) {
+        r.active = false;
+        if (r.request != 0) {
+            r.active = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Links the unlinked record of the current thread again, the caller
+     * holds the lock
+     *
+     * @param r the record
+     */
+    private void relink(Record<T> r) {
+        if (r.active) {
+            return;
+        }
+        r.age = rounds;
+        while (true) {
+            Record<T> head = records.get();
+            r.next = head;
+            if (records.compareAndSet(head, r)) {
+                break;
+            }
+        }
+        r.active = true;
+    }
+
+    /**
+     * Creates and publishes the record of the current thread
+     *
+     * @return the new record
+     */
+    private Record<T> register() {
+        while (true) {
+            Record<T> head = records.get();
+            Record<T> r = new Record<>(head);
+            if (records.compareAndSet(head, r)) {
+                return r;
+            }
+        }
+    }
+
+    /**
+     * Compares the keys of two records
+     *
+     * @param a a record
+     * @param b another record
+     * @return negative, zero or positive as the key of the first record is
+     * less than, equal to or greater than the key of the other record
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Record<?> a, Record<?> b) {
+        return ((Comparable<Object>) a.key).compareTo(b.key);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Interfaces of reactive streams with demand-driven flow control. They have
+ * the same methods and contracts as the interfaces of
+ * java.util.concurrent.Flow, which is not available before Java 9, so a
+ * subscriber written against them moves to the JDK interfaces by changing
+ * the import.
+ *
+ * http://www.reactive-streams.org/
+ *
+ * @author Matúš Námešný
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * Producer of values received by subscribers
+     *
+     * @param <T> type of the values
+     */
+    @FunctionalInterface
+    public static interface Publisher<T> {
+
+        /**
+         * Adds a subscriber. The publisher calls its onSubscribe method
+         * first, then onNext for at most as many values as were requested,
+         * and finally onComplete or onError unless the subscription is
+         * cancelled.
+         *
+         * @param subscriber the subscriber
+         * @throws NullPointerException if the subscriber is null
+         */
+        public void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of values
+     *
+     * @param <T> type of the values
+     */
+    public static interface Subscriber<T> {
+
+        /**
+         * Called before any other method with the subscription, no values
+         * are sent until they are requested through it
+         *
+         * @param subscription the subscription
+         */
+        public void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next value
+         *
+         * @param item the value
+         */
+        public void onNext(T item);
+
+        /**
+         * Called when the subscription fails, no other method is called
+         * afterwards
+         *
+         * @param throwable the failure
+         */
+        public void onError(Throwable throwable);
+
+        /**
+         * Called when there are no more values, no other method is called
+         * afterwards
+         */
+        public void onComplete();
+    }
+
+    /**
+     * Link between a publisher and a subscriber
+     */
+    public static interface Subscription {
+
+        /**
+         * Adds demand for values. The demands are summed, a total of
+         * Long.MAX_VALUE or more is unbounded. A demand which is not
+         * positive fails the subscription with an IllegalArgumentException.
+         *
+         * @param n number of values
+         */
+        public void request(long n);
+
+        /**
+         * Stops the sending of values, possibly after some values already
+         * being sent
+         */
+        public void cancel();
+    }
+}
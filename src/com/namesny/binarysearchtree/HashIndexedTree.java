@@ -0,0 +1,353 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Ordered tree with a hash index for exact lookups. The values are kept both
+ * in a backing tree, which serves the ordered operations, and in a hash map
+ * from each value to itself, so {@link #find(Comparable)} and the lookups of
+ * absent values in {@link #delete(Comparable)} and {@link #add(Comparable)}
+ * cost one hash probe instead of a descent of the tree.
+ *
+ * The index maps to the stored values rather than to the tree nodes, because
+ * the trees move values between nodes when they delete a node with two
+ * children or reuse a pooled node. The values must have equals and hashCode
+ * consistent with compareTo. Every update changes the tree and the index
+ * together before it returns, the index is never out of date for a caller.
+ * Like the trees this class is not thread safe.
+ *
+ * The index costs one hash map entry per value, which is about as much
+ * memory as the tree node itself.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class HashIndexedTree<T extends Comparable<? super T>> implements NavigableTree<T> {
+
+    /**
+     * The backing tree
+     */
+    private final NavigableTree<T> tree;
+
+    /**
+     * Index from each value to the stored value
+     */
+    private final HashMap<T, T> index;
+
+    /**
+     * Creates an indexed AVL tree
+     */
+    public HashIndexedTree() {
+        this(new AVLTree<T>());
+    }
+
+    /**
+     * Creates an index over the tree. The tree must not be modified other
+     * than through this object afterwards.
+     *
+     * @param tree the backing tree
+     * @throws IllegalArgumentException if the tree is null or a multiset
+     */
+    public HashIndexedTree(NavigableTree<T> tree) {
+        if (tree == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (tree instanceof AVLMultiset || tree instanceof RedBlackMultiset) {
+            throw new IllegalArgumentException("Multiset cannot be indexed");
+        }
+
+        this.tree = tree;
+        this.index = new HashMap<>(Math.max(16, (int) (tree.size() / 0.75f) + 1));
+        for (T value : tree) {
+            index.put(value, value);
+        }
+    }
+
+    /**
+     * Inserts the value to the tree
+     *
+     * @param value the value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (!add(value)) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Inserts the value unless the tree already contains it. A duplicate is
+     * detected by the index without descending the tree.
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        if (index.containsKey(value)) {
+            return false;
+        }
+        tree.add(value);
+        index.put(value, value);
+        return true;
+    }
+
+    /**
+     * Deletes the value from the tree. An absent value is detected by the
+     * index without descending the tree.
+     *
+     * @param key the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        if (index.remove(key) != null) {
+            tree.delete(key);
+        }
+    }
+
+    /**
+     * Finds the value equal to the key with one hash probe
+     *
+     * @param key the key
+     * @return the value equal to the key, null if there is none
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T find(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        return index.get(key);
+    }
+
+    /**
+     * Checks whether the tree contains the value
+     *
+     * @param key the key
+     * @return true if the tree contains a value equal to the key
+     * @throws IllegalArgumentException
+     */
+    public boolean contains(T key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Clears the tree and the index
+     */
+    @Override
+    public void clear() {
+        tree.clear();
+        index.clear();
+    }
+
+    /**
+     * Checks if the tree is empty
+     *
+     * @return true if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * Returns the number of values in the tree
+     *
+     * @return size of the tree
+     */
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Finds the minimum in the tree
+     *
+     * @return the minimum, null if the tree is empty
+     */
+    @Override
+    public T findMin() {
+        return tree.findMin();
+    }
+
+    /**
+     * Finds the maximum in the tree
+     *
+     * @return the maximum, null if the tree is empty
+     */
+    @Override
+    public T findMax() {
+        return tree.findMax();
+    }
+
+    /**
+     * Finds the greatest value less than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    @Override
+    public T floor(T key) {
+        return tree.floor(key);
+    }
+
+    /**
+     * Finds the least value greater than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    @Override
+    public T ceiling(T key) {
+        return tree.ceiling(key);
+    }
+
+    /**
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    @Override
+    public T lower(T key) {
+        return tree.lower(key);
+    }
+
+    /**
+     * Finds the least value strictly greater than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    @Override
+    public T higher(T key) {
+        return tree.higher(key);
+    }
+
+    /**
+     * Removes the minimum from the tree and the index
+     *
+     * @return the removed minimum, null if the tree is empty
+     */
+    @Override
+    public T pollMin() {
+        T value = tree.pollMin();
+        if (value != null) {
+            index.remove(value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the maximum from the tree and the index
+     *
+     * @return the removed maximum, null if the tree is empty
+     */
+    @Override
+    public T pollMax() {
+        T value = tree.pollMax();
+        if (value != null) {
+            index.remove(value);
+        }
+        return value;
+    }
+
+    /**
+     * Iterates over the values in a range of the backing tree. A value
+     * removed by the iterator is removed from the index as well.
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to iterate from the upper bound to the lower one
+     * @return iterator over the range
+     */
+    @Override
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        Iterator<T> iterator = tree.iterator(low, lowInclusive, high, highInclusive, descending);
+        return new Iterator<T>() {
+
+            /**
+             * The last returned value
+             */
+            private T last;
+
+            /**
+             * Checks whether the range has more values
+             *
+             * @return true if there is a next value
+             */
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            /**
+             * Returns the next value of the range
+             *
+             * @return the next value
+             */
+            @Override
+            public T next() {
+                last = iterator.next();
+                return last;
+            }
+
+            /**
+             * Removes the last returned value from the tree and the index
+             */
+            @Override
+            public void remove() {
+                iterator.remove();
+                index.remove(last);
+            }
+        };
+    }
+
+    /**
+     * Returns the backing tree. It must not be modified directly.
+     *
+     * @return the backing tree
+     */
+    public NavigableTree<T> getTree() {
+        return tree;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Red-Black tree which records its operations into {@link TreeMetrics}. Plain
+ * {@link RedBlackTree} does not pay anything for the instrumentation, the counting
+ * is done only by overriding the comparison, rotation and recoloring methods here.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class InstrumentedRedBlackTree<T extends Comparable<? super T>> extends RedBlackTree<T> {
+
+    /**
+     * Metrics the operations are recorded into
+     */
+    protected final TreeMetrics metrics;
+
+    /**
+     * Number of nodes compared during the current operation
+     */
+    protected int visited;
+
+    /**
+     * Number of single rotations done during the current operation
+     */
+    protected int rotations;
+
+    /**
+     * Creates an empty tree
+     *
+     * @param metrics metrics the operations are recorded into
+     * @throws IllegalArgumentException
+     */
+    public InstrumentedRedBlackTree(TreeMetrics metrics) {
+        super();
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics cannot be null");
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the metrics of this tree
+     *
+     * @return tree metrics
+     */
+    public TreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean add(T value) {
+        TreeOperationEvent event = begin();
+        long start = System.nanoTime();
+        try {
+            return super.add(value);
+        } finally {
+            end(event, "insert", value, metrics.getInsertLatency(), start);
+        }
+    }
+
+    @Override
+    public void delete(T value) {
+        TreeOperationEvent event = begin();
+        long start = System.nanoTime();
+        try {
+            super.delete(value);
+        } finally {
+            end(event, "delete", value, metrics.getDeleteLatency(), start);
+        }
+    }
+
+    @Override
+    public T find(T key) {
+        TreeOperationEvent event = begin();
+        long start = System.nanoTime();
+        try {
+            return super.find(key);
+        } finally {
+            end(event, "find", key, metrics.getFindLatency(), start);
+        }
+    }
+
+    /**
+     * Starts recording an operation
+     *
+     * @return Flight Recorder event of the operation
+     */
+    private TreeOperationEvent begin() {
+        visited = 0;
+        rotations = 0;
+        TreeOperationEvent event = new TreeOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes recording an operation
+     *
+     * @param event Flight Recorder event of the operation
+     * @param operation name of the operation
+     * @param key the key of the operation
+     * @param latency latency histogram of the operation type
+     * @param start start of the operation in nanoseconds
+     */
+    private void end(TreeOperationEvent event, String operation, T key, Histogram latency, long start) {
+        metrics.recordOperation(latency, System.nanoTime() - start, visited);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.treeType = getClass().getSimpleName();
+            event.operation = operation;
+            event.depth = visited;
+            event.rotations = rotations;
+            event.keyClass = key == null ? null : key.getClass();
+            event.commit();
+        }
+    }
+
+    @Override
+    protected int compare(T key, RedBlackNode<T> node) {
+        visited++;
+        return super.compare(key, node);
+    }
+
+    @Override
+    protected void rotateLeft(RedBlackNode<T> node) {
+        metrics.recordLeftRotation();
+        rotations++;
+        super.rotateLeft(node);
+    }
+
+    @Override
+    protected void rotateRight(RedBlackNode<T> node) {
+        metrics.recordRightRotation();
+        rotations++;
+        super.rotateRight(node);
+    }
+
+    @Override
+    protected void recolor(RedBlackNode<T> node, Color color) {
+        if (node.color != color) {
+            metrics.recordRecoloring();
+        }
+        super.recolor(node, color);
+    }
+}
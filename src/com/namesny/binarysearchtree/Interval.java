@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Closed interval [low, high] of comparable values. Intervals are ordered by
+ * their lower endpoints and then by their upper endpoints.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public final class Interval<T extends Comparable<? super T>> implements Comparable<Interval<T>> {
+
+    /**
+     * The lower endpoint
+     */
+    private final T low;
+
+    /**
+     * The upper endpoint
+     */
+    private final T high;
+
+    /**
+     * Creates an interval
+     *
+     * @param low the lower endpoint
+     * @param high the upper endpoint
+     * @throws IllegalArgumentException if an endpoint is null or the lower
+     * endpoint is greater than the upper one
+     */
+    public Interval(T low, T high) {
+        if (low == null || high == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (low.compareTo(high) > 0) {
+            throw new IllegalArgumentException("Lower endpoint " + low + " is greater than " + high);
+        }
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Returns the lower endpoint
+     *
+     * @return the lower endpoint
+     */
+    public T getLow() {
+        return low;
+    }
+
+    /**
+     * Returns the upper endpoint
+     *
+     * @return the upper endpoint
+     */
+    public T getHigh() {
+        return high;
+    }
+
+    /**
+     * Checks whether the interval overlaps [low, high]
+     *
+     * @param low the lower endpoint of the other interval
+     * @param high the upper endpoint of the other interval
+     * @return true if the intervals have a common point
+     */
+    public boolean overlaps(T low, T high) {
+        return this.low.compareTo(high) <= 0 && low.compareTo(this.high) <= 0;
+    }
+
+    /**
+     * Checks whether the interval contains the point
+     *
+     * @param point the point
+     * @return true if the point lies in the interval
+     */
+    public boolean contains(T point) {
+        return overlaps(point, point);
+    }
+
+    /**
+     * Compares the lower endpoints and then the upper endpoints
+     *
+     * @param other the other interval
+     * @return negative, zero or positive as this interval is less than, equal
+     * to or greater than the other interval
+     */
+    @Override
+    public int compareTo(Interval<T> other) {
+        int cmp = low.compareTo(other.low);
+        return cmp != 0 ? cmp : high.compareTo(other.high);
+    }
+
+    /**
+     * Compares the endpoints of the intervals
+     *
+     * @param o the other object
+     * @return true if the other object is an interval with equal endpoints
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Interval)) {
+            return false;
+        }
+        Interval<?> other = (Interval<?>) o;
+        return low.equals(other.low) && high.equals(other.high);
+    }
+
+    /**
+     * Computes the hash code from the endpoints
+     *
+     * @return hash code of the interval
+     */
+    @Override
+    public int hashCode() {
+        return 31 * low.hashCode() + high.hashCode();
+    }
+
+    /**
+     * Formats the interval as [low, high]
+     *
+     * @return the interval as a string
+     */
+    @Override
+    public String toString() {
+        return "[" + low + ", " + high + "]";
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Red-Black tree of intervals which answers overlap and stabbing queries.
+ * The intervals are ordered by their lower endpoints and every node keeps
+ * the greatest upper endpoint in its subtree. A query skips every subtree
+ * whose greatest upper endpoint is below the query and stops going right at
+ * the first lower endpoint above it, so reporting k intervals visits
+ * O(log n + k) nodes for typical data and O(min(n, k log n)) in the worst
+ * case.
+ *
+ * The maximum is restored by the rotations and on the path above every
+ * inserted or unlinked node. Lazily deleted intervals keep counting in the
+ * maxima until the tree is compacted, they are never reported.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the endpoints
+ */
+public class IntervalTree<T extends Comparable<? super T>> extends RedBlackTree<Interval<T>> {
+
+    /**
+     * Creates an empty tree
+     */
+    public IntervalTree() {
+        super();
+    }
+
+    /**
+     * Node which keeps the greatest upper endpoint of its subtree
+     */
+    protected static class IntervalNode<T extends Comparable<? super T>> extends RedBlackNode<Interval<T>> {
+
+        /**
+         * Greatest upper endpoint of the intervals in the subtree
+         */
+        protected T max;
+
+        /**
+         * Creates one node with two leaf children
+         *
+         * @param value the interval of this node
+         * @param parent the parent of this node
+         */
+        public IntervalNode(Interval<T> value, RedBlackNode<Interval<T>> parent) {
+            super(value, parent);
+            this.max = value.getHigh();
+        }
+    }
+
+    /**
+     * Inserts the interval unless the tree already contains it
+     *
+     * @param value the interval to insert
+     * @return true if the interval was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(Interval<T> value) {
+        if (!super.add(value)) {
+            return false;
+        }
+        updateMaxUpwards(findNode(value));
+        return true;
+    }
+
+    /**
+     * Rebuilds the tree from the sorted nodes and recomputes all the maxima
+     *
+     * @param nodes the live nodes in ascending order
+     * @param count number of the nodes
+     */
+    @Override
+    protected void rebuild(RedBlackNode<Interval<T>>[] nodes, int count) {
+        super.rebuild(nodes, count);
+        updateMaxSubtree(root);
+    }
+
+    /**
+     * Finds all intervals which overlap [low, high]
+     *
+     * @param low the lower endpoint of the query
+     * @param high the upper endpoint of the query
+     * @return the overlapping intervals in ascending order
+     * @throws IllegalArgumentException
+     */
+    public List<Interval<T>> findOverlapping(T low, T high) {
+        List<Interval<T>> result = new ArrayList<>();
+        forEachOverlapping(low, high, result::add);
+        return result;
+    }
+
+    /**
+     * Finds all intervals which contain the point
+     *
+     * @param point the query point
+     * @return the intervals containing the point in ascending order
+     * @throws IllegalArgumentException
+     */
+    public List<Interval<T>> findContaining(T point) {
+        return findOverlapping(point, point);
+    }
+
+    /**
+     * Passes all intervals which overlap [low, high] to the action in
+     * ascending order, without allocating a result list
+     *
+     * @param low the lower endpoint of the query
+     * @param high the upper endpoint of the query
+     * @param action the action called for every overlapping interval
+     * @throws IllegalArgumentException
+     */
+    public void forEachOverlapping(T low, T high, Consumer<? super Interval<T>> action) {
+        checkQuery(low, high);
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        collect(root, low, high, action);
+    }
+
+    /**
+     * Finds any interval which overlaps [low, high], the one with the least
+     * lower endpoint
+     *
+     * @param low the lower endpoint of the query
+     * @param high the upper endpoint of the query
+     * @return the first overlapping interval, null if there is none
+     * @throws IllegalArgumentException
+     */
+    public Interval<T> findFirstOverlapping(T low, T high) {
+        checkQuery(low, high);
+        return first(root, low, high);
+    }
+
+    /**
+     * Checks the search tree and the Red-Black properties and the maxima of
+     * all subtrees
+     *
+     * @throws IllegalStateException if the tree is broken
+     */
+    @Override
+    public void verify() {
+        super.verify();
+        verifyMax(root);
+    }
+
+    /**
+     * Creates a node whose maximum is its own upper endpoint
+     *
+     * @param value the interval of the node
+     * @param parent the parent of the node
+     * @return new red node with two external children
+     */
+    @Override
+    protected RedBlackNode<Interval<T>> createNode(Interval<T> value, RedBlackNode<Interval<T>> parent) {
+        IntervalNode<T> node = new IntervalNode<>(value, parent);
+        node.left.parent = node;
+        node.right.parent = node;
+        return node;
+    }
+
+    /**
+     * Stores an interval in a node. A reused node becomes a leaf, so its
+     * maximum is the new upper endpoint, a node which takes over the interval
+     * of its successor gets its maximum restored by the delete.
+     *
+     * @param node the node
+     * @param value the new interval of the node
+     */
+    @Override
+    protected void setValue(RedBlackNode<Interval<T>> node, Interval<T> value) {
+        super.setValue(node, value);
+        ((IntervalNode<T>) node).max = value.getHigh();
+    }
+
+    /**
+     * Unlinks the node and restores the maxima above the place it was
+     * unlinked from. A node with two children takes over the interval of its
+     * successor and this method is called again for the successor.
+     *
+     * @param node internal node to delete
+     */
+    @Override
+    protected void delete(RedBlackNode<Interval<T>> node) {
+        boolean unlinked = node.left.value == null || node.right.value == null;
+        RedBlackNode<Interval<T>> parent = node.parent;
+        super.delete(node);
+        if (unlinked) {
+            updateMaxUpwards(parent);
+        }
+    }
+
+    /**
+     * Rotates the tree to the left and recomputes the maxima of the two
+     * rotated nodes
+     *
+     * @param node the node where to rotate
+     */
+    @Override
+    protected void rotateLeft(RedBlackNode<Interval<T>> node) {
+        super.rotateLeft(node);
+        updateMax(node);
+        updateMax(node.parent);
+    }
+
+    /**
+     * Rotates the tree to the right and recomputes the maxima of the two
+     * rotated nodes
+     *
+     * @param node the node where to rotate
+     */
+    @Override
+    protected void rotateRight(RedBlackNode<Interval<T>> node) {
+        super.rotateRight(node);
+        updateMax(node);
+        updateMax(node.parent);
+    }
+
+    /**
+     * Returns the greatest upper endpoint in a subtree
+     *
+     * @param node root of the subtree
+     * @return the maximum, null for an external node
+     */
+    private T maxOf(RedBlackNode<Interval<T>> node) {
+        return node.value == null ? null : ((IntervalNode<T>) node).max;
+    }
+
+    /**
+     * Recomputes the maximum of a node from its interval and its children
+     *
+     * @param node internal node
+     */
+    private void updateMax(RedBlackNode<Interval<T>> node) {
+        T max = node.value.getHigh();
+        T left = maxOf(node.left);
+        T right = maxOf(node.right);
+        if (left != null && left.compareTo(max) > 0) {
+            max = left;
+        }
+        if (right != null && right.compareTo(max) > 0) {
+            max = right;
+        }
+        ((IntervalNode<T>) node).max = max;
+    }
+
+    /**
+     * Recomputes the maxima of a node and all its ancestors. Every node whose
+     * maximum may be out of date is an ancestor of the node where the tree
+     * was changed, the rotations done meanwhile keep that true.
+     *
+     * @param node the lowest changed node, null for none
+     */
+    private void updateMaxUpwards(RedBlackNode<Interval<T>> node) {
+        for (; node != null; node = node.parent) {
+            updateMax(node);
+        }
+    }
+
+    /**
+     * Recomputes the maxima of all nodes of a subtree
+     *
+     * @param node root of the subtree
+     */
+    private void updateMaxSubtree(RedBlackNode<Interval<T>> node) {
+        if (node.value == null) {
+            return;
+        }
+        updateMaxSubtree(node.left);
+        updateMaxSubtree(node.right);
+        updateMax(node);
+    }
+
+    /**
+     * Checks the maxima of a subtree
+     *
+     * @param node root of the subtree
+     * @return the maximum of the subtree, null for an external node
+     */
+    private T verifyMax(RedBlackNode<Interval<T>> node) {
+        if (node.value == null) {
+            return null;
+        }
+        T left = verifyMax(node.left);
+        T right = verifyMax(node.right);
+        T max = node.value.getHigh();
+        if (left != null && left.compareTo(max) > 0) {
+            max = left;
+        }
+        if (right != null && right.compareTo(max) > 0) {
+            max = right;
+        }
+        if (max.compareTo(maxOf(node)) != 0) {
+            throw new IllegalStateException("Wrong maximum of node " + node.value);
+        }
+        return max;
+    }
+
+    /**
+     * Checks the endpoints of a query
+     *
+     * @param low the lower endpoint of the query
+     * @param high the upper endpoint of the query
+     * @throws IllegalArgumentException
+     */
+    private void checkQuery(T low, T high) {
+        if (low == null || high == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (low.compareTo(high) > 0) {
+            throw new IllegalArgumentException("Lower endpoint " + low + " is greater than " + high);
+        }
+    }
+
+    /**
+     * Passes the overlapping live intervals of a subtree to the action in
+     * ascending order
+     *
+     * @param node root of the subtree
+     * @param low the lower endpoint of the query
+     * @param high the upper endpoint of the query
+     * @param action the action
+     */
+    private void collect(RedBlackNode<Interval<T>> node, T low, T high, Consumer<? super Interval<T>> action) {
+        while (node.value != null && maxOf(node).compareTo(low) >= 0) {
+            collect(node.left, low, high, action);
+            if (node.value.getLow().compareTo(high) > 0) {
+                return;
+            }
+            if (node.count > 0 && node.value.getHigh().compareTo(low) >= 0) {
+                action.accept(node.value);
+            }
+            node = node.right;
+        }
+    }
+
+    /**
+     * Finds the first overlapping live interval of a subtree
+     *
+     * @param node root of the subtree
+     * @param low the lower endpoint of the query
+     * @param high the upper endpoint of the query
+     * @return the interval, null if there is none
+     */
+    private Interval<T> first(RedBlackNode<Interval<T>> node, T low, T high) {
+        while (node.value != null && maxOf(node).compareTo(low) >= 0) {
+            Interval<T> found = first(node.left, low, high);
+            if (found != null) {
+                return found;
+            }
+            if (node.value.getLow().compareTo(high) > 0) {
+                return null;
+            }
+            if (node.count > 0 && node.value.getHigh().compareTo(low) >= 0) {
+                return node.value;
+            }
+            node = node.right;
+        }
+        return null;
+    }
+}
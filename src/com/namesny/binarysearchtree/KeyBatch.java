@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Helpers of batched operations. A batch is looked up in ascending order of
+ * its keys, so the trees walk the path shared by neighbouring keys only once
+ * and split the batch where the paths part. The keys themselves are not
+ * moved, the batch is sorted through an array of their indexes.
+ *
+ * A batch of insertions or deletions is sorted as well. A batch which is
+ * large compared to the tree is merged with the values of the tree and the
+ * tree is rebuilt in linear time, a small one is applied value by value in
+ * ascending order.
+ *
+ * @author Matúš Námešný
+ */
+final class KeyBatch {
+
+    /**
+     * Number of keys left in a subtree below which the keys descend side by
+     * side instead of being split further, the descents are independent so
+     * the processor can overlap their cache misses
+     */
+    static final int INTERLEAVE = 8;
+
+    private KeyBatch() {
+    }
+
+    /**
+     * Checks the arguments of a batched lookup
+     *
+     * @param keys the keys
+     * @param results array receiving the results
+     * @throws IllegalArgumentException if an array or a key is null or the
+     * results are shorter than the keys
+     */
+    static void check(Object[] keys, Object[] results) {
+        if (keys == null || results == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("Results are shorter than keys");
+        }
+        for (Object key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+        }
+    }
+
+    /**
+     * Copies a collection of values into a sorted array, equal values keep
+     * their order
+     *
+     * @param <T> type of the values
+     * @param values the values
+     * @return the sorted values
+     * @throws IllegalArgumentException if the collection or a value is null
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Comparable<? super T>> T[] sorted(Collection<? extends T> values) {
+        if (values == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        T[] sorted = (T[]) values.toArray(new Comparable[values.size()]);
+        for (T value : sorted) {
+            if (value == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Checks if a batch should be merged with the tree instead of being
+     * applied value by value. Applying costs about log n steps per value,
+     * a merge about n + k steps.
+     *
+     * @param batch number of values in the batch
+     * @param size number of nodes of the tree
+     * @return true to merge
+     */
+    static boolean merge(int batch, int size) {
+        int log = 32 - Integer.numberOfLeadingZeros(size);
+        return (long) batch * log >= size;
+    }
+
+    /**
+     * Returns the indexes of the keys in ascending order of the keys, equal
+     * keys keep their order
+     *
+     * @param <T> type of the keys
+     * @param keys the keys, none of them null
+     * @return the sorted indexes
+     */
+    static <T extends Comparable<? super T>> int[] order(T[] keys) {
+        int[] order = new int[keys.length];
+        boolean sorted = true;
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = i;
+            if (i > 0 && keys[i - 1].compareTo(keys[i]) > 0) {
+                sorted = false;
+            }
+        }
+        if (!sorted) {
+            mergeSort(keys, order, new int[order.length], 0, order.length);
+        }
+        return order;
+    }
+
+    /**
+     * Sorts a range of indexes by their keys
+     */
+    private static <T extends Comparable<? super T>> void mergeSort(T[] keys, int[] order, int[] buffer, int from, int to) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int index = order[i];
+                int j = i;
+                while (j > from && keys[order[j - 1]].compareTo(keys[index]) > 0) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = index;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(keys, order, buffer, from, middle);
+        mergeSort(keys, order, buffer, middle, to);
+        if (keys[order[middle - 1]].compareTo(keys[order[middle]]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && keys[buffer[left]].compareTo(keys[buffer[right]]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fields of a {@link BinaryKey} written by {@link KeyEncoder}. The
+ * fields have to be read in the order and with the types they were written.
+ *
+ * @author Matúš Námešný
+ */
+public class KeyDecoder {
+
+    /**
+     * The decoded key
+     */
+    private final BinaryKey key;
+
+    /**
+     * Index of the next byte to read
+     */
+    private int position;
+
+    /**
+     * Creates a decoder reading the key from the start
+     *
+     * @param key the key
+     * @throws IllegalArgumentException
+     */
+    public KeyDecoder(BinaryKey key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        this.key = key;
+    }
+
+    /**
+     * Reads a boolean field
+     *
+     * @return the field
+     */
+    public boolean readBoolean() {
+        return key.byteAt(position++) != 0;
+    }
+
+    /**
+     * Reads an int field
+     *
+     * @return the field
+     */
+    public int readInt() {
+        return (int) readBits(4) ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Reads a long field
+     *
+     * @return the field
+     */
+    public long readLong() {
+        return readBits(8) ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Reads a double field
+     *
+     * @return the field
+     */
+    public double readDouble() {
+        long bits = readBits(8);
+        return Double.longBitsToDouble(bits < 0 ? bits ^ Long.MIN_VALUE : ~bits);
+    }
+
+    /**
+     * Reads a string field
+     *
+     * @return the field
+     */
+    public String readString() {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a byte array field
+     *
+     * @return the field
+     */
+    public byte[] readBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true) {
+            int b = key.byteAt(position++);
+            if (b == 0) {
+                int escape = key.byteAt(position++);
+                if (escape == 0) {
+                    return out.toByteArray();
+                }
+                if (escape != 0xFF) {
+                    throw new IllegalStateException("Invalid escape at " + (position - 1));
+                }
+            }
+            out.write(b);
+        }
+    }
+
+    /**
+     * Checks whether all fields were read
+     *
+     * @return true if no bytes are left
+     */
+    public boolean isEmpty() {
+        return position == key.length();
+    }
+
+    /**
+     * Reads bytes big-endian
+     *
+     * @param bytes number of bytes
+     * @return the bytes as the lowest bits of a long
+     */
+    private long readBits(int bytes) {
+        long bits = 0;
+        for (int i = 0; i < bytes; i++) {
+            bits = (bits << 8) | key.byteAt(position++);
+        }
+        return bits;
+    }
+}
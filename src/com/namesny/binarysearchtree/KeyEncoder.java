@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds a {@link BinaryKey} from the fields of a composite key. Each field
+ * is written in an order-preserving form, so the keys compare as the tuples
+ * of their fields compared field by field:
+ * <ul>
+ * <li>integers are written big-endian with the sign bit flipped</li>
+ * <li>doubles are written as their bits, all bits flipped for negative
+ * numbers and the sign bit flipped otherwise</li>
+ * <li>strings and byte arrays are written with every zero byte escaped as
+ * {@code 00 FF} and are terminated by {@code 00 00}, so a shorter field
+ * sorts before any longer field it is a prefix of</li>
+ * </ul>
+ * Strings are written in UTF-8, their keys are in code point order.
+ *
+ * @author Matúš Námešný
+ */
+public class KeyEncoder {
+
+    /**
+     * The encoded bytes
+     */
+    private byte[] buffer;
+
+    /**
+     * Number of encoded bytes
+     */
+    private int length;
+
+    /**
+     * Creates an encoder
+     */
+    public KeyEncoder() {
+        this(16);
+    }
+
+    /**
+     * Creates an encoder
+     *
+     * @param capacity expected length of the key in bytes
+     */
+    public KeyEncoder(int capacity) {
+        buffer = new byte[Math.max(capacity, 8)];
+    }
+
+    /**
+     * Appends a boolean field
+     *
+     * @param value the field
+     * @return this encoder
+     */
+    public KeyEncoder writeBoolean(boolean value) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) (value ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Appends an int field
+     *
+     * @param value the field
+     * @return this encoder
+     */
+    public KeyEncoder writeInt(int value) {
+        writeBits(value ^ Integer.MIN_VALUE, 4);
+        return this;
+    }
+
+    /**
+     * Appends a long field
+     *
+     * @param value the field
+     * @return this encoder
+     */
+    public KeyEncoder writeLong(long value) {
+        writeBits(value ^ Long.MIN_VALUE, 8);
+        return this;
+    }
+
+    /**
+     * Appends a double field. Negative zero sorts before positive zero and
+     * NaN after positive infinity, as in {@link Double#compare}.
+     *
+     * @param value the field
+     * @return this encoder
+     */
+    public KeyEncoder writeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        writeBits(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE, 8);
+        return this;
+    }
+
+    /**
+     * Appends a string field
+     *
+     * @param value the field
+     * @return this encoder
+     * @throws IllegalArgumentException
+     */
+    public KeyEncoder writeString(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a byte array field
+     *
+     * @param value the field
+     * @return this encoder
+     * @throws IllegalArgumentException
+     */
+    public KeyEncoder writeBytes(byte[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        ensureCapacity(2 * value.length + 2);
+        for (byte b : value) {
+            buffer[length++] = b;
+            if (b == 0) {
+                buffer[length++] = (byte) 0xFF;
+            }
+        }
+        buffer[length++] = 0;
+        buffer[length++] = 0;
+        return this;
+    }
+
+    /**
+     * Returns the key of the fields written so far
+     *
+     * @return the key
+     */
+    public BinaryKey toKey() {
+        long[] words = new long[(length + 7) >>> 3];
+        for (int i = 0; i < length; i++) {
+            words[i >>> 3] |= (buffer[i] & 0xFFL) << (56 - ((i & 7) << 3));
+        }
+        return new BinaryKey(words, length);
+    }
+
+    /**
+     * Discards the written fields so the encoder can build another key
+     *
+     * @return this encoder
+     */
+    public KeyEncoder reset() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Appends the lowest bytes of a value big-endian
+     *
+     * @param bits the value
+     * @param bytes number of bytes
+     */
+    private void writeBits(long bits, int bytes) {
+        ensureCapacity(bytes);
+        for (int shift = (bytes - 1) << 3; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (bits >>> shift);
+        }
+    }
+
+    /**
+     * Grows the buffer to hold more bytes
+     *
+     * @param bytes number of bytes to be appended
+     */
+    private void ensureCapacity(int bytes) {
+        if (length + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + bytes));
+        }
+    }
+}
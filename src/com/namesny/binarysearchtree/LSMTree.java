@@ -0,0 +1,1282 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log-structured merge tree persisting its values in a directory. Writes go
+ * to a {@link RedBlackTree} memtable and are appended to a write-ahead log,
+ * a deletion is written as a tombstone entry, so no write reads or rewrites
+ * anything on disk. A memtable reaching its size is frozen and flushed in
+ * the background to an immutable {@link SortedRun} file with a sparse index
+ * and a Bloom filter. Compaction is size-tiered: when the compaction
+ * threshold of consecutive runs have sizes within {@value #TIER_RATIO} times
+ * of each other, the background thread merges them into one run of the next
+ * tier. An entry is thus rewritten about log(n / memtable size) times, with
+ * the base the threshold, instead of on every compaction. The deleted values
+ * are dropped when the oldest run takes part in the merge, other merges keep
+ * the tombstones because an older run may still hold the value.
+ * {@link #compact()} merges all runs into one.
+ *
+ * Lookups and scans see the active memtable, the frozen memtables and the
+ * runs from the newest to the oldest, the newest entry of a value wins. A
+ * scan merges iterators of all of them, it copies the range of the active
+ * memtable when it starts and sees no later writes.
+ *
+ * The log is flushed to the operating system after every write, so the
+ * writes survive a crash of the program but not of the machine. When the
+ * tree is opened again the logs of the memtables which were not flushed are
+ * replayed into runs. The values are persisted by a {@link ValueCodec},
+ * their hash codes must be the same in every run of the program because the
+ * Bloom filters are persisted too.
+ *
+ * All methods are thread safe, an I/O error is thrown as
+ * {@link UncheckedIOException}. After an error of the background thread all
+ * writes fail, the tree has to be closed and opened again.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ */
+public class LSMTree<T extends Comparable<? super T>> implements BinarySearchTree<T>, Iterable<T>, Closeable {
+
+    /**
+     * Default number of entries of a memtable
+     */
+    public static final int DEFAULT_MEMTABLE_SIZE = 65536;
+
+    /**
+     * Default number of runs of a similar size which are merged into one
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 4;
+
+    /**
+     * Greatest ratio of the sizes of the runs of one tier, runs smaller than
+     * a memtable count as a memtable
+     */
+    private static final int TIER_RATIO = 2;
+
+    /**
+     * Number of frozen memtables at which writes wait for a flush
+     */
+    private static final int MAX_FROZEN_MEMTABLES = 2;
+
+    /**
+     * The directory of the files
+     */
+    private final Path directory;
+
+    /**
+     * Codec of the values
+     */
+    private final ValueCodec<T> codec;
+
+    /**
+     * Number of entries at which a memtable is frozen
+     */
+    private final int memtableSize;
+
+    /**
+     * Number of runs of a similar size which are merged into one
+     */
+    private final int compactionThreshold;
+
+    /**
+     * Thread flushing memtables and compacting runs
+     */
+    private final ExecutorService background;
+
+    /**
+     * Memtable receiving the writes
+     */
+    private Memtable<T> memtable;
+
+    /**
+     * Frozen memtables waiting for a flush from the newest, never modified
+     * in place
+     */
+    private List<Memtable<T>> frozen = Collections.emptyList();
+
+    /**
+     * The runs from the newest, never modified in place
+     */
+    private List<SortedRun<T>> runs = Collections.emptyList();
+
+    /**
+     * Runs replaced by a compaction or a clear and still read by a lookup,
+     * scan or compaction, each is deleted when its last reader releases it
+     */
+    private final List<SortedRun<T>> obsolete = new ArrayList<>();
+
+    /**
+     * Sequence number of the next memtable
+     */
+    private long nextSequence;
+
+    /**
+     * Incremented by a clear, a flush or compaction started before a clear
+     * discards its run
+     */
+    private int generation;
+
+    /**
+     * Error of the background thread
+     */
+    private IOException failure;
+
+    /**
+     * True if the tree is closed
+     */
+    private boolean closed;
+
+    /**
+     * Opens a tree in a directory with the default memtable size and
+     * compaction threshold, the directory is created if it does not exist
+     *
+     * @param directory the directory
+     * @param codec codec of the values
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public LSMTree(Path directory, ValueCodec<T> codec) throws IOException {
+        this(directory, codec, DEFAULT_MEMTABLE_SIZE, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens a tree in a directory, the directory is created if it does not
+     * exist. Runs and logs left by a previous tree in the directory are read.
+     *
+     * @param directory the directory
+     * @param codec codec of the values
+     * @param memtableSize number of entries at which a memtable is flushed
+     * @param compactionThreshold number of runs of a similar size which are
+     * merged into one
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public LSMTree(Path directory, ValueCodec<T> codec, int memtableSize, int compactionThreshold) throws IOException {
+        if (directory == null || codec == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (memtableSize <= 0) {
+            throw new IllegalArgumentException("Memtable size must be positive");
+        }
+        if (compactionThreshold < 2) {
+            throw new IllegalArgumentException("Compaction threshold must be at least 2");
+        }
+
+        this.directory = directory;
+        this.codec = codec;
+        this.memtableSize = memtableSize;
+        this.compactionThreshold = compactionThreshold;
+
+        Files.createDirectories(directory);
+        try {
+            recover();
+            memtable = newMemtable();
+        } catch (IOException | RuntimeException e) {
+            for (SortedRun<T> run : runs) {
+                run.close();
+            }
+            throw e;
+        }
+
+        this.background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LSMTree " + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.execute(this::compactIfNeeded);
+    }
+
+    /**
+     * Entry of a memtable or a run, a value or a tombstone of a deleted
+     * value. Entries are ordered by their values.
+     *
+     * @param <T> type of the values
+     */
+    static final class Entry<T extends Comparable<? super T>> implements Comparable<Entry<T>> {
+
+        /**
+         * The value
+         */
+        T value;
+
+        /**
+         * True if the entry is a tombstone
+         */
+        boolean deleted;
+
+        Entry(T value, boolean deleted) {
+            this.value = value;
+            this.deleted = deleted;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            return value.compareTo(other.value);
+        }
+    }
+
+    /**
+     * Memtable with its log
+     *
+     * @param <T> type of the values
+     */
+    private static final class Memtable<T extends Comparable<? super T>> {
+
+        /**
+         * The entries
+         */
+        final RedBlackTree<Entry<T>> tree = new RedBlackTree<>();
+
+        /**
+         * Sequence number of the memtable
+         */
+        final long sequence;
+
+        /**
+         * Path of the log
+         */
+        final Path logPath;
+
+        /**
+         * The open log, null when the memtable is frozen
+         */
+        DataOutputStream log;
+
+        /**
+         * Generation of the tree which created the memtable
+         */
+        final int generation;
+
+        Memtable(long sequence, Path logPath, int generation) {
+            this.sequence = sequence;
+            this.logPath = logPath;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Inserts a value
+     *
+     * @param value value to insert
+     * @throws DuplicateValueException if the value is already in the tree
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        synchronized (this) {
+            if (find(value) != null) {
+                throw new DuplicateValueException("Duplicate value: " + value);
+            }
+            put(value);
+        }
+    }
+
+    /**
+     * Writes a value without looking for it, a value equal to it is
+     * replaced
+     *
+     * @param value the value
+     * @throws IllegalArgumentException
+     */
+    public void put(T value) {
+        write(value, false);
+    }
+
+    /**
+     * Deletes a value by writing a tombstone, without looking for the value
+     *
+     * @param key the value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T key) {
+        write(key, true);
+    }
+
+    /**
+     * Finds an object equal to key
+     *
+     * @param key
+     * @return the object equal to key
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T find(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        Entry<T> probe = new Entry<>(key, false);
+        List<Memtable<T>> tables;
+        List<SortedRun<T>> sources;
+        synchronized (this) {
+            checkOpen();
+            Entry<T> entry = memtable.tree.find(probe);
+            if (entry != null) {
+                return entry.deleted ? null : entry.value;
+            }
+            tables = frozen;
+            sources = runs;
+            retain(sources);
+        }
+
+        try {
+            for (Memtable<T> table : tables) {
+                Entry<T> entry = table.tree.find(probe);
+                if (entry != null) {
+                    return entry.deleted ? null : entry.value;
+                }
+            }
+            for (SortedRun<T> run : sources) {
+                Entry<T> entry = run.find(key);
+                if (entry != null) {
+                    return entry.deleted ? null : entry.value;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(sources);
+        }
+    }
+
+    /**
+     * Deletes all values with their runs and logs. Runs read by unfinished
+     * scans are deleted when the scans finish.
+     */
+    @Override
+    public synchronized void clear() {
+        checkOpen();
+        try {
+            closeLog(memtable);
+            for (Memtable<T> table : frozen) {
+                Files.deleteIfExists(table.logPath);
+            }
+            Files.deleteIfExists(memtable.logPath);
+            generation++;
+            List<SortedRun<T>> replaced = runs;
+            runs = Collections.emptyList();
+            frozen = Collections.emptyList();
+            memtable = newMemtable();
+            retire(replaced);
+            notifyAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks if the tree is empty
+     *
+     * @return true if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return findMin() == null;
+    }
+
+    /**
+     * Finds the minimum, merging the first entries of the memtables and runs
+     *
+     * @return the minimum or null if the tree is empty
+     */
+    @Override
+    public T findMin() {
+        return first(false);
+    }
+
+    /**
+     * Finds the maximum, merging the last entries of the memtables and runs
+     *
+     * @return the maximum or null if the tree is empty
+     */
+    @Override
+    public T findMax() {
+        return first(true);
+    }
+
+    /**
+     * Returns an iterator of all values in ascending order
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(null, false, null, false, false);
+    }
+
+    /**
+     * Returns an iterator of the values in a range merging the memtables and
+     * the runs, a null bound is unbounded. The iterator does not see writes
+     * made after its creation. Runs compacted while the iterator reads them
+     * are deleted when it reaches the end, an iterator which is abandoned
+     * keeps the runs it reads until the tree is closed.
+     *
+     * @param low the lower bound
+     * @param lowInclusive true if the lower bound is in the range
+     * @param high the upper bound
+     * @param highInclusive true if the upper bound is in the range
+     * @param descending true to iterate in descending order
+     * @return the iterator
+     */
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        return scan(low, lowInclusive, high, highInclusive, descending);
+    }
+
+    /**
+     * Freezes the active memtable and waits until all frozen memtables are
+     * flushed to runs
+     *
+     * @throws UncheckedIOException if a flush failed
+     */
+    public void flush() {
+        synchronized (this) {
+            checkOpen();
+            if (!memtable.tree.isEmpty()) {
+                freeze();
+            }
+        }
+        await(() -> {
+        });
+    }
+
+    /**
+     * Flushes the memtables and merges all runs into one
+     *
+     * @throws UncheckedIOException if the flush or the compaction failed
+     */
+    public void compact() {
+        flush();
+        await(() -> compactRuns(true));
+    }
+
+    /**
+     * Returns the number of runs
+     *
+     * @return number of runs
+     */
+    public synchronized int runs() {
+        return runs.size();
+    }
+
+    /**
+     * Returns the number of entries in the memtables, values and tombstones
+     *
+     * @return number of entries
+     */
+    public synchronized int memtableEntries() {
+        int entries = memtable.tree.size();
+        for (Memtable<T> table : frozen) {
+            entries += table.tree.size();
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the number of entries in the runs, values and tombstones not
+     * yet dropped by a compaction
+     *
+     * @return number of entries
+     */
+    public synchronized long runEntries() {
+        long entries = 0;
+        for (SortedRun<T> run : runs) {
+            entries += run.size();
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the directory of the files
+     *
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Flushes the active memtable, waits for the background thread and
+     * closes all files. Closing a closed tree does nothing.
+     *
+     * @throws IOException if a flush failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (failure == null && !memtable.tree.isEmpty()) {
+                freeze();
+            }
+            // the log of an unflushed memtable is replayed when the tree is opened
+            closeLog(memtable);
+            if (memtable.tree.isEmpty()) {
+                Files.deleteIfExists(memtable.logPath);
+            }
+            closed = true;
+        }
+
+        background.shutdown();
+        try {
+            while (!background.awaitTermination(1, TimeUnit.SECONDS)) {
+                // the last flush and compaction are still running
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            for (SortedRun<T> run : runs) {
+                run.close();
+            }
+            deleteObsolete();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LSMTree " + directory
+                + " memtableEntries=" + memtableEntries()
+                + " frozen=" + frozen.size()
+                + " runs=" + runs;
+    }
+
+    /**
+     * Writes an entry to the log and the active memtable, freezing it when
+     * full
+     *
+     * @param value the value
+     * @param deleted true to write a tombstone
+     */
+    private synchronized void write(T value, boolean deleted) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        checkOpen();
+        checkFailure();
+
+        try {
+            memtable.log.writeBoolean(deleted);
+            codec.write(memtable.log, value);
+            memtable.log.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Entry<T> entry = new Entry<>(value, deleted);
+        Entry<T> existing = memtable.tree.find(entry);
+        if (existing != null) {
+            existing.value = value;
+            existing.deleted = deleted;
+        } else {
+            memtable.tree.add(entry);
+            if (memtable.tree.size() >= memtableSize) {
+                freeze();
+            }
+        }
+    }
+
+    /**
+     * Freezes the active memtable and schedules its flush, waits while too
+     * many memtables are waiting for a flush. Called with the lock held.
+     */
+    private void freeze() {
+        while (frozen.size() >= MAX_FROZEN_MEMTABLES && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Memtable<T> table = memtable;
+        try {
+            closeLog(table);
+            memtable = newMemtable();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Memtable<T>> tables = new ArrayList<>(frozen.size() + 1);
+        tables.add(table);
+        tables.addAll(frozen);
+        frozen = Collections.unmodifiableList(tables);
+        background.execute(() -> flush(table));
+    }
+
+    /**
+     * Writes a frozen memtable to a run and replaces the memtable by the
+     * run, runs in the background thread
+     *
+     * @param table the memtable
+     */
+    private void flush(Memtable<T> table) {
+        try {
+            SortedRun<T> run = SortedRun.write(runPath(table.sequence, table.sequence), codec,
+                    table.sequence, table.sequence, table.tree.iterator(), table.tree.size());
+            synchronized (this) {
+                if (table.generation != generation) {
+                    if (run != null) {
+                        run.delete();
+                    }
+                    return;
+                }
+                if (run != null) {
+                    List<SortedRun<T>> sources = new ArrayList<>(runs.size() + 1);
+                    sources.add(run);
+                    sources.addAll(runs);
+                    runs = Collections.unmodifiableList(sources);
+                }
+                List<Memtable<T>> tables = new ArrayList<>(frozen);
+                tables.remove(table);
+                frozen = Collections.unmodifiableList(tables);
+                notifyAll();
+            }
+            Files.deleteIfExists(table.logPath);
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return;
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Compacts the tiers which reached the threshold, runs in the background
+     * thread
+     */
+    private void compactIfNeeded() {
+        try {
+            compactRuns(false);
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Merges consecutive runs into one run, all of them or the tiers which
+     * reached the threshold, until there is nothing to merge. Newer entries
+     * replace older ones. Tombstones are dropped when the oldest run is
+     * merged, because no older run is left for them to hide. Runs in the
+     * background thread.
+     *
+     * @param all true to merge all runs
+     * @throws IOException
+     */
+    private void compactRuns(boolean all) throws IOException {
+        while (compactTier(all)) {
+            // a merged tier may complete the next larger one
+        }
+    }
+
+    /**
+     * Merges the newest tier which reached the threshold into one run, or all
+     * runs
+     *
+     * @param all true to merge all runs
+     * @return true if runs were merged
+     * @throws IOException
+     */
+    private boolean compactTier(boolean all) throws IOException {
+        List<SortedRun<T>> inputs;
+        boolean oldest;
+        int inputGeneration;
+        synchronized (this) {
+            int from = 0;
+            int to = runs.size();
+            if (!all) {
+                from = newestTier();
+                if (from < 0) {
+                    return false;
+                }
+                to = tierEnd(from);
+            }
+            if (to - from < 2) {
+                return false;
+            }
+            inputs = Collections.unmodifiableList(new ArrayList<>(runs.subList(from, to)));
+            oldest = to == runs.size();
+            inputGeneration = generation;
+            retain(inputs);
+        }
+
+        try {
+            List<Iterator<Entry<T>>> sources = new ArrayList<>(inputs.size());
+            int capacity = 0;
+            for (SortedRun<T> run : inputs) {
+                sources.add(run.iterator(null, false, null, false, false));
+                capacity = (int) Math.min(Integer.MAX_VALUE, (long) capacity + run.size());
+            }
+            long minSequence = inputs.get(inputs.size() - 1).minSequence();
+            long maxSequence = inputs.get(0).maxSequence();
+            SortedRun<T> output = SortedRun.write(runPath(maxSequence, minSequence), codec,
+                    minSequence, maxSequence, new MergeIterator<>(sources, false, !oldest), capacity);
+
+            synchronized (this) {
+                if (inputGeneration != generation) {
+                    if (output != null) {
+                        output.delete();
+                    }
+                    return false;
+                }
+                // runs flushed during the compaction are newer than all inputs
+                int start = runs.indexOf(inputs.get(0));
+                List<SortedRun<T>> merged = new ArrayList<>(runs.subList(0, start));
+                if (output != null) {
+                    merged.add(output);
+                }
+                merged.addAll(runs.subList(start + inputs.size(), runs.size()));
+                runs = Collections.unmodifiableList(merged);
+                retire(inputs);
+            }
+            return true;
+        } finally {
+            release(inputs);
+        }
+    }
+
+    /**
+     * Finds the newest tier which reached the compaction threshold. Called
+     * with the lock held.
+     *
+     * @return index of the newest run of the tier, -1 if there is none
+     */
+    private int newestTier() {
+        for (int from = 0; from + compactionThreshold <= runs.size(); from++) {
+            if (tierEnd(from) - from >= compactionThreshold) {
+                return from;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of the tier starting at a run, the consecutive older runs
+     * whose sizes are within the tier ratio of each other. Called with the
+     * lock held.
+     *
+     * @param from index of the newest run of the tier
+     * @return index after the oldest run of the tier
+     */
+    private int tierEnd(int from) {
+        long min = Math.max(runs.get(from).size(), memtableSize);
+        long max = min;
+        int to = from + 1;
+        while (to < runs.size()) {
+            long size = Math.max(runs.get(to).size(), memtableSize);
+            if (Math.max(max, size) > TIER_RATIO * Math.min(min, size)) {
+                break;
+            }
+            min = Math.min(min, size);
+            max = Math.max(max, size);
+            to++;
+        }
+        return to;
+    }
+
+    /**
+     * Runs a task in the background thread after all scheduled tasks and
+     * waits for it
+     *
+     * @param task the task
+     * @throws UncheckedIOException if the task or an earlier task failed
+     */
+    private void await(IOTask task) {
+        try {
+            background.submit(() -> {
+                task.run();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        synchronized (this) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Task which may throw {@link IOException}
+     */
+    @FunctionalInterface
+    private interface IOTask {
+
+        void run() throws IOException;
+    }
+
+    /**
+     * Records an error of the background thread and wakes up waiting writers
+     *
+     * @param e the error
+     */
+    private synchronized void fail(Exception e) {
+        if (failure == null) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the first value of a scan of all values
+     *
+     * @param descending true for the maximum
+     * @return the value or null if the tree is empty
+     */
+    private T first(boolean descending) {
+        ScanIterator iterator = scan(null, false, null, false, descending);
+        try {
+            return iterator.hasNext() ? iterator.next() : null;
+        } finally {
+            iterator.release();
+        }
+    }
+
+    /**
+     * Creates an iterator merging a range of the memtables and runs and
+     * retains the runs, a copy of the range of the active memtable is merged
+     *
+     * @return the iterator
+     */
+    private ScanIterator scan(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        Entry<T> lowEntry = low == null ? null : new Entry<>(low, false);
+        Entry<T> highEntry = high == null ? null : new Entry<>(high, false);
+        List<Iterator<Entry<T>>> sources = new ArrayList<>();
+        List<SortedRun<T>> pinned;
+
+        synchronized (this) {
+            checkOpen();
+            List<Entry<T>> copy = new ArrayList<>();
+            Iterator<Entry<T>> active = memtable.tree.iterator(lowEntry, lowInclusive, highEntry, highInclusive, descending);
+            while (active.hasNext()) {
+                Entry<T> entry = active.next();
+                copy.add(new Entry<>(entry.value, entry.deleted));
+            }
+            sources.add(copy.iterator());
+            for (Memtable<T> table : frozen) {
+                sources.add(table.tree.iterator(lowEntry, lowInclusive, highEntry, highInclusive, descending));
+            }
+            pinned = runs;
+            retain(pinned);
+        }
+
+        try {
+            for (SortedRun<T> run : pinned) {
+                sources.add(run.iterator(low, lowInclusive, high, highInclusive, descending));
+            }
+            return new ScanIterator(new MergeIterator<>(sources, descending), pinned);
+        } catch (RuntimeException e) {
+            release(pinned);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a reference to every run of a list, so that none of them is
+     * deleted while it is read. Called with the lock held.
+     *
+     * @param list the runs
+     */
+    private static void retain(List<? extends SortedRun<?>> list) {
+        for (SortedRun<?> run : list) {
+            run.references++;
+        }
+    }
+
+    /**
+     * Releases a reference to every run of a list, a run which is neither
+     * live nor read by anyone else is deleted
+     *
+     * @param list the runs
+     * @throws UncheckedIOException if a run could not be deleted
+     */
+    private synchronized void release(List<SortedRun<T>> list) {
+        IOException error = null;
+        for (SortedRun<T> run : list) {
+            if (--run.references == 0) {
+                obsolete.remove(run);
+                try {
+                    run.delete();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * Releases the reference of the tree to runs which were replaced, the
+     * runs still being read are kept until they are released. Called with
+     * the lock held.
+     *
+     * @param list the replaced runs
+     * @throws UncheckedIOException if a run could not be deleted
+     */
+    private void retire(List<SortedRun<T>> list) {
+        obsolete.addAll(list);
+        release(list);
+    }
+
+    /**
+     * Deletes the obsolete runs which are still read, when the tree is
+     * closed. Called with the lock held.
+     *
+     * @throws IOException if a run could not be deleted
+     */
+    private void deleteObsolete() throws IOException {
+        IOException error = null;
+        for (SortedRun<T> run : obsolete) {
+            try {
+                run.delete();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        obsolete.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Creates a memtable with a new log. Called with the lock held.
+     *
+     * @return the memtable
+     * @throws IOException
+     */
+    private Memtable<T> newMemtable() throws IOException {
+        long sequence = nextSequence++;
+        Memtable<T> table = new Memtable<>(sequence, directory.resolve(String.format("wal-%016x.log", sequence)), generation);
+        table.log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(table.logPath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        return table;
+    }
+
+    /**
+     * Closes the log of a memtable
+     *
+     * @param table the memtable
+     * @throws IOException
+     */
+    private static void closeLog(Memtable<?> table) throws IOException {
+        if (table.log != null) {
+            table.log.close();
+            table.log = null;
+        }
+    }
+
+    /**
+     * Returns the path of a run file
+     *
+     * @param maxSequence highest sequence number of the memtables in the run
+     * @param minSequence lowest sequence number of the memtables in the run
+     * @return the path
+     */
+    private Path runPath(long maxSequence, long minSequence) {
+        return directory.resolve(String.format("run-%016x-%016x.sst", maxSequence, minSequence));
+    }
+
+    /**
+     * Opens the runs in the directory, deletes runs replaced by a compaction
+     * which finished before a crash and replays the logs into new runs
+     *
+     * @throws IOException
+     */
+    private void recover() throws IOException {
+        List<SortedRun<T>> found = new ArrayList<>();
+        List<Path> logs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(path);
+                } else if (name.startsWith("run-") && name.endsWith(".sst")) {
+                    found.add(SortedRun.open(path, codec));
+                } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    logs.add(path);
+                }
+            }
+        }
+
+        List<SortedRun<T>> live = new ArrayList<>();
+        for (SortedRun<T> run : found) {
+            boolean replaced = false;
+            for (SortedRun<T> other : found) {
+                if (other != run && other.minSequence() <= run.minSequence() && run.maxSequence() <= other.maxSequence()
+                        && (other.minSequence() < run.minSequence() || run.maxSequence() < other.maxSequence())) {
+                    replaced = true;
+                    break;
+                }
+            }
+            if (replaced) {
+                run.delete();
+            } else {
+                live.add(run);
+                nextSequence = Math.max(nextSequence, run.maxSequence() + 1);
+            }
+        }
+        runs = live;
+
+        logs.sort(Comparator.naturalOrder());
+        for (Path log : logs) {
+            long sequence = Long.parseLong(log.getFileName().toString().substring(4, 20), 16);
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            if (!isFlushed(sequence)) {
+                RedBlackTree<Entry<T>> tree = replay(log);
+                SortedRun<T> run = SortedRun.write(runPath(sequence, sequence), codec,
+                        sequence, sequence, tree.iterator(), tree.size());
+                if (run != null) {
+                    live.add(run);
+                }
+            }
+            Files.delete(log);
+        }
+        live.sort(Comparator.comparingLong((SortedRun<T> run) -> run.maxSequence()).reversed());
+        runs = Collections.unmodifiableList(live);
+    }
+
+    /**
+     * Checks if a memtable is already in a run
+     *
+     * @param sequence sequence number of the memtable
+     * @return true if a run contains the memtable
+     */
+    private boolean isFlushed(long sequence) {
+        for (SortedRun<T> run : runs) {
+            if (run.minSequence() <= sequence && sequence <= run.maxSequence()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a log into a memtable, a record cut short by a crash ends the log
+     *
+     * @param log path of the log
+     * @return the memtable
+     * @throws IOException
+     */
+    private RedBlackTree<Entry<T>> replay(Path log) throws IOException {
+        RedBlackTree<Entry<T>> tree = new RedBlackTree<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+            while (true) {
+                Entry<T> entry;
+                try {
+                    boolean deleted = in.readBoolean();
+                    entry = new Entry<>(codec.read(in), deleted);
+                } catch (EOFException e) {
+                    break;
+                }
+                Entry<T> existing = tree.find(entry);
+                if (existing != null) {
+                    existing.value = entry.value;
+                    existing.deleted = entry.deleted;
+                } else {
+                    tree.add(entry);
+                }
+            }
+        }
+        return tree;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Tree is closed");
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Merges sorted iterators of entries, the first iterator holding a value
+     * wins and tombstones are skipped unless they are kept
+     *
+     * @param <T> type of the values
+     */
+    private static class MergeIterator<T extends Comparable<? super T>> implements Iterator<Entry<T>> {
+
+        private final PriorityQueue<Cursor<T>> queue;
+        private final boolean tombstones;
+        private Entry<T> next;
+
+        MergeIterator(List<Iterator<Entry<T>>> sources, boolean descending) {
+            this(sources, descending, false);
+        }
+
+        MergeIterator(List<Iterator<Entry<T>>> sources, boolean descending, boolean tombstones) {
+            this.tombstones = tombstones;
+            Comparator<Cursor<T>> order = (a, b) -> {
+                int cmp = a.current.value.compareTo(b.current.value);
+                if (cmp != 0) {
+                    return descending ? -cmp : cmp;
+                }
+                return Integer.compare(a.priority, b.priority);
+            };
+            queue = new PriorityQueue<>(Math.max(1, sources.size()), order);
+            for (int i = 0; i < sources.size(); i++) {
+                advance(new Cursor<>(sources.get(i), i));
+            }
+            next = fetch();
+        }
+
+        private void advance(Cursor<T> cursor) {
+            if (cursor.source.hasNext()) {
+                cursor.current = cursor.source.next();
+                queue.add(cursor);
+            }
+        }
+
+        private Entry<T> fetch() {
+            while (!queue.isEmpty()) {
+                Cursor<T> top = queue.poll();
+                Entry<T> entry = top.current;
+                advance(top);
+                while (!queue.isEmpty() && queue.peek().current.value.compareTo(entry.value) == 0) {
+                    advance(queue.poll());
+                }
+                if (!entry.deleted || tombstones) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<T> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<T> entry = next;
+            next = fetch();
+            return entry;
+        }
+    }
+
+    private static class Cursor<T extends Comparable<? super T>> {
+
+        final Iterator<Entry<T>> source;
+        final int priority;
+        Entry<T> current;
+
+        Cursor(Iterator<Entry<T>> source, int priority) {
+            this.source = source;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Iterator of the values of a scan which releases the runs it reads at
+     * the end
+     */
+    private class ScanIterator implements Iterator<T> {
+
+        private final MergeIterator<T> entries;
+        private final List<SortedRun<T>> sources;
+        private boolean released;
+
+        ScanIterator(MergeIterator<T> entries, List<SortedRun<T>> sources) {
+            this.entries = entries;
+            this.sources = sources;
+            if (!entries.hasNext()) {
+                release();
+            }
+        }
+
+        void release() {
+            if (!released) {
+                released = true;
+                LSMTree.this.release(sources);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public T next() {
+            T value = entries.next().value;
+            if (!entries.hasNext()) {
+                release();
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only index over a snapshot of the values of a tree, which finds a
+ * value by a learned model of the key distribution instead of a descent.
+ * The values are copied into a sorted array and a piecewise linear function
+ * from keys to array positions is fitted to them, so that it predicts the
+ * position of every key within a given error. A lookup evaluates the
+ * function and binary searches the few positions around the prediction.
+ *
+ * The model sees a key as the number formed by the first eight bytes of its
+ * {@link RadixKey}, which grows with the key. The segments are fitted by a
+ * shrinking cone: a segment is extended while some slope keeps all its keys
+ * within the error and a new one starts at the first key which does not
+ * fit. Keys which share their first eight bytes get the same prediction, so
+ * the search widens its window step by step until it brackets the key; the
+ * result is always exact, the error only bounds the work.
+ *
+ * http://www.vldb.org/pvldb/vol13/p1162-ferragina.pdf
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class LearnedIndex<T extends Comparable<? super T>> implements BinarySearchTree<T>, Iterable<T> {
+
+    /**
+     * Default maximal error of the predicted positions
+     */
+    public static final int DEFAULT_EPSILON = 16;
+
+    /**
+     * Bytes of the values
+     */
+    private final RadixKey<T> keys;
+
+    /**
+     * The values in ascending order
+     */
+    private final T[] values;
+
+    /**
+     * Maximal error of the predicted positions of the first values with each
+     * key
+     */
+    private final int epsilon;
+
+    /**
+     * Key of the first value of every segment
+     */
+    private final long[] segmentKeys;
+
+    /**
+     * Position of the first value of every segment
+     */
+    private final int[] segmentPositions;
+
+    /**
+     * Slope of every segment in positions per key unit
+     */
+    private final double[] slopes;
+
+    /**
+     * Largest distance of the position of a value from its prediction
+     */
+    private final int maxError;
+
+    /**
+     * Average distance of the positions of the values from their predictions
+     */
+    private final double meanError;
+
+    /**
+     * Builds an index over the values of a tree with the default error
+     *
+     * @param tree the tree
+     * @param keys the bytes of the values
+     * @throws IllegalArgumentException
+     */
+    public LearnedIndex(NavigableTree<T> tree, RadixKey<T> keys) {
+        this(tree, keys, DEFAULT_EPSILON);
+    }
+
+    /**
+     * Builds an index over the values of a tree. Later changes of the tree
+     * are not seen by the index.
+     *
+     * @param tree the tree
+     * @param keys the bytes of the values
+     * @param epsilon maximal error of the predicted positions
+     * @throws IllegalArgumentException if the tree or the keys are null or
+     * the error is negative
+     */
+    @SuppressWarnings("unchecked")
+    public LearnedIndex(NavigableTree<T> tree, RadixKey<T> keys, int epsilon) {
+        if (tree == null || keys == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("Error cannot be negative");
+        }
+        this.keys = keys;
+        this.epsilon = epsilon;
+
+        Comparable<?>[] copy = new Comparable<?>[tree.size()];
+        int count = 0;
+        for (T value : tree) {
+            if (count == copy.length) {
+                copy = Arrays.copyOf(copy, Math.max(8, count * 2));
+            }
+            copy[count++] = value;
+        }
+        values = (T[]) Arrays.copyOf(copy, count);
+
+        long[] projected = new long[count];
+        for (int i = 0; i < count; i++) {
+            projected[i] = project(values[i]);
+        }
+
+        long[] starts = new long[16];
+        int[] positions = new int[16];
+        double[] segmentSlopes = new double[16];
+        int segments = 0;
+
+        // Shrinking cone over the first position of every distinct key
+        long startKey = 0;
+        int startPosition = 0;
+        double low = 0;
+        double high = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            long key = projected[i];
+            if (i > 0 && key == projected[i - 1]) {
+                continue;
+            }
+
+            if (i > 0) {
+                double distance = distance(startKey, key);
+                double slope = (i - startPosition) / distance;
+                if (slope >= low && slope <= high) {
+                    low = Math.max(low, (i - startPosition - epsilon) / distance);
+                    high = Math.min(high, (i - startPosition + epsilon) / distance);
+                    continue;
+                }
+                segmentSlopes[segments - 1] = slope(low, high);
+            }
+
+            if (segments == starts.length) {
+                starts = Arrays.copyOf(starts, segments * 2);
+                positions = Arrays.copyOf(positions, segments * 2);
+                segmentSlopes = Arrays.copyOf(segmentSlopes, segments * 2);
+            }
+            starts[segments] = key;
+            positions[segments] = i;
+            segments++;
+            startKey = key;
+            startPosition = i;
+            low = 0;
+            high = Double.POSITIVE_INFINITY;
+        }
+        if (segments > 0) {
+            segmentSlopes[segments - 1] = slope(low, high);
+        }
+
+        segmentKeys = Arrays.copyOf(starts, segments);
+        segmentPositions = Arrays.copyOf(positions, segments);
+        slopes = Arrays.copyOf(segmentSlopes, segments);
+
+        long maximum = 0;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            long error = Math.abs(predict(projected[i]) - i);
+            maximum = Math.max(maximum, error);
+            total += error;
+        }
+        maxError = (int) maximum;
+        meanError = count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * The index is read-only
+     *
+     * @param value the value
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void insert(T value) {
+        throw new UnsupportedOperationException("Learned index is read-only");
+    }
+
+    /**
+     * The index is read-only
+     *
+     * @param key the value
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void delete(T key) {
+        throw new UnsupportedOperationException("Learned index is read-only");
+    }
+
+    /**
+     * The index is read-only
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Learned index is read-only");
+    }
+
+    /**
+     * Finds object equal to key in the index
+     *
+     * @param key
+     * @return returns the object equal to key
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T find(T key) {
+        int i = search(checkKey(key));
+        return i < values.length && values[i].compareTo(key) == 0 ? values[i] : null;
+    }
+
+    /**
+     * True if the index is empty
+     *
+     * @return returns true if the index is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    /**
+     * Returns the number of values in the index
+     *
+     * @return size of the index
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Finds minimal value in the index
+     *
+     * @return minimum, null if the index is empty
+     */
+    @Override
+    public T findMin() {
+        return values.length == 0 ? null : values[0];
+    }
+
+    /**
+     * Finds maximal value in the index
+     *
+     * @return maximum, null if the index is empty
+     */
+    @Override
+    public T findMax() {
+        return values.length == 0 ? null : values[values.length - 1];
+    }
+
+    /**
+     * Finds the greatest value less than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    public T floor(T key) {
+        int i = search(checkKey(key));
+        if (i < values.length && values[i].compareTo(key) == 0) {
+            return values[i];
+        }
+        return i > 0 ? values[i - 1] : null;
+    }
+
+    /**
+     * Finds the least value greater than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    public T ceiling(T key) {
+        int i = search(checkKey(key));
+        return i < values.length ? values[i] : null;
+    }
+
+    /**
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    public T lower(T key) {
+        int i = search(checkKey(key));
+        return i > 0 ? values[i - 1] : null;
+    }
+
+    /**
+     * Finds the least value strictly greater than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    public T higher(T key) {
+        int i = search(checkKey(key));
+        if (i < values.length && values[i].compareTo(key) == 0) {
+            i++;
+        }
+        return i < values.length ? values[i] : null;
+    }
+
+    /**
+     * Iterates over the values in ascending order
+     *
+     * @return iterator over the index
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public T next() {
+                if (next == values.length) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+        };
+    }
+
+    /**
+     * Returns the maximal error the model was fitted with
+     *
+     * @return the error bound
+     */
+    public int getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Returns the number of linear segments of the model
+     *
+     * @return number of segments
+     */
+    public int getSegments() {
+        return segmentKeys.length;
+    }
+
+    /**
+     * Returns the size of the model without the values, a key, a position
+     * and a slope per segment
+     *
+     * @return size of the model in bytes
+     */
+    public long getModelBytes() {
+        return (long) segmentKeys.length * (Long.BYTES + Integer.BYTES + Double.BYTES);
+    }
+
+    /**
+     * Returns the largest distance of the position of a value from its
+     * prediction. It is at most the error bound unless many values share
+     * the first eight bytes of their keys.
+     *
+     * @return the maximal error
+     */
+    public int getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Returns the average distance of the positions of the values from their
+     * predictions
+     *
+     * @return the mean error
+     */
+    public double getMeanError() {
+        return meanError;
+    }
+
+    @Override
+    public String toString() {
+        return "LearnedIndex size=" + values.length + " segments=" + segmentKeys.length
+                + " epsilon=" + epsilon + " maxError=" + maxError;
+    }
+
+    /**
+     * Checks the key of an operation
+     *
+     * @param key the key
+     * @return the key
+     * @throws IllegalArgumentException
+     */
+    private T checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return key;
+    }
+
+    /**
+     * Finds the position of the first value not less than the key. The
+     * window around the prediction is widened by doubling steps until its
+     * bounds bracket the key and then binary searched.
+     *
+     * @param key the key
+     * @return the position, the size of the index if all values are less
+     */
+    private int search(T key) {
+        int n = values.length;
+        int predicted = predict(project(key));
+        int low = Math.max(0, predicted - epsilon);
+        int high = Math.min(n, predicted + epsilon + 1);
+
+        for (int step = epsilon + 1; low > 0 && values[low - 1].compareTo(key) >= 0; step <<= 1) {
+            low = Math.max(0, low - step);
+        }
+        for (int step = epsilon + 1; high < n && values[high].compareTo(key) < 0; step <<= 1) {
+            high = (int) Math.min(n, (long) high + step);
+        }
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Predicts the position of a key by the segment which starts at the
+     * greatest key not greater than it
+     *
+     * @param key the projected key
+     * @return the predicted position within the array
+     */
+    private int predict(long key) {
+        if (segmentKeys.length == 0) {
+            return 0;
+        }
+        int segment = Arrays.binarySearch(segmentKeys, key);
+        if (segment < 0) {
+            segment = Math.max(0, -segment - 2);
+        }
+
+        int start = segmentPositions[segment];
+        if (key <= segmentKeys[segment]) {
+            return start;
+        }
+        double position = start + slopes[segment] * distance(segmentKeys[segment], key);
+        return (int) Math.min(values.length - 1, Math.round(position));
+    }
+
+    /**
+     * Maps a value to a number which grows with its key, the first eight
+     * bytes of the key with the sign bit flipped so the numbers compare as
+     * signed longs
+     *
+     * @param value the value
+     * @return the projected key
+     */
+    private long project(T value) {
+        int length = Math.min(8, keys.length(value));
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits |= (long) keys.byteAt(value, i) << (56 - (i << 3));
+        }
+        return bits ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the distance between two projected keys
+     *
+     * @param from the smaller key
+     * @param to the larger key
+     * @return the distance as a positive number
+     */
+    private static double distance(long from, long to) {
+        long difference = to - from;
+        // The difference of two signed longs may need all 64 bits unsigned
+        return difference >= 0 ? difference : (difference >>> 1) * 2.0 + (difference & 1);
+    }
+
+    /**
+     * Chooses the slope of a segment from its cone
+     *
+     * @param low the least slope which keeps the segment within the error
+     * @param high the greatest slope which keeps the segment within the
+     * error
+     * @return the slope
+     */
+    private static double slope(double low, double high) {
+        return high == Double.POSITIVE_INFINITY ? 0 : (low + high) / 2;
+    }
+}
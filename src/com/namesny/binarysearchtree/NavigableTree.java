@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Iterator;
+
+/**
+ * Binary search tree with ordered navigation. Every navigation method does a
+ * single descent from the root.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public interface NavigableTree<T extends Comparable<? super T>> extends BinarySearchTree<T>, Iterable<T> {
+
+    /**
+     * Inserts the value unless the tree already contains it
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     */
+    public boolean add(T value);
+
+    /**
+     * Finds the greatest value less than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    public T floor(T key);
+
+    /**
+     * Finds the least value greater than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    public T ceiling(T key);
+
+    /**
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    public T lower(T key);
+
+    /**
+     * Finds the least value strictly greater than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     */
+    public T higher(T key);
+
+    /**
+     * Removes the minimum from the tree
+     *
+     * @return the removed minimum, null if the tree is empty
+     */
+    public T pollMin();
+
+    /**
+     * Removes the maximum from the tree
+     *
+     * @return the removed maximum, null if the tree is empty
+     */
+    public T pollMax();
+
+    /**
+     * Returns the number of values in the tree
+     *
+     * @return size of the tree
+     */
+    public int size();
+
+    /**
+     * Iterates over the values in a range. The iterator supports removal of
+     * the last returned value. The tree must not be modified in any other way
+     * while it is being iterated.
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to iterate from the upper bound to the lower one
+     * @return iterator over the range
+     */
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending);
+
+    /**
+     * Publishes the values in a range to reactive subscribers. Each
+     * subscriber gets the values as it requests them and the scan resumes
+     * from the last value sent, so no range is materialized.
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to publish from the upper bound to the lower one
+     * @return publisher of the range
+     * @see RangePublisher
+     */
+    public default Flow.Publisher<T> publisher(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        return new RangePublisher<>(this, low, lowInclusive, high, highInclusive, descending);
+    }
+
+    /**
+     * Iterates over all values in ascending order
+     *
+     * @return iterator over the tree
+     */
+    @Override
+    public default Iterator<T> iterator() {
+        return iterator(null, true, null, true, false);
+    }
+}
@@ -0,0 +1,602 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.SortedSet;
+
+/**
+ * Exposes a tree as a {@link NavigableSet}, so it can replace a TreeSet.
+ * Subsets and the descending set are live views backed by the tree. Like a
+ * TreeSet this class is not thread safe and its iterators are not fail-fast,
+ * the tree must not be modified other than through the iterator while it is
+ * being iterated.
+ *
+ * The size of the whole set is known in constant time, the size of a range
+ * view is counted by iterating over it.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class NavigableTreeSet<T extends Comparable<? super T>> extends AbstractSet<T> implements NavigableSet<T> {
+
+    /**
+     * The backing tree
+     */
+    private final NavigableTree<T> tree;
+
+    /**
+     * Lower bound of the view, null if there is none
+     */
+    private final T low;
+
+    /**
+     * True if the lower bound is part of the view
+     */
+    private final boolean lowInclusive;
+
+    /**
+     * Upper bound of the view, null if there is none
+     */
+    private final T high;
+
+    /**
+     * True if the upper bound is part of the view
+     */
+    private final boolean highInclusive;
+
+    /**
+     * True if the view is in descending order
+     */
+    private final boolean descending;
+
+    /**
+     * Creates a set backed by the tree
+     *
+     * @param tree the backing tree, e.g. AVLTree or RedBlackTree
+     * @throws IllegalArgumentException if the tree is null or a multiset
+     */
+    public NavigableTreeSet(NavigableTree<T> tree) {
+        this(tree, null, true, null, true, false);
+        if (tree == null) {
+            throw new IllegalArgumentException("Tree cannot be null");
+        }
+        if (tree instanceof AVLMultiset || tree instanceof RedBlackMultiset) {
+            throw new IllegalArgumentException("Multiset cannot back a set");
+        }
+    }
+
+    /**
+     * Creates a view of the tree
+     *
+     * @param tree the backing tree
+     * @param low lower bound, null if there is none
+     * @param lowInclusive true if the lower bound is part of the view
+     * @param high upper bound, null if there is none
+     * @param highInclusive true if the upper bound is part of the view
+     * @param descending true if the view is in descending order
+     */
+    private NavigableTreeSet(NavigableTree<T> tree, T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        this.tree = tree;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Checks whether the value is below the lower bound of the view
+     *
+     * @param value the value
+     * @return true if the value is below the view
+     */
+    private boolean tooLow(T value) {
+        if (low == null) {
+            return false;
+        }
+        int cmp = value.compareTo(low);
+        return cmp < 0 || (cmp == 0 && !lowInclusive);
+    }
+
+    /**
+     * Checks whether the value is above the upper bound of the view
+     *
+     * @param value the value
+     * @return true if the value is above the view
+     */
+    private boolean tooHigh(T value) {
+        if (high == null) {
+            return false;
+        }
+        int cmp = value.compareTo(high);
+        return cmp > 0 || (cmp == 0 && !highInclusive);
+    }
+
+    /**
+     * Checks whether the value is inside the view
+     *
+     * @param value the value
+     * @return true if the value is in the range of the view
+     */
+    private boolean inRange(T value) {
+        return !tooLow(value) && !tooHigh(value);
+    }
+
+    /**
+     * Checks whether the value is inside the view or on its excluded bound,
+     * which is allowed for the bounds of a new view
+     *
+     * @param value the value
+     * @param inclusive true if the value is going to be an inclusive bound
+     * @return true if the value can be used as a bound of a sub-view
+     */
+    private boolean inRange(T value, boolean inclusive) {
+        if (inclusive) {
+            return inRange(value);
+        }
+        return (low == null || value.compareTo(low) >= 0) && (high == null || value.compareTo(high) <= 0);
+    }
+
+    /**
+     * Returns the value if it is inside the view
+     *
+     * @param value the value or null
+     * @return the value or null if it is null or outside the view
+     */
+    private T ifInRange(T value) {
+        return value == null || !inRange(value) ? null : value;
+    }
+
+    /**
+     * Lowest value of the view in ascending order
+     *
+     * @return the value or null
+     */
+    private T absLowest() {
+        T value = low == null ? tree.findMin() : lowInclusive ? tree.ceiling(low) : tree.higher(low);
+        return value == null || tooHigh(value) ? null : value;
+    }
+
+    /**
+     * Highest value of the view in ascending order
+     *
+     * @return the value or null
+     */
+    private T absHighest() {
+        T value = high == null ? tree.findMax() : highInclusive ? tree.floor(high) : tree.lower(high);
+        return value == null || tooLow(value) ? null : value;
+    }
+
+    /**
+     * Least value of the view greater than or equal to the value, in ascending order
+     *
+     * @param value the value
+     * @return the value or null
+     */
+    private T absCeiling(T value) {
+        return tooLow(value) ? absLowest() : ifInRange(tree.ceiling(value));
+    }
+
+    /**
+     * Least value of the view strictly greater than the value, in ascending order
+     *
+     * @param value the value
+     * @return the value or null
+     */
+    private T absHigher(T value) {
+        return tooLow(value) ? absLowest() : ifInRange(tree.higher(value));
+    }
+
+    /**
+     * Greatest value of the view less than or equal to the value, in ascending order
+     *
+     * @param value the value
+     * @return the value or null
+     */
+    private T absFloor(T value) {
+        return tooHigh(value) ? absHighest() : ifInRange(tree.floor(value));
+    }
+
+    /**
+     * Greatest value of the view strictly less than the value, in ascending order
+     *
+     * @param value the value
+     * @return the value or null
+     */
+    private T absLower(T value) {
+        return tooHigh(value) ? absHighest() : ifInRange(tree.lower(value));
+    }
+
+    /**
+     * Casts a value passed as an Object
+     *
+     * @param o the value
+     * @return the value cast to the element type
+     * @throws NullPointerException
+     * @throws ClassCastException
+     */
+    @SuppressWarnings("unchecked")
+    private T cast(Object o) {
+        Objects.requireNonNull(o);
+        T value = (T) o;
+        // Fail early with ClassCastException like TreeSet does
+        value.compareTo(value);
+        return value;
+    }
+
+    /**
+     * Returns the comparator of the set
+     *
+     * @return null for natural ordering or a reverse order comparator for a descending view
+     */
+    @Override
+    public Comparator<? super T> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    /**
+     * Adds the value to the tree
+     *
+     * @param value the value to add
+     * @return true if the set did not contain the value
+     * @throws NullPointerException
+     * @throws IllegalArgumentException if the value is outside the view
+     */
+    @Override
+    public boolean add(T value) {
+        Objects.requireNonNull(value);
+        if (!inRange(value)) {
+            throw new IllegalArgumentException("Value out of range");
+        }
+        return tree.add(value);
+    }
+
+    /**
+     * Removes the value from the tree
+     *
+     * @param o the value to remove
+     * @return true if the set contained the value
+     */
+    @Override
+    public boolean remove(Object o) {
+        T value = cast(o);
+        if (!inRange(value)) {
+            return false;
+        }
+        int size = tree.size();
+        tree.delete(value);
+        return tree.size() != size;
+    }
+
+    /**
+     * Checks whether the set contains the value
+     *
+     * @param o the value
+     * @return true if the set contains the value
+     */
+    @Override
+    public boolean contains(Object o) {
+        T value = cast(o);
+        return inRange(value) && tree.find(value) != null;
+    }
+
+    /**
+     * Returns the number of values in the set
+     *
+     * @return the number of values
+     */
+    @Override
+    public int size() {
+        if (low == null && high == null) {
+            return tree.size();
+        }
+
+        int size = 0;
+        for (Iterator<T> iterator = iterator(); iterator.hasNext(); iterator.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Checks whether the set is empty
+     *
+     * @return true if the set has no values
+     */
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+    /**
+     * Removes all values of the set from the tree
+     */
+    @Override
+    public void clear() {
+        if (low == null && high == null) {
+            tree.clear();
+        } else {
+            super.clear();
+        }
+    }
+
+    /**
+     * Returns an iterator over the set in its order
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return tree.iterator(low, lowInclusive, high, highInclusive, descending);
+    }
+
+    /**
+     * Returns an iterator over the set in reverse order
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> descendingIterator() {
+        return tree.iterator(low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    /**
+     * Returns the first value of the set
+     *
+     * @return the first value
+     * @throws NoSuchElementException
+     */
+    @Override
+    public T first() {
+        T value = descending ? absHighest() : absLowest();
+        if (value == null) {
+            throw new NoSuchElementException();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the last value of the set
+     *
+     * @return the last value
+     * @throws NoSuchElementException
+     */
+    @Override
+    public T last() {
+        T value = descending ? absLowest() : absHighest();
+        if (value == null) {
+            throw new NoSuchElementException();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the greatest value strictly less than the value
+     *
+     * @param value the value
+     * @return the lower value or null
+     */
+    @Override
+    public T lower(T value) {
+        return descending ? absHigher(value) : absLower(value);
+    }
+
+    /**
+     * Returns the greatest value less than or equal to the value
+     *
+     * @param value the value
+     * @return the floor value or null
+     */
+    @Override
+    public T floor(T value) {
+        return descending ? absCeiling(value) : absFloor(value);
+    }
+
+    /**
+     * Returns the least value greater than or equal to the value
+     *
+     * @param value the value
+     * @return the ceiling value or null
+     */
+    @Override
+    public T ceiling(T value) {
+        return descending ? absFloor(value) : absCeiling(value);
+    }
+
+    /**
+     * Returns the least value strictly greater than the value
+     *
+     * @param value the value
+     * @return the higher value or null
+     */
+    @Override
+    public T higher(T value) {
+        return descending ? absLower(value) : absHigher(value);
+    }
+
+    /**
+     * Removes and returns the first value
+     *
+     * @return the first value or null if the set is empty
+     */
+    @Override
+    public T pollFirst() {
+        if (low == null && high == null) {
+            return descending ? tree.pollMax() : tree.pollMin();
+        }
+        return poll(descending ? absHighest() : absLowest());
+    }
+
+    /**
+     * Removes and returns the last value
+     *
+     * @return the last value or null if the set is empty
+     */
+    @Override
+    public T pollLast() {
+        if (low == null && high == null) {
+            return descending ? tree.pollMin() : tree.pollMax();
+        }
+        return poll(descending ? absLowest() : absHighest());
+    }
+
+    /**
+     * Removes the value from the tree
+     *
+     * @param value the value or null
+     * @return the value
+     */
+    private T poll(T value) {
+        if (value != null) {
+            tree.delete(value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns a reverse order view of the set
+     *
+     * @return the descending view
+     */
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new NavigableTreeSet<>(tree, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    /**
+     * Returns a view of the values between the bounds
+     *
+     * @param fromElement low end point
+     * @param fromInclusive true if the low end point is part of the view
+     * @param toElement high end point
+     * @param toInclusive true if the high end point is part of the view
+     * @return the view
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        Objects.requireNonNull(fromElement);
+        Objects.requireNonNull(toElement);
+        if (descending) {
+            return view(toElement, toInclusive, fromElement, fromInclusive);
+        }
+        return view(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    /**
+     * Returns a view of the values before the bound
+     *
+     * @param toElement high end point
+     * @param inclusive true if the end point is part of the view
+     * @return the view
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        Objects.requireNonNull(toElement);
+        if (descending) {
+            return view(toElement, inclusive, high, highInclusive);
+        }
+        return view(low, lowInclusive, toElement, inclusive);
+    }
+
+    /**
+     * Returns a view of the values after the bound
+     *
+     * @param fromElement low end point
+     * @param inclusive true if the end point is part of the view
+     * @return the view
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        Objects.requireNonNull(fromElement);
+        if (descending) {
+            return view(low, lowInclusive, fromElement, inclusive);
+        }
+        return view(fromElement, inclusive, high, highInclusive);
+    }
+
+    /**
+     * Returns a view from fromElement inclusive to toElement exclusive
+     *
+     * @param fromElement low end point
+     * @param toElement high end point
+     * @return the view
+     */
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Returns a view of the values strictly less than toElement
+     *
+     * @param toElement high end point
+     * @return the view
+     */
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    /**
+     * Returns a view of the values greater than or equal to fromElement
+     *
+     * @param fromElement low end point
+     * @return the view
+     */
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Creates a view with new bounds in ascending order
+     *
+     * @param newLow lower bound, null if there is none
+     * @param newLowInclusive true if the lower bound is part of the view
+     * @param newHigh upper bound, null if there is none
+     * @param newHighInclusive true if the upper bound is part of the view
+     * @return the new view
+     * @throws IllegalArgumentException
+     */
+    private NavigableSet<T> view(T newLow, boolean newLowInclusive, T newHigh, boolean newHighInclusive) {
+        if (newLow != null && newHigh != null && newLow.compareTo(newHigh) > 0) {
+            throw new IllegalArgumentException("Lower bound is greater than the upper bound");
+        }
+        if ((newLow != null && newLow != low && !inRange(newLow, newLowInclusive))
+                || (newHigh != null && newHigh != high && !inRange(newHigh, newHighInclusive))) {
+            throw new IllegalArgumentException("Bound out of range");
+        }
+        return new NavigableTreeSet<>(tree, newLow, newLowInclusive, newHigh, newHighInclusive, descending);
+    }
+}
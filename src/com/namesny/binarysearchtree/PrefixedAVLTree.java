@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Collection;
+
+/**
+ * AVL tree of strings which keeps an 8-byte order-preserving prefix of the
+ * value in every node. A comparison is decided by the prefixes whenever they
+ * differ, so a search reads the string of a node only on a tie and most
+ * levels cost no cache miss on the string and its character array.
+ *
+ * Keys which share a long common prefix, such as identifiers, would tie on
+ * every prefix. The common prefix can be declared when the tree is created,
+ * all the values must start with it and the node prefixes are taken from the
+ * characters after it.
+ *
+ * @author Matúš Námešný
+ */
+public class PrefixedAVLTree extends AVLTree<String> {
+
+    /**
+     * Prefix shared by all the values
+     */
+    private final String commonPrefix;
+
+    /**
+     * The key of the last search with its prefix. A search whose key is not
+     * this one, such as a merge of a batch or a search of another thread,
+     * compares the prefixes without it.
+     */
+    private StringPrefix.Key searchKey;
+
+    /**
+     * Creates a tree which takes the node prefixes from the start of values
+     */
+    public PrefixedAVLTree() {
+        this("");
+    }
+
+    /**
+     * Creates a tree whose values all start with the common prefix
+     *
+     * @param commonPrefix prefix shared by all the values
+     * @throws IllegalArgumentException
+     */
+    public PrefixedAVLTree(String commonPrefix) {
+        super();
+        if (commonPrefix == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        this.commonPrefix = commonPrefix;
+    }
+
+    /**
+     * Node which keeps the prefix of its value
+     */
+    protected static class PrefixedNode extends AVLNode<String> {
+
+        /**
+         * Order-preserving prefix of the value
+         */
+        protected long prefix;
+
+        /**
+         * Creates one node with no children
+         *
+         * @param value the value of this node
+         * @param prefix the prefix of the value
+         */
+        public PrefixedNode(String value, long prefix) {
+            super(value);
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Inserts the value to the tree unless it already contains it
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException if the value does not start with the
+     * common prefix
+     */
+    @Override
+    public boolean add(String value) {
+        if (value != null && !value.startsWith(commonPrefix)) {
+            throw new IllegalArgumentException("Value does not start with " + commonPrefix);
+        }
+        prepare(value);
+        return super.add(value);
+    }
+
+    /**
+     * Deletes the value from the tree
+     *
+     * @param value the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(String value) {
+        prepare(value);
+        super.delete(value);
+    }
+
+    /**
+     * Inserts a batch of values, no value is inserted unless all of them
+     * start with the common prefix
+     *
+     * @param values the values to insert
+     * @return the result with the values already in the tree or repeated in
+     * the batch
+     * @throws IllegalArgumentException if the collection or a value is null
+     * or a value does not start with the common prefix
+     */
+    @Override
+    public BulkResult<String> insertAll(Collection<? extends String> values) {
+        if (values != null) {
+            for (String value : values) {
+                if (value != null && !value.startsWith(commonPrefix)) {
+                    throw new IllegalArgumentException("Value does not start with " + commonPrefix);
+                }
+            }
+        }
+        return super.insertAll(values);
+    }
+
+    /**
+     * Returns the prefix shared by all the values
+     *
+     * @return the common prefix
+     */
+    public String getCommonPrefix() {
+        return commonPrefix;
+    }
+
+    /**
+     * Creates a node with the prefix of the value
+     *
+     * @param value the value of the node
+     * @return new node without children
+     */
+    @Override
+    protected AVLNode<String> createNode(String value) {
+        return new PrefixedNode(value, StringPrefix.of(value, commonPrefix.length()));
+    }
+
+    /**
+     * Stores a value and its prefix in a node
+     *
+     * @param node the node
+     * @param value the new value of the node
+     */
+    @Override
+    protected void setValue(AVLNode<String> node, String value) {
+        super.setValue(node, value);
+        ((PrefixedNode) node).prefix = StringPrefix.of(value, commonPrefix.length());
+    }
+
+    /**
+     * Finds the node which value equals to the key, with the prefix of the
+     * key computed once for the whole search
+     *
+     * @param key the key to find
+     * @return the node equal to the key, which may be a tombstone, or null if
+     * there is no such node
+     */
+    @Override
+    protected AVLNode<String> findNode(String key) {
+        prepare(key);
+        return super.findNode(key);
+    }
+
+    /**
+     * Compares the key with the value of the node on their prefixes first
+     *
+     * @param key the key being looked up
+     * @param node node to compare against
+     * @return negative, zero or positive as the key is less than, equal to or
+     * greater than the value of the node
+     */
+    @Override
+    protected int compare(String key, AVLNode<String> node) {
+        StringPrefix.Key prepared = searchKey;
+        // The same key object, not only an equal one, so the prefix is its own
+        if (prepared != null && prepared.value == key) {
+            return prepared.compare(node.value, ((PrefixedNode) node).prefix);
+        }
+        return StringPrefix.compare(key, commonPrefix, node.value, ((PrefixedNode) node).prefix);
+    }
+
+    /**
+     * Computes the prefix of the key of a search unless it is already known
+     *
+     * @param key the key, null is left to the search to reject
+     */
+    private void prepare(String key) {
+        StringPrefix.Key prepared = searchKey;
+        if (key != null && (prepared == null || prepared.value != key)) {
+            searchKey = new StringPrefix.Key(key, commonPrefix);
+        }
+    }
+}
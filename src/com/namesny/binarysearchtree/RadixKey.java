@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Views a value as the string of bytes which an {@link AdaptiveRadixTree}
+ * branches on. The unsigned lexicographic order of the bytes must be the
+ * order of the values by compareTo, and only equal values may have equal
+ * bytes. The bytes are read one at a time so no key is materialized.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ */
+public interface RadixKey<T> {
+
+    /**
+     * Integers as four bytes big-endian with the sign bit flipped
+     */
+    RadixKey<Integer> INTEGER = new RadixKey<Integer>() {
+        @Override
+        public int length(Integer value) {
+            return 4;
+        }
+
+        @Override
+        public int byteAt(Integer value, int index) {
+            return ((value ^ Integer.MIN_VALUE) >>> (24 - (index << 3))) & 0xFF;
+        }
+    };
+
+    /**
+     * Longs as eight bytes big-endian with the sign bit flipped
+     */
+    RadixKey<Long> LONG = new RadixKey<Long>() {
+        @Override
+        public int length(Long value) {
+            return 8;
+        }
+
+        @Override
+        public int byteAt(Long value, int index) {
+            return (int) ((value ^ Long.MIN_VALUE) >>> (56 - (index << 3))) & 0xFF;
+        }
+    };
+
+    /**
+     * Binary keys as their encoded bytes
+     */
+    RadixKey<BinaryKey> BINARY_KEY = new RadixKey<BinaryKey>() {
+        @Override
+        public int length(BinaryKey value) {
+            return value.length();
+        }
+
+        @Override
+        public int byteAt(BinaryKey value, int index) {
+            return value.byteAt(index);
+        }
+    };
+
+    /**
+     * Returns the number of bytes of a value
+     *
+     * @param value the value
+     * @return the number of bytes
+     */
+    public int length(T value);
+
+    /**
+     * Returns a byte of a value
+     *
+     * @param value the value
+     * @param index index of the byte, less than the length
+     * @return the byte as an unsigned number from 0 to 255
+     */
+    public int byteAt(T value, int index);
+}
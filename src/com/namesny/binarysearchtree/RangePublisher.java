@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the values of a range of a tree to subscribers as they request
+ * them. Every subscription keeps only the last value sent, when more values
+ * are requested it seeks past that value and sends them from a fresh range
+ * iterator, which is dropped as soon as the demand is met. A scan of any
+ * length therefore takes constant memory, and the tree may be modified
+ * between the requests; the scan sees the values following the last one
+ * sent at the time of the request.
+ *
+ * The values are sent by the executor, by default in the thread which
+ * calls request. The tree is read only while values are being sent, it must
+ * not be modified concurrently with that, nor by the subscriber in onNext.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class RangePublisher<T extends Comparable<? super T>> implements Flow.Publisher<T> {
+
+    /**
+     * The tree
+     */
+    private final NavigableTree<T> tree;
+
+    /**
+     * The lower bound of the range, null for no lower bound
+     */
+    private final T low;
+
+    /**
+     * True if the lower bound is part of the range
+     */
+    private final boolean lowInclusive;
+
+    /**
+     * The upper bound of the range, null for no upper bound
+     */
+    private final T high;
+
+    /**
+     * True if the upper bound is part of the range
+     */
+    private final boolean highInclusive;
+
+    /**
+     * True to send the values from the upper bound to the lower one
+     */
+    private final boolean descending;
+
+    /**
+     * Runs the sending of the values
+     */
+    private final Executor executor;
+
+    /**
+     * Creates a publisher which sends the values in the thread calling
+     * request
+     *
+     * @param tree the tree
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to send the values in descending order
+     */
+    public RangePublisher(NavigableTree<T> tree, T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        this(tree, low, lowInclusive, high, highInclusive, descending, Runnable::run);
+    }
+
+    /**
+     * Creates a publisher
+     *
+     * @param tree the tree
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to send the values in descending order
+     * @param executor runs the sending of the values
+     * @throws IllegalArgumentException if the tree or the executor is null
+     */
+    public RangePublisher(NavigableTree<T> tree, T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending, Executor executor) {
+        if (tree == null) {
+            throw new IllegalArgumentException("Tree cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.tree = tree;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a subscriber, every subscriber gets its own scan of the range
+     *
+     * @param subscriber the subscriber
+     * @throws NullPointerException if the subscriber is null
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        RangeSubscription subscription = new RangeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        // An empty range completes without any demand
+        subscription.schedule();
+    }
+
+    /**
+     * Scan of the range for one subscriber
+     */
+    private class RangeSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        /**
+         * Requested values not sent yet
+         */
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * Number of signals to the sending loop, the loop runs while it is
+         * positive
+         */
+        private final AtomicInteger signals = new AtomicInteger();
+
+        /**
+         * The failure of a request which was not positive
+         */
+        private volatile IllegalArgumentException invalidRequest;
+
+        private volatile boolean cancelled;
+
+        /**
+         * The last value sent, null before the first one. Accessed only by
+         * the sending loop.
+         */
+        private T last;
+
+        RangeSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Request must be positive: " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Starts the sending loop unless it is already running, a running
+         * loop makes another pass
+         */
+        void schedule() {
+            if (signals.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Returns a range iterator positioned past the last value sent
+         *
+         * @return the iterator
+         */
+        private Iterator<T> seek() {
+            if (last == null) {
+                return tree.iterator(low, lowInclusive, high, highInclusive, descending);
+            }
+            if (descending) {
+                return tree.iterator(low, lowInclusive, last, false, true);
+            }
+            return tree.iterator(last, false, high, highInclusive, false);
+        }
+
+        /**
+         * Sends the values while there is demand. Calls of request from
+         * onNext only add to the demand of the running loop, so the stack
+         * does not grow with the number of values.
+         */
+        private void drain() {
+            Iterator<T> iterator = null;
+            T next = null;
+            int missed = 1;
+
+            while (true) {
+                long demand = requested.get();
+                long sent = 0;
+
+                while (true) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (invalidRequest != null) {
+                        cancelled = true;
+                        subscriber.onError(invalidRequest);
+                        return;
+                    }
+
+                    // The next value is read ahead so the end of the range
+                    // is signalled without waiting for more demand
+                    if (next == null) {
+                        try {
+                            if (iterator == null) {
+                                iterator = seek();
+                            }
+                            next = iterator.hasNext() ? iterator.next() : null;
+                        } catch (RuntimeException e) {
+                            cancelled = true;
+                            subscriber.onError(e);
+                            return;
+                        }
+                        if (next == null) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                    }
+
+                    if (sent == demand) {
+                        demand = requested.get();
+                        if (sent == demand) {
+                            break;
+                        }
+                    }
+
+                    last = next;
+                    next = null;
+                    subscriber.onNext(last);
+                    sent++;
+                }
+
+                if (demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-sent);
+                }
+                // Without further signals the iterator is dropped, the next
+                // request seeks past the last value sent
+                missed = signals.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
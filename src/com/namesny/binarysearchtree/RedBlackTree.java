@@ -23,21 +23,89 @@
  */
 package com.namesny.binarysearchtree;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 /**
  * Implementation of Red-Black tree, a self-balancing binary search tree
  * http://en.wikipedia.org/wiki/Red%E2%80%93black_tree
  *
  * @author Matúš Námešný
  */
-public class RedBlackTree<T extends Comparable<? super T>> implements BinarySearchTree<T> {
+public class RedBlackTree<T extends Comparable<? super T>> implements NavigableTree<T> {
+
+    /**
+     * Smallest capacity of the Bloom filter
+     */
+    private static final int MIN_BLOOM_CAPACITY = 1024;
 
     /**
      * Tree root
      */
     protected RedBlackNode<T> root;
 
+    /**
+     * Number of values in the tree, tombstones are not counted
+     */
+    protected int size;
+
+    /**
+     * Number of tombstones, nodes which were deleted lazily and are still
+     * linked in the tree
+     */
+    protected int tombstones;
+
+    /**
+     * Greatest allowed fraction of tombstones among the nodes before the tree
+     * is rebuilt, zero if lazy deletion is disabled
+     */
+    private double maxTombstoneRatio;
+
+    /**
+     * Bloom filter of the values answering lookups of absent values, null if
+     * it is disabled
+     */
+    private BloomFilter<T> bloomFilter;
+
+    /**
+     * Expected false positive rate of the Bloom filter
+     */
+    private double bloomFalsePositiveRate;
+
+    /**
+     * Unlinked nodes kept for reuse, chained through their parent links. Every
+     * pooled node may keep one external node as its left child.
+     */
+    private RedBlackNode<T> pool;
+
+    /**
+     * Number of nodes in the pool
+     */
+    private int poolSize;
+
+    /**
+     * Greatest number of nodes kept in the pool, zero if recycling is disabled
+     */
+    private int poolCapacity;
+
+    /**
+     * Node with the minimal value, null if the tree is empty
+     */
+    protected RedBlackNode<T> minNode;
+
+    /**
+     * Node with the maximal value, null if the tree is empty
+     */
+    protected RedBlackNode<T> maxNode;
+
     public RedBlackTree() {
         root = new RedBlackNode<T>();
+        size = 0;
+        minNode = null;
+        maxNode = null;
     }
 
     /**
@@ -72,281 +140,1519 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
          */
         protected Color color;
 
-        /**
-         * Creates one node
-         *
-         * @param value node value
-         * @param left left child
-         * @param right right child
-         */
-        public RedBlackNode(T value, RedBlackNode<T> left, RedBlackNode<T> right, Color color, RedBlackNode<T> parent) {
-            this.value = value;
-            this.left = left;
-            this.right = right;
-            this.color = color;
-            this.parent = parent;
+        /**
+         * Number of occurrences of the value, greater than one only in a
+         * multiset and zero if the node is a tombstone
+         */
+        protected int count;
+
+        /**
+         * Creates one node
+         *
+         * @param value node value
+         * @param left left child
+         * @param right right child
+         */
+        public RedBlackNode(T value, RedBlackNode<T> left, RedBlackNode<T> right, Color color, RedBlackNode<T> parent) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.color = color;
+            this.parent = parent;
+            this.count = 1;
+        }
+
+        /**
+         * Creates one node without children
+         *
+         * @param value
+         */
+        public RedBlackNode(T value, RedBlackNode<T> parent) {
+            this(value, new RedBlackNode<T>(), new RedBlackNode<T>(), Color.RED, parent);
+        }
+
+        public RedBlackNode() {
+            this(null, null, null, Color.BLACK, null);
+        }
+
+    }
+
+    /**
+     * Represents the color of a node
+     */
+    protected static enum Color {
+        RED, BLACK
+    }
+
+    /**
+     * Inserts the value to the tree and re-balances it if necessary
+     *
+     * @param value value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (!add(value)) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Inserts the value to the tree unless it already contains it
+     *
+     * @param value value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(T value) {
+
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        if (root.value == null) {
+            root = newNode(value, null, root);
+            minNode = root;
+            maxNode = root;
+        } else {
+
+            RedBlackNode<T> node = root;
+            RedBlackNode<T> previous = null;
+            int cmp = 0;
+            while (node.value != null) {
+                cmp = compare(value, node);
+                if (cmp == 0) {
+                    if (node.count > 0) {
+                        return false;
+                    }
+                    // A tombstone of the value is revived with the new value,
+                    // it is never an extreme
+                    setValue(node, value);
+                    node.count = 1;
+                    tombstones--;
+                    size++;
+                    if (bloomFilter != null) {
+                        addToBloomFilter(value);
+                    }
+                    return true;
+                }
+                previous = node;
+                node = cmp < 0 ? node.left : node.right;
+            }
+
+            node = newNode(value, previous, node);
+            if (cmp < 0) {
+                previous.left = node;
+            } else {
+                previous.right = node;
+            }
+
+            // A new extreme is always linked on the outer side of the old one
+            if (cmp < 0 && previous == minNode) {
+                minNode = node;
+            } else if (cmp > 0 && previous == maxNode) {
+                maxNode = node;
+            }
+
+            rebalanceInsert(node);
+
+        }
+        size++;
+        recolor(root, Color.BLACK);
+        if (bloomFilter != null) {
+            addToBloomFilter(value);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes an object equal to the key from the tree and re-balances it if
+     * necessary
+     *
+     * @param key key to delete
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        if (bloomFilter == null) {
+            deleteValue(key);
+            return;
+        }
+        if (!bloomFilter.mightContain(key)) {
+            return;
+        }
+        int oldSize = size;
+        deleteValue(key);
+        if (size < oldSize) {
+            bloomFilter.remove(key);
+        } else {
+            bloomFilter.recordFalsePositive();
+        }
+    }
+
+    /**
+     * Deletes an object equal to the key from the tree, eagerly or lazily
+     *
+     * @param key key to delete
+     */
+    private void deleteValue(T key) {
+        RedBlackNode<T> node = findNode(key);
+        if (node.value == null || node.count == 0) {
+            return;
+        }
+
+        // The extremes are unlinked right away so that they stay live
+        if (maxTombstoneRatio > 0 && node != minNode && node != maxNode) {
+            node.count = 0;
+            size--;
+            tombstones++;
+            if (tombstones > maxTombstoneRatio * (size + tombstones)) {
+                compact();
+            }
+            return;
+        }
+
+        delete(node);
+        removeDeadExtremes();
+    }
+
+    /**
+     * Enables or disables lazy deletion. A lazily deleted node is only marked
+     * as a tombstone, which costs one search and no re-balancing, and it is
+     * skipped by all reads. Inserting a deleted value again revives its node
+     * with the new value, without allocating or re-balancing. When the
+     * tombstones exceed the given fraction of the nodes the tree is rebuilt
+     * without them in linear time, while searches pass at most
+     * 1 / (1 - ratio) times more nodes.
+     *
+     * The mode is worth enabling when deleted values tend to be inserted
+     * again, such as keys that churn within a stable set, where deletes with
+     * re-inserts run almost twice as fast. A plain purge of random or sequential
+     * values is not faster, its cost is the search, which lazy deletion still
+     * pays, and the reads then skip the tombstones.
+     *
+     * @param maxTombstoneRatio greatest allowed fraction of tombstones, zero
+     * disables lazy deletion and removes the existing tombstones
+     * @throws IllegalArgumentException if the ratio is not in [0, 1)
+     */
+    public void setLazyDeletion(double maxTombstoneRatio) {
+        if (!(maxTombstoneRatio >= 0 && maxTombstoneRatio < 1)) {
+            throw new IllegalArgumentException("Tombstone ratio must be in [0, 1)");
+        }
+        this.maxTombstoneRatio = maxTombstoneRatio;
+        if (tombstones > maxTombstoneRatio * (size + tombstones)) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the number of tombstones in the tree
+     *
+     * @return number of lazily deleted nodes which are still in the tree
+     */
+    public int tombstones() {
+        return tombstones;
+    }
+
+    /**
+     * Rebuilds the tree into a perfectly balanced one without tombstones. The
+     * internal nodes are reused and the work is linear in the number of nodes.
+     * Only the nodes on the deepest level are red.
+     */
+    public void compact() {
+        RedBlackNode<T>[] nodes = liveNodes();
+        rebuild(nodes, nodes.length);
+    }
+
+    /**
+     * Inserts a batch of values. A batch which is large compared to the tree
+     * is merged with the values of the tree into a perfectly balanced tree in
+     * linear time, dropping the tombstones. A small batch is inserted in
+     * ascending order, so consecutive insertions walk the same cached path.
+     *
+     * @param values the values to insert
+     * @return the result with the values already in the tree or repeated in
+     * the batch
+     * @throws IllegalArgumentException if the collection or a value is null
+     */
+    @SuppressWarnings("unchecked")
+    public BulkResult<T> insertAll(Collection<? extends T> values) {
+        T[] batch = KeyBatch.sorted(values);
+        List<T> rejected = new ArrayList<>();
+        if (!KeyBatch.merge(batch.length, size + tombstones)) {
+            for (T value : batch) {
+                if (!add(value)) {
+                    rejected.add(value);
+                }
+            }
+            return new BulkResult<>(batch.length - rejected.size(), rejected);
+        }
+
+        RedBlackNode<T>[] nodes = liveNodes();
+        RedBlackNode<T>[] merged = (RedBlackNode<T>[]) new RedBlackNode[nodes.length + batch.length];
+        int count = 0;
+        int i = 0;
+        for (int j = 0; j < batch.length; j++) {
+            T value = batch[j];
+            while (i < nodes.length && compare(value, nodes[i]) > 0) {
+                merged[count++] = nodes[i++];
+            }
+            if ((i < nodes.length && compare(value, nodes[i]) == 0)
+                    || (j > 0 && value.compareTo(batch[j - 1]) == 0)) {
+                rejected.add(value);
+                continue;
+            }
+            merged[count++] = newNode(value, null, new RedBlackNode<>());
+        }
+        while (i < nodes.length) {
+            merged[count++] = nodes[i++];
+        }
+
+        rebuild(merged, count);
+        if (bloomFilter != null) {
+            if (bloomFilter.count() + batch.length - rejected.size() > bloomFilter.capacity()) {
+                rebuildBloomFilter();
+            } else {
+                int r = 0;
+                for (T value : batch) {
+                    if (r < rejected.size() && rejected.get(r) == value) {
+                        r++;
+                    } else {
+                        bloomFilter.add(value);
+                    }
+                }
+            }
+        }
+        return new BulkResult<>(batch.length - rejected.size(), rejected);
+    }
+
+    /**
+     * Deletes a batch of values. A batch which is large compared to the tree
+     * is merged with the values of the tree, the remaining nodes are rebuilt
+     * into a perfectly balanced tree in linear time. A small batch is deleted
+     * in ascending order.
+     *
+     * @param values the values to delete
+     * @return the result with the values not in the tree or repeated in the
+     * batch
+     * @throws IllegalArgumentException if the collection or a value is null
+     */
+    public BulkResult<T> deleteAll(Collection<? extends T> values) {
+        T[] batch = KeyBatch.sorted(values);
+        List<T> rejected = new ArrayList<>();
+        if (!KeyBatch.merge(batch.length, size + tombstones)) {
+            for (T value : batch) {
+                int oldSize = size;
+                delete(value);
+                if (size == oldSize) {
+                    rejected.add(value);
+                }
+            }
+            return new BulkResult<>(batch.length - rejected.size(), rejected);
+        }
+
+        RedBlackNode<T>[] nodes = liveNodes();
+        int count = 0;
+        int j = 0;
+        for (RedBlackNode<T> node : nodes) {
+            while (j < batch.length && compare(batch[j], node) < 0) {
+                rejected.add(batch[j++]);
+            }
+            if (j == batch.length || compare(batch[j], node) > 0) {
+                nodes[count++] = node;
+                continue;
+            }
+            j++;
+            while (j < batch.length && compare(batch[j], node) == 0) {
+                rejected.add(batch[j++]);
+            }
+            if (bloomFilter != null) {
+                bloomFilter.remove(node.value);
+            }
+            recycle(node, null);
+        }
+        while (j < batch.length) {
+            rejected.add(batch[j++]);
+        }
+
+        rebuild(nodes, count);
+        return new BulkResult<>(batch.length - rejected.size(), rejected);
+    }
+
+    /**
+     * Collects the live nodes in ascending order
+     *
+     * @return the nodes
+     */
+    @SuppressWarnings("unchecked")
+    private RedBlackNode<T>[] liveNodes() {
+        RedBlackNode<T>[] nodes = (RedBlackNode<T>[]) new RedBlackNode[size];
+        int count = 0;
+        for (RedBlackNode<T> node = minNode; node != null; node = successor(node)) {
+            if (node.count > 0) {
+                nodes[count++] = node;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Replaces the tree by a perfectly balanced tree of the sorted nodes.
+     * Subclasses keeping data in the nodes recompute it after the rebuild.
+     *
+     * @param nodes the live nodes in ascending order
+     * @param count number of the nodes
+     */
+    protected void rebuild(RedBlackNode<T>[] nodes, int count) {
+        int redDepth = 31 - Integer.numberOfLeadingZeros(Math.max(count, 1));
+        root = build(nodes, 0, count - 1, 0, redDepth);
+        root.parent = null;
+        recolor(root, Color.BLACK);
+        size = count;
+        tombstones = 0;
+        minNode = count == 0 ? null : nodes[0];
+        maxNode = count == 0 ? null : nodes[count - 1];
+    }
+
+    /**
+     * Links the sorted nodes into a perfectly balanced subtree. Splitting in
+     * the middle puts every external node on one of the two deepest levels,
+     * so coloring only the deepest internal level red keeps the black height
+     * equal on all paths.
+     *
+     * @param nodes the nodes in ascending order
+     * @param from index of the first node of the subtree
+     * @param to index of the last node of the subtree
+     * @param depth depth of the root of the subtree
+     * @param redDepth depth of the deepest level
+     * @return the root of the subtree, an external node if it is empty
+     */
+    private RedBlackNode<T> build(RedBlackNode<T>[] nodes, int from, int to, int depth, int redDepth) {
+        if (from > to) {
+            return new RedBlackNode<>();
+        }
+
+        int middle = (from + to) >>> 1;
+        RedBlackNode<T> node = nodes[middle];
+        node.left = build(nodes, from, middle - 1, depth + 1, redDepth);
+        node.right = build(nodes, middle + 1, to, depth + 1, redDepth);
+        node.left.parent = node;
+        node.right.parent = node;
+        recolor(node, depth == redDepth ? Color.RED : Color.BLACK);
+        return node;
+    }
+
+    /**
+     * Unlinks the extremes while they are tombstones, so the extremes are
+     * always live
+     */
+    private void removeDeadExtremes() {
+        while (minNode != null && minNode.count == 0) {
+            delete(minNode);
+        }
+        while (maxNode != null && maxNode.count == 0) {
+            delete(maxNode);
+        }
+    }
+
+    /**
+     * Finds an object equal to key
+     *
+     * @param key
+     * @return the object equal to key
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T find(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (bloomFilter != null && !bloomFilter.mightContain(key)) {
+            return null;
+        }
+        RedBlackNode<T> node = findNode(key);
+        if (node.count == 0) {
+            if (bloomFilter != null) {
+                bloomFilter.recordFalsePositive();
+            }
+            return null;
+        }
+        return node.value;
+    }
+    /**
+     * Finds the objects equal to a batch of keys. The keys are looked up in
+     * ascending order, at every node the batch is split into the keys smaller
+     * and greater than its value, so a path shared by several keys is walked
+     * only once. The last few keys of a subtree descend side by side.
+     *
+     * @param keys the keys
+     * @param results array receiving the results, at least as long as keys
+     * @return number of keys found
+     * @throws IllegalArgumentException if an array or a key is null or the
+     * results are shorter than the keys
+     */
+    @Override
+    public int findAll(T[] keys, T[] results) {
+        KeyBatch.check(keys, results);
+        int[] order = KeyBatch.order(keys);
+        int length = order.length;
+        if (bloomFilter != null) {
+            length = 0;
+            for (int index : order) {
+                if (bloomFilter.mightContain(keys[index])) {
+                    order[length++] = index;
+                } else {
+                    results[index] = null;
+                }
+            }
+        }
+
+        int found = findAll(root, keys, order, 0, length, results, new Object[KeyBatch.INTERLEAVE]);
+
+        if (bloomFilter != null) {
+            for (int i = 0; i < length; i++) {
+                if (results[order[i]] == null) {
+                    bloomFilter.recordFalsePositive();
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Looks up a sorted range of a batch in a subtree
+     *
+     * @param node root of the subtree
+     * @param keys the keys
+     * @param order indexes of the keys in ascending order
+     * @param from first index into order
+     * @param to index into order after the last one
+     * @param results array receiving the results
+     * @param cursors scratch array of the side by side descents
+     * @return number of keys found
+     */
+    private int findAll(RedBlackNode<T> node, T[] keys, int[] order, int from, int to, T[] results, Object[] cursors) {
+        int found = 0;
+        while (to - from > KeyBatch.INTERLEAVE && node.value != null) {
+            // Split the keys into smaller, equal and greater than the node
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(keys[order[middle]], node) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int equal = low;
+            while (low < to && compare(keys[order[low]], node) == 0) {
+                low++;
+            }
+
+            T value = node.count == 0 ? null : node.value;
+            for (int i = equal; i < low; i++) {
+                results[order[i]] = value;
+            }
+            if (value != null) {
+                found += low - equal;
+            }
+
+            found += findAll(node.left, keys, order, from, equal, results, cursors);
+            node = node.right;
+            from = low;
+        }
+        return found + descend(node, keys, order, from, to, results, cursors);
+    }
+
+    /**
+     * Looks up a few keys of a batch side by side, every round advances each
+     * of them by one level
+     *
+     * @param node root of the subtree
+     * @param keys the keys
+     * @param order indexes of the keys in ascending order
+     * @param from first index into order
+     * @param to index into order after the last one, at most
+     * {@link KeyBatch#INTERLEAVE} after from unless the subtree is empty
+     * @param results array receiving the results
+     * @param cursors scratch array of the descents
+     * @return number of keys found
+     */
+    @SuppressWarnings("unchecked")
+    private int descend(RedBlackNode<T> node, T[] keys, int[] order, int from, int to, T[] results, Object[] cursors) {
+        if (node.value == null) {
+            for (int i = from; i < to; i++) {
+                results[order[i]] = null;
+            }
+            return 0;
+        }
+
+        int found = 0;
+        int active = to - from;
+        for (int i = 0; i < active; i++) {
+            cursors[i] = node;
+        }
+        while (active > 0) {
+            for (int i = from; i < to; i++) {
+                RedBlackNode<T> cursor = (RedBlackNode<T>) cursors[i - from];
+                if (cursor == null) {
+                    continue;
+                }
+                int cmp = compare(keys[order[i]], cursor);
+                if (cmp == 0) {
+                    T value = cursor.count == 0 ? null : cursor.value;
+                    results[order[i]] = value;
+                    if (value != null) {
+                        found++;
+                    }
+                    cursors[i - from] = null;
+                    active--;
+                } else {
+                    RedBlackNode<T> next = cmp < 0 ? cursor.left : cursor.right;
+                    if (next.value == null) {
+                        results[order[i]] = null;
+                        cursors[i - from] = null;
+                        active--;
+                    } else {
+                        cursors[i - from] = next;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Clears the tree
+     */
+    @Override
+    public void clear() {
+        recycleAll();
+        this.root = new RedBlackNode<>();
+        this.size = 0;
+        this.tombstones = 0;
+        this.minNode = null;
+        this.maxNode = null;
+        if (bloomFilter != null) {
+            bloomFilter.clear();
+        }
+    }
+
+    /**
+     *
+     * @return True if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return root.value == null;
+    }
+
+    /**
+     * Returns the number of values in the tree
+     *
+     * @return size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree, the number of internal nodes on the
+     * longest path from the root to an external node. The height is not
+     * stored, every call walks the whole tree in O(n) time. Twice the
+     * {@link #blackHeight()} is an upper bound found in O(log n) time.
+     *
+     * @return height of the tree, zero if the tree is empty
+     */
+    public int height() {
+        return diagnostics().getHeight();
+    }
+
+    /**
+     * Collects the shape diagnostics of the tree. The tree is walked using
+     * parent pointers so no stack is needed and this is safe for trees of any
+     * size.
+     *
+     * @return diagnostics of the tree
+     */
+    public TreeDiagnostics diagnostics() {
+        int count = 0;
+        int height = 0;
+        int depth = 0;
+        long totalDepth = 0;
+        RedBlackNode<T> node = root;
+        RedBlackNode<T> previous = null;
+
+        while (node != null && node.value != null) {
+            RedBlackNode<T> next;
+            if (previous == node.parent) {
+                // Coming from the parent, descend to the left child first
+                count++;
+                totalDepth += depth;
+                depth++;
+                height = Math.max(height, depth);
+                next = node.left.value != null ? node.left
+                        : node.right.value != null ? node.right : node.parent;
+            } else if (previous == node.left && node.right.value != null) {
+                // Coming from the left child, descend to the right child
+                next = node.right;
+            } else {
+                // Both subtrees are done, go up
+                next = node.parent;
+            }
+
+            if (next == node.parent) {
+                depth--;
+            }
+            previous = node;
+            node = next;
+        }
+
+        return new TreeDiagnostics(count, height, blackHeight(), totalDepth);
+    }
+
+    /**
+     * Checks the Red-Black tree invariants: values are ordered, parent
+     * pointers are consistent, the root is black, no red node has a red child,
+     * every path from the root to an external node has the same number of
+     * black nodes, the size matches the number of nodes and the cached
+     * extremes are correct. The tree is walked using parent pointers so this
+     * is safe for trees of any size.
+     *
+     * @throws IllegalStateException if an invariant is violated
+     */
+    public void verify() {
+        if (root.parent != null) {
+            throw new IllegalStateException("Root has a parent");
+        }
+        if (isRed(root)) {
+            throw new IllegalStateException("Root is red");
+        }
+
+        int count = 0;
+        int dead = 0;
+        int blackDepth = 0;
+        int blackHeight = -1;
+        RedBlackNode<T> node = root;
+        RedBlackNode<T> previous = null;
+        RedBlackNode<T> first = null;
+        RedBlackNode<T> last = null;
+
+        while (node != null && node.value != null) {
+            boolean inOrder = false;
+            RedBlackNode<T> next;
+
+            if (previous == node.parent) {
+                // Coming from the parent, check the node itself
+                if (++count > size + tombstones) {
+                    throw new IllegalStateException("Tree has more nodes than its size " + size);
+                }
+                if (node.left == null || node.right == null
+                        || node.left.parent != node || node.right.parent != node) {
+                    throw new IllegalStateException("Wrong children of node " + node.value);
+                }
+                if (isRed(node) && (isRed(node.left) || isRed(node.right))) {
+                    throw new IllegalStateException("Red node " + node.value + " has a red child");
+                }
+                if (node.count < 0) {
+                    throw new IllegalStateException("Wrong count of node " + node.value);
+                }
+                if (node.count == 0) {
+                    dead++;
+                }
+                if (!isRed(node)) {
+                    blackDepth++;
+                }
+
+                // Every external child ends a path from the root
+                if (node.left.value == null || node.right.value == null) {
+                    if (blackHeight == -1) {
+                        blackHeight = blackDepth;
+                    } else if (blackHeight != blackDepth) {
+                        throw new IllegalStateException("Black height differs below node " + node.value);
+                    }
+                }
+
+                if (node.left.value != null) {
+                    next = node.left;
+                } else {
+                    inOrder = true;
+                    next = node.right.value != null ? node.right : node.parent;
+                }
+            } else if (previous == node.left) {
+                // Coming from the left child
+                inOrder = true;
+                next = node.right.value != null ? node.right : node.parent;
+            } else {
+                // Coming from the right child
+                next = node.parent;
+            }
+
+            if (inOrder) {
+                if (last == null) {
+                    first = node;
+                } else if (last.value.compareTo(node.value) >= 0) {
+                    throw new IllegalStateException("Values out of order: " + last.value + ", " + node.value);
+                }
+                last = node;
+            }
+
+            if (next == node.parent && !isRed(node)) {
+                blackDepth--;
+            }
+            previous = node;
+            node = next;
+        }
+
+        if (dead != tombstones || (dead > 0 && maxTombstoneRatio == 0)) {
+            throw new IllegalStateException("Tree has " + dead + " tombstones but expected " + tombstones);
+        }
+        if (count != size + tombstones) {
+            throw new IllegalStateException("Tree has " + count + " nodes but its size is " + size);
+        }
+        if (minNode != first || maxNode != last) {
+            throw new IllegalStateException("Cached minimum or maximum is wrong");
+        }
+        if (minNode != null && (minNode.count == 0 || maxNode.count == 0)) {
+            throw new IllegalStateException("Minimum or maximum is a tombstone");
+        }
+    }
+
+    /**
+     * Returns the black height of the tree, the number of black internal
+     * nodes on any path from the root to an external node
+     *
+     * @return black height of the tree, zero if the tree is empty
+     */
+    public int blackHeight() {
+        int blackHeight = 0;
+        for (RedBlackNode<T> node = root; node.value != null; node = node.left) {
+            if (!isRed(node)) {
+                blackHeight++;
+            }
+        }
+
+        return blackHeight;
+    }
+
+    /**
+     * Finds minimum in the tree
+     *
+     * @return Object with minimal value, null if the tree is empty
+     */
+    @Override
+    public T findMin() {
+        return minNode == null ? null : minNode.value;
+    }
+
+    /**
+     * Finds maximum in the tree
+     *
+     * @return Object with maximal value, null if the tree is empty
+     */
+    @Override
+    public T findMax() {
+        return maxNode == null ? null : maxNode.value;
+    }
+
+    /**
+     * Removes the minimum from the tree. The node is unlinked directly without
+     * searching for it, so only the re-balancing work is done.
+     *
+     * @return the removed minimum, null if the tree is empty
+     */
+    public T pollMin() {
+        if (minNode == null) {
+            return null;
+        }
+
+        T value = minNode.value;
+        delete(minNode);
+        removeDeadExtremes();
+        if (bloomFilter != null) {
+            bloomFilter.remove(value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the maximum from the tree. The node is unlinked directly without
+     * searching for it, so only the re-balancing work is done.
+     *
+     * @return the removed maximum, null if the tree is empty
+     */
+    public T pollMax() {
+        if (maxNode == null) {
+            return null;
+        }
+
+        T value = maxNode.value;
+        delete(maxNode);
+        removeDeadExtremes();
+        if (bloomFilter != null) {
+            bloomFilter.remove(value);
+        }
+        return value;
+    }
+
+    /**
+     * Helper method for deleting a node from the tree
+     *
+     * @param node internal node to delete
+     */
+    protected void delete(RedBlackNode<T> node) {
+
+        // The node has two children
+        if ((node.left.value != null) && (node.right.value != null)) {
+
+            RedBlackNode<T> successor = findMin(node.right);
+            setValue(node, successor.value);
+            node.count = successor.count;
+            if (successor == maxNode) {
+                maxNode = node;
+            }
+            delete(successor);
+
+        } else {
+
+            // The node has at most one internal child
+            RedBlackNode<T> child = node.left.value != null ? node.left : node.right;
+            if (node.count == 0) {
+                tombstones--;
+            } else {
+                size--;
+            }
+
+            // The neighbour of an extreme node is either its only child or its parent
+            if (node == minNode) {
+                minNode = node.right.value != null ? node.right : node.parent;
+            }
+            if (node == maxNode) {
+                maxNode = node.left.value != null ? node.left : node.parent;
+            }
+
+            // Deleted node is Red => just replace it with its child
+            if (isRed(node)) {
+                replace(node, child);
+
+            } else {
+                // Deleted node is black but has a red child => recolor the child
+                if (isRed(child)) {
+                    recolor(child, Color.BLACK);
+                    replace(node, child);
+
+                } else {
+                    // Deleted node is black and has a black child
+                    replace(node, child);
+                    rebalanceDelete(child);
+                }
+            }
+
+            recycle(node, node.left == child ? node.right : node.left);
+        }
+    }
+
+    /**
+     * Enables or disables the Bloom filter of the values. Every find and
+     * delete of an absent value which the filter rejects is answered by a few
+     * hash probes without descending the tree. The filter counts its values,
+     * so deletes keep it exact, and it is rebuilt with twice the capacity
+     * whenever the tree outgrows it. The values must have hashCode
+     * consistent with compareTo.
+     *
+     * @param falsePositiveRate expected fraction of lookups of absent values
+     * which pass the filter, zero disables the filter
+     * @throws IllegalArgumentException if the rate is not in [0, 1)
+     */
+    public void setBloomFilter(double falsePositiveRate) {
+        if (!(falsePositiveRate >= 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be in [0, 1)");
+        }
+        bloomFalsePositiveRate = falsePositiveRate;
+        if (falsePositiveRate == 0) {
+            bloomFilter = null;
+        } else {
+            rebuildBloomFilter();
+        }
+    }
+
+    /**
+     * Returns the Bloom filter of the values with its statistics
+     *
+     * @return the filter, null if it is disabled
+     */
+    public BloomFilter<T> getBloomFilter() {
+        return bloomFilter;
+    }
+
+    /**
+     * Adds a new value to the Bloom filter, rebuilding it when it is full
+     *
+     * @param value the inserted value
+     */
+    private void addToBloomFilter(T value) {
+        if (bloomFilter.count() < bloomFilter.capacity()) {
+            bloomFilter.add(value);
+        } else {
+            rebuildBloomFilter();
+        }
+    }
+
+    /**
+     * Creates a Bloom filter for twice the current number of values and fills
+     * it with the values, the statistics of the old filter are kept
+     */
+    private void rebuildBloomFilter() {
+        BloomFilter<T> filter = new BloomFilter<>(Math.max(2 * size, MIN_BLOOM_CAPACITY), bloomFalsePositiveRate);
+        if (bloomFilter != null) {
+            filter.addStats(bloomFilter);
+        }
+        for (T value : this) {
+            filter.add(value);
+        }
+        bloomFilter = filter;
+    }
+
+    /**
+     * Enables or disables node recycling. Nodes unlinked by delete and clear
+     * are kept in a bounded free list with their value cleared and reused by
+     * insert, which lowers the allocation rate of trees with a high churn.
+     * A reused node also takes over the external node it replaces, so an
+     * insert allocates nothing while the pool is not empty.
+     *
+     * @param capacity greatest number of nodes kept for reuse, zero disables
+     * recycling and drops the kept nodes
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public void setNodePool(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Pool capacity cannot be negative");
+        }
+        poolCapacity = capacity;
+        while (poolSize > capacity) {
+            pool = pool.parent;
+            poolSize--;
+        }
+    }
+
+    /**
+     * Returns the number of nodes kept for reuse
+     *
+     * @return size of the node pool
+     */
+    public int pooledNodes() {
+        return poolSize;
+    }
+
+    /**
+     * Creates an internal node for a new value with two external children.
+     * Subclasses with their own node type override this method, recycled
+     * nodes are created by it too.
+     *
+     * @param value the value of the node
+     * @param parent the parent of the node
+     * @return new red node
+     */
+    protected RedBlackNode<T> createNode(T value, RedBlackNode<T> parent) {
+        RedBlackNode<T> node = new RedBlackNode<>(value, parent);
+        node.left.parent = node;
+        node.right.parent = node;
+        return node;
+    }
+
+    /**
+     * Stores a value in a node which is reused or takes over the value of
+     * another node. Subclasses which keep data derived from the value in their
+     * nodes override this method.
+     *
+     * @param node the node
+     * @param value the new value of the node
+     */
+    protected void setValue(RedBlackNode<T> node, T value) {
+        node.value = value;
+    }
+
+    /**
+     * Takes a node from the pool or creates a new one
+     *
+     * @param value the value of the node
+     * @param parent the parent of the node
+     * @param leaf the external node which is replaced by the new node
+     * @return red node with two external children
+     */
+    private RedBlackNode<T> newNode(T value, RedBlackNode<T> parent, RedBlackNode<T> leaf) {
+        RedBlackNode<T> node = pool;
+        if (node == null) {
+            return createNode(value, parent);
         }
 
-        /**
-         * Creates one node without children
-         *
-         * @param value
-         */
-        public RedBlackNode(T value, RedBlackNode<T> parent) {
-            this(value, new RedBlackNode<T>(), new RedBlackNode<T>(), Color.RED, parent);
+        pool = node.parent;
+        poolSize--;
+        setValue(node, value);
+        node.parent = parent;
+        node.color = Color.RED;
+        node.count = 1;
+        if (node.left == null) {
+            node.left = new RedBlackNode<>();
         }
+        node.right = leaf;
+        node.left.parent = node;
+        node.right.parent = node;
+        return node;
+    }
 
-        public RedBlackNode() {
-            this(null, null, null, Color.BLACK, null);
+    /**
+     * Puts an unlinked node into the pool unless it is full. The value is
+     * cleared so the pool does not keep it reachable.
+     *
+     * @param node the unlinked node
+     * @param spare an external node kept as the left child, or null
+     */
+    private void recycle(RedBlackNode<T> node, RedBlackNode<T> spare) {
+        if (poolSize >= poolCapacity) {
+            return;
         }
 
+        node.value = null;
+        node.left = spare;
+        node.right = null;
+        node.parent = pool;
+        pool = node;
+        poolSize++;
     }
 
     /**
-     * Represents the color of a node
+     * Recycles the nodes of the whole tree until the pool is full
      */
-    protected static enum Color {
-        RED, BLACK
+    @SuppressWarnings("unchecked")
+    private void recycleAll() {
+        int count = Math.min(size + tombstones, poolCapacity - poolSize);
+        if (count <= 0) {
+            return;
+        }
+
+        // The walk needs the links, so the nodes and their spare external
+        // children are collected first
+        RedBlackNode<T>[] nodes = (RedBlackNode<T>[]) new RedBlackNode[count];
+        RedBlackNode<T>[] spares = (RedBlackNode<T>[]) new RedBlackNode[count];
+        RedBlackNode<T> node = minNode;
+        for (int i = 0; i < count; i++) {
+            nodes[i] = node;
+            spares[i] = node.left.value == null ? node.left
+                    : node.right.value == null ? node.right : null;
+            node = successor(node);
+        }
+
+        for (int i = 0; i < count; i++) {
+            recycle(nodes[i], spares[i]);
+        }
     }
 
     /**
-     * Inserts the value to the tree and re-balances it if necessary
+     * Replaces the node with its child in the node's parent
      *
-     * @param value value to insert
-     * @throws DuplicateValueException
-     * @throws IllegalArgumentException
+     * @param node the node being removed from the tree
+     * @param child the child which takes the place of the node
      */
-    @Override
-    public void insert(T value) throws DuplicateValueException {
-
-        if (value == null) {
-            throw new IllegalArgumentException("Value cannot be null");
+    private void replace(RedBlackNode<T> node, RedBlackNode<T> child) {
+        if (node.parent == null) {
+            root = child;
+        } else if (node.parent.left == node) {
+            node.parent.left = child;
+        } else {
+            node.parent.right = child;
         }
 
-        if (root.value == null) {
-            root = new RedBlackNode<>(value, null);
-            root.left.parent = root;
-            root.right.parent = root;
-        } else {
+        child.parent = node.parent;
+    }
 
-            RedBlackNode<T> node = root;
-            RedBlackNode<T> previous = null;
-            while (node.value != null) {
-                if (value.compareTo(node.value) < 0) {
-                    previous = node;
-                    node = node.left;
-                } else if (value.compareTo(node.value) > 0) {
-                    previous = node;
-                    node = node.right;
-                } else {
-                    throw new DuplicateValueException("Duplicate value: " + value);
-                }
-            }
+    /**
+     * Helper method for finding minimum
+     *
+     * @param node root of a subtree where to find minimum
+     * @return the node with minimal value
+     */
+    private RedBlackNode<T> findMin(RedBlackNode<T> node) {
 
-            node = new RedBlackNode<>(value, previous);
-            node.left.parent = node;
-            node.right.parent = node;
-            if (value.compareTo(previous.value) < 0) {
-                previous.left = node;
-            } else {
-                previous.right = node;
-            }
+        // Minimum is in the leftmost node
+        while (node.left.value != null) {
+            node = node.left;
+        }
 
-            rebalanceInsert(node);
+        return node;
+    }
+
+    /**
+     * Helper method for finding maximum
+     *
+     * @param node root of a subtree where to find minimum
+     * @return the node with maximal value
+     */
+    private RedBlackNode<T> findMax(RedBlackNode<T> node) {
 
+        // Maximum is in the rightmost node
+        while (node.right.value != null) {
+            node = node.right;
         }
-        root.color = Color.BLACK;
+
+        return node;
     }
 
     /**
-     * Deletes an object equal to the key from the tree and re-balances it if
-     * necessary
+     * Finds the greatest value less than or equal to the key
      *
-     * @param key key to delete
+     * @param key the key
+     * @return the value or null if there is no such value
      * @throws IllegalArgumentException
      */
     @Override
-    public void delete(T key) {
-        if (key == null) {
-            throw new IllegalArgumentException("Value cannot be null");
-        }
-        delete(key, root);
+    public T floor(T key) {
+        return valueOf(floorNode(checkKey(key), true));
     }
 
     /**
-     * Finds an object equal to key
+     * Finds the least value greater than or equal to the key
      *
-     * @param key
-     * @return the object equal to key
+     * @param key the key
+     * @return the value or null if there is no such value
      * @throws IllegalArgumentException
      */
     @Override
-    public T find(T key) {
-        if (key == null) {
-            throw new IllegalArgumentException("Value cannot be null");
-        }
-        return find(key, root);
+    public T ceiling(T key) {
+        return valueOf(ceilingNode(checkKey(key), true));
     }
 
     /**
-     * Clears the tree
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
      */
     @Override
-    public void clear() {
-        this.root = new RedBlackNode<>();
+    public T lower(T key) {
+        return valueOf(floorNode(checkKey(key), false));
     }
 
     /**
+     * Finds the least value strictly greater than the key
      *
-     * @return True if the tree is empty
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
      */
     @Override
-    public boolean isEmpty() {
-        return root.value == null;
+    public T higher(T key) {
+        return valueOf(ceilingNode(checkKey(key), false));
     }
 
     /**
-     * Finds minimum in the tree
+     * Iterates over the values in a range following the parent pointers, so
+     * the iterator needs no stack. Removing a value through the iterator costs
+     * one search to find the position again.
      *
-     * @return Object with minimal value
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to iterate from the upper bound to the lower one
+     * @return iterator over the range
      */
     @Override
-    public T findMin() {
-        return findMin(root).value;
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        if (descending) {
+            return new RangeIterator(high, highInclusive, low, lowInclusive, true);
+        }
+        return new RangeIterator(low, lowInclusive, high, highInclusive, false);
     }
 
     /**
-     * Finds maximum in the tree
+     * Checks the key of a navigation method
      *
-     * @return Object with maximal value
+     * @param key the key
+     * @return the key
+     * @throws IllegalArgumentException
      */
-    @Override
-    public T findMax() {
-        return findMax(root).value;
+    private T checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return key;
     }
 
     /**
-     * Helper method for deleting a node from the tree
+     * Returns the value of a node
+     *
+     * @param node the node or null
+     * @return the value of the node, null if there is no node
+     */
+    private T valueOf(RedBlackNode<T> node) {
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Finds the node with the greatest value less than (or equal to) the key,
+     * skipping tombstones
+     *
+     * @param key the key
+     * @param inclusive true if a node equal to the key may be returned
+     * @return the internal node or null if there is no such node
+     */
+    protected RedBlackNode<T> floorNode(T key, boolean inclusive) {
+        RedBlackNode<T> node = searchFloor(key, inclusive);
+        while (node != null && node.count == 0) {
+            node = predecessor(node);
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node with the least value greater than (or equal to) the key,
+     * skipping tombstones
+     *
+     * @param key the key
+     * @param inclusive true if a node equal to the key may be returned
+     * @return the internal node or null if there is no such node
+     */
+    protected RedBlackNode<T> ceilingNode(T key, boolean inclusive) {
+        RedBlackNode<T> node = searchCeiling(key, inclusive);
+        while (node != null && node.count == 0) {
+            node = successor(node);
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node with the greatest value less than (or equal to) the key
      *
-     * @param key the key to delete
-     * @param node root of a subtree from which to delete the object
+     * @param key the key
+     * @param inclusive true if a node equal to the key may be returned
+     * @return the internal node or null if there is no such node
      */
-    private void delete(T key, RedBlackNode<T> node) {
+    private RedBlackNode<T> searchFloor(T key, boolean inclusive) {
+        RedBlackNode<T> node = root;
+        RedBlackNode<T> best = null;
+
+        while (node.value != null) {
+            int cmp = compare(key, node);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp > 0) {
+                best = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return best;
+    }
 
-        // First we need to find the node we want to delete
-        while ((node.value != null) && (node.value != key)) {
-            if (key.compareTo(node.value) < 0) {
+    /**
+     * Finds the node with the least value greater than (or equal to) the key
+     *
+     * @param key the key
+     * @param inclusive true if a node equal to the key may be returned
+     * @return the internal node or null if there is no such node
+     */
+    private RedBlackNode<T> searchCeiling(T key, boolean inclusive) {
+        RedBlackNode<T> node = root;
+        RedBlackNode<T> best = null;
+
+        while (node.value != null) {
+            int cmp = compare(key, node);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp < 0) {
+                best = node;
                 node = node.left;
             } else {
                 node = node.right;
             }
         }
 
-        // if the node doesn't exist
-        if (node.value == null) {
-            return;
+        return best;
+    }
+
+    /**
+     * Finds the in-order successor of a node
+     *
+     * @param node internal node
+     * @return the successor or null if the node is the maximum
+     */
+    protected RedBlackNode<T> successor(RedBlackNode<T> node) {
+        if (node.right.value != null) {
+            return findMin(node.right);
         }
 
-        // The node has two children
-        if ((node.left.value != null) && (node.right.value != null)) {
+        // Go up until we come from a left child
+        RedBlackNode<T> parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
 
-            RedBlackNode<T> successor = findMin(node.right);
-            node.value = successor.value;
-            delete(successor.value, node);
+    /**
+     * Finds the in-order predecessor of a node
+     *
+     * @param node internal node
+     * @return the predecessor or null if the node is the minimum
+     */
+    protected RedBlackNode<T> predecessor(RedBlackNode<T> node) {
+        if (node.left.value != null) {
+            return findMax(node.left);
+        }
 
-        } else {
+        // Go up until we come from a right child
+        RedBlackNode<T> parent = node.parent;
+        while (parent != null && node == parent.left) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
 
-            // The node has at most one internal child
-            RedBlackNode<T> child = node.left.value != null ? node.left : node.right;
+    /**
+     * Iterator over a range of the tree
+     */
+    private class RangeIterator implements Iterator<T> {
 
-            // Deleted node is Red => just replace it with its child
-            if (isRed(node)) {
-                if (node.parent.left == node) {
-                    node.parent.left = child;
-                } else {
-                    node.parent.right = child;
-                }
-                child.parent = node.parent;
+        private final T end;
+        private final boolean endInclusive;
+        private final boolean descending;
+        private RedBlackNode<T> next;
+        private T last;
+
+        /**
+         * Creates the iterator
+         *
+         * @param start the bound where the iteration starts, null for none
+         * @param startInclusive true if the start bound is part of the range
+         * @param end the bound where the iteration ends, null for none
+         * @param endInclusive true if the end bound is part of the range
+         * @param descending true to iterate in descending order
+         */
+        RangeIterator(T start, boolean startInclusive, T end, boolean endInclusive, boolean descending) {
+            this.end = end;
+            this.endInclusive = endInclusive;
+            this.descending = descending;
+            seek(start, startInclusive);
+        }
 
+        /**
+         * Finds the first node after the start
+         *
+         * @param start the start bound, null for none
+         * @param inclusive true if the start bound is part of the range
+         */
+        private void seek(T start, boolean inclusive) {
+            if (start == null) {
+                next = descending ? maxNode : minNode;
             } else {
-                // Deleted node is black but has a red child => recolor the child
-                if (isRed(child)) {
-                    child.color = Color.BLACK;
+                next = descending ? floorNode(start, inclusive) : ceilingNode(start, inclusive);
+            }
+            checkEnd();
+        }
 
-                    if (node.parent.left == node) {
-                        node.parent.left = child;
-                    } else {
-                        node.parent.right = child;
-                    }
+        /**
+         * Ends the iteration if the next node is past the end bound
+         */
+        private void checkEnd() {
+            if (next != null && end != null) {
+                int cmp = compare(end, next);
+                if (descending) {
+                    cmp = -cmp;
+                }
+                if (cmp < 0 || (cmp == 0 && !endInclusive)) {
+                    next = null;
+                }
+            }
+        }
 
-                    child.parent = node.parent;
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
 
-                } else {
-                    // Deleted node is black and has a black child
-                    if (node.parent.left == node) {
-                        node.parent.left = child;
-                    } else {
-                        node.parent.right = child;
-                    }
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next.value;
+            do {
+                next = descending ? predecessor(next) : successor(next);
+            } while (next != null && next.count == 0);
+            checkEnd();
+            return last;
+        }
 
-                    child.parent = node.parent;
-                    rebalanceDelete(child);
-                }
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
             }
+            delete(last);
+            seek(last, false);
+            last = null;
         }
     }
 
     /**
-     * Helper method for finding minimum
+     * Finds the node which value equals to the key
      *
-     * @param node root of a subtree where to find minimum
-     * @return the node with minimal value
+     * @param key the value of a node we are looking for
+     * @return the node with a value equal to key, which may be a tombstone, or
+     * an external node if there is no such node
      */
-    private RedBlackNode<T> findMin(RedBlackNode<T> node) {
+    protected RedBlackNode<T> findNode(T key) {
+        RedBlackNode<T> node = root;
 
-        // Minimum is in the leftmost node
-        while (node.left.value != null) {
-            node = node.left;
+        // Traverse the tree until we find the value or an external node
+        while (node.value != null) {
+            int cmp = compare(key, node);
+            if (cmp == 0) {
+                break;
+            }
+            node = cmp < 0 ? node.left : node.right;
         }
 
         return node;
     }
 
     /**
-     * Helper method for finding maximum
+     * Compares the key with the value of the node. Every comparison made by
+     * the tree goes through this method.
      *
-     * @param node root of a subtree where to find minimum
-     * @return the node with maximal value
+     * @param key the key being looked up
+     * @param node internal node to compare against
+     * @return negative, zero or positive as the key is less than, equal to or
+     * greater than the value of the node
      */
-    private RedBlackNode<T> findMax(RedBlackNode<T> node) {
-
-        // Maximum is in the rightmost node
-        while (node.right.value != null) {
-            node = node.right;
-        }
-
-        return node;
+    protected int compare(T key, RedBlackNode<T> node) {
+        return key.compareTo(node.value);
     }
 
     /**
-     * Helper method for finding a node in the tree
+     * Changes the color of a node while re-balancing the tree
      *
-     * @param key the value of a node we are looking for
-     * @param node root of a subtree where to look
-     * @return the node with a value equal to key
+     * @param node the node to recolor
+     * @param color the new color
      */
-    private T find(T key, RedBlackNode<T> node) {
-
-        // Traverse the tree until we find the value or an external node
-        while ((node.value != null) && (node.value != key)) {
-            if (key.compareTo(node.value) < 0) {
-                node = node.left;
-            } else {
-                node = node.right;
-            }
-        }
-
-        return node.value;
+    protected void recolor(RedBlackNode<T> node, Color color) {
+        node.color = color;
     }
 
     /**
@@ -375,16 +1681,16 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
                 && (isRed(node.left.left) || isRed(node.left.right))
                 && isRed(node.left)
                 && isRed(node.right)) {
-            node.left.color = Color.BLACK;
-            node.right.color = Color.BLACK;
-            node.color = Color.RED;
+            recolor(node.left, Color.BLACK);
+            recolor(node.right, Color.BLACK);
+            recolor(node, Color.RED);
         } else if ((node.right.value != null)
                 && (isRed(node.right.left) || isRed(node.right.right))
                 && isRed(node.right)
                 && isRed(node.left)) {
-            node.right.color = Color.BLACK;
-            node.left.color = Color.BLACK;
-            node.color = Color.RED;
+            recolor(node.right, Color.BLACK);
+            recolor(node.left, Color.BLACK);
+            recolor(node, Color.RED);
         }
 
         /**
@@ -416,15 +1722,15 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
                 && isRed(node.left.left)
                 && !isRed(node.right)) {
             rotateRight(node);
-            node.parent.right.color = Color.RED;
-            node.parent.color = Color.BLACK;
+            recolor(node.parent.right, Color.RED);
+            recolor(node.parent, Color.BLACK);
         } else if ((node.right.value != null)
                 && isRed(node.right)
                 && isRed(node.right.right)
                 && !isRed(node.left)) {
             rotateLeft(node);
-            node.parent.left.color = Color.RED;
-            node.parent.color = Color.BLACK;
+            recolor(node.parent.left, Color.RED);
+            recolor(node.parent, Color.BLACK);
         }
 
         // Rebalance parent
@@ -439,7 +1745,7 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
      * @param node the node where to rotate
      * @return new rotated tree
      */
-    private void rotateLeft(RedBlackNode<T> node) {
+    protected void rotateLeft(RedBlackNode<T> node) {
         RedBlackNode<T> newRoot = node.right;
         RedBlackNode<T> parent = node.parent;
 
@@ -450,10 +1756,10 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
         newRoot.parent = parent;
 
         if (parent != null) {
-            if (parent.value.compareTo(newRoot.value) < 0) {
-                parent.right = newRoot;
-            } else {
+            if (parent.left == node) {
                 parent.left = newRoot;
+            } else {
+                parent.right = newRoot;
             }
         }
 
@@ -472,7 +1778,7 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
      * @param node the node where to rotate
      * @return new rotated tree
      */
-    private void rotateRight(RedBlackNode<T> node) {
+    protected void rotateRight(RedBlackNode<T> node) {
         RedBlackNode<T> newRoot = node.left;
         RedBlackNode<T> parent = node.parent;
 
@@ -483,10 +1789,10 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
         newRoot.parent = parent;
 
         if (parent != null) {
-            if (parent.value.compareTo(newRoot.value) < 0) {
-                parent.right = newRoot;
-            } else {
+            if (parent.left == node) {
                 parent.left = newRoot;
+            } else {
+                parent.right = newRoot;
             }
         }
 
@@ -519,8 +1825,8 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
 
             // Case 1: The sibling of the double-black node is red
             if (isRed(sibling)) {
-                node.parent.color = Color.RED;
-                sibling.color = Color.BLACK;
+                recolor(node.parent, Color.RED);
+                recolor(sibling, Color.BLACK);
                 rotateLeft(node.parent);
                 // We have transformed it into case 2,3 or 4
             }
@@ -528,10 +1834,10 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
             sibling = node.parent.right; // The sibling could have changed after the rotation in case 1
             // Case 2: The sibling is black and has two black children
             if (!isRed(sibling) && !isRed(sibling.left) && !isRed(sibling.right)) {
-                sibling.color = Color.RED;
+                recolor(sibling, Color.RED);
                 if (isRed(node.parent)) {
                     // If the parent is red we recolor it black and we are done
-                    node.parent.color = Color.BLACK;
+                    recolor(node.parent, Color.BLACK);
                     return;
                 } else {
                     // If the parent is black we make it double-black and move up a level to rebalance it
@@ -543,19 +1849,19 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
             sibling = node.parent.right; // The sibling could have changed
             // Case 3: The sibling is black, its left child is red and its right child is black
             if (!isRed(sibling) && isRed(sibling.left) && !isRed(sibling.right)) {
-                sibling.left.color = Color.BLACK;
-                sibling.color = Color.RED;
+                recolor(sibling.left, Color.BLACK);
+                recolor(sibling, Color.RED);
                 rotateRight(sibling);
                 // This is now case 4
             }
 
             sibling = node.parent.right; // The sibling could have changed
-            // Case 4: The sibling is black, its left child is black and its right child is red
-            if (!isRed(sibling) && !isRed(sibling.left) && isRed(sibling.right)) {
-                sibling.right.color = Color.BLACK;
+            // Case 4: The sibling is black and its right child is red
+            if (!isRed(sibling) && isRed(sibling.right)) {
+                recolor(sibling.right, Color.BLACK);
                 if (isRed(node.parent)) {
-                    node.parent.color = Color.BLACK;
-                    sibling.color = Color.RED;
+                    recolor(node.parent, Color.BLACK);
+                    recolor(sibling, Color.RED);
                 }
 
                 rotateLeft(node.parent);
@@ -565,8 +1871,8 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
 
             // Case 1: The sibling of the double-black node is red
             if (isRed(sibling)) {
-                node.parent.color = Color.RED;
-                sibling.color = Color.BLACK;
+                recolor(node.parent, Color.RED);
+                recolor(sibling, Color.BLACK);
                 rotateRight(node.parent);
                 // We have transformed it into case 2,3 or 4
             }
@@ -574,10 +1880,10 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
             sibling = node.parent.left; // The sibling could have changed after the rotation in case 1
             // Case 2: The sibling is black and has two black children
             if (!isRed(sibling) && !isRed(sibling.left) && !isRed(sibling.right)) {
-                sibling.color = Color.RED;
+                recolor(sibling, Color.RED);
                 if (isRed(node.parent)) {
                     // If the parent is red we recolor it black and we are done
-                    node.parent.color = Color.BLACK;
+                    recolor(node.parent, Color.BLACK);
                     return;
                 } else {
                     // If the parent is black we make it double-black and move up a level to rebalance it
@@ -589,19 +1895,19 @@ public class RedBlackTree<T extends Comparable<? super T>> implements BinarySear
             sibling = node.parent.left; // The sibling could have changed
             // Case 3: The sibling is black, its left child is black and its right child is red
             if (!isRed(sibling) && !isRed(sibling.left) && isRed(sibling.right)) {
-                sibling.right.color = Color.BLACK;
-                sibling.color = Color.RED;
+                recolor(sibling.right, Color.BLACK);
+                recolor(sibling, Color.RED);
                 rotateLeft(sibling);
                 // This is now case 4
             }
 
             sibling = node.parent.left; // The sibling could have changed
-            // Case 4: The sibling is black, its left child is red and its right child is black
-            if (!isRed(sibling) && isRed(sibling.left) && !isRed(sibling.right)) {
-                sibling.left.color = Color.BLACK;
+            // Case 4: The sibling is black and its left child is red
+            if (!isRed(sibling) && isRed(sibling.left)) {
+                recolor(sibling.left, Color.BLACK);
                 if (isRed(node.parent)) {
-                    node.parent.color = Color.BLACK;
-                    sibling.color = Color.RED;
+                    recolor(node.parent, Color.BLACK);
+                    recolor(sibling, Color.RED);
                 }
 
                 rotateRight(node.parent);
@@ -0,0 +1,1078 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * AVL tree with relaxed balance. An insertion or deletion only links or
+ * unlinks a node and records the parent, whose height may now be wrong, in
+ * a backlog. The balance is restored later by rebalancing steps, each step
+ * takes one node from the backlog, recomputes its height and rotates it if
+ * it is out of balance, then records the nodes whose height or balance the
+ * step may have changed. When the backlog is empty the tree is a valid AVL
+ * tree.
+ *
+ * The steps are run by {@link #rebalanceStep(int)}, by a background thread
+ * started with {@link #startRebalancer()}, and by the writers themselves.
+ * The newest node of the backlog is taken first, so a node is fixed before
+ * the ancestors recorded earlier, whose heights depend on it, and a step
+ * does not have to be repeated for every stale descendant. A writer drains
+ * the backlog when it links a leaf deeper than {@value #MAX_DEPTH_FACTOR}
+ * times log2 of the size, so sorted bursts cannot make the tree deeper than
+ * that, and it runs steps while the backlog grows past its limit. Inserts in
+ * random order rarely reach the depth, their steps are left to the
+ * rebalancer.
+ *
+ * All methods are synchronized on the tree so the background rebalancer can
+ * run between the operations. The iterators look up the next value by a
+ * search from the root, they are weakly consistent and never fail on
+ * concurrent modifications.
+ *
+ * http://en.wikipedia.org/wiki/AVL_tree
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class RelaxedAVLTree<T extends Comparable<? super T>> implements NavigableTree<T> {
+
+    /**
+     * Default number of pending steps above which writers rebalance
+     */
+    public static final int DEFAULT_MAX_BACKLOG = 4096;
+
+    /**
+     * How many times the depth of a new leaf may exceed log2 of the size
+     * before the writer drains the backlog
+     */
+    private static final int MAX_DEPTH_FACTOR = 2;
+
+    /**
+     * Number of steps the background rebalancer runs before it releases the
+     * lock
+     */
+    private static final int REBALANCER_BUDGET = 64;
+
+    /**
+     * Tree root
+     */
+    protected RelaxedAVLNode<T> root;
+
+    /**
+     * Number of nodes in the tree
+     */
+    protected int size;
+
+    /**
+     * Nodes waiting for a rebalancing step, the newest first
+     */
+    private final Deque<RelaxedAVLNode<T>> backlog = new ArrayDeque<>();
+
+    /**
+     * Number of pending steps above which writers rebalance
+     */
+    private final int maxBacklog;
+
+    /**
+     * Number of rebalancing steps run so far
+     */
+    private long steps;
+
+    /**
+     * Number of rotations made so far
+     */
+    private long rotations;
+
+    /**
+     * The background rebalancer, null if it is not running
+     */
+    private Thread rebalancer;
+
+    /**
+     * True while the background rebalancer waits for work
+     */
+    private boolean rebalancerWaiting;
+
+    public RelaxedAVLTree() {
+        this(DEFAULT_MAX_BACKLOG);
+    }
+
+    /**
+     * Creates an empty tree
+     *
+     * @param maxBacklog number of pending steps above which writers rebalance
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public RelaxedAVLTree(int maxBacklog) {
+        if (maxBacklog < 0) {
+            throw new IllegalArgumentException("Backlog limit cannot be negative");
+        }
+        this.maxBacklog = maxBacklog;
+    }
+
+    /**
+     * This class represents a node of a relaxed AVL tree
+     *
+     * @param <T>
+     */
+    protected static class RelaxedAVLNode<T extends Comparable<? super T>> {
+
+        /**
+         * Node value
+         */
+        protected T value;
+
+        /**
+         * Recorded height of the node, correct once no step is pending
+         */
+        protected int height;
+
+        /**
+         * Left child
+         */
+        protected RelaxedAVLNode<T> left;
+
+        /**
+         * Right child
+         */
+        protected RelaxedAVLNode<T> right;
+
+        /**
+         * Parent, null for the root
+         */
+        protected RelaxedAVLNode<T> parent;
+
+        /**
+         * True while the node is in the backlog
+         */
+        protected boolean queued;
+
+        /**
+         * True once the node is removed from the tree
+         */
+        protected boolean unlinked;
+
+        public RelaxedAVLNode(T value, RelaxedAVLNode<T> parent) {
+            this.value = value;
+            this.parent = parent;
+            this.height = 1;
+        }
+    }
+
+    /**
+     * Inserts the value to the tree without rebalancing it
+     *
+     * @param value the value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (!add(value)) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Inserts the value to the tree unless it already contains it. The new
+     * leaf is linked and its parent is recorded for rebalancing, the backlog
+     * is drained if the leaf is too deep.
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized boolean add(T value) {
+        checkKey(value);
+
+        if (root == null) {
+            root = new RelaxedAVLNode<>(value, null);
+            size++;
+            return true;
+        }
+
+        RelaxedAVLNode<T> node = root;
+        int depth = 2;
+        while (true) {
+            int cmp = value.compareTo(node.value);
+            if (cmp == 0) {
+                return false;
+            }
+            RelaxedAVLNode<T> child = cmp < 0 ? node.left : node.right;
+            if (child == null) {
+                break;
+            }
+            node = child;
+            depth++;
+        }
+
+        RelaxedAVLNode<T> leaf = new RelaxedAVLNode<>(value, node);
+        if (value.compareTo(node.value) < 0) {
+            node.left = leaf;
+        } else {
+            node.right = leaf;
+        }
+        size++;
+        // A parent with another child keeps its height
+        if (node.height <= 1) {
+            record(node);
+        }
+        if (depth > MAX_DEPTH_FACTOR * (32 - Integer.numberOfLeadingZeros(size))) {
+            // The steps of this path are the newest ones and run first
+            rebalance();
+        }
+        afterUpdate();
+        return true;
+    }
+
+    /**
+     * Deletes the value from the tree. The node is unlinked and its parent is
+     * recorded for rebalancing.
+     *
+     * @param value the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized void delete(T value) {
+        RelaxedAVLNode<T> node = findNode(checkKey(value));
+        if (node != null) {
+            unlink(node);
+            afterUpdate();
+        }
+    }
+
+    /**
+     * Finds object equal to key in the tree
+     *
+     * @param key
+     * @return returns the object equal to key
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized T find(T key) {
+        return valueOf(findNode(checkKey(key)));
+    }
+
+    /**
+     * Clears the tree and the backlog
+     */
+    @Override
+    public synchronized void clear() {
+        for (RelaxedAVLNode<T> node : backlog) {
+            node.queued = false;
+        }
+        backlog.clear();
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * True if the tree is empty
+     *
+     * @return returns true if the tree is empty
+     */
+    @Override
+    public synchronized boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the number of values in the tree
+     *
+     * @return size of the tree
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the actual height of the tree, the number of nodes on the
+     * longest path from the root to a leaf. The recorded heights may be stale
+     * so the whole tree is walked.
+     *
+     * @return height of the tree, zero if the tree is empty
+     */
+    public synchronized int height() {
+        int height = 0;
+        Deque<RelaxedAVLNode<T>> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        if (root != null) {
+            nodes.push(root);
+            depths.push(1);
+        }
+
+        while (!nodes.isEmpty()) {
+            RelaxedAVLNode<T> node = nodes.pop();
+            int depth = depths.pop();
+            height = Math.max(height, depth);
+            if (node.left != null) {
+                nodes.push(node.left);
+                depths.push(depth + 1);
+            }
+            if (node.right != null) {
+                nodes.push(node.right);
+                depths.push(depth + 1);
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Checks the tree invariants: values are ordered, parent links are
+     * consistent and the size matches the number of nodes. When the backlog
+     * is empty the heights stored in the nodes must be correct and every
+     * node must be balanced.
+     *
+     * @throws IllegalStateException if an invariant is violated
+     */
+    public synchronized void verify() {
+        if (root != null && root.parent != null) {
+            throw new IllegalStateException("Root has a parent");
+        }
+
+        RelaxedAVLNode<T> previous = null;
+        int count = 0;
+        for (RelaxedAVLNode<T> node = first(); node != null; node = successor(node)) {
+            if (++count > size) {
+                throw new IllegalStateException("Tree has more nodes than its size " + size);
+            }
+            if (previous != null && previous.value.compareTo(node.value) >= 0) {
+                throw new IllegalStateException("Values out of order: " + previous.value + ", " + node.value);
+            }
+            if ((node.left != null && node.left.parent != node) || (node.right != null && node.right.parent != node)) {
+                throw new IllegalStateException("Wrong parent link below node " + node.value);
+            }
+            if (node.unlinked) {
+                throw new IllegalStateException("Unlinked node " + node.value + " is in the tree");
+            }
+            if (backlog.isEmpty()) {
+                if (node.height != 1 + Math.max(getHeight(node.left), getHeight(node.right))) {
+                    throw new IllegalStateException("Wrong height of node " + node.value);
+                }
+                if (!isBalanced(node)) {
+                    throw new IllegalStateException("Node " + node.value + " is not balanced");
+                }
+            }
+            previous = node;
+        }
+
+        if (count != size) {
+            throw new IllegalStateException("Tree has " + count + " nodes but its size is " + size);
+        }
+    }
+
+    /**
+     * Runs rebalancing steps
+     *
+     * @param budget the most steps to run
+     * @return number of steps run, less than the budget only if the backlog
+     * became empty
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public synchronized int rebalanceStep(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget cannot be negative");
+        }
+
+        int done = 0;
+        while (done < budget && !backlog.isEmpty()) {
+            step();
+            done++;
+        }
+        return done;
+    }
+
+    /**
+     * Runs rebalancing steps until the backlog is empty
+     *
+     * @return number of steps run
+     */
+    public synchronized int rebalance() {
+        return rebalanceStep(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of pending rebalancing steps
+     *
+     * @return size of the backlog
+     */
+    public synchronized int backlog() {
+        return backlog.size();
+    }
+
+    /**
+     * Returns the number of pending steps above which writers rebalance
+     *
+     * @return the limit
+     */
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+
+    /**
+     * Returns the number of rebalancing steps run so far
+     *
+     * @return number of steps
+     */
+    public synchronized long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of rotations made so far
+     *
+     * @return number of rotations
+     */
+    public synchronized long getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Starts a daemon thread which runs the pending rebalancing steps in
+     * small batches between the operations. Does nothing if it is already
+     * running.
+     */
+    public synchronized void startRebalancer() {
+        if (rebalancer != null) {
+            return;
+        }
+        rebalancer = new Thread(this::runRebalancer, "RelaxedAVLTree rebalancer");
+        rebalancer.setDaemon(true);
+        rebalancer.start();
+    }
+
+    /**
+     * Stops the background rebalancer and waits for it to finish, the steps
+     * it did not run stay in the backlog
+     */
+    public void stopRebalancer() {
+        Thread thread;
+        synchronized (this) {
+            thread = rebalancer;
+            rebalancer = null;
+            notifyAll();
+        }
+        if (thread == null) {
+            return;
+        }
+
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds minimal value in the tree
+     *
+     * @return minimum, null if the tree is empty
+     */
+    @Override
+    public synchronized T findMin() {
+        return valueOf(first());
+    }
+
+    /**
+     * Finds maximal value in the tree
+     *
+     * @return maximum, null if the tree is empty
+     */
+    @Override
+    public synchronized T findMax() {
+        return valueOf(last());
+    }
+
+    /**
+     * Removes the minimum from the tree
+     *
+     * @return the removed minimum, null if the tree is empty
+     */
+    @Override
+    public synchronized T pollMin() {
+        RelaxedAVLNode<T> node = first();
+        if (node == null) {
+            return null;
+        }
+        T value = node.value;
+        unlink(node);
+        afterUpdate();
+        return value;
+    }
+
+    /**
+     * Removes the maximum from the tree
+     *
+     * @return the removed maximum, null if the tree is empty
+     */
+    @Override
+    public synchronized T pollMax() {
+        RelaxedAVLNode<T> node = last();
+        if (node == null) {
+            return null;
+        }
+        T value = node.value;
+        unlink(node);
+        afterUpdate();
+        return value;
+    }
+
+    /**
+     * Finds the greatest value less than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized T floor(T key) {
+        return valueOf(floorNode(checkKey(key), true));
+    }
+
+    /**
+     * Finds the least value greater than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized T ceiling(T key) {
+        return valueOf(ceilingNode(checkKey(key), true));
+    }
+
+    /**
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized T lower(T key) {
+        return valueOf(floorNode(checkKey(key), false));
+    }
+
+    /**
+     * Finds the least value strictly greater than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public synchronized T higher(T key) {
+        return valueOf(ceilingNode(checkKey(key), false));
+    }
+
+    /**
+     * Iterates over the values in a range. Every value is found by a search
+     * for the successor of the previous one, so the iterator sees the
+     * modifications made after its creation and is not disturbed by the
+     * background rebalancer.
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to iterate from the upper bound to the lower one
+     * @return iterator over the range
+     */
+    @Override
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        if (descending) {
+            return new RangeIterator(high, highInclusive, low, lowInclusive, true);
+        }
+        return new RangeIterator(low, lowInclusive, high, highInclusive, false);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RelaxedAVLTree size=" + size + " backlog=" + backlog.size()
+                + " steps=" + steps + " rotations=" + rotations;
+    }
+
+    /**
+     * Checks the key of an operation
+     *
+     * @param key the key
+     * @return the key
+     * @throws IllegalArgumentException
+     */
+    private T checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return key;
+    }
+
+    /**
+     * Returns the value of a node
+     *
+     * @param node the node or null
+     * @return the value of the node, null if there is no node
+     */
+    private T valueOf(RelaxedAVLNode<T> node) {
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Puts a node on the top of the backlog unless it is there already
+     *
+     * @param node the node or null
+     */
+    private void record(RelaxedAVLNode<T> node) {
+        if (node != null && !node.queued) {
+            node.queued = true;
+            backlog.push(node);
+        }
+    }
+
+    /**
+     * Rebalances while the backlog is over its limit and wakes up the
+     * background rebalancer
+     */
+    private void afterUpdate() {
+        while (backlog.size() > maxBacklog) {
+            step();
+        }
+        if (rebalancerWaiting && !backlog.isEmpty()) {
+            rebalancerWaiting = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Runs one rebalancing step on the newest node of the backlog. The height
+     * of the node is recomputed from its children, a node out of balance is
+     * rotated like in an AVL tree. Nodes whose height or balance may have
+     * changed are recorded, a child whose recorded height is stale is still
+     * in the backlog and records this node again when it is fixed.
+     */
+    private void step() {
+        RelaxedAVLNode<T> node = backlog.pop();
+        node.queued = false;
+        steps++;
+        if (node.unlinked) {
+            return;
+        }
+
+        int oldHeight = node.height;
+        int balance = getHeight(node.right) - getHeight(node.left);
+        if (Math.abs(balance) <= 1) {
+            updateHeight(node);
+            if (node.height != oldHeight) {
+                record(node.parent);
+            }
+            return;
+        }
+
+        RelaxedAVLNode<T> top;
+        if (balance < 0) {
+            RelaxedAVLNode<T> child = node.left;
+            if (getHeight(child.right) > getHeight(child.left)) {
+                rotateLeft(child);
+                recordIfUnbalanced(child);
+            }
+            top = rotateRight(node);
+        } else {
+            RelaxedAVLNode<T> child = node.right;
+            if (getHeight(child.left) > getHeight(child.right)) {
+                rotateRight(child);
+                recordIfUnbalanced(child);
+            }
+            top = rotateLeft(node);
+        }
+
+        // The children may have been far out of balance, one rotation does
+        // not have to be enough
+        recordIfUnbalanced(node);
+        recordIfUnbalanced(top);
+        if (top.height != oldHeight) {
+            record(top.parent);
+        }
+    }
+
+    /**
+     * Records a node whose children differ in height by more than one
+     *
+     * @param node the node
+     */
+    private void recordIfUnbalanced(RelaxedAVLNode<T> node) {
+        if (!isBalanced(node)) {
+            record(node);
+        }
+    }
+
+    /**
+     * Checks the balance of a node by the recorded heights of its children
+     *
+     * @param node the node
+     * @return true if the heights differ by at most one
+     */
+    private boolean isBalanced(RelaxedAVLNode<T> node) {
+        return Math.abs(getHeight(node.right) - getHeight(node.left)) <= 1;
+    }
+
+    /**
+     * Body of the background rebalancer
+     */
+    private void runRebalancer() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            synchronized (this) {
+                while (rebalancer == self && backlog.isEmpty()) {
+                    rebalancerWaiting = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        rebalancerWaiting = false;
+                        return;
+                    }
+                }
+                rebalancerWaiting = false;
+                if (rebalancer != self) {
+                    return;
+                }
+                rebalanceStep(REBALANCER_BUDGET);
+            }
+            // Let the writers take the lock between the batches
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Unlinks a node, a node with two children takes the value of its
+     * successor and the successor is unlinked instead. The parent of the
+     * unlinked node is recorded for rebalancing.
+     *
+     * @param node the node
+     */
+    private void unlink(RelaxedAVLNode<T> node) {
+        if (node.left != null && node.right != null) {
+            RelaxedAVLNode<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.value = successor.value;
+            node = successor;
+        }
+
+        RelaxedAVLNode<T> child = node.left != null ? node.left : node.right;
+        replace(node, child);
+        node.unlinked = true;
+        node.value = null;
+        size--;
+        record(node.parent);
+    }
+
+    /**
+     * Puts a subtree into the place of a node in its parent
+     *
+     * @param node the node
+     * @param subtree the subtree or null
+     */
+    private void replace(RelaxedAVLNode<T> node, RelaxedAVLNode<T> subtree) {
+        RelaxedAVLNode<T> parent = node.parent;
+        if (subtree != null) {
+            subtree.parent = parent;
+        }
+        if (parent == null) {
+            root = subtree;
+        } else if (parent.left == node) {
+            parent.left = subtree;
+        } else {
+            parent.right = subtree;
+        }
+    }
+
+    /**
+     * Returns the node with the minimum
+     *
+     * @return the node or null if the tree is empty
+     */
+    protected RelaxedAVLNode<T> first() {
+        RelaxedAVLNode<T> node = root;
+        while (node != null && node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node with the maximum
+     *
+     * @return the node or null if the tree is empty
+     */
+    protected RelaxedAVLNode<T> last() {
+        RelaxedAVLNode<T> node = root;
+        while (node != null && node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the in-order successor of a node
+     *
+     * @param node the node
+     * @return the successor or null if the node is the maximum
+     */
+    protected RelaxedAVLNode<T> successor(RelaxedAVLNode<T> node) {
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) {
+                node = node.left;
+            }
+            return node;
+        }
+        while (node.parent != null && node.parent.right == node) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    /**
+     * Finds the node with a value equal to the key
+     *
+     * @param key the key
+     * @return the node or null if there is none
+     */
+    protected RelaxedAVLNode<T> findNode(T key) {
+        RelaxedAVLNode<T> node = root;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.value);
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the node with the greatest value less than the key
+     *
+     * @param key the key
+     * @param inclusive true to accept a value equal to the key
+     * @return the node or null if there is none
+     */
+    protected RelaxedAVLNode<T> floorNode(T key, boolean inclusive) {
+        RelaxedAVLNode<T> node = root;
+        RelaxedAVLNode<T> result = null;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.value);
+            if (cmp > 0 || (cmp == 0 && inclusive)) {
+                result = node;
+                if (cmp == 0) {
+                    break;
+                }
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the node with the least value greater than the key
+     *
+     * @param key the key
+     * @param inclusive true to accept a value equal to the key
+     * @return the node or null if there is none
+     */
+    protected RelaxedAVLNode<T> ceilingNode(T key, boolean inclusive) {
+        RelaxedAVLNode<T> node = root;
+        RelaxedAVLNode<T> result = null;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.value);
+            if (cmp < 0 || (cmp == 0 && inclusive)) {
+                result = node;
+                if (cmp == 0) {
+                    break;
+                }
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Recomputes the height of the node from the recorded heights of its
+     * children
+     *
+     * @param node the node
+     */
+    private void updateHeight(RelaxedAVLNode<T> node) {
+        node.height = 1 + Math.max(getHeight(node.left), getHeight(node.right));
+    }
+
+    /**
+     * Returns the recorded height of a node
+     *
+     * @param node the node or null
+     * @return height of the node, zero for null
+     */
+    private int getHeight(RelaxedAVLNode<T> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Rotates the subtree left
+     *
+     * @param node root of the subtree
+     * @return new root of the subtree
+     */
+    protected RelaxedAVLNode<T> rotateLeft(RelaxedAVLNode<T> node) {
+        RelaxedAVLNode<T> top = node.right;
+        node.right = top.left;
+        if (top.left != null) {
+            top.left.parent = node;
+        }
+        replace(node, top);
+        top.left = node;
+        node.parent = top;
+        updateHeight(node);
+        updateHeight(top);
+        rotations++;
+        return top;
+    }
+
+    /**
+     * Rotates the subtree right
+     *
+     * @param node root of the subtree
+     * @return new root of the subtree
+     */
+    protected RelaxedAVLNode<T> rotateRight(RelaxedAVLNode<T> node) {
+        RelaxedAVLNode<T> top = node.left;
+        node.left = top.right;
+        if (top.right != null) {
+            top.right.parent = node;
+        }
+        replace(node, top);
+        top.right = node;
+        node.parent = top;
+        updateHeight(node);
+        updateHeight(top);
+        rotations++;
+        return top;
+    }
+
+    /**
+     * Iterator over a range of the tree which searches for every next value
+     */
+    private class RangeIterator implements Iterator<T> {
+
+        private final T end;
+        private final boolean endInclusive;
+        private final boolean descending;
+        private T next;
+        private T last;
+
+        /**
+         * Creates the iterator
+         *
+         * @param start the bound where the iteration starts, null for none
+         * @param startInclusive true if the start bound is part of the range
+         * @param end the bound where the iteration ends, null for none
+         * @param endInclusive true if the end bound is part of the range
+         * @param descending true to iterate in descending order
+         */
+        RangeIterator(T start, boolean startInclusive, T end, boolean endInclusive, boolean descending) {
+            this.end = end;
+            this.endInclusive = endInclusive;
+            this.descending = descending;
+            synchronized (RelaxedAVLTree.this) {
+                if (start == null) {
+                    next = valueOf(descending ? last() : first());
+                } else {
+                    next = valueOf(descending ? floorNode(start, startInclusive) : ceilingNode(start, startInclusive));
+                }
+            }
+            checkEnd();
+        }
+
+        /**
+         * Drops the next value if it is past the end bound
+         */
+        private void checkEnd() {
+            if (next == null || end == null) {
+                return;
+            }
+            int cmp = end.compareTo(next);
+            if (descending) {
+                cmp = -cmp;
+            }
+            if (cmp < 0 || (cmp == 0 && !endInclusive)) {
+                next = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = descending ? lower(last) : higher(last);
+            checkEnd();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            delete(last);
+            last = null;
+        }
+    }
+}
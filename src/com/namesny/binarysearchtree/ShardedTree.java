@@ -0,0 +1,939 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread safe tree which splits the key space into ranges, each kept in its
+ * own tree behind its own lock. An immutable routing table maps a key to its
+ * shard, so writers of different ranges never touch the same lock or the
+ * same root and scale with the number of cores.
+ *
+ * The tree starts with one shard and splits a shard in the middle whenever
+ * it outgrows the minimal shard size, until there are as many shards as
+ * requested. Afterwards a shard which grows over twice the average size of
+ * the other shards is split too, after the two smallest neighbouring shards
+ * were merged to keep the number of shards. When every such pair is at least
+ * as large as the skewed shard, as with two shards or a hot middle one of
+ * three, the skewed shard moves half of the difference to its smaller
+ * neighbour across their split point instead. Values are moved by pollMin
+ * and pollMax while only the shards involved are locked, the other shards
+ * keep working. Every operation checks that the routing table did not change
+ * while it was waiting for the lock of its shard and retries otherwise.
+ *
+ * Operations on one key are atomic. The operations which visit several
+ * shards, such as findMin, size and the iterators, see every shard at a
+ * different moment, like the ones of the concurrent collections. The range
+ * iterators copy the values of a shard in small chunks under its lock and
+ * never fail because of concurrent updates.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class ShardedTree<T extends Comparable<? super T>> implements NavigableTree<T> {
+
+    /**
+     * Default minimal size of a shard before it is split or rebalanced
+     */
+    private static final int DEFAULT_MIN_SHARD_SIZE = 1024;
+
+    /**
+     * How many times a shard may be larger than the average of the other
+     * shards before it is split or its values are moved to a neighbour
+     */
+    private static final int MAX_SKEW = 2;
+
+    /**
+     * Number of values an iterator copies from a shard at once
+     */
+    private static final int CHUNK = 64;
+
+    /**
+     * Creates the trees of the shards
+     */
+    private final Supplier<? extends NavigableTree<T>> factory;
+
+    /**
+     * Greatest number of shards
+     */
+    private final int maxShards;
+
+    /**
+     * Least size of a shard which is split or which gives values away
+     */
+    private final int minShardSize;
+
+    /**
+     * The current routing table
+     */
+    private volatile Routing<T> routing;
+
+    /**
+     * Held while the shards are being split or rebalanced
+     */
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+
+    /**
+     * One range of the key space
+     *
+     * @param <T> type of the values
+     */
+    private static final class Shard<T extends Comparable<? super T>> {
+
+        /**
+         * Lock guarding the tree
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The values of the range
+         */
+        private final NavigableTree<T> tree;
+
+        /**
+         * Number of values, written under the lock
+         */
+        private volatile int size;
+
+        /**
+         * Creates a shard
+         *
+         * @param tree the empty tree of the shard
+         */
+        private Shard(NavigableTree<T> tree) {
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * Immutable routing table. The shard i holds the values from bounds[i - 1]
+     * inclusive to bounds[i] exclusive, the first shard has no lower bound and
+     * the last one no upper bound.
+     *
+     * @param <T> type of the values
+     */
+    private static final class Routing<T extends Comparable<? super T>> {
+
+        /**
+         * Lower bounds of the shards except the first one, in ascending order
+         */
+        private final T[] bounds;
+
+        /**
+         * The shards in ascending order of their ranges
+         */
+        private final Shard<T>[] shards;
+
+        /**
+         * Creates a routing table
+         *
+         * @param bounds lower bounds of all shards except the first one
+         * @param shards the shards
+         */
+        private Routing(T[] bounds, Shard<T>[] shards) {
+            this.bounds = bounds;
+            this.shards = shards;
+        }
+
+        /**
+         * Finds the shard of a key by a binary search of the bounds
+         *
+         * @param key the key
+         * @return index of the shard
+         */
+        private int shardOf(T key) {
+            int low = 0;
+            int high = bounds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (key.compareTo(bounds[middle]) >= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Creates a tree of AVL tree shards
+     *
+     * @param shards greatest number of shards
+     * @throws IllegalArgumentException
+     */
+    public ShardedTree(int shards) {
+        this(shards, AVLTree::new);
+    }
+
+    /**
+     * Creates a tree of shards created by the factory
+     *
+     * @param shards greatest number of shards
+     * @param factory creates an empty tree for a new shard
+     * @throws IllegalArgumentException
+     */
+    public ShardedTree(int shards, Supplier<? extends NavigableTree<T>> factory) {
+        this(shards, DEFAULT_MIN_SHARD_SIZE, factory);
+    }
+
+    /**
+     * Creates a tree of shards created by the factory
+     *
+     * @param shards greatest number of shards
+     * @param minShardSize least size of a shard which is split or which gives
+     * values to a neighbour
+     * @param factory creates an empty tree for a new shard
+     * @throws IllegalArgumentException
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedTree(int shards, int minShardSize, Supplier<? extends NavigableTree<T>> factory) {
+        if (shards <= 0 || minShardSize <= 1) {
+            throw new IllegalArgumentException("Shards must be positive and minimal shard size greater than one");
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Factory cannot be null");
+        }
+        this.maxShards = shards;
+        this.minShardSize = minShardSize;
+        this.factory = factory;
+        this.routing = new Routing<>((T[]) new Comparable[0], new Shard[]{new Shard<>(factory.get())});
+    }
+
+    /**
+     * Inserts the value into its shard
+     *
+     * @param value the value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (!add(value)) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Inserts the value into its shard unless the tree already contains it.
+     * A shard which grew too large is split or rebalanced afterwards.
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(T value) {
+        checkKey(value);
+        while (true) {
+            Routing<T> current = routing;
+            int index = current.shardOf(value);
+            Shard<T> shard = current.shards[index];
+            boolean added;
+            int size;
+            shard.lock.lock();
+            try {
+                if (routing != current) {
+                    continue;
+                }
+                added = shard.tree.add(value);
+                size = shard.tree.size();
+                shard.size = size;
+            } finally {
+                shard.lock.unlock();
+            }
+
+            if (added && size >= minShardSize) {
+                rebalance(current, index);
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Deletes the value from its shard
+     *
+     * @param key the value to delete
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T key) {
+        checkKey(key);
+        while (true) {
+            Routing<T> current = routing;
+            Shard<T> shard = current.shards[current.shardOf(key)];
+            shard.lock.lock();
+            try {
+                if (routing != current) {
+                    continue;
+                }
+                shard.tree.delete(key);
+                shard.size = shard.tree.size();
+                return;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the value in its shard
+     *
+     * @param key the key
+     * @return the value equal to the key, null if there is none
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T find(T key) {
+        checkKey(key);
+        while (true) {
+            Routing<T> current = routing;
+            Shard<T> shard = current.shards[current.shardOf(key)];
+            shard.lock.lock();
+            try {
+                if (routing != current) {
+                    continue;
+                }
+                return shard.tree.find(key);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Clears all shards, the split points are kept
+     */
+    @Override
+    public void clear() {
+        rebalanceLock.lock();
+        try {
+            for (Shard<T> shard : routing.shards) {
+                shard.lock.lock();
+                try {
+                    shard.tree.clear();
+                    shard.size = 0;
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if all shards are empty
+     *
+     * @return true if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of values in all shards
+     *
+     * @return size of the tree
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard<T> shard : routing.shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of values in every shard
+     *
+     * @return sizes of the shards in ascending order of their ranges
+     */
+    public int[] shardSizes() {
+        Shard<T>[] shards = routing.shards;
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            sizes[i] = shards[i].size;
+        }
+        return sizes;
+    }
+
+    /**
+     * Finds the minimum, the minimum of the first non-empty shard
+     *
+     * @return the minimum, null if the tree is empty
+     */
+    @Override
+    public T findMin() {
+        return first(false);
+    }
+
+    /**
+     * Finds the maximum, the maximum of the last non-empty shard
+     *
+     * @return the maximum, null if the tree is empty
+     */
+    @Override
+    public T findMax() {
+        return last(false);
+    }
+
+    /**
+     * Removes the minimum of the first non-empty shard
+     *
+     * @return the removed minimum, null if the tree is empty
+     */
+    @Override
+    public T pollMin() {
+        return first(true);
+    }
+
+    /**
+     * Removes the maximum of the last non-empty shard
+     *
+     * @return the removed maximum, null if the tree is empty
+     */
+    @Override
+    public T pollMax() {
+        return last(true);
+    }
+
+    /**
+     * Finds the greatest value less than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T floor(T key) {
+        return below(key, true);
+    }
+
+    /**
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T lower(T key) {
+        return below(key, false);
+    }
+
+    /**
+     * Finds the least value greater than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T ceiling(T key) {
+        return above(key, true);
+    }
+
+    /**
+     * Finds the least value strictly greater than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T higher(T key) {
+        return above(key, false);
+    }
+
+    /**
+     * Iterates over the values in a range across the shards. The values are
+     * copied from each shard in chunks under its lock, the iterator reflects
+     * the updates made after the chunk it is in was copied and never throws
+     * because of them. Removal deletes the last returned value from the tree.
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to iterate from the upper bound to the lower one
+     * @return iterator over the range
+     */
+    @Override
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        return descending
+                ? new ChunkIterator(high, highInclusive, low, lowInclusive, true)
+                : new ChunkIterator(low, lowInclusive, high, highInclusive, false);
+    }
+
+    /**
+     * Finds or removes the least value, visiting the shards in ascending order
+     *
+     * @param remove true to remove the value
+     * @return the least value, null if the tree is empty
+     */
+    private T first(boolean remove) {
+        restart:
+        while (true) {
+            Routing<T> current = routing;
+            for (Shard<T> shard : current.shards) {
+                shard.lock.lock();
+                try {
+                    if (routing != current) {
+                        continue restart;
+                    }
+                    T value = remove ? shard.tree.pollMin() : shard.tree.findMin();
+                    shard.size = shard.tree.size();
+                    if (value != null) {
+                        return value;
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Finds or removes the greatest value, visiting the shards in descending
+     * order
+     *
+     * @param remove true to remove the value
+     * @return the greatest value, null if the tree is empty
+     */
+    private T last(boolean remove) {
+        restart:
+        while (true) {
+            Routing<T> current = routing;
+            for (int i = current.shards.length - 1; i >= 0; i--) {
+                Shard<T> shard = current.shards[i];
+                shard.lock.lock();
+                try {
+                    if (routing != current) {
+                        continue restart;
+                    }
+                    T value = remove ? shard.tree.pollMax() : shard.tree.findMax();
+                    shard.size = shard.tree.size();
+                    if (value != null) {
+                        return value;
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Finds the greatest value below the key, in the shard of the key or in
+     * the nearest non-empty shard before it
+     *
+     * @param key the key
+     * @param inclusive true if the key itself may be returned
+     * @return the value or null if there is no such value
+     */
+    private T below(T key, boolean inclusive) {
+        checkKey(key);
+        restart:
+        while (true) {
+            Routing<T> current = routing;
+            for (int i = current.shardOf(key); i >= 0; i--) {
+                Shard<T> shard = current.shards[i];
+                shard.lock.lock();
+                try {
+                    if (routing != current) {
+                        continue restart;
+                    }
+                    T value = inclusive ? shard.tree.floor(key) : shard.tree.lower(key);
+                    if (value != null) {
+                        return value;
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Finds the least value above the key, in the shard of the key or in the
+     * nearest non-empty shard after it
+     *
+     * @param key the key
+     * @param inclusive true if the key itself may be returned
+     * @return the value or null if there is no such value
+     */
+    private T above(T key, boolean inclusive) {
+        checkKey(key);
+        restart:
+        while (true) {
+            Routing<T> current = routing;
+            for (int i = current.shardOf(key); i < current.shards.length; i++) {
+                Shard<T> shard = current.shards[i];
+                shard.lock.lock();
+                try {
+                    if (routing != current) {
+                        continue restart;
+                    }
+                    T value = inclusive ? shard.tree.ceiling(key) : shard.tree.higher(key);
+                    if (value != null) {
+                        return value;
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Splits a large shard while there are fewer shards than requested,
+     * otherwise merges the smallest pair of neighbours and splits a skewed
+     * shard. If there is no pair smaller than the skewed shard, it moves
+     * values to its smaller neighbour across their split point. Nothing is
+     * done if another thread is already rebalancing.
+     *
+     * @param current routing table the shard was found in
+     * @param index index of the shard which grew
+     */
+    private void rebalance(Routing<T> current, int index) {
+        if (!rebalanceLock.tryLock()) {
+            return;
+        }
+        try {
+            if (routing != current) {
+                return;
+            }
+            Shard<T>[] shards = current.shards;
+            if (shards.length < maxShards) {
+                split(current, index);
+                return;
+            }
+
+            // Compared to the other shards only, with two shards the average
+            // including the skewed one could never be exceeded twice
+            int size = shards[index].size;
+            if (shards.length == 1 || size <= MAX_SKEW * ((long) size() - size) / (shards.length - 1)) {
+                return;
+            }
+
+            int pair = -1;
+            long pairSize = size;
+            for (int i = 0; i < shards.length - 1; i++) {
+                if (i != index && i + 1 != index && (long) shards[i].size + shards[i + 1].size < pairSize) {
+                    pair = i;
+                    pairSize = (long) shards[i].size + shards[i + 1].size;
+                }
+            }
+            if (pair >= 0) {
+                merge(current, pair);
+                split(routing, pair < index ? index - 1 : index);
+                return;
+            }
+
+            boolean down = index == shards.length - 1
+                    || (index > 0 && shards[index - 1].size <= shards[index + 1].size);
+            if (down) {
+                move(current, index - 1, false, (size - shards[index - 1].size) / 2);
+            } else {
+                move(current, index, true, (size - shards[index + 1].size) / 2);
+            }
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Splits a shard in the middle, moving its upper half to a new shard
+     *
+     * @param current the routing table
+     * @param index index of the shard
+     */
+    @SuppressWarnings("unchecked")
+    private void split(Routing<T> current, int index) {
+        Shard<T> shard = current.shards[index];
+        Shard<T> upper = new Shard<>(factory.get());
+        shard.lock.lock();
+        try {
+            T bound = null;
+            for (int i = shard.tree.size() / 2; i > 0; i--) {
+                bound = shard.tree.pollMax();
+                upper.tree.add(bound);
+            }
+            shard.size = shard.tree.size();
+            upper.size = upper.tree.size();
+
+            int count = current.shards.length;
+            Shard<T>[] shards = new Shard[count + 1];
+            System.arraycopy(current.shards, 0, shards, 0, index + 1);
+            shards[index + 1] = upper;
+            System.arraycopy(current.shards, index + 1, shards, index + 2, count - index - 1);
+            T[] bounds = (T[]) new Comparable[count];
+            System.arraycopy(current.bounds, 0, bounds, 0, index);
+            bounds[index] = bound;
+            System.arraycopy(current.bounds, index, bounds, index + 1, count - 1 - index);
+            routing = new Routing<>(bounds, shards);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Merges two neighbouring shards, moving the values of the smaller one to
+     * the larger one
+     *
+     * @param current the routing table
+     * @param index index of the lower of the two shards
+     */
+    @SuppressWarnings("unchecked")
+    private void merge(Routing<T> current, int index) {
+        Shard<T> lower = current.shards[index];
+        Shard<T> upper = current.shards[index + 1];
+        lower.lock.lock();
+        upper.lock.lock();
+        try {
+            Shard<T> kept;
+            if (lower.tree.size() >= upper.tree.size()) {
+                for (T value = upper.tree.pollMin(); value != null; value = upper.tree.pollMin()) {
+                    lower.tree.add(value);
+                }
+                kept = lower;
+            } else {
+                for (T value = lower.tree.pollMax(); value != null; value = lower.tree.pollMax()) {
+                    upper.tree.add(value);
+                }
+                kept = upper;
+            }
+            lower.size = lower.tree.size();
+            upper.size = upper.tree.size();
+
+            // The merged shard keeps the lower bound of the lower shard
+            int count = current.shards.length;
+            Shard<T>[] shards = new Shard[count - 1];
+            System.arraycopy(current.shards, 0, shards, 0, index);
+            shards[index] = kept;
+            System.arraycopy(current.shards, index + 2, shards, index + 1, count - index - 2);
+            T[] bounds = (T[]) new Comparable[count - 2];
+            System.arraycopy(current.bounds, 0, bounds, 0, index);
+            System.arraycopy(current.bounds, index + 1, bounds, index, count - index - 2);
+            routing = new Routing<>(bounds, shards);
+        } finally {
+            upper.lock.unlock();
+            lower.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves values across the split point between two neighbouring shards
+     *
+     * @param current the routing table
+     * @param index index of the lower of the two shards
+     * @param up true to move the greatest values of the lower shard up,
+     * false to move the least values of the upper shard down
+     * @param count number of values to move
+     */
+    private void move(Routing<T> current, int index, boolean up, int count) {
+        if (count <= 0) {
+            return;
+        }
+        Shard<T> lower = current.shards[index];
+        Shard<T> upper = current.shards[index + 1];
+        lower.lock.lock();
+        upper.lock.lock();
+        try {
+            T bound;
+            if (up) {
+                bound = null;
+                for (int i = 0; i < count; i++) {
+                    bound = lower.tree.pollMax();
+                    upper.tree.add(bound);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    lower.tree.add(upper.tree.pollMin());
+                }
+                bound = upper.tree.findMin();
+            }
+            lower.size = lower.tree.size();
+            upper.size = upper.tree.size();
+
+            T[] bounds = Arrays.copyOf(current.bounds, current.bounds.length);
+            bounds[index] = bound;
+            routing = new Routing<>(bounds, current.shards);
+        } finally {
+            upper.lock.unlock();
+            lower.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks a key
+     *
+     * @param key the key
+     * @throws IllegalArgumentException if the key is null
+     */
+    private void checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+    }
+
+    /**
+     * Iterator which copies the values of a range from one shard at a time
+     */
+    private class ChunkIterator implements Iterator<T> {
+
+        /**
+         * End of the range in the direction of the iteration, null if there
+         * is none
+         */
+        private final T end;
+        private final boolean endInclusive;
+        private final boolean descending;
+
+        /**
+         * The copied values which were not returned yet
+         */
+        private final List<T> chunk = new ArrayList<>(CHUNK);
+        private int position;
+
+        /**
+         * Where the next chunk starts, null at the start of the key space
+         */
+        private T from;
+        private boolean fromInclusive;
+
+        /**
+         * True when the whole range was copied
+         */
+        private boolean exhausted;
+        private T last;
+
+        ChunkIterator(T start, boolean startInclusive, T end, boolean endInclusive, boolean descending) {
+            this.end = end;
+            this.endInclusive = endInclusive;
+            this.descending = descending;
+            this.from = start;
+            this.fromInclusive = startInclusive;
+            fill();
+        }
+
+        /**
+         * Copies the next chunk, moving on to the next shards while they have
+         * nothing in the range
+         */
+        private void fill() {
+            chunk.clear();
+            position = 0;
+            restart:
+            while (!exhausted) {
+                Routing<T> current = routing;
+                int index = from == null ? (descending ? current.shards.length - 1 : 0) : current.shardOf(from);
+                for (; index >= 0 && index < current.shards.length; index += descending ? -1 : 1) {
+                    Shard<T> shard = current.shards[index];
+                    shard.lock.lock();
+                    try {
+                        if (routing != current) {
+                            continue restart;
+                        }
+                        Iterator<T> iterator = descending
+                                ? shard.tree.iterator(end, endInclusive, from, fromInclusive, true)
+                                : shard.tree.iterator(from, fromInclusive, end, endInclusive, false);
+                        while (chunk.size() < CHUNK && iterator.hasNext()) {
+                            chunk.add(iterator.next());
+                        }
+                        if (!chunk.isEmpty()) {
+                            from = chunk.get(chunk.size() - 1);
+                            fromInclusive = false;
+                            return;
+                        }
+                    } finally {
+                        shard.lock.unlock();
+                    }
+                    if (!continues(current, index)) {
+                        break;
+                    }
+                }
+                exhausted = true;
+            }
+        }
+
+        /**
+         * Checks whether the range goes on beyond a shard
+         *
+         * @param current the routing table
+         * @param index index of the shard
+         * @return true if the next shard in the direction of the iteration
+         * may hold values of the range
+         */
+        private boolean continues(Routing<T> current, int index) {
+            if (end == null) {
+                return true;
+            }
+            if (descending) {
+                return index > 0 && end.compareTo(current.bounds[index - 1]) < 0;
+            }
+            return index < current.bounds.length && end.compareTo(current.bounds[index]) >= 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position == chunk.size() && !exhausted) {
+                fill();
+            }
+            return position < chunk.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = chunk.get(position++);
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            delete(last);
+            last = null;
+        }
+    }
+}
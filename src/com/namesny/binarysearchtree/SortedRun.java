@@ -0,0 +1,579 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import com.namesny.binarysearchtree.LSMTree.Entry;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable file of entries of an {@link LSMTree} sorted by value. The
+ * entries are written in blocks of {@link #BLOCK_SIZE}, the first value and
+ * the offset of every block form a sparse index kept in memory together with
+ * a Bloom filter of all the values, so a lookup reads at most one block and
+ * a lookup of an absent value usually reads nothing.
+ *
+ * The file consists of a header with the range of sequence numbers of the
+ * memtables the run was made from, the blocks, the index, the Bloom filter
+ * and a trailer with the number of entries and the offset of the index. A
+ * run is written to a temporary file which is renamed when complete, so a
+ * run file is never seen half written.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ */
+final class SortedRun<T extends Comparable<? super T>> implements Closeable {
+
+    /**
+     * Number of entries in a block
+     */
+    static final int BLOCK_SIZE = 32;
+
+    /**
+     * Expected false positive rate of the Bloom filter
+     */
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Magic number at the start and the end of a run file
+     */
+    private static final int MAGIC = 0x4C534D52;
+
+    /**
+     * Version of the file format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * Size of the trailer
+     */
+    private static final int TRAILER_SIZE = 16;
+
+    /**
+     * Path of the file
+     */
+    private final Path path;
+
+    /**
+     * Codec of the values
+     */
+    private final ValueCodec<T> codec;
+
+    /**
+     * The open file, reads are synchronized on it
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Lowest sequence number of the memtables in the run
+     */
+    private final long minSequence;
+
+    /**
+     * Highest sequence number of the memtables in the run
+     */
+    private final long maxSequence;
+
+    /**
+     * Number of entries
+     */
+    private final int size;
+
+    /**
+     * First value of every block
+     */
+    private final T[] firstValues;
+
+    /**
+     * Offset of every block and the end of the last block
+     */
+    private final long[] offsets;
+
+    /**
+     * Bloom filter of all the values
+     */
+    private final BloomFilter<T> bloomFilter;
+
+    /**
+     * Number of references to the run, one of the tree while the run is live
+     * and one of every lookup, scan or compaction reading it. Guarded by the
+     * lock of the tree, the run is deleted when it drops to zero.
+     */
+    int references = 1;
+
+    /**
+     * Creates a run of an open file
+     */
+    private SortedRun(Path path, ValueCodec<T> codec, RandomAccessFile file, long minSequence, long maxSequence,
+            int size, T[] firstValues, long[] offsets, BloomFilter<T> bloomFilter) {
+        this.path = path;
+        this.codec = codec;
+        this.file = file;
+        this.minSequence = minSequence;
+        this.maxSequence = maxSequence;
+        this.size = size;
+        this.firstValues = firstValues;
+        this.offsets = offsets;
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * Writes entries to a new run file and opens it
+     *
+     * @param <T> type of the values
+     * @param path path of the file
+     * @param codec codec of the values
+     * @param minSequence lowest sequence number of the memtables in the run
+     * @param maxSequence highest sequence number of the memtables in the run
+     * @param entries the entries in ascending order
+     * @param capacity upper bound of the number of entries
+     * @return the run or null if there were no entries
+     * @throws IOException
+     */
+    static <T extends Comparable<? super T>> SortedRun<T> write(Path path, ValueCodec<T> codec,
+            long minSequence, long maxSequence, Iterator<Entry<T>> entries, int capacity) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        BloomFilter<T> filter = new BloomFilter<>(Math.max(capacity, 1), BLOOM_FALSE_POSITIVE_RATE);
+        List<T> firstValues = new ArrayList<>();
+        long[] offsets = new long[16];
+        int size = 0;
+
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            DataOutputStream out = new DataOutputStream(counter);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(minSequence);
+            out.writeLong(maxSequence);
+
+            while (entries.hasNext()) {
+                Entry<T> entry = entries.next();
+                if (size % BLOCK_SIZE == 0) {
+                    int block = size / BLOCK_SIZE;
+                    if (block == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, block * 2);
+                    }
+                    offsets[block] = counter.count;
+                    firstValues.add(entry.value);
+                }
+                out.writeBoolean(entry.deleted);
+                codec.write(out, entry.value);
+                filter.add(entry.value);
+                size++;
+            }
+
+            long indexOffset = counter.count;
+            out.writeInt(firstValues.size());
+            for (int i = 0; i < firstValues.size(); i++) {
+                out.writeLong(offsets[i]);
+                codec.write(out, firstValues.get(i));
+            }
+            filter.writeTo(out);
+            out.writeInt(size);
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (size == 0) {
+            Files.delete(temp);
+            return null;
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path, codec);
+    }
+
+    /**
+     * Opens a run file and reads its index and Bloom filter
+     *
+     * @param <T> type of the values
+     * @param path path of the file
+     * @param codec codec of the values
+     * @return the run
+     * @throws IOException if the file cannot be read or is not a run file
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Comparable<? super T>> SortedRun<T> open(Path path, ValueCodec<T> codec) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+        try {
+            long length = file.length();
+            if (length < HEADER_SIZE + TRAILER_SIZE || file.readInt() != MAGIC) {
+                throw new IOException("Not a run file " + path);
+            }
+            if (file.readInt() != VERSION) {
+                throw new IOException("Unsupported version of run file " + path);
+            }
+            long minSequence = file.readLong();
+            long maxSequence = file.readLong();
+
+            file.seek(length - TRAILER_SIZE);
+            int size = file.readInt();
+            long indexOffset = file.readLong();
+            if (file.readInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > length - TRAILER_SIZE) {
+                throw new IOException("Corrupted run file " + path);
+            }
+
+            byte[] index = new byte[(int) (length - TRAILER_SIZE - indexOffset)];
+            file.seek(indexOffset);
+            file.readFully(index);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+            int blocks = in.readInt();
+            if (blocks != (size + BLOCK_SIZE - 1) / BLOCK_SIZE) {
+                throw new IOException("Corrupted run file " + path);
+            }
+            T[] firstValues = (T[]) new Comparable[blocks];
+            long[] offsets = new long[blocks + 1];
+            for (int i = 0; i < blocks; i++) {
+                offsets[i] = in.readLong();
+                firstValues[i] = codec.read(in);
+            }
+            offsets[blocks] = indexOffset;
+            BloomFilter<T> filter = BloomFilter.readFrom(in);
+
+            return new SortedRun<>(path, codec, file, minSequence, maxSequence, size, firstValues, offsets, filter);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the entry of a value
+     *
+     * @param key the value
+     * @return the entry or null if the run has no entry of the value
+     * @throws IOException
+     */
+    Entry<T> find(T key) throws IOException {
+        if (!bloomFilter.mightContain(key)) {
+            return null;
+        }
+
+        int block = blockOf(key);
+        if (block >= 0) {
+            for (Entry<T> entry : readBlock(block)) {
+                int cmp = entry.value.compareTo(key);
+                if (cmp == 0) {
+                    return entry;
+                }
+                if (cmp > 0) {
+                    break;
+                }
+            }
+        }
+        bloomFilter.recordFalsePositive();
+        return null;
+    }
+
+    /**
+     * Returns an iterator of the entries in a range, a null bound is
+     * unbounded. The iterator throws {@link UncheckedIOException} if a block
+     * cannot be read.
+     *
+     * @param low the lower bound
+     * @param lowInclusive true if the lower bound is in the range
+     * @param high the upper bound
+     * @param highInclusive true if the upper bound is in the range
+     * @param descending true to iterate in descending order
+     * @return the iterator
+     */
+    Iterator<Entry<T>> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        return new RunIterator(low, lowInclusive, high, highInclusive, descending);
+    }
+
+    /**
+     * Returns the path of the file
+     *
+     * @return the path
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Returns the lowest sequence number of the memtables in the run
+     *
+     * @return the sequence number
+     */
+    long minSequence() {
+        return minSequence;
+    }
+
+    /**
+     * Returns the highest sequence number of the memtables in the run
+     *
+     * @return the sequence number
+     */
+    long maxSequence() {
+        return maxSequence;
+    }
+
+    /**
+     * Returns the number of entries including deletions
+     *
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the Bloom filter of the run
+     *
+     * @return the filter
+     */
+    BloomFilter<T> getBloomFilter() {
+        return bloomFilter;
+    }
+
+    /**
+     * Closes and deletes the file
+     *
+     * @throws IOException
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Closes the file
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (file) {
+            file.close();
+        }
+    }
+
+    /**
+     * Returns the last block whose first value is not greater than a value
+     *
+     * @param key the value
+     * @return index of the block or -1 if the value precedes all blocks
+     */
+    private int blockOf(T key) {
+        int low = 0;
+        int high = firstValues.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (firstValues[middle].compareTo(key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Reads and decodes a block
+     *
+     * @param block index of the block
+     * @return the entries of the block
+     * @throws IOException
+     */
+    private List<Entry<T>> readBlock(int block) throws IOException {
+        byte[] bytes = new byte[(int) (offsets[block + 1] - offsets[block])];
+        synchronized (file) {
+            file.seek(offsets[block]);
+            file.readFully(bytes);
+        }
+
+        int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        List<Entry<T>> entries = new ArrayList<>(count);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < count; i++) {
+            boolean deleted = in.readBoolean();
+            entries.add(new Entry<>(codec.read(in), deleted));
+        }
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName() + " size=" + size + " blocks=" + firstValues.length;
+    }
+
+    /**
+     * Output stream counting the bytes written
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private class RunIterator implements Iterator<Entry<T>> {
+
+        private final T low;
+        private final boolean lowInclusive;
+        private final T high;
+        private final boolean highInclusive;
+        private final boolean descending;
+        private List<Entry<T>> entries;
+        private int block;
+        private int index;
+        private Entry<T> next;
+
+        RunIterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.descending = descending;
+
+            if (descending) {
+                block = high == null ? firstValues.length - 1 : blockOf(high);
+                if (block < 0) {
+                    return;
+                }
+                entries = read(block);
+                index = entries.size() - 1;
+                while (index >= 0 && aboveHigh(entries.get(index).value)) {
+                    index--;
+                }
+            } else {
+                block = low == null ? 0 : Math.max(0, blockOf(low));
+                entries = read(block);
+                index = 0;
+                while (index < entries.size() && belowLow(entries.get(index).value)) {
+                    index++;
+                }
+            }
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            if (descending) {
+                while (index < 0) {
+                    if (--block < 0) {
+                        return;
+                    }
+                    entries = read(block);
+                    index = entries.size() - 1;
+                }
+                Entry<T> entry = entries.get(index--);
+                if (!belowLow(entry.value)) {
+                    next = entry;
+                }
+            } else {
+                while (index >= entries.size()) {
+                    if (++block >= firstValues.length) {
+                        return;
+                    }
+                    entries = read(block);
+                    index = 0;
+                }
+                Entry<T> entry = entries.get(index++);
+                if (!aboveHigh(entry.value)) {
+                    next = entry;
+                }
+            }
+        }
+
+        private boolean belowLow(T value) {
+            if (low == null) {
+                return false;
+            }
+            int cmp = value.compareTo(low);
+            return cmp < 0 || (cmp == 0 && !lowInclusive);
+        }
+
+        private boolean aboveHigh(T value) {
+            if (high == null) {
+                return false;
+            }
+            int cmp = value.compareTo(high);
+            return cmp > 0 || (cmp == 0 && !highInclusive);
+        }
+
+        private List<Entry<T>> read(int block) {
+            try {
+                return readBlock(block);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<T> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<T> entry = next;
+            advance();
+            return entry;
+        }
+    }
+}
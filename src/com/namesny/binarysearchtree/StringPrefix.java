@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Order-preserving 8-byte prefix of a String. Eight characters from the
+ * given offset are packed into a long, one byte each, so that comparing two
+ * prefixes as unsigned longs orders the strings like String.compareTo unless
+ * the prefixes are equal. Equal prefixes tell nothing and the strings have to
+ * be compared in full.
+ *
+ * A character which does not fit into a byte saturates its byte and all the
+ * following ones, because the characters after it no longer decide the order
+ * on their own. A string which ends before eight characters is padded with
+ * zero bytes.
+ *
+ * @author Matúš Námešný
+ */
+final class StringPrefix {
+
+    /**
+     * Number of characters packed into a prefix
+     */
+    static final int LENGTH = 8;
+
+    private StringPrefix() {
+    }
+
+    /**
+     * A key being looked up with its prefix computed once, so that every
+     * level of the search compares only two longs unless the prefixes tie
+     */
+    static final class Key {
+
+        /**
+         * The key
+         */
+        final String value;
+
+        /**
+         * Order of the key against every value of the tree when it does not
+         * start with the common prefix, zero when it does
+         */
+        final int order;
+
+        /**
+         * Prefix of the key after the common prefix
+         */
+        final long prefix;
+
+        /**
+         * Computes the prefix of the key
+         *
+         * @param value the key
+         * @param commonPrefix the prefix shared by all the values
+         */
+        Key(String value, String commonPrefix) {
+            this.value = value;
+            if (value.startsWith(commonPrefix)) {
+                this.order = 0;
+                this.prefix = of(value, commonPrefix.length());
+            } else {
+                this.order = value.compareTo(commonPrefix);
+                this.prefix = 0;
+            }
+        }
+
+        /**
+         * Compares the key with the value of a node using the prefixes first
+         *
+         * @param other the value of the node
+         * @param otherPrefix the prefix of the value
+         * @return negative, zero or positive as the key is less than, equal
+         * to or greater than the value
+         */
+        int compare(String other, long otherPrefix) {
+            if (order != 0) {
+                return order;
+            }
+            int cmp = Long.compareUnsigned(prefix, otherPrefix);
+            return cmp != 0 ? cmp : value.compareTo(other);
+        }
+    }
+
+    /**
+     * Computes the prefix of the string
+     *
+     * @param value the string
+     * @param offset index of the first character of the prefix
+     * @return the prefix
+     */
+    static long of(String value, int offset) {
+        long prefix = 0;
+        int end = Math.min(value.length(), offset + LENGTH);
+        int i = offset;
+
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= 0xFF) {
+                // Saturate this and all the following bytes
+                int shift = (LENGTH - (i - offset)) * 8;
+                return shift == 64 ? -1L : prefix << shift | ((1L << shift) - 1);
+            }
+            prefix = prefix << 8 | c;
+        }
+
+        // Pad with zero bytes
+        int shift = (LENGTH - (i - offset)) * 8;
+        return shift == 64 ? 0 : prefix << shift;
+    }
+
+    /**
+     * Compares a key with the value of a node using the prefix of the node
+     * first. All the values in the tree start with the common prefix, a key
+     * which does not start with it orders the same way against every value.
+     * The key is checked and packed on every call, a search should prepare a
+     * {@link Key} once instead.
+     *
+     * @param key the key being looked up
+     * @param commonPrefix the prefix shared by all the values
+     * @param value the value of the node
+     * @param prefix the prefix of the value
+     * @return negative, zero or positive as the key is less than, equal to or
+     * greater than the value
+     */
+    static int compare(String key, String commonPrefix, String value, long prefix) {
+        if (!key.startsWith(commonPrefix)) {
+            return key.compareTo(commonPrefix);
+        }
+
+        int cmp = Long.compareUnsigned(of(key, commonPrefix.length()), prefix);
+        return cmp != 0 ? cmp : key.compareTo(value);
+    }
+}
@@ -0,0 +1,876 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * AVL tree which reuses its empty child links as threads. An empty left link
+ * points to the in-order predecessor of the node and an empty right link to
+ * its successor, the links at both ends of the tree are null. Moving to the
+ * next or previous value therefore needs neither a stack nor parent pointers,
+ * a full traversal visits every link at most twice and allocates nothing.
+ *
+ * http://en.wikipedia.org/wiki/Threaded_binary_tree
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class ThreadedAVLTree<T extends Comparable<? super T>> implements NavigableTree<T> {
+
+    /**
+     * Tree root
+     */
+    protected ThreadedAVLNode<T> root;
+
+    /**
+     * Number of nodes in the tree
+     */
+    protected int size;
+
+    /**
+     * Set by the last insert if the tree already contained the value
+     */
+    private boolean duplicate;
+
+    public ThreadedAVLTree() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * This class represents a node of a threaded AVL tree
+     *
+     * @param <T>
+     */
+    protected static class ThreadedAVLNode<T extends Comparable<? super T>> {
+
+        /**
+         * Node value
+         */
+        protected T value;
+
+        /**
+         * Height of the node
+         */
+        protected int height;
+
+        /**
+         * Left child, or the predecessor if leftThread is set
+         */
+        protected ThreadedAVLNode<T> left;
+
+        /**
+         * Right child, or the successor if rightThread is set
+         */
+        protected ThreadedAVLNode<T> right;
+
+        /**
+         * True if the left link is a thread and not a child
+         */
+        protected boolean leftThread;
+
+        /**
+         * True if the right link is a thread and not a child
+         */
+        protected boolean rightThread;
+
+        /**
+         * Creates a leaf node
+         *
+         * @param value the value of this node
+         * @param predecessor the in-order predecessor, null if there is none
+         * @param successor the in-order successor, null if there is none
+         */
+        public ThreadedAVLNode(T value, ThreadedAVLNode<T> predecessor, ThreadedAVLNode<T> successor) {
+            this.value = value;
+            this.left = predecessor;
+            this.right = successor;
+            this.leftThread = true;
+            this.rightThread = true;
+        }
+    }
+
+    /**
+     * Inserts the value to the tree and re-balances it if necessary
+     *
+     * @param value the value to insert
+     * @throws DuplicateValueException
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        if (!add(value)) {
+            throw new DuplicateValueException("Duplicate value: " + value);
+        }
+    }
+
+    /**
+     * Inserts the value to the tree unless it already contains it
+     *
+     * @param value the value to insert
+     * @return true if the value was inserted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public boolean add(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        if (root == null) {
+            root = new ThreadedAVLNode<>(value, null, null);
+            size++;
+            return true;
+        }
+
+        duplicate = false;
+        root = insert(value, root);
+        if (duplicate) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Deletes the value from the tree
+     *
+     * @param value the value to be deleted
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public void delete(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (root != null) {
+            root = delete(value, root);
+        }
+    }
+
+    /**
+     * Finds object equal to key in the tree
+     *
+     * @param key
+     * @return returns the object equal to key
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T find(T key) {
+        ThreadedAVLNode<T> node = findNode(checkKey(key));
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Clears the tree
+     */
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * True if the tree is empty
+     *
+     * @return returns true if the tree is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the number of values in the tree
+     *
+     * @return size of the tree
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree, the number of nodes on the longest path
+     * from the root to a leaf
+     *
+     * @return height of the tree, zero if the tree is empty
+     */
+    public int height() {
+        return getHeight(root) + 1;
+    }
+
+    /**
+     * Checks the tree invariants: values are ordered, every thread points to
+     * the in-order neighbour, heights stored in the nodes are correct, every
+     * node is balanced and the size matches the number of nodes. The tree is
+     * walked along the threads so this is safe for trees of any size.
+     *
+     * @throws IllegalStateException if an invariant is violated
+     */
+    public void verify() {
+        ThreadedAVLNode<T> previous = null;
+        int count = 0;
+
+        for (ThreadedAVLNode<T> node = first(); node != null; node = successor(node)) {
+            if (++count > size) {
+                throw new IllegalStateException("Tree has more nodes than its size " + size);
+            }
+            if (previous != null && previous.value.compareTo(node.value) >= 0) {
+                throw new IllegalStateException("Values out of order: " + previous.value + ", " + node.value);
+            }
+            if (node.leftThread && node.left != previous) {
+                throw new IllegalStateException("Left thread of node " + node.value + " is wrong");
+            }
+            if (previous != null && previous.rightThread && previous.right != node) {
+                throw new IllegalStateException("Right thread of node " + previous.value + " is wrong");
+            }
+            if (node.height != 1 + Math.max(getHeight(leftChild(node)), getHeight(rightChild(node)))) {
+                throw new IllegalStateException("Wrong height of node " + node.value);
+            }
+            if (Math.abs(getHeight(rightChild(node)) - getHeight(leftChild(node))) > 1) {
+                throw new IllegalStateException("Node " + node.value + " is not balanced");
+            }
+            previous = node;
+        }
+
+        if (previous != null && (!previous.rightThread || previous.right != null)) {
+            throw new IllegalStateException("Right thread of the maximum is wrong");
+        }
+        if (count != size) {
+            throw new IllegalStateException("Tree has " + count + " nodes but its size is " + size);
+        }
+    }
+
+    /**
+     * Finds minimal value in the tree
+     *
+     * @return minimum, null if the tree is empty
+     */
+    @Override
+    public T findMin() {
+        return valueOf(first());
+    }
+
+    /**
+     * Finds maximal value in the tree
+     *
+     * @return maximum, null if the tree is empty
+     */
+    @Override
+    public T findMax() {
+        return valueOf(last());
+    }
+
+    /**
+     * Removes the minimum from the tree
+     *
+     * @return the removed minimum, null if the tree is empty
+     */
+    @Override
+    public T pollMin() {
+        T value = findMin();
+        if (value != null) {
+            root = delete(value, root);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the maximum from the tree
+     *
+     * @return the removed maximum, null if the tree is empty
+     */
+    @Override
+    public T pollMax() {
+        T value = findMax();
+        if (value != null) {
+            root = delete(value, root);
+        }
+        return value;
+    }
+
+    /**
+     * Performs the action for every value in ascending order. The walk
+     * follows the threads and allocates nothing.
+     *
+     * @param action the action to perform
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        for (ThreadedAVLNode<T> node = first(); node != null; node = successor(node)) {
+            action.accept(node.value);
+        }
+    }
+
+    /**
+     * Finds the greatest value less than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T floor(T key) {
+        return valueOf(floorNode(checkKey(key), true));
+    }
+
+    /**
+     * Finds the least value greater than or equal to the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T ceiling(T key) {
+        return valueOf(ceilingNode(checkKey(key), true));
+    }
+
+    /**
+     * Finds the greatest value strictly less than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T lower(T key) {
+        return valueOf(floorNode(checkKey(key), false));
+    }
+
+    /**
+     * Finds the least value strictly greater than the key
+     *
+     * @param key the key
+     * @return the value or null if there is no such value
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T higher(T key) {
+        return valueOf(ceilingNode(checkKey(key), false));
+    }
+
+    /**
+     * Iterates over the values in a range along the threads. The iterator
+     * holds only the next node, removing a value through it costs one search
+     * to find the position again.
+     *
+     * @param low the lower bound of the range, null for no lower bound
+     * @param lowInclusive true if the lower bound is part of the range
+     * @param high the upper bound of the range, null for no upper bound
+     * @param highInclusive true if the upper bound is part of the range
+     * @param descending true to iterate from the upper bound to the lower one
+     * @return iterator over the range
+     */
+    @Override
+    public Iterator<T> iterator(T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        if (descending) {
+            return new RangeIterator(high, highInclusive, low, lowInclusive, true);
+        }
+        return new RangeIterator(low, lowInclusive, high, highInclusive, false);
+    }
+
+    /**
+     * Checks the key of a navigation method
+     *
+     * @param key the key
+     * @return the key
+     * @throws IllegalArgumentException
+     */
+    private T checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return key;
+    }
+
+    /**
+     * Returns the value of a node
+     *
+     * @param node the node or null
+     * @return the value of the node, null if there is no node
+     */
+    private T valueOf(ThreadedAVLNode<T> node) {
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Returns the left child of a node
+     *
+     * @param node the node
+     * @return the left child, null if the left link is a thread
+     */
+    private ThreadedAVLNode<T> leftChild(ThreadedAVLNode<T> node) {
+        return node.leftThread ? null : node.left;
+    }
+
+    /**
+     * Returns the right child of a node
+     *
+     * @param node the node
+     * @return the right child, null if the right link is a thread
+     */
+    private ThreadedAVLNode<T> rightChild(ThreadedAVLNode<T> node) {
+        return node.rightThread ? null : node.right;
+    }
+
+    /**
+     * Finds the node with the minimal value
+     *
+     * @return the node, null if the tree is empty
+     */
+    protected ThreadedAVLNode<T> first() {
+        return root == null ? null : findMin(root);
+    }
+
+    /**
+     * Finds the node with the maximal value
+     *
+     * @return the node, null if the tree is empty
+     */
+    protected ThreadedAVLNode<T> last() {
+        return root == null ? null : findMax(root);
+    }
+
+    /**
+     * Finds minimum in the given subtree
+     *
+     * @param node root of the subtree
+     * @return node with minimal value
+     */
+    private ThreadedAVLNode<T> findMin(ThreadedAVLNode<T> node) {
+        while (!node.leftThread) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+     * Finds maximum in the given subtree
+     *
+     * @param node root of the subtree
+     * @return node with maximal value
+     */
+    private ThreadedAVLNode<T> findMax(ThreadedAVLNode<T> node) {
+        while (!node.rightThread) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * Finds the in-order successor of a node, either along its thread or as
+     * the minimum of its right subtree
+     *
+     * @param node the node
+     * @return the successor, null if the node holds the maximum
+     */
+    protected ThreadedAVLNode<T> successor(ThreadedAVLNode<T> node) {
+        return node.rightThread ? node.right : findMin(node.right);
+    }
+
+    /**
+     * Finds the in-order predecessor of a node, either along its thread or as
+     * the maximum of its left subtree
+     *
+     * @param node the node
+     * @return the predecessor, null if the node holds the minimum
+     */
+    protected ThreadedAVLNode<T> predecessor(ThreadedAVLNode<T> node) {
+        return node.leftThread ? node.left : findMax(node.left);
+    }
+
+    /**
+     * Finds the node which value equals to the key
+     *
+     * @param key the key to find
+     * @return the node equal to the key or null if there is no such node
+     */
+    protected ThreadedAVLNode<T> findNode(T key) {
+        ThreadedAVLNode<T> node = root;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.value);
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? leftChild(node) : rightChild(node);
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the node with the greatest value less than (or equal to) the key
+     *
+     * @param key the key
+     * @param inclusive true if a node equal to the key may be returned
+     * @return the node or null if there is no such node
+     */
+    protected ThreadedAVLNode<T> floorNode(T key, boolean inclusive) {
+        ThreadedAVLNode<T> node = root;
+        ThreadedAVLNode<T> best = null;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.value);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp > 0) {
+                best = node;
+                node = rightChild(node);
+            } else {
+                node = leftChild(node);
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Finds the node with the least value greater than (or equal to) the key
+     *
+     * @param key the key
+     * @param inclusive true if a node equal to the key may be returned
+     * @return the node or null if there is no such node
+     */
+    protected ThreadedAVLNode<T> ceilingNode(T key, boolean inclusive) {
+        ThreadedAVLNode<T> node = root;
+        ThreadedAVLNode<T> best = null;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.value);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp < 0) {
+                best = node;
+                node = leftChild(node);
+            } else {
+                node = rightChild(node);
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Helper method for inserting values into the tree. The new leaf takes
+     * over the thread of its parent on the side where it is inserted and
+     * threads back to the parent on the other side.
+     *
+     * @param value the value to insert
+     * @param node the root of a non-empty subtree where the value will be
+     * inserted
+     * @return the new tree with the value inserted
+     */
+    private ThreadedAVLNode<T> insert(T value, ThreadedAVLNode<T> node) {
+        int cmp = value.compareTo(node.value);
+        if (cmp < 0) {
+            if (node.leftThread) {
+                node.left = new ThreadedAVLNode<>(value, node.left, node);
+                node.leftThread = false;
+            } else {
+                node.left = insert(value, node.left);
+            }
+
+        } else if (cmp > 0) {
+            if (node.rightThread) {
+                node.right = new ThreadedAVLNode<>(value, node, node.right);
+                node.rightThread = false;
+            } else {
+                node.right = insert(value, node.right);
+            }
+
+        } else {
+            // The tree already contains the value
+            duplicate = true;
+            return node;
+        }
+
+        return rebalance(node);
+    }
+
+    /**
+     * Helper method for deleting values from the tree
+     *
+     * @param value the value to delete
+     * @param node the root of a non-empty subtree from which the value will be
+     * deleted
+     * @return the new subtree, null if it became empty
+     */
+    private ThreadedAVLNode<T> delete(T value, ThreadedAVLNode<T> node) {
+        int cmp = value.compareTo(node.value);
+
+        if (cmp < 0) {
+            if (node.leftThread) {
+                return node;
+            }
+            ThreadedAVLNode<T> child = node.left;
+            ThreadedAVLNode<T> subtree = delete(value, child);
+            if (subtree == null) {
+                // The child was a leaf, its predecessor is ours too
+                node.left = child.left;
+                node.leftThread = true;
+            } else {
+                node.left = subtree;
+            }
+
+        } else if (cmp > 0) {
+            if (node.rightThread) {
+                return node;
+            }
+            ThreadedAVLNode<T> child = node.right;
+            ThreadedAVLNode<T> subtree = delete(value, child);
+            if (subtree == null) {
+                // The child was a leaf, its successor is ours too
+                node.right = child.right;
+                node.rightThread = true;
+            } else {
+                node.right = subtree;
+            }
+
+        } else if (node.leftThread && node.rightThread) {
+            size--;
+            return null;
+
+        } else if (node.leftThread) {
+            // The minimum of the right subtree threads back to this node
+            size--;
+            findMin(node.right).left = node.left;
+            return node.right;
+
+        } else if (node.rightThread) {
+            // The maximum of the left subtree threads forward to this node
+            size--;
+            findMax(node.left).right = node.right;
+            return node.left;
+
+        } else {
+            /* The successor is moved here, so the threads pointing to this
+             * node stay valid and the thread of the new minimum of the right
+             * subtree is inherited from the removed successor.
+             */
+            ThreadedAVLNode<T> successor = findMin(node.right);
+            node.value = successor.value;
+            ThreadedAVLNode<T> subtree = delete(successor.value, node.right);
+            if (subtree == null) {
+                node.right = successor.right;
+                node.rightThread = true;
+            } else {
+                node.right = subtree;
+            }
+        }
+
+        return rebalance(node);
+    }
+
+    /**
+     * Updates the height of a node
+     *
+     * @param node node which height we need updating
+     */
+    private void updateHeight(ThreadedAVLNode<T> node) {
+        node.height = 1 + Math.max(getHeight(leftChild(node)), getHeight(rightChild(node)));
+    }
+
+    /**
+     * Returns the height of a node
+     *
+     * @param node node which height we need
+     * @return the height of a node
+     */
+    private int getHeight(ThreadedAVLNode<T> node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * Checks the tree for balance and re-balances it if necessary
+     *
+     * @param node the root of a subtree to re-balance
+     * @return the new root of the subtree
+     */
+    private ThreadedAVLNode<T> rebalance(ThreadedAVLNode<T> node) {
+        updateHeight(node);
+        ThreadedAVLNode<T> left = leftChild(node);
+        ThreadedAVLNode<T> right = rightChild(node);
+        int balance = getHeight(right) - getHeight(left);
+
+        if (balance == -2) {
+            if (getHeight(leftChild(left)) >= getHeight(rightChild(left))) {
+                node = rotateRight(node);
+            } else {
+                node.left = rotateLeft(left);
+                node = rotateRight(node);
+            }
+        } else if (balance == 2) {
+            if (getHeight(rightChild(right)) >= getHeight(leftChild(right))) {
+                node = rotateLeft(node);
+            } else {
+                node.right = rotateRight(right);
+                node = rotateLeft(node);
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Rotates tree to the left. If the new root has no left child its thread
+     * points back to the old root, which then threads to the new root.
+     *
+     * @param node the node where to rotate
+     * @return new rotated tree
+     */
+    protected ThreadedAVLNode<T> rotateLeft(ThreadedAVLNode<T> node) {
+        ThreadedAVLNode<T> newRoot = node.right;
+        if (newRoot.leftThread) {
+            node.right = newRoot;
+            node.rightThread = true;
+        } else {
+            node.right = newRoot.left;
+        }
+        newRoot.left = node;
+        newRoot.leftThread = false;
+
+        updateHeight(node);
+        updateHeight(newRoot);
+
+        return newRoot;
+    }
+
+    /**
+     * Rotates tree to the right. If the new root has no right child its
+     * thread points back to the old root, which then threads to the new root.
+     *
+     * @param node the node where to rotate
+     * @return new rotated tree
+     */
+    protected ThreadedAVLNode<T> rotateRight(ThreadedAVLNode<T> node) {
+        ThreadedAVLNode<T> newRoot = node.left;
+        if (newRoot.rightThread) {
+            node.left = newRoot;
+            node.leftThread = true;
+        } else {
+            node.left = newRoot.right;
+        }
+        newRoot.right = node;
+        newRoot.rightThread = false;
+
+        updateHeight(node);
+        updateHeight(newRoot);
+
+        return newRoot;
+    }
+
+    /**
+     * Iterator over a range of the tree which follows the threads
+     */
+    private class RangeIterator implements Iterator<T> {
+
+        private final T end;
+        private final boolean endInclusive;
+        private final boolean descending;
+        private ThreadedAVLNode<T> next;
+        private T last;
+
+        /**
+         * Creates the iterator
+         *
+         * @param start the bound where the iteration starts, null for none
+         * @param startInclusive true if the start bound is part of the range
+         * @param end the bound where the iteration ends, null for none
+         * @param endInclusive true if the end bound is part of the range
+         * @param descending true to iterate in descending order
+         */
+        RangeIterator(T start, boolean startInclusive, T end, boolean endInclusive, boolean descending) {
+            this.end = end;
+            this.endInclusive = endInclusive;
+            this.descending = descending;
+            seek(start, startInclusive);
+        }
+
+        /**
+         * Finds the first node after the start
+         *
+         * @param start the start bound, null for none
+         * @param inclusive true if the start bound is part of the range
+         */
+        private void seek(T start, boolean inclusive) {
+            if (start == null) {
+                next = descending ? last() : first();
+            } else {
+                next = descending ? floorNode(start, inclusive) : ceilingNode(start, inclusive);
+            }
+            checkEnd();
+        }
+
+        /**
+         * Drops the next node if it is past the end bound
+         */
+        private void checkEnd() {
+            if (next == null || end == null) {
+                return;
+            }
+            int cmp = end.compareTo(next.value);
+            if (descending) {
+                cmp = -cmp;
+            }
+            if (cmp < 0 || (cmp == 0 && !endInclusive)) {
+                next = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next.value;
+            next = descending ? predecessor(next) : successor(next);
+            checkEnd();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            // Deleting may move the value of the next node into another node
+            delete(last);
+            seek(last, false);
+            last = null;
+        }
+    }
+}
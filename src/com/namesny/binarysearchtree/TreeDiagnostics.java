@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+/**
+ * Snapshot of the shape of a tree. The depth of a node is the number of edges
+ * on the path from the root, so the root has depth zero.
+ *
+ * @author Matúš Námešný
+ */
+public class TreeDiagnostics {
+
+    /**
+     * Number of nodes
+     */
+    private final int size;
+
+    /**
+     * Number of nodes on the longest path from the root to a leaf
+     */
+    private final int height;
+
+    /**
+     * Black height of a Red-Black tree
+     */
+    private final int blackHeight;
+
+    /**
+     * Sum of the depths of all nodes
+     */
+    private final long totalDepth;
+
+    /**
+     * Creates a snapshot
+     *
+     * @param size number of nodes
+     * @param height number of nodes on the longest path from the root to a leaf
+     * @param blackHeight black height, zero for trees without colors
+     * @param totalDepth sum of the depths of all nodes
+     */
+    public TreeDiagnostics(int size, int height, int blackHeight, long totalDepth) {
+        this.size = size;
+        this.height = height;
+        this.blackHeight = blackHeight;
+        this.totalDepth = totalDepth;
+    }
+
+    /**
+     * Returns the number of nodes
+     *
+     * @return number of nodes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of nodes on the longest path from the root to a leaf
+     *
+     * @return height of the tree
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of black nodes on any path from the root to a leaf
+     *
+     * @return black height, zero for trees without colors
+     */
+    public int getBlackHeight() {
+        return blackHeight;
+    }
+
+    /**
+     * Returns the depth of the deepest node
+     *
+     * @return maximal depth, -1 for an empty tree
+     */
+    public int getMaxDepth() {
+        return height - 1;
+    }
+
+    /**
+     * Returns the average depth of a node, one less than the average number
+     * of comparisons made by a successful search
+     *
+     * @return average depth, zero for an empty tree
+     */
+    public double getAverageDepth() {
+        return size == 0 ? 0 : (double) totalDepth / size;
+    }
+
+    /**
+     * Returns the height of a perfectly balanced tree of the same size
+     *
+     * @return optimal height
+     */
+    public int getOptimalHeight() {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Returns how many times the tree is higher than a perfectly balanced
+     * tree of the same size
+     *
+     * @return ratio of the height and the optimal height, 1 for an empty tree
+     */
+    public double getImbalance() {
+        return size == 0 ? 1 : (double) height / getOptimalHeight();
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size
+                + " height=" + height
+                + " blackHeight=" + blackHeight
+                + " maxDepth=" + getMaxDepth()
+                + " averageDepth=" + String.format("%.2f", getAverageDepth())
+                + " optimalHeight=" + getOptimalHeight();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation metrics collected by the instrumented trees. One instance can be
+ * shared by several trees, all counters are safe to update and read from
+ * multiple threads.
+ *
+ * @author Matúš Námešný
+ * @see InstrumentedAVLTree
+ * @see InstrumentedRedBlackTree
+ */
+public class TreeMetrics {
+
+    /**
+     * Number of compareTo calls
+     */
+    private final LongAdder comparisons = new LongAdder();
+
+    /**
+     * Number of single left rotations
+     */
+    private final LongAdder leftRotations = new LongAdder();
+
+    /**
+     * Number of single right rotations
+     */
+    private final LongAdder rightRotations = new LongAdder();
+
+    /**
+     * Number of double rotations
+     */
+    private final LongAdder doubleRotations = new LongAdder();
+
+    /**
+     * Number of node color changes
+     */
+    private final LongAdder recolorings = new LongAdder();
+
+    /**
+     * Nodes visited per operation
+     */
+    private final Histogram depth = new Histogram();
+
+    /**
+     * Insert latency in nanoseconds
+     */
+    private final Histogram insertLatency = new Histogram();
+
+    /**
+     * Delete latency in nanoseconds
+     */
+    private final Histogram deleteLatency = new Histogram();
+
+    /**
+     * Find latency in nanoseconds
+     */
+    private final Histogram findLatency = new Histogram();
+
+    /**
+     * Returns the number of compareTo calls
+     *
+     * @return number of comparisons
+     */
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    /**
+     * Returns the number of single left rotations, including the ones done as
+     * a part of a double rotation
+     *
+     * @return number of left rotations
+     */
+    public long getLeftRotations() {
+        return leftRotations.sum();
+    }
+
+    /**
+     * Returns the number of single right rotations, including the ones done as
+     * a part of a double rotation
+     *
+     * @return number of right rotations
+     */
+    public long getRightRotations() {
+        return rightRotations.sum();
+    }
+
+    /**
+     * Returns the number of double rotations
+     *
+     * @return number of double rotations
+     */
+    public long getDoubleRotations() {
+        return doubleRotations.sum();
+    }
+
+    /**
+     * Returns the number of node color changes
+     *
+     * @return number of recolorings
+     */
+    public long getRecolorings() {
+        return recolorings.sum();
+    }
+
+    /**
+     * Returns the histogram of the number of nodes visited by one operation
+     *
+     * @return depth histogram
+     */
+    public Histogram getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the histogram of insert latencies in nanoseconds
+     *
+     * @return insert latency histogram
+     */
+    public Histogram getInsertLatency() {
+        return insertLatency;
+    }
+
+    /**
+     * Returns the histogram of delete latencies in nanoseconds
+     *
+     * @return delete latency histogram
+     */
+    public Histogram getDeleteLatency() {
+        return deleteLatency;
+    }
+
+    /**
+     * Returns the histogram of find latencies in nanoseconds
+     *
+     * @return find latency histogram
+     */
+    public Histogram getFindLatency() {
+        return findLatency;
+    }
+
+    /**
+     * Clears all counters and histograms
+     */
+    public void reset() {
+        comparisons.reset();
+        leftRotations.reset();
+        rightRotations.reset();
+        doubleRotations.reset();
+        recolorings.reset();
+        depth.reset();
+        insertLatency.reset();
+        deleteLatency.reset();
+        findLatency.reset();
+    }
+
+    /**
+     * Records one finished operation
+     *
+     * @param latency latency histogram of the operation type
+     * @param nanos duration of the operation
+     * @param visited number of nodes compared during the operation
+     */
+    void recordOperation(Histogram latency, long nanos, int visited) {
+        latency.record(nanos);
+        depth.record(visited);
+        comparisons.add(visited);
+    }
+
+    /**
+     * Records a left rotation
+     */
+    void recordLeftRotation() {
+        leftRotations.increment();
+    }
+
+    /**
+     * Records a right rotation
+     */
+    void recordRightRotation() {
+        rightRotations.increment();
+    }
+
+    /**
+     * Records a double rotation
+     */
+    void recordDoubleRotation() {
+        doubleRotations.increment();
+    }
+
+    /**
+     * Records a color change
+     */
+    void recordRecoloring() {
+        recolorings.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "comparisons=" + getComparisons()
+                + " leftRotations=" + getLeftRotations()
+                + " rightRotations=" + getRightRotations()
+                + " doubleRotations=" + getDoubleRotations()
+                + " recolorings=" + getRecolorings()
+                + "\ndepth: " + depth
+                + "\ninsert: " + insertLatency
+                + "\ndelete: " + deleteLatency
+                + "\nfind: " + findLatency;
+    }
+}
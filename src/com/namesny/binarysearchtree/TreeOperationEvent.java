@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event emitted by the instrumented trees for an insert,
+ * delete or find which took longer than the event threshold. The threshold
+ * defaults to 10 ms and can be changed in the recording settings, e.g.
+ * {@code com.namesny.binarysearchtree.TreeOperation#threshold=1 ms}.
+ *
+ * @author Matúš Námešný
+ */
+@Name("com.namesny.binarysearchtree.TreeOperation")
+@Label("Slow Tree Operation")
+@Category("Binary Search Tree")
+@Description("Tree operation which exceeded the latency threshold")
+@Threshold("10 ms")
+public class TreeOperationEvent extends jdk.jfr.Event {
+
+    @Label("Tree Type")
+    String treeType;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Depth")
+    @Description("Number of nodes visited by the operation")
+    int depth;
+
+    @Label("Rotations")
+    @Description("Number of single rotations done by the operation")
+    int rotations;
+
+    @Label("Key Class")
+    Class<?> keyClass;
+}
@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Periodic Flight Recorder event describing the shape of a tree registered
+ * with {@link TreeShapeMonitor}. The period defaults to 60 s and can be
+ * changed in the recording settings, e.g.
+ * {@code com.namesny.binarysearchtree.TreeShape#period=10 s}.
+ *
+ * @author Matúš Námešný
+ */
+@Name("com.namesny.binarysearchtree.TreeShape")
+@Label("Tree Shape")
+@Category("Binary Search Tree")
+@Description("Size and height of a monitored tree")
+@Period("60 s")
+@StackTrace(false)
+public class TreeShapeEvent extends jdk.jfr.Event {
+
+    @Label("Tree Type")
+    String treeType;
+
+    @Label("Size")
+    int size;
+
+    @Label("Height")
+    @Description("Height of an AVL tree, upper bound of twice the black height for a Red-Black tree")
+    int height;
+
+    @Label("Black Height")
+    @Description("Black height of a Red-Black tree, zero for other trees")
+    int blackHeight;
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Registry of trees which shape is periodically recorded as
+ * {@link TreeShapeEvent} while a Flight Recorder recording is running.
+ *
+ * The trees are sampled from the recorder thread while holding the tree's
+ * monitor, so a monitored tree which is shared between threads has to be
+ * guarded by synchronizing on the tree itself. A sample takes O(1) time for
+ * an AVL tree and O(log n) for a Red-Black tree, whose height is not stored
+ * and is reported as the bound of twice its black height instead of being
+ * measured by an O(n) walk which would stall the writers.
+ *
+ * @author Matúš Námešný
+ */
+public final class TreeShapeMonitor {
+
+    /**
+     * Trees which shape is recorded
+     */
+    private static final List<WeakReference<Object>> TREES = new CopyOnWriteArrayList<>();
+
+    static {
+        FlightRecorder.addPeriodicEvent(TreeShapeEvent.class, TreeShapeMonitor::emit);
+    }
+
+    private TreeShapeMonitor() {
+    }
+
+    /**
+     * Starts recording the shape of the tree. The tree is referenced weakly
+     * and stops being recorded once it is garbage collected.
+     *
+     * @param tree the tree to monitor
+     * @throws IllegalArgumentException
+     */
+    public static void monitor(AVLTree<?> tree) {
+        add(tree);
+    }
+
+    /**
+     * Starts recording the shape of the tree. The tree is referenced weakly
+     * and stops being recorded once it is garbage collected.
+     *
+     * @param tree the tree to monitor
+     * @throws IllegalArgumentException
+     */
+    public static void monitor(RedBlackTree<?> tree) {
+        add(tree);
+    }
+
+    /**
+     * Stops recording the shape of the tree
+     *
+     * @param tree the monitored tree
+     */
+    public static void unmonitor(Object tree) {
+        TREES.removeIf(reference -> reference.get() == null || reference.get() == tree);
+    }
+
+    /**
+     * Registers a tree for monitoring
+     *
+     * @param tree the tree to monitor
+     */
+    private static void add(Object tree) {
+        if (tree == null) {
+            throw new IllegalArgumentException("Tree cannot be null");
+        }
+        TREES.add(new WeakReference<>(tree));
+    }
+
+    /**
+     * Emits one event for every monitored tree
+     */
+    private static void emit() {
+        for (WeakReference<Object> reference : TREES) {
+            Object tree = reference.get();
+            if (tree == null) {
+                TREES.remove(reference);
+                continue;
+            }
+
+            TreeShapeEvent event = new TreeShapeEvent();
+            event.treeType = tree.getClass().getSimpleName();
+            synchronized (tree) {
+                if (tree instanceof AVLTree) {
+                    AVLTree<?> avlTree = (AVLTree<?>) tree;
+                    event.size = avlTree.size();
+                    event.height = avlTree.height();
+                } else {
+                    RedBlackTree<?> redBlackTree = (RedBlackTree<?>) tree;
+                    event.size = redBlackTree.size();
+                    event.blackHeight = redBlackTree.blackHeight();
+                    // The root is black and no red node has a red child
+                    event.height = 2 * event.blackHeight;
+                }
+            }
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes values to and reads them back from a binary stream, the persistent
+ * form of the values of an {@link LSMTree}.
+ *
+ * @author Matúš Námešný
+ * @param <T> type of the values
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Codec of integers
+     */
+    ValueCodec<Integer> INTEGER = of(DataOutput::writeInt, DataInput::readInt);
+
+    /**
+     * Codec of longs
+     */
+    ValueCodec<Long> LONG = of(DataOutput::writeLong, DataInput::readLong);
+
+    /**
+     * Codec of strings in UTF-8 of any length
+     */
+    ValueCodec<String> STRING = of((out, value) -> {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }, in -> {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    });
+
+    /**
+     * Codec of binary keys
+     */
+    ValueCodec<BinaryKey> BINARY_KEY = of((out, value) -> value.writeTo(out), BinaryKey::readFrom);
+
+    /**
+     * Writes a value
+     *
+     * @param out the output
+     * @param value the value
+     * @throws IOException
+     */
+    public void write(DataOutput out, T value) throws IOException;
+
+    /**
+     * Reads a value written by {@link #write(DataOutput, Object)}
+     *
+     * @param in the input
+     * @return the value
+     * @throws IOException
+     */
+    public T read(DataInput in) throws IOException;
+
+    /**
+     * Writer of a codec
+     *
+     * @param <T> type of the values
+     */
+    @FunctionalInterface
+    public interface Writer<T> {
+
+        /**
+         * Writes a value
+         *
+         * @param out the output
+         * @param value the value
+         * @throws IOException
+         */
+        public void write(DataOutput out, T value) throws IOException;
+    }
+
+    /**
+     * Reader of a codec
+     *
+     * @param <T> type of the values
+     */
+    @FunctionalInterface
+    public interface Reader<T> {
+
+        /**
+         * Reads a value
+         *
+         * @param in the input
+         * @return the value
+         * @throws IOException
+         */
+        public T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Creates a codec from a writer and a reader
+     *
+     * @param <T> type of the values
+     * @param writer writes a value
+     * @param reader reads a value
+     * @return the codec
+     * @throws IllegalArgumentException
+     */
+    public static <T> ValueCodec<T> of(Writer<T> writer, Reader<T> reader) {
+        if (writer == null || reader == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        return new ValueCodec<T>() {
+            @Override
+            public void write(DataOutput out, T value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public T read(DataInput in) throws IOException {
+                return reader.read(in);
+            }
+        };
+    }
+}
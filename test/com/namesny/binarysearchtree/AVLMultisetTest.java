@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class AVLMultisetTest {
+
+    private AVLMultiset<Integer> instance;
+
+    public AVLMultisetTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new AVLMultiset<>();
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    private void insertMore(int... values) {
+        for (int value : values) {
+            instance.insert(value);
+        }
+    }
+
+    /**
+     * Test of insert method, of class AVLMultiset.
+     */
+    @Test
+    public void testInsert() {
+        System.out.println("Test insert");
+
+        insertMore(1000, 2000, 1000, 3000, 1000);
+        assertEquals(3, instance.count(1000));
+        assertEquals(1, instance.count(2000));
+        assertEquals(0, instance.count(4000));
+        assertEquals(5, instance.occurrences());
+        assertEquals(new Integer(1000), instance.findMin());
+        assertEquals(new Integer(3000), instance.findMax());
+    }
+
+    /**
+     * Test of delete method, of class AVLMultiset.
+     */
+    @Test
+    public void testDelete() {
+        System.out.println("Test delete");
+
+        insertMore(5, 3, 5, 8, 5, 1);
+        instance.delete(5);
+        assertEquals(2, instance.count(5));
+        instance.delete(5);
+        instance.delete(5);
+        assertEquals(0, instance.count(5));
+        assertNull(instance.find(5));
+        assertEquals(3, instance.occurrences());
+
+        System.out.println("Attempt deleting nonexistent value");
+        instance.delete(42);
+        assertEquals(3, instance.occurrences());
+    }
+
+    /**
+     * Test of count method, of class AVLMultiset.
+     */
+    @Test
+    public void testCount() {
+        System.out.println("Test count with random input");
+
+        int[] expected = new int[20];
+        Random random = new Random();
+
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(expected.length);
+            if (random.nextInt(3) == 0) {
+                instance.delete(value);
+                expected[value] = Math.max(0, expected[value] - 1);
+            } else {
+                instance.insert(value);
+                expected[value]++;
+            }
+        }
+
+        long size = 0;
+        for (int value = 0; value < expected.length; value++) {
+            assertEquals(expected[value], instance.count(value));
+            size += expected[value];
+        }
+        assertEquals(size, instance.occurrences());
+    }
+
+    /**
+     * Test of pollMin and pollMax methods, of class AVLMultiset.
+     */
+    @Test
+    public void testPollMinAndMax() {
+        System.out.println("Test pollMin and pollMax");
+
+        insertMore(1, 1, 2, 3, 3);
+        assertEquals(new Integer(1), instance.pollMin());
+        assertEquals(new Integer(1), instance.pollMin());
+        assertEquals(new Integer(2), instance.pollMin());
+        assertEquals(new Integer(3), instance.pollMax());
+        assertEquals(1, instance.count(3));
+        assertEquals(1, instance.occurrences());
+        assertEquals(new Integer(3), instance.pollMax());
+        assertNull(instance.pollMax());
+        assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * Test of insertAll and deleteAll methods, of class AVLMultiset.
+     */
+    @Test
+    public void testInsertAllDeleteAll() {
+        System.out.println("Test insertAll and deleteAll");
+
+        BulkResult<Integer> result = instance.insertAll(Arrays.asList(5, 1, 5, 2, 5));
+        assertTrue(result.isComplete());
+        assertEquals(5, result.getApplied());
+        assertEquals(3, instance.count(5));
+        assertEquals(5, instance.occurrences());
+
+        result = instance.deleteAll(Arrays.asList(5, 3, 1, 1));
+        assertEquals(2, result.getApplied());
+        assertEquals(Arrays.asList(1, 3), result.getRejected());
+        assertEquals(2, instance.count(5));
+        assertNull(instance.find(1));
+    }
+
+    /**
+     * Test of size and occurrences methods, of class AVLMultiset.
+     */
+    @Test
+    public void testSizeAndOccurrences() {
+        System.out.println("Test size and occurrences");
+
+        insertMore(5, 5, 7);
+        assertEquals(2, instance.size());
+        assertEquals(3, instance.occurrences());
+
+        // The iterator sees every distinct value once, as size counts them
+        List<Integer> values = new ArrayList<>();
+        instance.forEach(values::add);
+        assertEquals(Arrays.asList(5, 7), values);
+
+        instance.delete(5);
+        assertEquals(2, instance.size());
+        assertEquals(2, instance.occurrences());
+        instance.delete(5);
+        assertEquals(1, instance.size());
+        assertEquals(1, instance.occurrences());
+    }
+
+    /**
+     * Test of backing a set with a multiset, of class AVLMultiset.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNavigableTreeSet() {
+        System.out.println("Test NavigableTreeSet");
+
+        new NavigableTreeSet<>(instance);
+    }
+
+    /**
+     * Test of indexing a multiset, of class AVLMultiset.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testHashIndexedTree() {
+        System.out.println("Test HashIndexedTree");
+
+        new HashIndexedTree<>(instance);
+    }
+}
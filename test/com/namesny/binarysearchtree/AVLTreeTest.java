@@ -23,7 +23,12 @@
  */
 package com.namesny.binarysearchtree;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.TreeSet;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,6 +42,35 @@ public class AVLTreeTest {
 
     private AVLTree<Integer> instance;
 
+    /**
+     * Value ordered by its key which carries a payload not used by compareTo
+     */
+    private static class Entry implements Comparable<Entry> {
+
+        final int key;
+        final String payload;
+
+        Entry(int key, String payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Integer.compare(key, other.key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && ((Entry) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return key;
+        }
+    }
+
     public AVLTreeTest() {
     }
 
@@ -185,6 +219,29 @@ public class AVLTreeTest {
         insertMore(3, 1, 4, 2);
         instance.delete(4);
         assertTrue(isValidAVLTree(instance.root));
+
+        instance.clear();
+
+        System.out.println("Test random delete");
+        Random random = new Random();
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int number = random.nextInt();
+            if (instance.find(number) == null) {
+                numbers.add(number);
+                instance.insert(number);
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            int number = numbers.remove(random.nextInt(numbers.size()));
+            instance.delete(number);
+            assertNull(instance.find(number));
+        }
+        assertTrue(isValidAVLTree(instance.root));
+        for (Integer number : numbers) {
+            assertEquals(number, instance.find(number));
+        }
     }
 
     /**
@@ -203,6 +260,11 @@ public class AVLTreeTest {
         assertEquals("Find 4", new Integer(4), instance.find(4));
         assertEquals("Find 5", new Integer(5), instance.find(5));
         assertEquals("Attempt finding nonexistent value", null, instance.find(6));
+
+        System.out.println("Find values equal but not identical to the inserted ones");
+        insertMore(1000, 2000);
+        assertEquals(new Integer(1000), instance.find(new Integer(1000)));
+        assertEquals(new Integer(2000), instance.find(new Integer(2000)));
     }
 
     /**
@@ -241,4 +303,437 @@ public class AVLTreeTest {
 
     }
 
+    /**
+     * Test of size and height methods, of class AVLTree.
+     */
+    @Test
+    public void testSizeAndHeight() throws DuplicateValueException {
+        System.out.println("Test size and height");
+
+        assertEquals(0, instance.size());
+        assertEquals(0, instance.height());
+
+        for (int i = 0; i < 1000; i++) {
+            instance.insert(i);
+        }
+        assertEquals(1000, instance.size());
+        assertEquals(getHeight(instance.root), instance.height());
+
+        instance.delete(500);
+        instance.delete(500);
+        assertEquals(999, instance.size());
+
+        instance.clear();
+        assertEquals(0, instance.size());
+    }
+
+    /**
+     * Test of diagnostics method, of class AVLTree.
+     */
+    @Test
+    public void testDiagnostics() throws DuplicateValueException {
+        System.out.println("Test diagnostics");
+
+        TreeDiagnostics empty = instance.diagnostics();
+        assertEquals(0, empty.getSize());
+        assertEquals(0, empty.getHeight());
+        assertEquals(-1, empty.getMaxDepth());
+
+        insertMore(1, 2, 3, 4, 5, 6, 7);
+        TreeDiagnostics diagnostics = instance.diagnostics();
+        assertEquals(7, diagnostics.getSize());
+        assertEquals(3, diagnostics.getHeight());
+        assertEquals(2, diagnostics.getMaxDepth());
+        assertEquals(3, diagnostics.getOptimalHeight());
+        assertEquals(10.0 / 7, diagnostics.getAverageDepth(), 1e-9);
+        assertEquals(1.0, diagnostics.getImbalance(), 1e-9);
+    }
+
+    /**
+     * Test of verify method, of class AVLTree.
+     */
+    @Test
+    public void testVerify() throws DuplicateValueException {
+        System.out.println("Test verify");
+
+        Random random = new Random();
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(2000);
+            if (instance.find(value) == null) {
+                instance.insert(value);
+            } else {
+                instance.delete(value);
+            }
+        }
+        instance.verify();
+
+        System.out.println("Test verify detects broken ordering");
+        instance.clear();
+        insertMore(1, 2, 3);
+        instance.root.left.value = 5;
+        try {
+            instance.verify();
+            fail("Broken tree should not pass verification");
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Test of pollMin and pollMax methods, of class AVLTree.
+     */
+    @Test
+    public void testPollMinAndMax() throws DuplicateValueException {
+        System.out.println("Test pollMin and pollMax");
+
+        assertNull("Empty tree has no minimum", instance.findMin());
+        assertNull("Empty tree has no maximum", instance.findMax());
+        assertNull(instance.pollMin());
+        assertNull(instance.pollMax());
+
+        insertMore(5, 3, 8, 1, 4, 7, 9, 2, 6);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(new Integer(i), instance.pollMin());
+            assertEquals(new Integer(i + 1), instance.findMin());
+        }
+        for (int i = 9; i >= 7; i--) {
+            assertEquals(new Integer(i), instance.pollMax());
+            assertEquals(new Integer(i - 1), instance.findMax());
+        }
+        instance.verify();
+
+        System.out.println("Test deleting extremes");
+        instance.delete(4);
+        instance.delete(6);
+        assertEquals(new Integer(5), instance.findMin());
+        assertEquals(new Integer(5), instance.findMax());
+        assertEquals(new Integer(5), instance.pollMin());
+        assertTrue(instance.isEmpty());
+        assertNull(instance.findMax());
+    }
+
+    /**
+     * Test of setLazyDeletion and compact methods, of class AVLTree.
+     */
+    @Test
+    public void testLazyDeletion() throws DuplicateValueException {
+        System.out.println("Test lazy deletion");
+
+        instance.setLazyDeletion(0.5);
+        for (int i = 0; i < 100; i++) {
+            instance.insert(i);
+        }
+
+        // Deleting the inner values only leaves tombstones
+        int height = instance.height();
+        for (int i = 10; i < 50; i++) {
+            instance.delete(i);
+        }
+        instance.verify();
+        assertEquals(40, instance.tombstones());
+        assertEquals(60, instance.size());
+        assertEquals(height, instance.height());
+        assertNull(instance.find(20));
+        assertEquals(new Integer(9), instance.lower(30));
+        assertEquals(new Integer(50), instance.ceiling(10));
+
+        List<Integer> values = new ArrayList<>();
+        instance.iterator().forEachRemaining(values::add);
+        assertEquals(60, values.size());
+        assertEquals(new Integer(9), values.get(9));
+        assertEquals(new Integer(50), values.get(10));
+
+        // A tombstone is revived by inserting its value again
+        instance.insert(20);
+        assertEquals(39, instance.tombstones());
+        assertEquals(new Integer(20), instance.find(20));
+        instance.verify();
+
+        // Exceeding the ratio rebuilds the tree, 62 to 69 are deleted after it
+        for (int i = 50; i < 70; i++) {
+            instance.delete(i);
+        }
+        instance.verify();
+        assertEquals(8, instance.tombstones());
+        assertEquals(41, instance.size());
+        assertTrue(instance.height() <= 6);
+
+        // Extremes are unlinked right away together with tombstones next to them
+        for (int i = 0; i < 10; i++) {
+            instance.delete(i);
+        }
+        instance.verify();
+        assertEquals(new Integer(20), instance.findMin());
+        instance.delete(20);
+        assertEquals(new Integer(70), instance.findMin());
+        assertEquals(0, instance.tombstones());
+
+        instance.delete(80);
+        instance.setLazyDeletion(0);
+        instance.verify();
+        assertEquals(0, instance.tombstones());
+        assertEquals(29, instance.size());
+    }
+
+    /**
+     * Test of reviving a tombstone, of class AVLTree.
+     */
+    @Test
+    public void testLazyDeletionRevive() {
+        System.out.println("Test lazy deletion revive");
+
+        AVLTree<Entry> tree = new AVLTree<>();
+        tree.setLazyDeletion(0.5);
+        for (int i = 0; i < 5; i++) {
+            tree.add(new Entry(i, "old"));
+        }
+
+        // The revived node stores the new object, not the deleted one
+        tree.delete(new Entry(2, null));
+        assertTrue(tree.add(new Entry(2, "new")));
+        assertEquals(0, tree.tombstones());
+        assertEquals("new", tree.find(new Entry(2, null)).payload);
+        assertEquals("new", tree.floor(new Entry(2, null)).payload);
+        assertEquals("new", tree.ceiling(new Entry(2, null)).payload);
+        List<String> payloads = new ArrayList<>();
+        tree.forEach(entry -> payloads.add(entry.payload));
+        assertEquals(Arrays.asList("old", "old", "new", "old", "old"), payloads);
+
+        // A hash index over the tree sees the same object as the tree
+        HashIndexedTree<Entry> indexed = new HashIndexedTree<>(tree);
+        indexed.delete(new Entry(3, "old"));
+        indexed.add(new Entry(3, "new"));
+        assertEquals("new", indexed.find(new Entry(3, null)).payload);
+        assertEquals("new", indexed.floor(new Entry(3, null)).payload);
+    }
+
+    /**
+     * Test of setNodePool method, of class AVLTree.
+     */
+    @Test
+    public void testNodePool() throws DuplicateValueException {
+        System.out.println("Test node pool");
+
+        instance.setNodePool(3);
+        insertMore(4, 2, 6, 1, 3, 5, 7);
+
+        // A deleted node is reused with its value cleared
+        AVLTree.AVLNode<Integer> node = instance.root.left.left;
+        assertEquals(new Integer(1), node.value);
+        instance.delete(1);
+        assertEquals(1, instance.pooledNodes());
+        assertNull(node.value);
+        instance.insert(8);
+        assertEquals(0, instance.pooledNodes());
+        assertEquals(new Integer(8), node.value);
+        instance.verify();
+
+        // The pool is bounded
+        instance.clear();
+        assertEquals(3, instance.pooledNodes());
+        for (int i = 0; i < 10; i++) {
+            instance.insert(i);
+        }
+        for (int i = 0; i < 10; i += 2) {
+            instance.delete(i);
+        }
+        assertEquals(3, instance.pooledNodes());
+        assertEquals(5, instance.size());
+        instance.verify();
+
+        instance.setNodePool(0);
+        assertEquals(0, instance.pooledNodes());
+        instance.delete(1);
+        assertEquals(0, instance.pooledNodes());
+    }
+
+    /**
+     * Test of setBloomFilter method, of class AVLTree.
+     */
+    @Test
+    public void testBloomFilter() throws DuplicateValueException {
+        System.out.println("Test Bloom filter");
+
+        instance.setLazyDeletion(0.3);
+        for (int i = 0; i < 2000; i += 2) {
+            instance.insert(i);
+        }
+        instance.setBloomFilter(0.01);
+        BloomFilter<Integer> filter = instance.getBloomFilter();
+        assertEquals(1000, filter.count());
+
+        // Growing past the capacity rebuilds the filter
+        for (int i = 2000; i < 6000; i += 2) {
+            instance.insert(i);
+        }
+        assertEquals(3000, instance.getBloomFilter().count());
+        assertTrue(instance.getBloomFilter().capacity() >= 3000);
+
+        for (int i = 0; i < 6000; i++) {
+            assertEquals(i % 2 == 0 ? new Integer(i) : null, instance.find(i));
+        }
+        filter = instance.getBloomFilter();
+        assertEquals(6000, filter.getLookups());
+        assertEquals(3000, filter.getNegatives() + filter.getFalsePositives());
+        assertTrue(filter.getFalsePositiveRate() < 0.05);
+
+        // Deleted values are removed from the filter, also by pollMin and pollMax
+        for (int i = 0; i < 3000; i += 2) {
+            instance.delete(i);
+            instance.delete(i + 1);
+        }
+        assertEquals(new Integer(3000), instance.pollMin());
+        assertEquals(new Integer(5998), instance.pollMax());
+        instance.verify();
+        assertEquals(1498, instance.size());
+        assertEquals(1498, instance.getBloomFilter().count());
+        for (int i = 0; i < 6000; i++) {
+            assertEquals(i % 2 == 0 && i > 3000 && i < 5998 ? new Integer(i) : null, instance.find(i));
+        }
+
+        instance.clear();
+        assertEquals(0, instance.getBloomFilter().count());
+        assertNull(instance.find(3002));
+
+        instance.setBloomFilter(0);
+        assertNull(instance.getBloomFilter());
+    }
+
+    /**
+     * Test of findAll method, of class AVLTree.
+     */
+    @Test
+    public void testFindAll() throws DuplicateValueException {
+        System.out.println("Test findAll");
+
+        instance.setLazyDeletion(0.3);
+        for (int i = 0; i < 5000; i += 2) {
+            instance.insert(i);
+        }
+        for (int i = 0; i < 5000; i += 6) {
+            instance.delete(i);
+        }
+
+        Random random = new Random(45);
+        for (int size : new int[]{0, 1, 5, 8, 9, 100, 3000}) {
+            // Unsorted keys with duplicates, absent and tombstoned values
+            Integer[] keys = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = random.nextInt(5200) - 100;
+            }
+            Integer[] results = new Integer[size + 1];
+            int found = 0;
+            for (Integer key : keys) {
+                if (instance.find(key) != null) {
+                    found++;
+                }
+            }
+            assertEquals(found, instance.findAll(keys, results));
+            for (int i = 0; i < size; i++) {
+                assertEquals(instance.find(keys[i]), results[i]);
+            }
+        }
+
+        // Sorted keys and a Bloom filter
+        instance.setBloomFilter(0.01);
+        Integer[] keys = new Integer[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        Integer[] results = new Integer[keys.length];
+        assertEquals(1666, instance.findAll(keys, results));
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i % 2 == 0 && i % 6 != 0 ? new Integer(i) : null, results[i]);
+        }
+        BloomFilter<Integer> filter = instance.getBloomFilter();
+        assertEquals(5000, filter.getLookups());
+        assertEquals(3334, filter.getNegatives() + filter.getFalsePositives());
+    }
+
+    /**
+     * Test of findAll method with a short results array, of class AVLTree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindAllShortResults() {
+        System.out.println("Test findAll short results");
+
+        instance.findAll(new Integer[]{1, 2}, new Integer[1]);
+    }
+
+    /**
+     * Test of insertAll and deleteAll methods, of class AVLTree.
+     */
+    @Test
+    public void testInsertAllDeleteAll() throws DuplicateValueException {
+        System.out.println("Test insertAll and deleteAll");
+
+        instance.setLazyDeletion(0.3);
+        instance.setNodePool(100);
+        instance.setBloomFilter(0.01);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(46);
+        // Large batches are merged, small ones applied value by value
+        for (int size : new int[]{5000, 10, 3000, 1, 200, 4000, 50}) {
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                batch.add(random.nextInt(10000));
+            }
+            boolean insert = random.nextBoolean() || expected.isEmpty();
+            TreeSet<Integer> seen = new TreeSet<>();
+            List<Integer> rejected = new ArrayList<>();
+            for (Integer value : batch) {
+                if (!seen.add(value) || expected.contains(value) != !insert) {
+                    rejected.add(value);
+                }
+            }
+            Collections.sort(rejected);
+
+            BulkResult<Integer> result = insert ? instance.insertAll(batch) : instance.deleteAll(batch);
+            if (insert) {
+                expected.addAll(batch);
+            } else {
+                expected.removeAll(batch);
+            }
+            assertEquals(rejected, result.getRejected());
+            assertEquals(size - rejected.size(), result.getApplied());
+            instance.verify();
+            assertEquals(expected.size(), instance.size());
+            assertEquals(expected.first(), instance.findMin());
+            assertEquals(expected.last(), instance.findMax());
+            for (int i = 0; i < 10000; i += 7) {
+                assertEquals(expected.contains(i) ? new Integer(i) : null, instance.find(i));
+            }
+            assertEquals(expected.size(), instance.getBloomFilter().count());
+
+            // Tombstones for the next merge to drop
+            for (int i = 0; i < 20; i++) {
+                Integer value = expected.higher(random.nextInt(10000));
+                if (value != null && !value.equals(expected.last())) {
+                    instance.delete(value);
+                    expected.remove(value);
+                }
+            }
+        }
+
+        BulkResult<Integer> result = instance.deleteAll(new ArrayList<>(expected));
+        assertTrue(result.isComplete());
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.tombstones());
+    }
+
+    /**
+     * Test of insertAll method with a null value, of class AVLTree.
+     */
+    @Test
+    public void testInsertAllNull() {
+        System.out.println("Test insertAll null");
+
+        try {
+            instance.insertAll(Arrays.asList(1, null, 3));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // The batch is checked before any value is inserted
+            assertTrue(instance.isEmpty());
+        }
+    }
 }
@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class AdaptiveRadixTreeTest {
+
+    public AdaptiveRadixTreeTest() {
+    }
+
+    private static <T extends Comparable<? super T>> List<T> toList(AdaptiveRadixTree<T> tree) {
+        List<T> values = new ArrayList<>();
+        tree.forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Test of insert method, of class AdaptiveRadixTree.
+     */
+    @Test
+    public void testInsert() throws DuplicateValueException {
+        System.out.println("Test insert");
+
+        AdaptiveRadixTree<Integer> instance = new AdaptiveRadixTree<>(RadixKey.INTEGER);
+        assertTrue(instance.isEmpty());
+        assertNull(instance.findMin());
+        assertNull(instance.find(1));
+
+        instance.insert(42);
+        assertEquals(new Integer(42), instance.find(42));
+        assertEquals(new Integer(42), instance.findMax());
+
+        for (int value : new int[]{-1, 0, 1, 256, 65536, Integer.MIN_VALUE, Integer.MAX_VALUE, 43}) {
+            instance.insert(value);
+            instance.verify();
+        }
+        assertEquals(9, instance.size());
+        assertEquals(Arrays.asList(Integer.MIN_VALUE, -1, 0, 1, 42, 43, 256, 65536, Integer.MAX_VALUE), toList(instance));
+        assertEquals(new Integer(Integer.MIN_VALUE), instance.findMin());
+        assertEquals(new Integer(Integer.MAX_VALUE), instance.findMax());
+        assertNull(instance.find(2));
+        assertNull(instance.find(257));
+        assertFalse(instance.add(256));
+    }
+
+    /**
+     * Test of insert method with a duplicate, of class AdaptiveRadixTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws DuplicateValueException {
+        System.out.println("Test insert duplicate");
+
+        AdaptiveRadixTree<Integer> instance = new AdaptiveRadixTree<>(RadixKey.INTEGER);
+        instance.insert(1);
+        instance.insert(1);
+    }
+
+    /**
+     * Test of insert method with null, of class AdaptiveRadixTree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInsertNull() throws DuplicateValueException {
+        System.out.println("Test insert null");
+
+        new AdaptiveRadixTree<>(RadixKey.INTEGER).insert(null);
+    }
+
+    /**
+     * Test of delete method, of class AdaptiveRadixTree.
+     */
+    @Test
+    public void testDelete() {
+        System.out.println("Test delete");
+
+        AdaptiveRadixTree<Long> instance = new AdaptiveRadixTree<>(RadixKey.LONG);
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(49);
+        for (int i = 0; i < 50000; i++) {
+            // Clustered keys share long prefixes and fill nodes of all sizes
+            long value = random.nextBoolean() ? random.nextInt(2000) : random.nextLong() >> random.nextInt(64);
+            if (random.nextInt(3) > 0) {
+                assertEquals(expected.add(value), instance.add(value));
+            } else {
+                expected.remove(value);
+                instance.delete(value);
+            }
+            if (i % 5000 == 0) {
+                instance.verify();
+            }
+        }
+        instance.verify();
+        assertEquals(expected.size(), instance.size());
+        assertEquals(new ArrayList<>(expected), toList(instance));
+        assertEquals(expected.first(), instance.findMin());
+        assertEquals(expected.last(), instance.findMax());
+
+        for (Long value : expected) {
+            instance.delete(value);
+        }
+        instance.verify();
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.size());
+    }
+
+    /**
+     * Test of node sizes, of class AdaptiveRadixTree.
+     */
+    @Test
+    public void testNodeCounts() {
+        System.out.println("Test nodeCounts");
+
+        AdaptiveRadixTree<Integer> instance = new AdaptiveRadixTree<>(RadixKey.INTEGER);
+        for (int i = 0; i < 65536; i++) {
+            instance.add(i);
+        }
+        instance.verify();
+        // One node over the third byte and 256 nodes over the last one
+        assertArrayEquals(new int[]{0, 0, 0, 257}, instance.nodeCounts());
+
+        // Every node shrinks to the size of its remaining children
+        for (int i = 0; i < 65536; i++) {
+            if (i % 256 >= 20 || i >= 256 * 20) {
+                instance.delete(i);
+            }
+        }
+        instance.verify();
+        assertEquals(400, instance.size());
+        assertArrayEquals(new int[]{0, 0, 21, 0}, instance.nodeCounts());
+
+        for (int i = 0; i < 20; i++) {
+            for (int j = 3; j < 20; j++) {
+                instance.delete(i * 256 + j);
+            }
+        }
+        instance.verify();
+        assertEquals(60, instance.size());
+        assertArrayEquals(new int[]{20, 0, 1, 0}, instance.nodeCounts());
+    }
+
+    /**
+     * Test of binary keys which are prefixes of other keys, of class
+     * AdaptiveRadixTree.
+     */
+    @Test
+    public void testBinaryKeys() {
+        System.out.println("Test binary keys");
+
+        AdaptiveRadixTree<BinaryKey> instance = new AdaptiveRadixTree<>(RadixKey.BINARY_KEY);
+        TreeSet<BinaryKey> expected = new TreeSet<>();
+        Random random = new Random(50);
+        for (int i = 0; i < 20000; i++) {
+            byte[] bytes = new byte[random.nextInt(6)];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte) random.nextInt(4);
+            }
+            BinaryKey key = BinaryKey.fromBytes(bytes);
+            if (random.nextInt(3) > 0) {
+                assertEquals(expected.add(key), instance.add(key));
+            } else {
+                expected.remove(key);
+                instance.delete(key);
+            }
+        }
+        instance.verify();
+        assertEquals(new ArrayList<>(expected), toList(instance));
+        assertEquals(expected.first(), instance.findMin());
+        assertEquals(expected.last(), instance.findMax());
+        for (BinaryKey key : expected) {
+            assertSame(key, instance.find(BinaryKey.fromBytes(key.toBytes())));
+        }
+
+        KeyEncoder encoder = new KeyEncoder();
+        AdaptiveRadixTree<BinaryKey> strings = new AdaptiveRadixTree<>(RadixKey.BINARY_KEY);
+        for (String value : new String[]{"tree", "trie", "tr", "", "t", "treetop"}) {
+            strings.add(encoder.reset().writeString(value).toKey());
+        }
+        strings.verify();
+        assertEquals(encoder.reset().writeString("").toKey(), strings.findMin());
+        assertEquals(encoder.reset().writeString("trie").toKey(), strings.findMax());
+        assertNull(strings.find(encoder.reset().writeString("tre").toKey()));
+    }
+
+    /**
+     * Test of clear method, of class AdaptiveRadixTree.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("Test clear");
+
+        AdaptiveRadixTree<Integer> instance = new AdaptiveRadixTree<>(RadixKey.INTEGER);
+        for (int i = 0; i < 100; i++) {
+            instance.add(i * 1000);
+        }
+        instance.clear();
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.size());
+        assertFalse(instance.iterator().hasNext());
+        assertArrayEquals(new int[4], instance.nodeCounts());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class AggregateRedBlackTreeTest {
+
+    public AggregateRedBlackTreeTest() {
+    }
+
+    private static final Aggregator<Integer, Long> SUM = Aggregator.of(0L, Integer::longValue, Long::sum);
+
+    private static final Aggregator<Integer, String> CONCAT = Aggregator.of("", value -> value + ",", String::concat);
+
+    private static <A> A expected(TreeSet<Integer> values, Aggregator<Integer, A> aggregator,
+            Integer low, boolean lowInclusive, Integer high, boolean highInclusive) {
+        A result = aggregator.identity();
+        for (Integer value : values) {
+            int lowCmp = low == null ? 1 : value.compareTo(low);
+            int highCmp = high == null ? -1 : value.compareTo(high);
+            if ((lowCmp > 0 || (lowCmp == 0 && lowInclusive)) && (highCmp < 0 || (highCmp == 0 && highInclusive))) {
+                result = aggregator.combine(result, aggregator.lift(value));
+            }
+        }
+        return result;
+    }
+
+    private static <A> void checkAgainstTreeSet(AggregateRedBlackTree<Integer, A> instance, Random random) {
+        TreeSet<Integer> values = new TreeSet<>();
+        Aggregator<Integer, A> aggregator = (Aggregator<Integer, A>) instance.getAggregator();
+        for (int i = 0; i < 4000; i++) {
+            int value = random.nextInt(500);
+            switch (random.nextInt(6)) {
+                case 0:
+                    assertEquals(values.pollFirst(), instance.pollMin());
+                    break;
+                case 1:
+                case 2:
+                    values.remove(value);
+                    instance.delete(value);
+                    break;
+                default:
+                    assertEquals(values.add(value), instance.add(value));
+                    break;
+            }
+
+            Integer low = random.nextInt(10) == 0 ? null : random.nextInt(520) - 10;
+            Integer high = random.nextInt(10) == 0 ? null : random.nextInt(520) - 10;
+            boolean lowInclusive = random.nextBoolean();
+            boolean highInclusive = random.nextBoolean();
+            assertEquals(expected(values, aggregator, low, lowInclusive, high, highInclusive),
+                    instance.aggregate(low, lowInclusive, high, highInclusive));
+            if (i % 100 == 0) {
+                instance.verify();
+                assertEquals(expected(values, aggregator, null, true, null, true), instance.aggregate());
+            }
+        }
+    }
+
+    /**
+     * Test of aggregate method with a sum, of class AggregateRedBlackTree.
+     */
+    @Test
+    public void testSum() {
+        System.out.println("Test sum");
+
+        AggregateRedBlackTree<Integer, Long> instance = new AggregateRedBlackTree<>(SUM);
+        checkAgainstTreeSet(instance, new Random(41));
+
+        instance.clear();
+        for (int i = 1; i <= 100; i++) {
+            instance.add(i);
+        }
+        assertEquals(Long.valueOf(5050), instance.aggregate());
+        assertEquals(Long.valueOf(55), instance.aggregate(1, 10));
+        assertEquals(Long.valueOf(0), instance.aggregate(200, 300));
+    }
+
+    /**
+     * Test of aggregate method with an operation which is not commutative, of
+     * class AggregateRedBlackTree.
+     */
+    @Test
+    public void testOrderedCombine() {
+        System.out.println("Test ordered combine");
+
+        checkAgainstTreeSet(new AggregateRedBlackTree<>(CONCAT), new Random(42));
+    }
+
+    /**
+     * Test of aggregate method with lazy deletion and node recycling, of class
+     * AggregateRedBlackTree.
+     */
+    @Test
+    public void testLazyDeletion() {
+        System.out.println("Test lazy deletion");
+
+        AggregateRedBlackTree<Integer, Long> instance = new AggregateRedBlackTree<>(SUM);
+        instance.setLazyDeletion(0.3);
+        instance.setNodePool(20);
+        checkAgainstTreeSet(instance, new Random(43));
+    }
+
+    /**
+     * Test of insertAll and deleteAll methods, of class AggregateRedBlackTree.
+     */
+    @Test
+    public void testInsertAllDeleteAll() {
+        System.out.println("Test insertAll and deleteAll");
+
+        AggregateRedBlackTree<Integer, Long> instance = new AggregateRedBlackTree<>(SUM);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, new Random(46));
+        assertEquals(1000, instance.insertAll(values).getApplied());
+        instance.verify();
+        assertEquals(Long.valueOf(500500), instance.aggregate());
+
+        List<Integer> even = new ArrayList<>();
+        for (int i = 2; i <= 1000; i += 2) {
+            even.add(i);
+        }
+        assertEquals(500, instance.deleteAll(even).getApplied());
+        instance.verify();
+        assertEquals(Long.valueOf(250000), instance.aggregate());
+        assertEquals(Long.valueOf(25), instance.aggregate(1, 10));
+
+        // A small batch goes value by value
+        instance.insertAll(Arrays.asList(2, 4));
+        instance.verify();
+        assertEquals(Long.valueOf(250006), instance.aggregate());
+    }
+}
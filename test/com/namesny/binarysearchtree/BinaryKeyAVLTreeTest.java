@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class BinaryKeyAVLTreeTest {
+
+    private BinaryKeyAVLTree instance;
+
+    public BinaryKeyAVLTreeTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new BinaryKeyAVLTree();
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    private static BinaryKey key(int tenant, long timestamp, int id) {
+        return new KeyEncoder().writeString("tenant-" + tenant).writeLong(timestamp).writeInt(id).toKey();
+    }
+
+    /**
+     * Test of add, delete and find methods, of class BinaryKeyAVLTree.
+     */
+    @Test
+    public void testAddDeleteAndFind() {
+        System.out.println("Test add, delete and find");
+
+        TreeSet<BinaryKey> expected = new TreeSet<>();
+        Random random = new Random(37);
+        instance.setNodePool(10);
+        for (int i = 0; i < 5000; i++) {
+            BinaryKey value = key(random.nextInt(3), random.nextInt(50) - 25, random.nextInt(20));
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), instance.add(value));
+            } else {
+                expected.remove(value);
+                instance.delete(value);
+            }
+        }
+        instance.verify();
+
+        List<BinaryKey> values = new ArrayList<>();
+        instance.iterator().forEachRemaining(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        for (BinaryKey value : expected) {
+            assertEquals(value, instance.find(BinaryKey.fromBytes(value.toBytes())));
+        }
+        assertNull(instance.find(key(5, 0, 0)));
+        BinaryKey low = new KeyEncoder().writeString("tenant-1").toKey();
+        assertEquals(expected.ceiling(low), instance.ceiling(low));
+        assertEquals(expected.floor(low), instance.floor(low));
+    }
+}
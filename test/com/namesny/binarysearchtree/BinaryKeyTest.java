@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class BinaryKeyTest {
+
+    public BinaryKeyTest() {
+    }
+
+    private static BinaryKey key(String tenant, long timestamp, int id) {
+        return new KeyEncoder().writeString(tenant).writeLong(timestamp).writeInt(id).toKey();
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int cpA = a.codePointAt(i);
+            int cpB = b.codePointAt(j);
+            if (cpA != cpB) {
+                return Integer.compare(cpA, cpB);
+            }
+            i += Character.charCount(cpA);
+            j += Character.charCount(cpB);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int compareTuples(String tenant1, long timestamp1, int id1,
+            String tenant2, long timestamp2, int id2) {
+        int cmp = compareCodePoints(tenant1, tenant2);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Long.compare(timestamp1, timestamp2);
+        return cmp != 0 ? cmp : Integer.compare(id1, id2);
+    }
+
+    /**
+     * Test of compareTo method, of class BinaryKey.
+     */
+    @Test
+    public void testCompareTo() {
+        System.out.println("Test compareTo");
+
+        String[] tenants = {"", "a", "a\u0000", "a\u0000b", "ab", "b", "é", "Ā", "acme-corporation"};
+        long[] timestamps = {Long.MIN_VALUE, -1, 0, 1, 1L << 40, Long.MAX_VALUE};
+        int[] ids = {Integer.MIN_VALUE, -7, 0, 7, Integer.MAX_VALUE};
+        Random random = new Random(37);
+        for (int i = 0; i < 20000; i++) {
+            String tenant1 = tenants[random.nextInt(tenants.length)];
+            String tenant2 = tenants[random.nextInt(tenants.length)];
+            long timestamp1 = timestamps[random.nextInt(timestamps.length)];
+            long timestamp2 = timestamps[random.nextInt(timestamps.length)];
+            int id1 = ids[random.nextInt(ids.length)];
+            int id2 = ids[random.nextInt(ids.length)];
+
+            int expected = compareTuples(tenant1, timestamp1, id1, tenant2, timestamp2, id2);
+            int actual = key(tenant1, timestamp1, id1).compareTo(key(tenant2, timestamp2, id2));
+            assertEquals(Integer.signum(expected), Integer.signum(actual));
+        }
+    }
+
+    /**
+     * Test of compareTo method with doubles, of class BinaryKey.
+     */
+    @Test
+    public void testCompareDoubles() {
+        System.out.println("Test compare doubles");
+
+        double[] values = {Double.NEGATIVE_INFINITY, -1e300, -1.5, -Double.MIN_VALUE, -0.0,
+            0.0, Double.MIN_VALUE, 1.5, 1e300, Double.POSITIVE_INFINITY, Double.NaN};
+        for (double a : values) {
+            for (double b : values) {
+                BinaryKey keyA = new KeyEncoder().writeDouble(a).toKey();
+                BinaryKey keyB = new KeyEncoder().writeDouble(b).toKey();
+                assertEquals(Integer.signum(Double.compare(a, b)), Integer.signum(keyA.compareTo(keyB)));
+            }
+        }
+    }
+
+    /**
+     * Test of KeyDecoder, of class BinaryKey.
+     */
+    @Test
+    public void testDecode() {
+        System.out.println("Test decode");
+
+        BinaryKey key = new KeyEncoder(4).writeString("t\u0000€").writeLong(-42).writeInt(7)
+                .writeDouble(-0.5).writeBoolean(true).writeBytes(new byte[]{0, -1, 0}).toKey();
+        KeyDecoder decoder = new KeyDecoder(key);
+        assertEquals("t\u0000€", decoder.readString());
+        assertEquals(-42, decoder.readLong());
+        assertEquals(7, decoder.readInt());
+        assertEquals(-0.5, decoder.readDouble(), 0.0);
+        assertTrue(decoder.readBoolean());
+        assertArrayEquals(new byte[]{0, -1, 0}, decoder.readBytes());
+        assertTrue(decoder.isEmpty());
+    }
+
+    /**
+     * Test of writeTo, readFrom, toBytes and fromBytes methods, of class
+     * BinaryKey.
+     */
+    @Test
+    public void testPersistence() throws IOException {
+        System.out.println("Test persistence");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BinaryKey[] keys = new BinaryKey[20];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key("tenant-" + i, i * 1000L, -i);
+            keys[i].writeTo(out);
+        }
+        out.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (BinaryKey expected : keys) {
+            BinaryKey actual = BinaryKey.readFrom(in);
+            assertEquals(expected, actual);
+            assertEquals(expected.hashCode(), actual.hashCode());
+            assertEquals(0, expected.compareTo(actual));
+            assertEquals(expected, BinaryKey.fromBytes(expected.toBytes()));
+        }
+
+        BinaryKey empty = BinaryKey.fromBytes(new byte[0]);
+        assertEquals(0, empty.length());
+        assertTrue(empty.compareTo(key("", 0, 0)) < 0);
+    }
+}
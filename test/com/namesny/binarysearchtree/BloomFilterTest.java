@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class BloomFilterTest {
+
+    public BloomFilterTest() {
+    }
+
+    /**
+     * Test of add and mightContain methods, of class BloomFilter.
+     */
+    @Test
+    public void testMightContain() {
+        System.out.println("Test mightContain");
+
+        BloomFilter<Integer> instance = new BloomFilter<>(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            instance.add(i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(instance.mightContain(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) {
+            if (instance.mightContain(i)) {
+                instance.recordFalsePositive();
+                falsePositives++;
+            }
+        }
+        assertEquals(falsePositives, instance.getFalsePositives());
+        assertEquals(110000, instance.getLookups());
+        assertEquals(100000 - falsePositives, instance.getNegatives());
+        assertTrue(instance.getFalsePositiveRate() < 0.02);
+        assertTrue(instance.getExpectedFalsePositiveRate() < 0.01);
+
+        instance.resetStats();
+        assertEquals(0, instance.getLookups());
+        assertEquals(0.0, instance.getFalsePositiveRate(), 0.0);
+    }
+
+    /**
+     * Test of remove method, of class BloomFilter.
+     */
+    @Test
+    public void testRemove() {
+        System.out.println("Test remove");
+
+        BloomFilter<Integer> instance = new BloomFilter<>(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            instance.add(i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            instance.remove(i);
+        }
+        assertEquals(500, instance.count());
+        int rejected = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 1) {
+                assertTrue(instance.mightContain(i));
+            } else if (!instance.mightContain(i)) {
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 480);
+
+        instance.clear();
+        assertEquals(0, instance.count());
+        assertFalse(instance.mightContain(1));
+    }
+
+    /**
+     * Test of saturated counters, of class BloomFilter.
+     */
+    @Test
+    public void testSaturation() {
+        System.out.println("Test saturation");
+
+        BloomFilter<Integer> instance = new BloomFilter<>(100, 0.01);
+        for (int i = 0; i < 20; i++) {
+            instance.add(7);
+        }
+        instance.add(8);
+        for (int i = 0; i < 20; i++) {
+            instance.remove(7);
+        }
+
+        // The counters of 7 overflowed and stay set, 8 is never lost
+        assertTrue(instance.mightContain(7));
+        assertTrue(instance.mightContain(8));
+    }
+
+    /**
+     * Test of writeTo and readFrom methods, of class BloomFilter.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        System.out.println("Test writeTo and readFrom");
+
+        BloomFilter<Integer> instance = new BloomFilter<>(500, 0.01);
+        for (int i = 0; i < 500; i++) {
+            instance.add(i * 3);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        instance.writeTo(new DataOutputStream(bytes));
+        BloomFilter<Integer> copy = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(instance.count(), copy.count());
+        assertEquals(instance.capacity(), copy.capacity());
+        assertEquals(instance.counters(), copy.counters());
+        assertEquals(instance.hashes(), copy.hashes());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(instance.mightContain(i), copy.mightContain(i));
+        }
+        copy.remove(0);
+        assertEquals(499, copy.count());
+    }
+
+    /**
+     * Test of the constructor with an invalid rate, of class BloomFilter.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        System.out.println("Test invalid rate");
+
+        new BloomFilter<Integer>(100, 1.0);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class FlatCombiningTreeTest {
+
+    public FlatCombiningTreeTest() {
+    }
+
+    /**
+     * Test of insert, delete and find methods from several threads, of class
+     * FlatCombiningTree.
+     */
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        System.out.println("Test concurrent updates");
+
+        AVLTree<Integer> tree = new AVLTree<>();
+        FlatCombiningTree<Integer> instance = new FlatCombiningTree<>(tree);
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger misses = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < 4000; i += 8) {
+                    try {
+                        instance.insert(i);
+                        instance.insert(i);
+                    } catch (DuplicateValueException e) {
+                        duplicates.incrementAndGet();
+                    }
+                    if (instance.find(i) == null) {
+                        misses.incrementAndGet();
+                    }
+                    if (i % 2 == 1) {
+                        instance.delete(i);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, duplicates.get());
+        assertEquals(0, misses.get());
+        tree.verify();
+        assertEquals(2000, tree.size());
+        for (int i = 0; i < 4000; i++) {
+            assertEquals(i % 2 == 0 ? Integer.valueOf(i) : null, instance.find(i));
+        }
+        assertEquals(Integer.valueOf(0), instance.findMin());
+        assertEquals(Integer.valueOf(3998), instance.findMax());
+        assertTrue(instance.getAverageBatchSize() >= 1);
+    }
+
+    /**
+     * Test of getRecordCount method with short-lived threads, of class
+     * FlatCombiningTree.
+     */
+    @Test
+    public void testStaleRecords() throws Exception {
+        System.out.println("Test stale records");
+
+        FlatCombiningTree<Integer> instance = new FlatCombiningTree<>(new AVLTree<Integer>());
+        for (int t = 0; t < 100; t++) {
+            int value = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    instance.insert(value);
+                } catch (DuplicateValueException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        assertEquals(100, instance.getRecordCount());
+
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(Integer.valueOf(i % 100), instance.find(i % 100));
+        }
+        assertEquals(1, instance.getRecordCount());
+
+        // A thread whose record was unlinked links it again
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                instance.find(1);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals(1, instance.getRecordCount());
+        instance.delete(0);
+        instance.delete(1);
+        assertEquals(2, instance.getRecordCount());
+        assertNull(instance.find(0));
+        assertNull(instance.find(1));
+        assertEquals(Integer.valueOf(99), instance.findMax());
+    }
+
+    /**
+     * Test of insert method while holding the lock, of class
+     * FlatCombiningTree.
+     */
+    @Test
+    public void testInsertUnderLock() throws DuplicateValueException {
+        System.out.println("Test insert under lock");
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        FlatCombiningTree<Integer> instance = new FlatCombiningTree<>(tree);
+        instance.getLock().lock();
+        try {
+            instance.insert(1);
+            assertEquals(Integer.valueOf(1), tree.find(1));
+        } finally {
+            instance.getLock().unlock();
+        }
+        assertFalse(instance.isEmpty());
+        instance.clear();
+        assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * Test of insert method with a duplicate value, of class
+     * FlatCombiningTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws DuplicateValueException {
+        System.out.println("Test insert duplicate");
+
+        FlatCombiningTree<Integer> instance = new FlatCombiningTree<>(new AVLTree<Integer>());
+        instance.insert(1);
+        instance.insert(1);
+    }
+
+    /**
+     * Test of find method with a null key, of class FlatCombiningTree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindNull() {
+        System.out.println("Test find null");
+
+        new FlatCombiningTree<Integer>(new AVLTree<Integer>()).find(null);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class HashIndexedTreeTest {
+
+    public HashIndexedTreeTest() {
+    }
+
+    private static void checkAgainstTreeSet(HashIndexedTree<Integer> instance) {
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(38);
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(1000);
+            switch (random.nextInt(5)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.add(value), instance.add(value));
+                    break;
+                case 2:
+                    expected.remove(value);
+                    instance.delete(value);
+                    break;
+                case 3:
+                    assertEquals(expected.pollFirst(), instance.pollMin());
+                    break;
+                default:
+                    Iterator<Integer> iterator = instance.iterator(value, true, null, true, false);
+                    if (iterator.hasNext()) {
+                        expected.remove(iterator.next());
+                        iterator.remove();
+                    }
+                    break;
+            }
+            assertEquals(expected.contains(value) ? Integer.valueOf(value) : null, instance.find(value));
+            assertEquals(expected.size(), instance.size());
+        }
+
+        List<Integer> values = new ArrayList<>();
+        instance.iterator().forEachRemaining(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        for (int value = 0; value < 1000; value++) {
+            assertEquals(expected.contains(value), instance.contains(value));
+        }
+        assertEquals(expected.first(), instance.findMin());
+        assertEquals(expected.last(), instance.findMax());
+        assertEquals(expected.floor(500), instance.floor(500));
+        assertEquals(expected.higher(500), instance.higher(500));
+    }
+
+    /**
+     * Test of add, delete, find and pollMin methods over an AVL tree, of
+     * class HashIndexedTree.
+     */
+    @Test
+    public void testOverAVLTree() {
+        System.out.println("Test over AVL tree");
+
+        HashIndexedTree<Integer> instance = new HashIndexedTree<>();
+        checkAgainstTreeSet(instance);
+        ((AVLTree<Integer>) instance.getTree()).verify();
+    }
+
+    /**
+     * Test of add, delete, find and pollMin methods over a Red-Black tree, of
+     * class HashIndexedTree.
+     */
+    @Test
+    public void testOverRedBlackTree() {
+        System.out.println("Test over Red-Black tree");
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        tree.setLazyDeletion(0.3);
+        HashIndexedTree<Integer> instance = new HashIndexedTree<>(tree);
+        checkAgainstTreeSet(instance);
+        tree.verify();
+    }
+
+    /**
+     * Test of the constructor indexing a filled tree, of class
+     * HashIndexedTree.
+     */
+    @Test
+    public void testIndexExistingTree() throws DuplicateValueException {
+        System.out.println("Test index existing tree");
+
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i * 2);
+        }
+        HashIndexedTree<Integer> instance = new HashIndexedTree<>(tree);
+        assertEquals(100, instance.size());
+        assertEquals(Integer.valueOf(42), instance.find(42));
+        assertNull(instance.find(43));
+
+        instance.clear();
+        assertTrue(instance.isEmpty());
+        assertTrue(tree.isEmpty());
+        assertNull(instance.find(42));
+    }
+
+    /**
+     * Test of insert method with a duplicate value, of class HashIndexedTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws DuplicateValueException {
+        System.out.println("Test insert duplicate");
+
+        HashIndexedTree<Integer> instance = new HashIndexedTree<>(new RedBlackTree<Integer>());
+        instance.insert(1);
+        instance.insert(1);
+    }
+}
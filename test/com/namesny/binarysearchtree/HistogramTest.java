@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class HistogramTest {
+
+    private Histogram instance;
+
+    public HistogramTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new Histogram();
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    /**
+     * Test of record method, of class Histogram.
+     */
+    @Test
+    public void testRecord() {
+        System.out.println("Test record");
+
+        for (int i = 1; i <= 100; i++) {
+            instance.record(i);
+        }
+
+        assertEquals(100, instance.getCount());
+        assertEquals(100, instance.getMax());
+        assertEquals(50.5, instance.getMean(), 1e-9);
+    }
+
+    /**
+     * Test of getValueAtPercentile method, of class Histogram.
+     */
+    @Test
+    public void testGetValueAtPercentile() {
+        System.out.println("Test getValueAtPercentile");
+
+        assertEquals("Empty histogram", 0, instance.getValueAtPercentile(99));
+
+        for (int i = 1; i <= 1000000; i++) {
+            instance.record(i);
+        }
+
+        assertEquals(500000, instance.getValueAtPercentile(50), 500000 * 0.04);
+        assertEquals(990000, instance.getValueAtPercentile(99), 990000 * 0.04);
+        assertEquals(1000000, instance.getValueAtPercentile(100), 1000000 * 0.04);
+
+        System.out.println("Record large value");
+        instance.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, instance.getMax());
+    }
+
+    /**
+     * Test of reset method, of class Histogram.
+     */
+    @Test
+    public void testReset() {
+        System.out.println("Test reset");
+
+        instance.record(42);
+        instance.reset();
+        assertEquals(0, instance.getCount());
+        assertEquals(0, instance.getValueAtPercentile(50));
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class IntervalTreeTest {
+
+    private IntervalTree<Integer> instance;
+
+    public IntervalTreeTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new IntervalTree<>();
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    private static List<Interval<Integer>> overlapping(TreeSet<Interval<Integer>> intervals, int low, int high) {
+        List<Interval<Integer>> result = new ArrayList<>();
+        for (Interval<Integer> interval : intervals) {
+            if (interval.overlaps(low, high)) {
+                result.add(interval);
+            }
+        }
+        return result;
+    }
+
+    private void checkAgainstTreeSet(Random random) {
+        TreeSet<Interval<Integer>> expected = new TreeSet<>();
+        for (int i = 0; i < 5000; i++) {
+            int low = random.nextInt(1000);
+            Interval<Integer> interval = new Interval<>(low, low + random.nextInt(random.nextBoolean() ? 10 : 300));
+            switch (random.nextInt(6)) {
+                case 0:
+                    assertEquals(expected.pollFirst(), instance.pollMin());
+                    break;
+                case 1:
+                case 2:
+                    expected.remove(interval);
+                    instance.delete(interval);
+                    break;
+                default:
+                    assertEquals(expected.add(interval), instance.add(interval));
+                    break;
+            }
+
+            int point = random.nextInt(1300);
+            assertEquals(overlapping(expected, point, point), instance.findContaining(point));
+            if (i % 50 == 0) {
+                instance.verify();
+                int high = point + random.nextInt(50);
+                List<Interval<Integer>> result = overlapping(expected, point, high);
+                assertEquals(result, instance.findOverlapping(point, high));
+                assertEquals(result.isEmpty() ? null : result.get(0), instance.findFirstOverlapping(point, high));
+            }
+        }
+    }
+
+    /**
+     * Test of findOverlapping and findContaining methods, of class
+     * IntervalTree.
+     */
+    @Test
+    public void testFindOverlapping() {
+        System.out.println("Test findOverlapping");
+
+        checkAgainstTreeSet(new Random(40));
+    }
+
+    /**
+     * Test of findOverlapping method with lazy deletion and node recycling, of
+     * class IntervalTree.
+     */
+    @Test
+    public void testFindOverlappingLazy() {
+        System.out.println("Test findOverlapping lazy");
+
+        instance.setLazyDeletion(0.3);
+        instance.setNodePool(50);
+        checkAgainstTreeSet(new Random(41));
+    }
+
+    /**
+     * Test of forEachOverlapping method, of class IntervalTree.
+     */
+    @Test
+    public void testForEachOverlapping() {
+        System.out.println("Test forEachOverlapping");
+
+        instance.add(new Interval<>(1, 5));
+        instance.add(new Interval<>(3, 3));
+        instance.add(new Interval<>(4, 10));
+        instance.add(new Interval<>(11, 12));
+        instance.add(new Interval<>(-5, 20));
+
+        List<Interval<Integer>> result = new ArrayList<>();
+        instance.forEachOverlapping(5, 10, result::add);
+        assertEquals(Arrays.asList(new Interval<>(-5, 20), new Interval<>(1, 5), new Interval<>(4, 10)), result);
+        assertEquals(new Interval<>(-5, 20), instance.findFirstOverlapping(12, 30));
+        assertNull(instance.findFirstOverlapping(21, 30));
+        assertTrue(instance.findContaining(-6).isEmpty());
+    }
+
+    /**
+     * Test of the Interval constructor with reversed endpoints, of class
+     * IntervalTree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testReversedInterval() {
+        System.out.println("Test reversed interval");
+
+        instance.add(new Interval<>(5, 1));
+    }
+
+    /**
+     * Test of insertAll and deleteAll methods, of class IntervalTree.
+     */
+    @Test
+    public void testInsertAllDeleteAll() {
+        System.out.println("Test insertAll and deleteAll");
+
+        instance.setLazyDeletion(0.3);
+        TreeSet<Interval<Integer>> expected = new TreeSet<>();
+        Random random = new Random(46);
+        for (int round = 0; round < 6; round++) {
+            List<Interval<Integer>> batch = new ArrayList<>();
+            for (int i = 0; i < (round % 2 == 0 ? 2000 : 20); i++) {
+                int low = random.nextInt(1000);
+                batch.add(new Interval<>(low, low + random.nextInt(100)));
+            }
+            if (round % 3 == 2) {
+                instance.deleteAll(batch);
+                expected.removeAll(batch);
+            } else {
+                instance.insertAll(batch);
+                expected.addAll(batch);
+            }
+            instance.delete(expected.first());
+            expected.remove(expected.first());
+
+            instance.verify();
+            for (int point = 0; point < 1100; point += 13) {
+                assertEquals(overlapping(expected, point, point + 5), instance.findOverlapping(point, point + 5));
+            }
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class LSMTreeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public LSMTreeTest() {
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> values = new ArrayList<>();
+        iterator.forEachRemaining(values::add);
+        return values;
+    }
+
+    private static List<String> files(Path directory, String suffix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(suffix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Test of put, delete, find and iterator methods, of class LSMTree.
+     */
+    @Test
+    public void testAgainstTreeSet() throws IOException {
+        System.out.println("Test against TreeSet");
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(44);
+        try (LSMTree<Integer> instance = new LSMTree<>(folder.newFolder().toPath(), ValueCodec.INTEGER, 64, 3)) {
+            for (int i = 0; i < 20000; i++) {
+                int value = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    expected.remove(value);
+                    instance.delete(value);
+                } else {
+                    expected.add(value);
+                    instance.put(value);
+                }
+
+                int key = random.nextInt(2100);
+                assertEquals(expected.contains(key) ? Integer.valueOf(key) : null, instance.find(key));
+                if (i % 1000 == 0) {
+                    assertEquals(new ArrayList<>(expected), toList(instance.iterator()));
+                    assertEquals(new ArrayList<>(expected.subSet(key, false, key + 300, true).descendingSet()),
+                            toList(instance.iterator(key, false, key + 300, true, true)));
+                    assertEquals(new ArrayList<>(expected.headSet(key, true)),
+                            toList(instance.iterator(null, false, key, true, false)));
+                    assertEquals(expected.first(), instance.findMin());
+                    assertEquals(expected.last(), instance.findMax());
+                }
+            }
+
+            instance.compact();
+            assertEquals(1, instance.runs());
+            assertEquals(0, instance.memtableEntries());
+            // the compaction dropped all tombstones
+            assertEquals(expected.size(), instance.runEntries());
+            assertEquals(new ArrayList<>(expected), toList(instance.iterator()));
+            assertEquals(new ArrayList<>(expected.descendingSet()), toList(instance.iterator(null, false, null, false, true)));
+        }
+    }
+
+    /**
+     * Test of flush and compact methods, of class LSMTree.
+     */
+    @Test
+    public void testFlushAndCompact() throws IOException {
+        System.out.println("Test flush and compact");
+
+        Path directory = folder.newFolder().toPath();
+        try (LSMTree<Integer> instance = new LSMTree<>(directory, ValueCodec.INTEGER, 1000, 10)) {
+            for (int run = 0; run < 3; run++) {
+                for (int i = 0; i < 100; i++) {
+                    instance.put(run * 100 + i);
+                }
+                instance.flush();
+            }
+            assertEquals(3, instance.runs());
+            assertEquals(3, files(directory, ".sst").size());
+
+            // a newer tombstone hides the value in an older run
+            instance.delete(150);
+            instance.put(1000);
+            assertNull(instance.find(150));
+            assertEquals(Integer.valueOf(299), instance.find(299));
+            instance.flush();
+            assertNull(instance.find(150));
+
+            instance.compact();
+            assertEquals(1, instance.runs());
+            assertEquals(300, instance.runEntries());
+            assertEquals(1, files(directory, ".sst").size());
+            assertNull(instance.find(150));
+            assertEquals(Integer.valueOf(1000), instance.findMax());
+            assertEquals(Integer.valueOf(0), instance.findMin());
+        }
+    }
+
+    /**
+     * Test of size-tiered background compaction, of class LSMTree.
+     */
+    @Test
+    public void testTieredCompaction() throws IOException {
+        System.out.println("Test tiered compaction");
+
+        Path directory = folder.newFolder().toPath();
+        try (LSMTree<Integer> instance = new LSMTree<>(directory, ValueCodec.INTEGER, 100, 4)) {
+            for (int i = 0; i < 1500; i++) {
+                instance.put(i);
+            }
+            instance.flush();
+            // three runs of 400 values and three runs of 100 values
+            assertEquals(6, instance.runs());
+            assertEquals(1500, instance.runEntries());
+
+            for (int i = 1500; i < 1600; i++) {
+                instance.put(i);
+            }
+            instance.flush();
+            assertEquals(1, instance.runs());
+            assertEquals(1600, instance.runEntries());
+
+            // The newer tier keeps the tombstone hiding a value of the oldest run
+            instance.delete(5);
+            for (int i = 1600; i < 1999; i++) {
+                instance.put(i);
+            }
+            instance.flush();
+            assertEquals(2, instance.runs());
+            assertEquals(2000, instance.runEntries());
+            assertEquals(2, files(directory, ".sst").size());
+            assertNull(instance.find(5));
+            assertEquals(Collections.singletonList(6), toList(instance.iterator(4, false, 6, true, false)));
+            assertEquals(1998, toList(instance.iterator()).size());
+
+            instance.compact();
+            assertEquals(1, instance.runs());
+            assertEquals(1998, instance.runEntries());
+            assertNull(instance.find(5));
+        }
+    }
+
+    /**
+     * Test of compact method while a scan is open, of class LSMTree.
+     */
+    @Test
+    public void testCompactDuringScan() throws IOException {
+        System.out.println("Test compact during scan");
+
+        Path directory = folder.newFolder().toPath();
+        try (LSMTree<Integer> instance = new LSMTree<>(directory, ValueCodec.INTEGER, 1000, 10)) {
+            for (int i = 0; i < 100; i++) {
+                instance.put(i);
+            }
+            instance.flush();
+            List<String> scanned = files(directory, ".sst");
+
+            // An abandoned iterator keeps only the run it reads
+            Iterator<Integer> iterator = instance.iterator();
+            assertEquals(Integer.valueOf(0), iterator.next());
+            for (int round = 1; round <= 20; round++) {
+                instance.put(100 * round);
+                instance.compact();
+                assertEquals(1, instance.runs());
+                List<String> files = files(directory, ".sst");
+                assertEquals(2, files.size());
+                assertTrue(files.containsAll(scanned));
+            }
+
+            // The run is deleted when the scan finishes
+            assertEquals(99, toList(iterator).size());
+            assertEquals(1, files(directory, ".sst").size());
+            assertEquals(Integer.valueOf(2000), instance.findMax());
+        }
+    }
+
+    /**
+     * Test of reopening a closed tree, of class LSMTree.
+     */
+    @Test
+    public void testReopen() throws IOException {
+        System.out.println("Test reopen");
+
+        Path directory = folder.newFolder().toPath();
+        TreeSet<String> expected = new TreeSet<>();
+        try (LSMTree<String> instance = new LSMTree<>(directory, ValueCodec.STRING, 100, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                String value = "key-" + (i * 7919 % 1000);
+                instance.put(value);
+                expected.add(value);
+                if (i % 3 == 0) {
+                    instance.delete("key-" + i);
+                    expected.remove("key-" + i);
+                }
+            }
+        }
+        assertTrue(files(directory, ".log").isEmpty());
+
+        try (LSMTree<String> instance = new LSMTree<>(directory, ValueCodec.STRING, 100, 4)) {
+            assertEquals(new ArrayList<>(expected), toList(instance.iterator()));
+            for (int i = 0; i < 1000; i++) {
+                String key = "key-" + i;
+                assertEquals(expected.contains(key) ? key : null, instance.find(key));
+            }
+        }
+    }
+
+    /**
+     * Test of recovery from the log of a tree which was not closed, of class
+     * LSMTree.
+     */
+    @Test
+    public void testRecoverLog() throws IOException {
+        System.out.println("Test recover log");
+
+        Path directory = folder.newFolder().toPath();
+        LSMTree<Long> crashed = new LSMTree<>(directory, ValueCodec.LONG);
+        for (long i = 0; i < 500; i++) {
+            crashed.put(i);
+        }
+        crashed.delete(10L);
+        assertEquals(1, files(directory, ".log").size());
+        assertTrue(files(directory, ".sst").isEmpty());
+
+        // the crashed tree is never closed, its log is replayed into a run
+        try (LSMTree<Long> instance = new LSMTree<>(directory, ValueCodec.LONG)) {
+            assertEquals(1, instance.runs());
+            assertEquals(Long.valueOf(499), instance.find(499L));
+            assertNull(instance.find(10L));
+            assertEquals(Long.valueOf(0), instance.findMin());
+            assertEquals(499, toList(instance.iterator()).size());
+        }
+    }
+
+    /**
+     * Test of insert method, of class LSMTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws Exception {
+        System.out.println("Test insert duplicate");
+
+        try (LSMTree<Integer> instance = new LSMTree<>(folder.newFolder().toPath(), ValueCodec.INTEGER, 10, 2)) {
+            for (int i = 0; i < 30; i++) {
+                instance.insert(i);
+            }
+            instance.flush();
+            instance.insert(5);
+        }
+    }
+
+    /**
+     * Test of clear and isEmpty methods, of class LSMTree.
+     */
+    @Test
+    public void testClear() throws IOException {
+        System.out.println("Test clear");
+
+        Path directory = folder.newFolder().toPath();
+        try (LSMTree<Integer> instance = new LSMTree<>(directory, ValueCodec.INTEGER, 16, 4)) {
+            assertTrue(instance.isEmpty());
+            for (int i = 0; i < 100; i++) {
+                instance.put(i);
+            }
+            instance.flush();
+            assertFalse(instance.isEmpty());
+
+            instance.clear();
+            assertTrue(instance.isEmpty());
+            assertNull(instance.find(1));
+            assertEquals(0, instance.runs());
+            assertTrue(files(directory, ".sst").isEmpty());
+
+            instance.put(7);
+            assertEquals(Integer.valueOf(7), instance.findMin());
+        }
+    }
+
+    /**
+     * Test of the runs of a scan being kept until it finishes, of class
+     * LSMTree.
+     */
+    @Test
+    public void testScanDuringCompaction() throws IOException {
+        System.out.println("Test scan during compaction");
+
+        Path directory = folder.newFolder().toPath();
+        try (LSMTree<Integer> instance = new LSMTree<>(directory, ValueCodec.INTEGER, 1000, 10)) {
+            for (int i = 0; i < 400; i++) {
+                instance.put(i);
+                if (i % 100 == 99) {
+                    instance.flush();
+                }
+            }
+            Iterator<Integer> scan = instance.iterator();
+            assertEquals(Integer.valueOf(0), scan.next());
+
+            instance.compact();
+            assertEquals(5, files(directory, ".sst").size());
+
+            int count = 1;
+            while (scan.hasNext()) {
+                assertEquals(Integer.valueOf(count++), scan.next());
+            }
+            assertEquals(400, count);
+            assertEquals(1, files(directory, ".sst").size());
+        }
+    }
+
+    /**
+     * Test of concurrent writers and readers with background flushes and
+     * compactions, of class LSMTree.
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        System.out.println("Test concurrent");
+
+        AtomicInteger errors = new AtomicInteger();
+        try (LSMTree<Integer> instance = new LSMTree<>(folder.newFolder().toPath(), ValueCodec.INTEGER, 50, 3)) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int value = i * threads.length + offset;
+                        instance.put(value);
+                        if (!Integer.valueOf(value).equals(instance.find(value))) {
+                            errors.incrementAndGet();
+                        }
+                        if (i % 2 == 1) {
+                            instance.delete(value);
+                            if (instance.find(value) != null) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(0, errors.get());
+            List<Integer> values = toList(instance.iterator());
+            assertEquals(4000, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                // every thread kept its values with an even index
+                assertEquals(i / 4 * 8 + i % 4, (int) values.get(i));
+            }
+        }
+    }
+
+    /**
+     * Test of the constructor with an invalid memtable size, of class
+     * LSMTree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMemtableSize() throws IOException {
+        System.out.println("Test invalid memtable size");
+
+        new LSMTree<>(folder.newFolder().toPath(), ValueCodec.INTEGER, 0, 4);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class LearnedIndexTest {
+
+    public LearnedIndexTest() {
+    }
+
+    private static <T extends Comparable<? super T>> void assertNavigation(TreeSet<T> expected, LearnedIndex<T> instance, T key) {
+        assertEquals(expected.contains(key) ? key : null, instance.find(key));
+        assertEquals(expected.floor(key), instance.floor(key));
+        assertEquals(expected.ceiling(key), instance.ceiling(key));
+        assertEquals(expected.lower(key), instance.lower(key));
+        assertEquals(expected.higher(key), instance.higher(key));
+    }
+
+    /**
+     * Test of find method, of class LearnedIndex.
+     */
+    @Test
+    public void testFind() {
+        System.out.println("Test find");
+
+        AVLTree<Integer> tree = new AVLTree<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(51);
+        for (int i = 0; i < 100000; i++) {
+            // Uniform keys with a dense cluster the model has to split off
+            int value = i % 4 == 0 ? 1000000 + random.nextInt(5000) : random.nextInt();
+            expected.add(value);
+            tree.add(value);
+        }
+
+        for (int epsilon : new int[]{0, 4, 64}) {
+            LearnedIndex<Integer> instance = new LearnedIndex<>(tree, RadixKey.INTEGER, epsilon);
+            assertEquals(expected.size(), instance.size());
+            assertEquals(epsilon, instance.getEpsilon());
+            assertTrue(instance.getMaxError() <= epsilon);
+            assertTrue(instance.getMeanError() <= epsilon);
+            assertTrue(instance.getSegments() > 0);
+            assertEquals(instance.getSegments() * 20L, instance.getModelBytes());
+            assertEquals(expected.first(), instance.findMin());
+            assertEquals(expected.last(), instance.findMax());
+
+            for (Integer value : expected) {
+                assertEquals(value, instance.find(value));
+            }
+            for (int i = 0; i < 20000; i++) {
+                assertNavigation(expected, instance, i % 2 == 0 ? random.nextInt() : 1000000 + random.nextInt(6000) - 500);
+            }
+            assertNavigation(expected, instance, Integer.MIN_VALUE);
+            assertNavigation(expected, instance, Integer.MAX_VALUE);
+        }
+
+        // A larger error needs fewer segments
+        assertTrue(new LearnedIndex<>(tree, RadixKey.INTEGER, 64).getSegments()
+                < new LearnedIndex<>(tree, RadixKey.INTEGER, 4).getSegments());
+    }
+
+    /**
+     * Test of find method with long keys, of class LearnedIndex.
+     */
+    @Test
+    public void testFindLong() {
+        System.out.println("Test find long");
+
+        RedBlackTree<Long> tree = new RedBlackTree<>();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(52);
+        for (int i = 0; i < 20000; i++) {
+            long value = random.nextLong();
+            expected.add(value);
+            tree.add(value);
+        }
+        // Keys at both ends of the range of longs
+        for (long value : new long[]{Long.MIN_VALUE, Long.MAX_VALUE, -1, 0}) {
+            expected.add(value);
+            tree.add(value);
+        }
+
+        LearnedIndex<Long> instance = new LearnedIndex<>(tree, RadixKey.LONG);
+        assertTrue(instance.getMaxError() <= LearnedIndex.DEFAULT_EPSILON);
+        for (Long value : expected) {
+            assertEquals(value, instance.find(value));
+        }
+        for (int i = 0; i < 20000; i++) {
+            assertNavigation(expected, instance, random.nextLong());
+        }
+    }
+
+    /**
+     * Test of find method with keys sharing their first bytes, of class
+     * LearnedIndex.
+     */
+    @Test
+    public void testFindSharedPrefix() {
+        System.out.println("Test find shared prefix");
+
+        RedBlackTree<BinaryKey> tree = new RedBlackTree<>();
+        TreeSet<BinaryKey> expected = new TreeSet<>();
+        KeyEncoder encoder = new KeyEncoder();
+        for (int i = 0; i < 3000; i++) {
+            // The model sees only the first field, all values with the same
+        // first field look equal to it
+            BinaryKey key = encoder.reset().writeLong(i / 1000).writeInt(i * 7).toKey();
+            expected.add(key);
+            tree.add(key);
+        }
+
+        LearnedIndex<BinaryKey> instance = new LearnedIndex<>(tree, RadixKey.BINARY_KEY, 8);
+        assertEquals(1, instance.getSegments());
+        assertEquals(999, instance.getMaxError());
+        for (BinaryKey key : expected) {
+            assertSame(key, instance.find(key));
+        }
+        for (int i = -10; i < 3010 * 7; i += 3) {
+            assertNavigation(expected, instance, encoder.reset().writeLong(i / 7000).writeInt(i).toKey());
+        }
+    }
+
+    /**
+     * Test of an empty index, of class LearnedIndex.
+     */
+    @Test
+    public void testEmpty() {
+        System.out.println("Test empty");
+
+        LearnedIndex<Integer> instance = new LearnedIndex<>(new AVLTree<>(), RadixKey.INTEGER);
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.getSegments());
+        assertNull(instance.find(1));
+        assertNull(instance.floor(1));
+        assertNull(instance.higher(1));
+        assertNull(instance.findMin());
+        assertFalse(instance.iterator().hasNext());
+    }
+
+    /**
+     * Test of iterator method, of class LearnedIndex.
+     */
+    @Test
+    public void testIterator() {
+        System.out.println("Test iterator");
+
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add((i * 37) % 1000);
+        }
+        LearnedIndex<Integer> instance = new LearnedIndex<>(tree, RadixKey.INTEGER);
+
+        // The index is a snapshot
+        tree.delete(5);
+        assertEquals(new Integer(5), instance.find(5));
+
+        List<Integer> values = new ArrayList<>();
+        instance.forEach(values::add);
+        assertEquals(1000, values.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(new Integer(i), values.get(i));
+        }
+        // Evenly spaced keys fit one segment exactly
+        assertEquals(1, instance.getSegments());
+        assertEquals(0, instance.getMaxError());
+    }
+
+    /**
+     * Test of insert method, of class LearnedIndex.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInsert() {
+        System.out.println("Test insert");
+
+        new LearnedIndex<>(new AVLTree<Integer>(), RadixKey.INTEGER).insert(1);
+    }
+
+    /**
+     * Test of constructor with a negative error, of class LearnedIndex.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeEpsilon() {
+        System.out.println("Test negative epsilon");
+
+        new LearnedIndex<>(new AVLTree<Integer>(), RadixKey.INTEGER, -1);
+    }
+}
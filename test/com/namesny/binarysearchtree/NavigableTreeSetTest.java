@@ -0,0 +1,252 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class NavigableTreeSetTest {
+
+    private NavigableTreeSet<Integer> avl;
+    private NavigableTreeSet<Integer> redBlack;
+    private TreeSet<Integer> expected;
+
+    public NavigableTreeSetTest() {
+    }
+
+    @Before
+    public void setUp() {
+        avl = new NavigableTreeSet<>(new AVLTree<Integer>());
+        redBlack = new NavigableTreeSet<>(new RedBlackTree<Integer>());
+        expected = new TreeSet<>();
+    }
+
+    @After
+    public void tearDown() {
+        avl = null;
+        redBlack = null;
+        expected = null;
+    }
+
+    private void addMore(int... values) {
+        for (int value : values) {
+            avl.add(value);
+            redBlack.add(value);
+            expected.add(value);
+        }
+    }
+
+    private void assertSame(NavigableSet<Integer> expected, NavigableSet<Integer> actual) {
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(new ArrayList<>(expected.descendingSet()), new ArrayList<>(actual.descendingSet()));
+        for (int key = -5; key <= 105; key++) {
+            assertEquals(expected.contains(key), actual.contains(key));
+            assertEquals(expected.floor(key), actual.floor(key));
+            assertEquals(expected.ceiling(key), actual.ceiling(key));
+            assertEquals(expected.lower(key), actual.lower(key));
+            assertEquals(expected.higher(key), actual.higher(key));
+        }
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        }
+    }
+
+    /**
+     * Test of add and remove methods, of class NavigableTreeSet.
+     */
+    @Test
+    public void testAddAndRemove() {
+        System.out.println("Test add and remove");
+
+        assertTrue(avl.add(10));
+        assertFalse(avl.add(10));
+        assertTrue(redBlack.add(10));
+        assertFalse(redBlack.add(10));
+        assertTrue(avl.remove(10));
+        assertFalse(avl.remove(10));
+        assertTrue(redBlack.remove(10));
+        assertFalse(redBlack.remove(10));
+
+        Random random = new Random(32);
+        for (int i = 0; i < 2000; i++) {
+            int value = random.nextInt(100);
+            if (random.nextBoolean()) {
+                boolean added = expected.add(value);
+                assertEquals(added, avl.add(value));
+                assertEquals(added, redBlack.add(value));
+            } else {
+                boolean removed = expected.remove(value);
+                assertEquals(removed, avl.remove(value));
+                assertEquals(removed, redBlack.remove(value));
+            }
+        }
+        assertSame(expected, avl);
+        assertSame(expected, redBlack);
+    }
+
+    /**
+     * Test of navigation methods, of class NavigableTreeSet.
+     */
+    @Test
+    public void testNavigation() {
+        System.out.println("Test navigation");
+
+        assertNull(avl.floor(1));
+        assertNull(redBlack.ceiling(1));
+        try {
+            avl.first();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+        }
+
+        addMore(50, 20, 80, 10, 30, 70, 90, 25, 75);
+        assertSame(expected, avl);
+        assertSame(expected, redBlack);
+        assertSame(expected.descendingSet(), avl.descendingSet());
+        assertSame(expected.descendingSet(), redBlack.descendingSet());
+    }
+
+    /**
+     * Test of subSet, headSet and tailSet methods, of class NavigableTreeSet.
+     */
+    @Test
+    public void testViews() {
+        System.out.println("Test views");
+
+        for (int i = 0; i < 100; i += 3) {
+            addMore(i);
+        }
+
+        for (NavigableTreeSet<Integer> instance : new NavigableTreeSet[]{avl, redBlack}) {
+            assertSame(expected.subSet(10, true, 40, false), instance.subSet(10, true, 40, false));
+            assertSame(expected.subSet(9, false, 42, true), instance.subSet(9, false, 42, true));
+            assertSame(expected.headSet(50, true), instance.headSet(50, true));
+            assertSame(expected.tailSet(50, false), instance.tailSet(50, false));
+            assertSame(expected.subSet(10, true, 40, false).headSet(20, false), instance.subSet(10, true, 40, false).headSet(20, false));
+            assertSame(expected.descendingSet().subSet(60, true, 30, true), instance.descendingSet().subSet(60, true, 30, true));
+            assertSame(expected.descendingSet().headSet(60, false), instance.descendingSet().headSet(60, false));
+            assertSame(expected.tailSet(30, true).descendingSet().tailSet(60, true), instance.tailSet(30, true).descendingSet().tailSet(60, true));
+            assertSame(expected.subSet(40, true, 41, false), instance.subSet(40, true, 41, false));
+
+            try {
+                instance.subSet(10, 40).add(50);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                instance.subSet(10, 40).subSet(5, 20);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+
+        NavigableSet<Integer> view = avl.subSet(10, true, 40, true);
+        avl.add(11);
+        assertTrue(view.contains(11));
+        view.clear();
+        assertFalse(avl.contains(11));
+        assertTrue(avl.contains(9));
+        assertTrue(avl.contains(42));
+        assertTrue(view.isEmpty());
+    }
+
+    /**
+     * Test of iterator method, of class NavigableTreeSet.
+     */
+    @Test
+    public void testIterator() {
+        System.out.println("Test iterator");
+
+        Iterator<Integer> empty = redBlack.iterator();
+        assertFalse(empty.hasNext());
+        try {
+            empty.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+        }
+
+        for (int i = 0; i < 100; i++) {
+            addMore(i);
+        }
+
+        for (NavigableTreeSet<Integer> instance : new NavigableTreeSet[]{avl, redBlack}) {
+            Iterator<Integer> iterator = instance.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() % 2 == 0) {
+                    iterator.remove();
+                }
+            }
+            iterator = instance.descendingIterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() % 3 == 0) {
+                    iterator.remove();
+                }
+            }
+        }
+        expected.removeIf(value -> value % 2 == 0 || value % 3 == 0);
+        assertSame(expected, avl);
+        assertSame(expected, redBlack);
+    }
+
+    /**
+     * Test of pollFirst and pollLast methods, of class NavigableTreeSet.
+     */
+    @Test
+    public void testPoll() {
+        System.out.println("Test pollFirst and pollLast");
+
+        assertNull(avl.pollFirst());
+        assertNull(redBlack.pollLast());
+
+        addMore(5, 3, 8, 1, 4, 7, 9);
+        List<Integer> polled = new ArrayList<>();
+        polled.add(avl.pollFirst());
+        polled.add(avl.pollLast());
+        polled.add(avl.descendingSet().pollFirst());
+        polled.add(avl.subSet(4, true, 8, false).pollFirst());
+        polled.add(avl.subSet(4, true, 8, false).pollLast());
+        assertEquals(java.util.Arrays.asList(1, 9, 8, 4, 7), polled);
+        assertEquals(new ArrayList<>(java.util.Arrays.asList(3, 5)), new ArrayList<>(avl));
+
+        assertEquals(new Integer(1), redBlack.pollFirst());
+        assertEquals(new Integer(9), redBlack.pollLast());
+        assertEquals(5, redBlack.size());
+    }
+}
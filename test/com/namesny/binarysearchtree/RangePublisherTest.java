@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class RangePublisherTest {
+
+    public RangePublisherTest() {
+    }
+
+    /**
+     * Subscriber which records the signals and requests a batch of values
+     * whenever the previous batch is received
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<Integer> {
+
+        final List<Integer> values = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final int batch;
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+        int received;
+
+        RecordingSubscriber(int batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            values.add(item);
+            if (batch > 0 && ++received == batch) {
+                received = 0;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+
+    private static <T extends NavigableTree<Integer>> T fill(T tree, int count) {
+        for (int i = 0; i < count; i++) {
+            tree.add(i);
+        }
+        return tree;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    /**
+     * Test of subscribe method, of class RangePublisher.
+     */
+    @Test
+    public void testSubscribe() {
+        System.out.println("Test subscribe");
+
+        AVLTree<Integer> tree = fill(new AVLTree<>(), 1000);
+        for (int batch : new int[]{1, 3, 10, 1000}) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(batch);
+            tree.publisher(100, true, 200, false, false).subscribe(subscriber);
+            assertTrue(subscriber.completed);
+            assertNull(subscriber.error);
+            assertEquals(range(100, 200), subscriber.values);
+        }
+
+        RecordingSubscriber subscriber = new RecordingSubscriber(7);
+        tree.publisher(null, true, null, true, false).subscribe(subscriber);
+        assertEquals(range(0, 1000), subscriber.values);
+        assertTrue(subscriber.completed);
+    }
+
+    /**
+     * Test of subscribe method with a descending range, of class
+     * RangePublisher.
+     */
+    @Test
+    public void testSubscribeDescending() {
+        System.out.println("Test subscribe descending");
+
+        RedBlackTree<Integer> tree = fill(new RedBlackTree<>(), 1000);
+        RecordingSubscriber subscriber = new RecordingSubscriber(4);
+        tree.publisher(10, false, 20, true, true).subscribe(subscriber);
+        assertEquals(Arrays.asList(20, 19, 18, 17, 16, 15, 14, 13, 12, 11), subscriber.values);
+        assertTrue(subscriber.completed);
+    }
+
+    /**
+     * Test of request method, of class RangePublisher.
+     */
+    @Test
+    public void testRequest() {
+        System.out.println("Test request");
+
+        AVLTree<Integer> tree = fill(new AVLTree<>(), 100);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        tree.publisher(null, true, null, true, false).subscribe(subscriber);
+        assertTrue(subscriber.values.isEmpty());
+
+        subscriber.subscription.request(5);
+        assertEquals(range(0, 5), subscriber.values);
+
+        // The scan resumes after the last value sent, not from a saved path
+        tree.delete(5);
+        tree.delete(6);
+        tree.add(-1);
+        subscriber.subscription.request(3);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 7, 8, 9), subscriber.values);
+        assertFalse(subscriber.completed);
+
+        // Demands add up and saturate
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(98, subscriber.values.size());
+        assertEquals(new Integer(99), subscriber.values.get(97));
+        assertTrue(subscriber.completed);
+    }
+
+    /**
+     * Test of request method with one value at a time over a long range, of
+     * class RangePublisher.
+     */
+    @Test
+    public void testRequestOneByOne() {
+        System.out.println("Test request one by one");
+
+        RedBlackTree<Integer> tree = fill(new RedBlackTree<>(), 200000);
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        tree.publisher(null, true, null, true, false).subscribe(subscriber);
+        assertTrue(subscriber.completed);
+        assertEquals(200000, subscriber.values.size());
+        assertEquals(new Integer(199999), subscriber.values.get(199999));
+    }
+
+    /**
+     * Test of request method with a demand which is not positive, of class
+     * RangePublisher.
+     */
+    @Test
+    public void testRequestInvalid() {
+        System.out.println("Test request invalid");
+
+        AVLTree<Integer> tree = fill(new AVLTree<>(), 10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        tree.publisher(null, true, null, true, false).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(5);
+        assertTrue(subscriber.values.isEmpty());
+    }
+
+    /**
+     * Test of cancel method, of class RangePublisher.
+     */
+    @Test
+    public void testCancel() {
+        System.out.println("Test cancel");
+
+        AVLTree<Integer> tree = fill(new AVLTree<>(), 100);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0) {
+            @Override
+            public void onNext(Integer item) {
+                super.onNext(item);
+                if (values.size() == 3) {
+                    subscription.cancel();
+                }
+            }
+        };
+        tree.publisher(null, true, null, true, false).subscribe(subscriber);
+        subscriber.subscription.request(10);
+        subscriber.subscription.request(10);
+        assertEquals(range(0, 3), subscriber.values);
+        assertFalse(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    /**
+     * Test of subscribe method with an empty range, of class RangePublisher.
+     */
+    @Test
+    public void testSubscribeEmpty() {
+        System.out.println("Test subscribe empty");
+
+        AVLTree<Integer> tree = fill(new AVLTree<>(), 10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        tree.publisher(20, true, null, true, false).subscribe(subscriber);
+        assertTrue(subscriber.completed);
+        assertTrue(subscriber.values.isEmpty());
+    }
+
+    /**
+     * Test of subscribe method with a null subscriber, of class
+     * RangePublisher.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testSubscribeNull() {
+        System.out.println("Test subscribe null");
+
+        new AVLTree<Integer>().publisher(null, true, null, true, false).subscribe(null);
+    }
+
+    /**
+     * Test of subscribe method with an executor, of class RangePublisher.
+     */
+    @Test
+    public void testSubscribeExecutor() throws InterruptedException {
+        System.out.println("Test subscribe executor");
+
+        RedBlackTree<Integer> tree = fill(new RedBlackTree<>(), 10000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RecordingSubscriber subscriber = new RecordingSubscriber(16);
+            new RangePublisher<>(tree, 500, true, 9500, false, false, executor).subscribe(subscriber);
+            assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+            assertTrue(subscriber.completed);
+            assertEquals(range(500, 9500), subscriber.values);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
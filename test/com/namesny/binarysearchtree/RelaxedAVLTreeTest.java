@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class RelaxedAVLTreeTest {
+
+    private RelaxedAVLTree<Integer> instance;
+
+    public RelaxedAVLTreeTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new RelaxedAVLTree<>();
+    }
+
+    @After
+    public void tearDown() {
+        instance.stopRebalancer();
+        instance = null;
+    }
+
+    private List<Integer> toList() {
+        List<Integer> values = new ArrayList<>();
+        instance.forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Test of insert method, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testInsert() throws DuplicateValueException {
+        System.out.println("Test insert");
+
+        // A path in a balanced order stays short, nothing is rotated
+        instance.insert(64);
+        for (int step = 32; step > 0; step /= 2) {
+            for (int i = step; i <= 100; i += 2 * step) {
+                instance.insert(i);
+                instance.verify();
+            }
+        }
+        assertEquals(100, instance.size());
+        assertEquals(7, instance.height());
+        assertEquals(0, instance.getRotations());
+        assertTrue(instance.backlog() > 0);
+        assertEquals(new Integer(1), instance.findMin());
+        assertEquals(new Integer(100), instance.findMax());
+        assertFalse(instance.add(50));
+
+        assertTrue(instance.rebalance() > 0);
+        assertEquals(0, instance.backlog());
+        instance.verify();
+        assertEquals(7, instance.height());
+    }
+
+    /**
+     * Test of insert method with a sorted burst, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testInsertSorted() throws DuplicateValueException {
+        System.out.println("Test insert sorted");
+
+        // A writer whose leaf is too deep drains the backlog
+        for (int i = 1; i <= 100000; i++) {
+            instance.insert(i);
+            if (i % 1000 == 0) {
+                assertTrue(instance.height() <= 2 * (32 - Integer.numberOfLeadingZeros(i)));
+            }
+        }
+        assertTrue(instance.getRotations() > 0);
+        instance.verify();
+
+        instance.rebalance();
+        instance.verify();
+        assertTrue(instance.height() <= 24);
+    }
+
+    /**
+     * Test of insert method with a duplicate, of class RelaxedAVLTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws DuplicateValueException {
+        System.out.println("Test insert duplicate");
+
+        instance.insert(1);
+        instance.insert(1);
+    }
+
+    /**
+     * Test of delete method, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testDelete() {
+        System.out.println("Test delete");
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(47);
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(500);
+            if (random.nextInt(3) > 0) {
+                assertEquals(expected.add(value), instance.add(value));
+            } else {
+                expected.remove(value);
+                instance.delete(value);
+            }
+            if (i % 1000 == 0) {
+                instance.verify();
+                instance.rebalanceStep(random.nextInt(100));
+            }
+        }
+        instance.verify();
+        assertEquals(new ArrayList<>(expected), toList());
+
+        instance.rebalance();
+        instance.verify();
+        assertEquals(new ArrayList<>(expected), toList());
+        assertNull(instance.find(-1));
+    }
+
+    /**
+     * Test of rebalanceStep method, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testRebalanceStep() {
+        System.out.println("Test rebalanceStep");
+
+        for (int i = 0; i < 1000; i++) {
+            instance.add(i);
+        }
+        int backlog = instance.backlog();
+        assertTrue(backlog > 0);
+        long steps = instance.getSteps();
+        assertEquals(10, instance.rebalanceStep(10));
+        assertEquals(0, instance.rebalanceStep(0));
+        assertEquals(steps + 10, instance.getSteps());
+
+        steps += 10;
+        while (instance.backlog() > 0) {
+            steps += instance.rebalanceStep(7);
+            instance.verify();
+        }
+        assertEquals(steps, instance.getSteps());
+        assertEquals(0, instance.rebalanceStep(10));
+        instance.verify();
+        assertTrue(instance.height() <= 14);
+    }
+
+    /**
+     * Test of the backlog limit, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testMaxBacklog() {
+        System.out.println("Test max backlog");
+
+        instance = new RelaxedAVLTree<>(0);
+        for (int i = 0; i < 10000; i++) {
+            instance.add(i);
+            assertEquals(0, instance.backlog());
+        }
+        instance.verify();
+        assertEquals(14, instance.height());
+
+        // Each pending step adds at most about one level to the height
+        instance = new RelaxedAVLTree<>(32);
+        for (int i = 0; i < 10000; i++) {
+            instance.add(i);
+            assertTrue(instance.backlog() <= 32);
+        }
+        for (int i = 0; i < 10000; i += 2) {
+            instance.delete(i);
+        }
+        assertTrue(instance.height() <= 14 + 32);
+        instance.rebalance();
+        instance.verify();
+        assertEquals(5000, instance.size());
+    }
+
+    /**
+     * Test of the constructor with a negative limit, of class RelaxedAVLTree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxBacklog() {
+        System.out.println("Test negative max backlog");
+
+        new RelaxedAVLTree<Integer>(-1);
+    }
+
+    /**
+     * Test of startRebalancer method, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testStartRebalancer() throws InterruptedException {
+        System.out.println("Test startRebalancer");
+
+        instance.startRebalancer();
+        instance.startRebalancer();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(48);
+        for (int i = 0; i < 50000; i++) {
+            int value = random.nextInt(10000);
+            if (random.nextInt(4) > 0) {
+                expected.add(value);
+                instance.add(value);
+            } else {
+                expected.remove(value);
+                instance.delete(value);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (instance.backlog() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, instance.backlog());
+        instance.verify();
+        assertEquals(new ArrayList<>(expected), toList());
+
+        instance.stopRebalancer();
+        instance.add(-1);
+        Thread.sleep(10);
+        assertEquals(1, instance.backlog());
+    }
+
+    /**
+     * Test of iterator method, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testIterator() {
+        System.out.println("Test iterator");
+
+        for (int i = 0; i < 20; i++) {
+            instance.add(i);
+        }
+
+        List<Integer> values = new ArrayList<>();
+        instance.iterator(5, true, 10, false, true).forEachRemaining(values::add);
+        assertEquals(Arrays.asList(9, 8, 7, 6, 5), values);
+
+        // Rebalancing between the calls does not disturb the iterator
+        Iterator<Integer> iterator = instance.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+                instance.rebalanceStep(1);
+            }
+        }
+        instance.verify();
+        assertEquals(10, instance.size());
+        assertEquals(new Integer(1), instance.findMin());
+        assertEquals(new Integer(7), instance.higher(5));
+        assertEquals(new Integer(5), instance.floor(6));
+        assertEquals(new Integer(3), instance.lower(5));
+        assertEquals(new Integer(9), instance.ceiling(8));
+    }
+
+    /**
+     * Test of pollMin and pollMax methods, of class RelaxedAVLTree.
+     */
+    @Test
+    public void testPollMinAndMax() {
+        System.out.println("Test pollMin and pollMax");
+
+        assertNull(instance.pollMin());
+        for (int value : new int[]{3, 1, 4, 5, 9, 2, 6}) {
+            instance.add(value);
+        }
+        assertEquals(new Integer(1), instance.pollMin());
+        assertEquals(new Integer(9), instance.pollMax());
+        instance.verify();
+        assertEquals(5, instance.size());
+
+        instance.clear();
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.backlog());
+        instance.verify();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class ShardedTreeTest {
+
+    public ShardedTreeTest() {
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> values = new ArrayList<>();
+        iterator.forEachRemaining(values::add);
+        return values;
+    }
+
+    /**
+     * Test of add, delete, find and navigation methods, of class ShardedTree.
+     */
+    @Test
+    public void testAgainstTreeSet() {
+        System.out.println("Test against TreeSet");
+
+        ShardedTree<Integer> instance = new ShardedTree<>(8, 16, RedBlackTree::new);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(43);
+        for (int i = 0; i < 20000; i++) {
+            // Keys drift upwards so the shards keep getting skewed
+            int value = i / 10 + random.nextInt(400);
+            switch (random.nextInt(8)) {
+                case 0:
+                    assertEquals(expected.pollFirst(), instance.pollMin());
+                    break;
+                case 1:
+                    assertEquals(expected.pollLast(), instance.pollMax());
+                    break;
+                case 2:
+                case 3:
+                    expected.remove(value);
+                    instance.delete(value);
+                    break;
+                default:
+                    assertEquals(expected.add(value), instance.add(value));
+                    break;
+            }
+
+            int key = i / 10 + random.nextInt(500) - 50;
+            assertEquals(expected.contains(key) ? Integer.valueOf(key) : null, instance.find(key));
+            assertEquals(expected.floor(key), instance.floor(key));
+            assertEquals(expected.lower(key), instance.lower(key));
+            assertEquals(expected.ceiling(key), instance.ceiling(key));
+            assertEquals(expected.higher(key), instance.higher(key));
+            assertEquals(expected.size(), instance.size());
+            if (i % 500 == 0) {
+                assertEquals(new ArrayList<>(expected), toList(instance.iterator()));
+                assertEquals(new ArrayList<>(expected.subSet(key, false, key + 100, true)),
+                        toList(instance.iterator(key, false, key + 100, true, false)));
+                assertEquals(new ArrayList<>(expected.headSet(key, true).descendingSet()),
+                        toList(instance.iterator(null, true, key, true, true)));
+            }
+        }
+        assertEquals(8, instance.shardSizes().length);
+        assertEquals(expected.isEmpty() ? null : expected.first(), instance.findMin());
+        assertEquals(expected.isEmpty() ? null : expected.last(), instance.findMax());
+    }
+
+    /**
+     * Test of splitting and rebalancing the shards, of class ShardedTree.
+     */
+    @Test
+    public void testRebalance() {
+        System.out.println("Test rebalance");
+
+        ShardedTree<Integer> instance = new ShardedTree<>(4, 100, AVLTree::new);
+        for (int i = 0; i < 10000; i++) {
+            instance.add(i);
+        }
+
+        // Ascending inserts all go to the last shard, which hands them down
+        int[] sizes = instance.shardSizes();
+        assertEquals(4, sizes.length);
+        for (int size : sizes) {
+            assertTrue(size <= 2 * 10000 / 4 + 1);
+        }
+        assertEquals(10000, instance.size());
+        assertEquals(Integer.valueOf(0), instance.findMin());
+        assertEquals(Integer.valueOf(9999), instance.findMax());
+
+        // Removing through the iterator works across shards
+        Iterator<Integer> iterator = instance.iterator(100, true, 9900, false, false);
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertEquals(Integer.valueOf(100 + count++), iterator.next());
+            iterator.remove();
+        }
+        assertEquals(9800, count);
+        assertEquals(200, instance.size());
+        assertEquals(Integer.valueOf(9900), instance.higher(99));
+
+        instance.clear();
+        assertTrue(instance.isEmpty());
+        assertNull(instance.pollMin());
+    }
+
+    /**
+     * Test of rebalancing two shards with ascending inserts, of class
+     * ShardedTree.
+     */
+    @Test
+    public void testRebalanceTwoShards() {
+        System.out.println("Test rebalance two shards");
+
+        ShardedTree<Integer> instance = new ShardedTree<>(2, 16, AVLTree::new);
+        for (int i = 0; i < 300; i++) {
+            instance.add(i);
+            assertBalanced(instance);
+        }
+
+        // Descending inserts all go to the lower shard
+        for (int i = 1; i < 2000; i++) {
+            instance.add(-i);
+            assertBalanced(instance);
+        }
+        assertEquals(2299, instance.size());
+        assertEquals(Integer.valueOf(-1999), instance.findMin());
+        assertEquals(Integer.valueOf(299), instance.findMax());
+    }
+
+    /**
+     * Test of rebalancing a hot middle shard of three, of class ShardedTree.
+     */
+    @Test
+    public void testRebalanceMiddleShard() {
+        System.out.println("Test rebalance middle shard");
+
+        ShardedTree<Integer> instance = new ShardedTree<>(3, 16, AVLTree::new);
+        for (int i = 0; i < 300; i++) {
+            instance.add(i * 1000);
+        }
+        assertEquals(3, instance.shardSizes().length);
+
+        // All the values between two neighbours of the middle shard
+        int[] sizes = instance.shardSizes();
+        int hot = (sizes[0] + sizes[1] / 2) * 1000;
+        for (int i = 1; i < 1000; i++) {
+            instance.add(hot + i);
+            assertBalanced(instance);
+        }
+        assertEquals(1299, instance.size());
+        Iterator<Integer> iterator = instance.iterator();
+        for (int i = 0; i < 1299; i++) {
+            assertTrue(iterator.hasNext());
+            iterator.next();
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * Checks that no shard holds more than twice the average of the others
+     *
+     * @param instance the tree
+     */
+    private void assertBalanced(ShardedTree<Integer> instance) {
+        int[] sizes = instance.shardSizes();
+        int total = instance.size();
+        for (int size : sizes) {
+            assertTrue(Arrays.toString(sizes), size < 16 || size <= 2 * (total - size) / (sizes.length - 1) + 1);
+        }
+    }
+
+    /**
+     * Test of add and delete methods from several threads, of class
+     * ShardedTree.
+     */
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        System.out.println("Test concurrent updates");
+
+        ShardedTree<Integer> instance = new ShardedTree<>(8, 64, AVLTree::new);
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < 40000; i += 8) {
+                    if (!instance.add(i)) {
+                        errors.incrementAndGet();
+                    }
+                    if (i % 4 == 1) {
+                        instance.delete(i);
+                    }
+                    if ((instance.find(i) == null) != (i % 4 == 1)) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(30000, instance.size());
+        int expected = 0;
+        for (int value : instance) {
+            if (expected % 4 == 1) {
+                expected++;
+            }
+            assertEquals(expected++, value);
+        }
+        assertEquals(40000, expected);
+    }
+
+    /**
+     * Test of insert method with a duplicate value, of class ShardedTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws DuplicateValueException {
+        System.out.println("Test insert duplicate");
+
+        ShardedTree<Integer> instance = new ShardedTree<>(4);
+        instance.insert(1);
+        instance.insert(1);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class StringPrefixTest {
+
+    public StringPrefixTest() {
+    }
+
+    private String randomString(Random random) {
+        char[] alphabet = {0, 1, 'a', 'b', 0xFE, 0xFF, 0x100, 0xFFFF};
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Test of of method, of class StringPrefix.
+     */
+    @Test
+    public void testOf() {
+        System.out.println("Test of");
+
+        assertEquals(0L, StringPrefix.of("", 0));
+        assertEquals(0x6100000000000000L, StringPrefix.of("a", 0));
+        assertEquals(0x6162636465666768L, StringPrefix.of("abcdefghij", 0));
+        assertEquals(0x636465666768696AL, StringPrefix.of("abcdefghij", 2));
+        assertEquals(0x61FFFFFFFFFFFFFFL, StringPrefix.of("a\u0100b", 0));
+        assertEquals(-1L, StringPrefix.of("\u0100", 0));
+    }
+
+    /**
+     * Test of compare method, of class StringPrefix.
+     */
+    @Test
+    public void testCompare() {
+        System.out.println("Test compare");
+
+        Random random = new Random(36);
+        for (int i = 0; i < 100000; i++) {
+            String key = randomString(random);
+            String value = randomString(random);
+            String common = value.substring(0, Math.min(value.length(), random.nextInt(3)));
+
+            int expected = Integer.signum(key.compareTo(value));
+            int actual = Integer.signum(StringPrefix.compare(key, common, value, StringPrefix.of(value, common.length())));
+            assertEquals(key + " " + value, expected, actual);
+        }
+    }
+
+    /**
+     * Test of compare method, of class StringPrefix.Key.
+     */
+    @Test
+    public void testKeyCompare() {
+        System.out.println("Test key compare");
+
+        Random random = new Random(37);
+        for (int i = 0; i < 100000; i++) {
+            String key = randomString(random);
+            String value = randomString(random);
+            String common = value.substring(0, Math.min(value.length(), random.nextInt(3)));
+
+            int expected = Integer.signum(key.compareTo(value));
+            StringPrefix.Key prepared = new StringPrefix.Key(key, common);
+            int actual = Integer.signum(prepared.compare(value, StringPrefix.of(value, common.length())));
+            assertEquals(key + " " + value, expected, actual);
+        }
+    }
+}
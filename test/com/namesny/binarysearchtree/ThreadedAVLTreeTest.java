@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class ThreadedAVLTreeTest {
+
+    private ThreadedAVLTree<Integer> instance;
+
+    public ThreadedAVLTreeTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new ThreadedAVLTree<>();
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    private void insertMore(int... values) throws DuplicateValueException {
+        for (int value : values) {
+            instance.insert(value);
+        }
+    }
+
+    private List<Integer> toList() {
+        List<Integer> values = new ArrayList<>();
+        instance.forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Test of insert method, of class ThreadedAVLTree.
+     */
+    @Test
+    public void testInsert() throws DuplicateValueException {
+        System.out.println("Test insert");
+
+        // Ascending values rotate the tree at every other insert
+        for (int i = 1; i <= 100; i++) {
+            instance.insert(i);
+            instance.verify();
+        }
+        assertEquals(100, instance.size());
+        assertEquals(7, instance.height());
+        assertEquals(new Integer(1), instance.findMin());
+        assertEquals(new Integer(100), instance.findMax());
+        assertFalse(instance.add(50));
+    }
+
+    /**
+     * Test of insert method with a duplicate, of class ThreadedAVLTree.
+     */
+    @Test(expected = DuplicateValueException.class)
+    public void testInsertDuplicate() throws DuplicateValueException {
+        System.out.println("Test insert duplicate");
+
+        insertMore(1, 2, 3);
+        instance.insert(2);
+    }
+
+    /**
+     * Test of delete method, of class ThreadedAVLTree.
+     */
+    @Test
+    public void testDelete() throws DuplicateValueException {
+        System.out.println("Test delete");
+
+        insertMore(50, 25, 75, 10, 30, 60, 90, 5, 27, 65);
+
+        // Leaf, node with one child, node with two children and the root
+        instance.delete(5);
+        instance.verify();
+        instance.delete(60);
+        instance.verify();
+        instance.delete(25);
+        instance.verify();
+        instance.delete(50);
+        instance.verify();
+        instance.delete(1000);
+        instance.verify();
+
+        assertEquals(6, instance.size());
+        assertNull(instance.find(50));
+        assertEquals(new Integer(65), instance.find(65));
+
+        TreeSet<Integer> expected = new TreeSet<>(toList());
+        Random random = new Random(33);
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(300);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), instance.add(value));
+            } else {
+                expected.remove(value);
+                instance.delete(value);
+            }
+        }
+        instance.verify();
+        assertEquals(new ArrayList<>(expected), toList());
+    }
+
+    /**
+     * Test of forEach method, of class ThreadedAVLTree.
+     */
+    @Test
+    public void testForEach() throws DuplicateValueException {
+        System.out.println("Test forEach");
+
+        List<Integer> expected = new ArrayList<>();
+        assertEquals(expected, toList());
+
+        for (int i = 0; i < 1000; i++) {
+            expected.add(i);
+            instance.insert((i * 7) % 1000);
+        }
+        assertEquals(expected, toList());
+    }
+
+    /**
+     * Test of iterator method, of class ThreadedAVLTree.
+     */
+    @Test
+    public void testIterator() throws DuplicateValueException {
+        System.out.println("Test iterator");
+
+        for (int i = 0; i < 20; i++) {
+            instance.insert(i);
+        }
+
+        List<Integer> values = new ArrayList<>();
+        instance.iterator(5, true, 10, false, true).forEachRemaining(values::add);
+        assertEquals(java.util.Arrays.asList(9, 8, 7, 6, 5), values);
+
+        Iterator<Integer> iterator = instance.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        instance.verify();
+        assertEquals(10, instance.size());
+        assertEquals(new Integer(1), instance.findMin());
+        assertEquals(new Integer(7), instance.higher(5));
+        assertEquals(new Integer(5), instance.floor(6));
+    }
+
+    /**
+     * Test of pollMin and pollMax methods, of class ThreadedAVLTree.
+     */
+    @Test
+    public void testPollMinAndMax() throws DuplicateValueException {
+        System.out.println("Test pollMin and pollMax");
+
+        assertNull(instance.pollMin());
+        insertMore(3, 1, 4, 5, 9, 2, 6);
+        assertEquals(new Integer(1), instance.pollMin());
+        assertEquals(new Integer(9), instance.pollMax());
+        instance.verify();
+        assertEquals(5, instance.size());
+    }
+}
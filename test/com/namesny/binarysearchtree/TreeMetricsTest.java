@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class TreeMetricsTest {
+
+    private TreeMetrics instance;
+
+    public TreeMetricsTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new TreeMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    /**
+     * Test of metrics recorded by InstrumentedAVLTree.
+     */
+    @Test
+    public void testAVLTreeMetrics() throws DuplicateValueException {
+        System.out.println("Test AVL tree metrics");
+
+        InstrumentedAVLTree<Integer> tree = new InstrumentedAVLTree<>(instance);
+
+        System.out.println("Test left rotation");
+        tree.insert(1);
+        tree.insert(2);
+        tree.insert(3);
+        assertEquals(1, instance.getLeftRotations());
+        assertEquals(3, instance.getComparisons());
+
+        System.out.println("Test right-left rotation");
+        tree.insert(5);
+        tree.insert(4);
+        assertEquals(1, instance.getDoubleRotations());
+
+        assertEquals(new Integer(4), tree.find(4));
+        tree.delete(4);
+        assertEquals(5, instance.getInsertLatency().getCount());
+        assertEquals(1, instance.getFindLatency().getCount());
+        assertEquals(1, instance.getDeleteLatency().getCount());
+        assertEquals(7, instance.getDepth().getCount());
+        assertEquals(instance.getComparisons(), Math.round(instance.getDepth().getMean() * 7));
+    }
+
+    /**
+     * Test of metrics recorded by InstrumentedRedBlackTree.
+     */
+    @Test
+    public void testRedBlackTreeMetrics() throws DuplicateValueException {
+        System.out.println("Test Red-Black tree metrics");
+
+        InstrumentedRedBlackTree<Integer> tree = new InstrumentedRedBlackTree<>(instance);
+
+        System.out.println("Test recoloring");
+        tree.insert(5);
+        tree.insert(3);
+        tree.insert(7);
+        tree.insert(1);
+        // Only the descents compare, the cached extremes cost nothing
+        assertEquals(4, instance.getComparisons());
+        assertEquals(0, instance.getLeftRotations() + instance.getRightRotations());
+        assertTrue(instance.getRecolorings() > 0);
+
+        System.out.println("Test rotation");
+        tree.insert(0);
+        assertEquals(1, instance.getRightRotations());
+
+        System.out.println("Test duplicate insert is recorded");
+        try {
+            tree.insert(5);
+            fail("Duplicate value should not be inserted");
+        } catch (DuplicateValueException e) {
+            assertEquals(6, instance.getInsertLatency().getCount());
+        }
+    }
+
+    /**
+     * Test of reset method, of class TreeMetrics.
+     */
+    @Test
+    public void testReset() throws DuplicateValueException {
+        System.out.println("Test reset");
+
+        InstrumentedAVLTree<Integer> tree = new InstrumentedAVLTree<>(instance);
+        tree.insert(1);
+        tree.insert(2);
+        instance.reset();
+        assertEquals(0, instance.getComparisons());
+        assertEquals(0, instance.getInsertLatency().getCount());
+    }
+
+}
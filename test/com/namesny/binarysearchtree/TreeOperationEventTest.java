@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Matúš Námešný
+ */
+public class TreeOperationEventTest {
+
+    public TreeOperationEventTest() {
+    }
+
+    private List<RecordedEvent> record(Runnable workload) throws Exception {
+        Path file = Files.createTempFile("tree", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TreeOperationEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(TreeShapeEvent.class).withPeriod(Duration.ofMillis(10));
+            recording.start();
+            workload.run();
+            Thread.sleep(100);
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test of events emitted by the instrumented trees.
+     */
+    @Test
+    public void testOperationEvents() throws Exception {
+        System.out.println("Test operation events");
+
+        InstrumentedAVLTree<Integer> tree = new InstrumentedAVLTree<>(new TreeMetrics());
+        List<RecordedEvent> events = record(() -> {
+            try {
+                tree.insert(1);
+                tree.insert(2);
+                tree.insert(3);
+            } catch (DuplicateValueException e) {
+                throw new AssertionError(e);
+            }
+            tree.find(3);
+        });
+
+        int inserts = 0;
+        int rotations = 0;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals("com.namesny.binarysearchtree.TreeOperation")) {
+                assertEquals("InstrumentedAVLTree", event.getString("treeType"));
+                if (event.getString("operation").equals("insert")) {
+                    inserts++;
+                    rotations += event.getInt("rotations");
+                }
+            }
+        }
+        assertEquals(3, inserts);
+        assertEquals(1, rotations);
+    }
+
+    /**
+     * Test of periodic shape events.
+     */
+    @Test
+    public void testShapeEvents() throws Exception {
+        System.out.println("Test shape events");
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+        TreeShapeMonitor.monitor(tree);
+
+        List<RecordedEvent> events = record(() -> {
+        });
+        TreeShapeMonitor.unmonitor(tree);
+
+        boolean found = false;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals("com.namesny.binarysearchtree.TreeShape")) {
+                assertEquals(100, event.getInt("size"));
+                assertEquals(2 * tree.blackHeight(), event.getInt("height"));
+                assertTrue(tree.height() <= event.getInt("height"));
+                assertEquals(tree.blackHeight(), event.getInt("blackHeight"));
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+}
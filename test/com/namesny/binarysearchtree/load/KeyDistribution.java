@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree.load;
+
+import java.util.Random;
+
+/**
+ * Distribution of the keys chosen by read, delete and scan operations. The
+ * zipfian generator follows the one used by YCSB (Gray et al., "Quickly
+ * Generating Billion-Record Synthetic Databases").
+ *
+ * @author Matúš Námešný
+ */
+public abstract class KeyDistribution {
+
+    /**
+     * Skew of the zipfian distributions
+     */
+    private static final double ZIPFIAN_CONSTANT = 0.99;
+
+    /**
+     * Chooses the next key
+     *
+     * @param random random generator of the calling thread
+     * @param maxKey the highest key inserted so far
+     * @return chosen key between zero and maxKey
+     */
+    public abstract long next(Random random, long maxKey);
+
+    /**
+     * Creates a distribution by its name
+     *
+     * @param name uniform, zipfian or latest
+     * @param records number of records loaded before the run
+     * @return key distribution
+     * @throws IllegalArgumentException
+     */
+    public static KeyDistribution forName(String name, long records) {
+        switch (name) {
+            case "uniform":
+                return new Uniform();
+            case "zipfian":
+                return new Zipfian(records, true);
+            case "latest":
+                return new Zipfian(records, false);
+            default:
+                throw new IllegalArgumentException("Unknown key distribution: " + name);
+        }
+    }
+
+    /**
+     * Every key is equally likely
+     */
+    private static class Uniform extends KeyDistribution {
+
+        @Override
+        public long next(Random random, long maxKey) {
+            return (long) (random.nextDouble() * (maxKey + 1));
+        }
+    }
+
+    /**
+     * Popular keys are either scattered over the key space or the most
+     * recently inserted ones
+     */
+    private static class Zipfian extends KeyDistribution {
+
+        private final long items;
+        private final boolean scrambled;
+        private final double alpha;
+        private final double zetan;
+        private final double eta;
+
+        /**
+         * Creates the distribution
+         *
+         * @param items number of distinct ranks
+         * @param scrambled true to scatter popular keys over the key space,
+         * false to make the most recent keys the most popular
+         */
+        Zipfian(long items, boolean scrambled) {
+            this.items = Math.max(items, 2);
+            this.scrambled = scrambled;
+
+            double zeta = 0;
+            for (long i = 1; i <= this.items; i++) {
+                zeta += 1 / Math.pow(i, ZIPFIAN_CONSTANT);
+            }
+            double zeta2 = 1 + 1 / Math.pow(2, ZIPFIAN_CONSTANT);
+
+            this.zetan = zeta;
+            this.alpha = 1 / (1 - ZIPFIAN_CONSTANT);
+            this.eta = (1 - Math.pow(2.0 / this.items, 1 - ZIPFIAN_CONSTANT)) / (1 - zeta2 / zetan);
+        }
+
+        /**
+         * Chooses a rank, zero being the most popular
+         *
+         * @param random random generator
+         * @return rank between zero and items - 1
+         */
+        private long rank(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, ZIPFIAN_CONSTANT)) {
+                return 1;
+            }
+
+            return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        @Override
+        public long next(Random random, long maxKey) {
+            long rank = rank(random);
+            if (scrambled) {
+                return Long.remainderUnsigned(fnvHash(rank), maxKey + 1);
+            }
+            return Math.max(0, maxKey - rank);
+        }
+
+        /**
+         * FNV-1a hash of a long
+         *
+         * @param value value to hash
+         * @return hash of the value
+         */
+        private static long fnvHash(long value) {
+            long hash = 0xCBF29CE484222325L;
+            for (int i = 0; i < 8; i++) {
+                hash ^= value & 0xFF;
+                hash *= 0x100000001B3L;
+                value >>>= 8;
+            }
+            return hash;
+        }
+    }
+}
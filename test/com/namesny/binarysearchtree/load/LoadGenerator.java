@@ -0,0 +1,484 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree.load;
+
+import com.namesny.binarysearchtree.AVLTree;
+import com.namesny.binarysearchtree.BinarySearchTree;
+import com.namesny.binarysearchtree.DuplicateValueException;
+import com.namesny.binarysearchtree.FlatCombiningTree;
+import com.namesny.binarysearchtree.HashIndexedTree;
+import com.namesny.binarysearchtree.Histogram;
+import com.namesny.binarysearchtree.NavigableTree;
+import com.namesny.binarysearchtree.RedBlackTree;
+import com.namesny.binarysearchtree.ShardedTree;
+import com.namesny.binarysearchtree.ThreadedAVLTree;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator driving a tree with a configurable operation mix, key
+ * distribution and number of threads. It reports the throughput, latency
+ * percentiles of every operation type, bytes allocated by the clients and
+ * garbage collections during the run and writes them as JSON.
+ *
+ * Usage: LoadGenerator [options]
+ * <pre>
+ *   --tree avl|redblack|threaded  tree implementation (avl)
+ *   --workload A|B|C|D|E|F      core YCSB operation mix (A)
+ *   --mix read:insert:delete:scan  custom operation mix instead of a workload
+ *   --distribution uniform|zipfian|latest  key distribution (zipfian)
+ *   --threads N                 number of client threads (1)
+ *   --records N                 number of keys loaded before the run (100000)
+ *   --operations N              number of operations of the run (1000000)
+ *   --scan-length N             maximal number of keys read by a scan (100)
+ *   --pool N                    recycle up to N unlinked nodes, avl and
+ *                               redblack only (0)
+ *   --index none|hash           hash index for exact lookups (none)
+ *   --concurrency lock|combining|sharded  guard of the tree used by
+ *                               several threads, a plain lock, flat combining
+ *                               or range shards with their own locks (lock)
+ *   --shards N                  number of shards when sharded (16)
+ *   --output FILE               JSON result file (load-result.json)
+ * </pre>
+ *
+ * A scan walks the tree with a range iterator from the chosen key, holding
+ * the tree lock, or the combiner lock, for the whole scan when there is more
+ * than one thread.
+ *
+ * @author Matúš Námešný
+ */
+public class LoadGenerator {
+
+    private String treeName = "avl";
+    private Workload workload = Workload.ycsb("A");
+    private String workloadName = "A";
+    private String distributionName = "zipfian";
+    private int threads = 1;
+    private long records = 100000;
+    private long operations = 1000000;
+    private int scanLength = 100;
+    private int pool = 0;
+    private String indexName = "none";
+    private String concurrency = "lock";
+    private int shards = 16;
+    private String output = "load-result.json";
+
+    /**
+     * Latency of every operation type in nanoseconds
+     */
+    private final Map<Workload.Operation, Histogram> latencies = new EnumMap<>(Workload.Operation.class);
+
+    /**
+     * The next key to insert
+     */
+    private final AtomicLong nextKey = new AtomicLong();
+
+    /**
+     * Bytes allocated by the client threads
+     */
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * The unguarded tree, used by scans
+     */
+    private NavigableTree<Long> scanTree;
+
+    /**
+     * The flat combining front end, null if the tree is guarded by a lock
+     */
+    private FlatCombiningTree<Long> combiningTree;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    /**
+     * Parses command line options
+     *
+     * @param args command line arguments
+     * @throws IllegalArgumentException
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--tree":
+                    treeName = value;
+                    break;
+                case "--workload":
+                    workload = Workload.ycsb(value);
+                    workloadName = value.toUpperCase();
+                    break;
+                case "--mix":
+                    workload = Workload.parse(value);
+                    workloadName = value;
+                    break;
+                case "--distribution":
+                    distributionName = value;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--records":
+                    records = Long.parseLong(value);
+                    break;
+                case "--operations":
+                    operations = Long.parseLong(value);
+                    break;
+                case "--scan-length":
+                    scanLength = Integer.parseInt(value);
+                    break;
+                case "--pool":
+                    pool = Integer.parseInt(value);
+                    break;
+                case "--index":
+                    indexName = value;
+                    break;
+                case "--concurrency":
+                    concurrency = value;
+                    break;
+                case "--shards":
+                    shards = Integer.parseInt(value);
+                    break;
+                case "--output":
+                    output = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Creates the tested tree
+     *
+     * @return the tree, guarded by a lock if there is more than one thread
+     * @throws IllegalArgumentException
+     */
+    private BinarySearchTree<Long> createTree() {
+        if (concurrency.equals("sharded")) {
+            ShardedTree<Long> shardedTree = new ShardedTree<>(shards, this::newTree);
+            scanTree = shardedTree;
+            return shardedTree;
+        }
+
+        NavigableTree<Long> tree = newTree();
+        scanTree = tree;
+        if (threads == 1) {
+            return tree;
+        }
+        switch (concurrency) {
+            case "lock":
+                return new SynchronizedTree<>(tree);
+            case "combining":
+                combiningTree = new FlatCombiningTree<>(tree);
+                return combiningTree;
+            default:
+                throw new IllegalArgumentException("Unknown concurrency: " + concurrency);
+        }
+    }
+
+    /**
+     * Creates an unguarded tree of the chosen implementation
+     *
+     * @return the tree
+     * @throws IllegalArgumentException
+     */
+    private NavigableTree<Long> newTree() {
+        NavigableTree<Long> tree;
+        switch (treeName) {
+            case "avl":
+                AVLTree<Long> avlTree = new AVLTree<>();
+                avlTree.setNodePool(pool);
+                tree = avlTree;
+                break;
+            case "redblack":
+                RedBlackTree<Long> redBlackTree = new RedBlackTree<>();
+                redBlackTree.setNodePool(pool);
+                tree = redBlackTree;
+                break;
+            case "threaded":
+                tree = new ThreadedAVLTree<>();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tree: " + treeName);
+        }
+        switch (indexName) {
+            case "none":
+                break;
+            case "hash":
+                tree = new HashIndexedTree<>(tree);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown index: " + indexName);
+        }
+        return tree;
+    }
+
+    /**
+     * Loads the tree, runs the operations and reports the results
+     *
+     * @throws Exception
+     */
+    private void run() throws Exception {
+        BinarySearchTree<Long> tree = createTree();
+        KeyDistribution distribution = KeyDistribution.forName(distributionName, records);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            latencies.put(operation, new Histogram());
+        }
+
+        System.out.println("Loading " + records + " records into " + treeName);
+        for (long key = 0; key < records; key++) {
+            tree.insert(key);
+        }
+        nextKey.set(records);
+
+        System.out.println("Running workload " + workloadName + " with " + threads + " threads");
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long count = operations / threads + (i < operations % threads ? 1 : 0);
+            workers[i] = new Thread(() -> work(tree, distribution, count), "load-" + i);
+        }
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long duration = System.nanoTime() - start;
+
+        report(duration, gcCount() - gcCount, gcMillis() - gcMillis);
+    }
+
+    /**
+     * Runs operations of one client thread
+     *
+     * @param tree the tested tree
+     * @param distribution key distribution
+     * @param count number of operations to run
+     */
+    private void work(BinarySearchTree<Long> tree, KeyDistribution distribution, long count) {
+        Random random = ThreadLocalRandom.current();
+        long allocated = allocatedBytes();
+
+        for (long i = 0; i < count; i++) {
+            Workload.Operation operation = workload.choose(random.nextDouble());
+            long maxKey = nextKey.get() - 1;
+            long start = System.nanoTime();
+
+            switch (operation) {
+                case READ:
+                    tree.find(distribution.next(random, maxKey));
+                    break;
+                case INSERT:
+                    try {
+                        tree.insert(nextKey.getAndIncrement());
+                    } catch (DuplicateValueException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    break;
+                case DELETE:
+                    tree.delete(distribution.next(random, maxKey));
+                    break;
+                case SCAN:
+                    scan(distribution.next(random, maxKey), 1 + random.nextInt(scanLength));
+                    break;
+            }
+
+            latencies.get(operation).record(System.nanoTime() - start);
+        }
+
+        if (allocated >= 0) {
+            allocatedBytes.add(allocatedBytes() - allocated);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread
+     *
+     * @return allocated bytes, -1 if the JVM cannot measure it
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+            if (threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+                return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of garbage collections since the JVM started
+     *
+     * @return number of collections of all collectors
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(bean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent in garbage collections since the JVM started
+     *
+     * @return collection time of all collectors in milliseconds
+     */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(bean.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     * Reads up to length keys starting at the key
+     *
+     * @param from the first key of the scan
+     * @param length maximal number of keys to read
+     */
+    private void scan(long from, int length) {
+        // The sharded tree locks each shard while its iterator copies values from it
+        if (scanTree instanceof ShardedTree) {
+            read(from, length);
+            return;
+        }
+        if (combiningTree != null) {
+            combiningTree.getLock().lock();
+            try {
+                read(from, length);
+            } finally {
+                combiningTree.getLock().unlock();
+            }
+            return;
+        }
+
+        // SynchronizedTree locks on the wrapped tree, so the scan takes the same lock
+        synchronized (scanTree) {
+            read(from, length);
+        }
+    }
+
+    /**
+     * Reads up to length keys starting at the key without locking
+     *
+     * @param from the first key of the scan
+     * @param length maximal number of keys to read
+     */
+    private void read(long from, int length) {
+        Iterator<Long> iterator = scanTree.iterator(from, true, null, true, false);
+        for (int i = 0; i < length && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+    }
+
+    /**
+     * Prints the results and writes them into the output file
+     *
+     * @param duration duration of the run in nanoseconds
+     * @param gcCount number of garbage collections during the run
+     * @param gcMillis time spent in garbage collections during the run
+     * @throws IOException
+     */
+    private void report(long duration, long gcCount, long gcMillis) throws IOException {
+        double seconds = duration / 1e9;
+        double throughput = operations / seconds;
+        long allocated = allocatedBytes() < 0 ? -1 : allocatedBytes.sum();
+        System.out.printf("Throughput: %.0f ops/s in %.3f s%n", throughput, seconds);
+        System.out.printf("Allocated: %d bytes (%.1f per operation), GC: %d collections in %d ms%n",
+                allocated, allocated / (double) operations, gcCount, gcMillis);
+        if (combiningTree != null) {
+            System.out.printf("Combining: %.1f requests per batch%n", combiningTree.getAverageBatchSize());
+        }
+        if (scanTree instanceof ShardedTree) {
+            System.out.println("Shard sizes: " + Arrays.toString(((ShardedTree<Long>) scanTree).shardSizes()));
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))) {
+            writer.println("{");
+            writer.printf(Locale.ROOT, "  \"tree\": \"%s\",%n", treeName);
+            writer.printf(Locale.ROOT, "  \"workload\": \"%s\",%n", workloadName);
+            writer.printf(Locale.ROOT, "  \"distribution\": \"%s\",%n", distributionName);
+            writer.printf(Locale.ROOT, "  \"threads\": %d,%n", threads);
+            writer.printf(Locale.ROOT, "  \"records\": %d,%n", records);
+            writer.printf(Locale.ROOT, "  \"operations\": %d,%n", operations);
+            writer.printf(Locale.ROOT, "  \"durationSeconds\": %.6f,%n", seconds);
+            writer.printf(Locale.ROOT, "  \"throughput\": %.1f,%n", throughput);
+            writer.printf(Locale.ROOT, "  \"pool\": %d,%n", pool);
+            writer.printf(Locale.ROOT, "  \"index\": \"%s\",%n", indexName);
+            writer.printf(Locale.ROOT, "  \"concurrency\": \"%s\",%n", concurrency);
+            writer.printf(Locale.ROOT, "  \"shards\": %d,%n", concurrency.equals("sharded") ? shards : 1);
+            writer.printf(Locale.ROOT, "  \"allocatedBytes\": %d,%n", allocated);
+            writer.printf(Locale.ROOT, "  \"gcCount\": %d,%n", gcCount);
+            writer.printf(Locale.ROOT, "  \"gcMillis\": %d,%n", gcMillis);
+            writer.println("  \"latencyNanos\": {");
+
+            int remaining = latencies.size();
+            for (Map.Entry<Workload.Operation, Histogram> entry : latencies.entrySet()) {
+                Histogram histogram = entry.getValue();
+                String name = entry.getKey().name().toLowerCase();
+                System.out.printf("%-7s count=%d p50=%d p99=%d p99.9=%d max=%d ns%n", name,
+                        histogram.getCount(), histogram.getValueAtPercentile(50),
+                        histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                        histogram.getMax());
+                writer.printf(Locale.ROOT, "    \"%s\": {\"count\": %d, \"mean\": %.1f, \"p50\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}%s%n",
+                        name, histogram.getCount(), histogram.getMean(), histogram.getValueAtPercentile(50),
+                        histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                        histogram.getMax(), --remaining > 0 ? "," : "");
+            }
+
+            writer.println("  }");
+            writer.println("}");
+        }
+        System.out.println("Results written to " + output);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree.load;
+
+import com.namesny.binarysearchtree.BinarySearchTree;
+import com.namesny.binarysearchtree.DuplicateValueException;
+
+/**
+ * Makes a tree usable from several threads by synchronizing every operation
+ * on the tree itself.
+ *
+ * @author Matúš Námešný
+ * @param <T> T can be any type that extends Comparable
+ */
+public class SynchronizedTree<T extends Comparable<? super T>> implements BinarySearchTree<T> {
+
+    /**
+     * The guarded tree
+     */
+    private final BinarySearchTree<T> tree;
+
+    /**
+     * Wraps the tree
+     *
+     * @param tree the tree to guard
+     */
+    public SynchronizedTree(BinarySearchTree<T> tree) {
+        this.tree = tree;
+    }
+
+    @Override
+    public void insert(T value) throws DuplicateValueException {
+        synchronized (tree) {
+            tree.insert(value);
+        }
+    }
+
+    @Override
+    public void delete(T key) {
+        synchronized (tree) {
+            tree.delete(key);
+        }
+    }
+
+    @Override
+    public T find(T key) {
+        synchronized (tree) {
+            return tree.find(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (tree) {
+            tree.clear();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        synchronized (tree) {
+            return tree.isEmpty();
+        }
+    }
+
+    @Override
+    public T findMin() {
+        synchronized (tree) {
+            return tree.findMin();
+        }
+    }
+
+    @Override
+    public T findMax() {
+        synchronized (tree) {
+            return tree.findMax();
+        }
+    }
+}
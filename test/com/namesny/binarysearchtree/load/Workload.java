@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Matúš Námešný.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.namesny.binarysearchtree.load;
+
+/**
+ * Operation mix of a load test. The predefined mixes follow the core YCSB
+ * workloads mapped onto the operations of a tree. A tree holds only keys, so
+ * updates are modelled as an even mix of inserts and deletes and a
+ * read-modify-write as a read followed by such an update.
+ *
+ * @author Matúš Námešný
+ */
+public class Workload {
+
+    /**
+     * Relative weights of the operations
+     */
+    private final double read;
+    private final double insert;
+    private final double delete;
+    private final double scan;
+
+    /**
+     * Creates an operation mix. The weights are normalized so they do not
+     * need to add up to one.
+     *
+     * @param read weight of finds
+     * @param insert weight of inserts
+     * @param delete weight of deletes
+     * @param scan weight of scans
+     * @throws IllegalArgumentException
+     */
+    public Workload(double read, double insert, double delete, double scan) {
+        double total = read + insert + delete + scan;
+        if (read < 0 || insert < 0 || delete < 0 || scan < 0 || total <= 0) {
+            throw new IllegalArgumentException("Weights must be non-negative and not all zero");
+        }
+        this.read = read / total;
+        this.insert = insert / total;
+        this.delete = delete / total;
+        this.scan = scan / total;
+    }
+
+    /**
+     * Creates one of the core YCSB workloads
+     *
+     * A update heavy, B read mostly, C read only, D read latest, E short
+     * ranges, F read-modify-write
+     *
+     * @param name letter A to F
+     * @return the workload
+     * @throws IllegalArgumentException
+     */
+    public static Workload ycsb(String name) {
+        switch (name.toUpperCase()) {
+            case "A":
+                return new Workload(0.50, 0.25, 0.25, 0);
+            case "B":
+                return new Workload(0.95, 0.025, 0.025, 0);
+            case "C":
+                return new Workload(1, 0, 0, 0);
+            case "D":
+                return new Workload(0.95, 0.05, 0, 0);
+            case "E":
+                return new Workload(0, 0.05, 0, 0.95);
+            case "F":
+                return new Workload(0.75, 0.125, 0.125, 0);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    /**
+     * Parses an operation mix in the form read:insert:delete:scan
+     *
+     * @param mix the operation mix
+     * @return the workload
+     * @throws IllegalArgumentException
+     */
+    public static Workload parse(String mix) {
+        String[] parts = mix.split(":");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Operation mix must be read:insert:delete:scan");
+        }
+        return new Workload(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+    }
+
+    /**
+     * Chooses an operation
+     *
+     * @param u uniformly distributed number between zero and one
+     * @return the operation
+     */
+    public Operation choose(double u) {
+        if (u < read) {
+            return Operation.READ;
+        }
+        if (u < read + insert) {
+            return Operation.INSERT;
+        }
+        if (u < read + insert + delete) {
+            return Operation.DELETE;
+        }
+        return scan > 0 ? Operation.SCAN : Operation.READ;
+    }
+
+    @Override
+    public String toString() {
+        return read + ":" + insert + ":" + delete + ":" + scan;
+    }
+
+    /**
+     * Operations of a load test
+     */
+    public static enum Operation {
+        READ, INSERT, DELETE, SCAN
+    }
+}